@@ -0,0 +1,63 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs a JMH benchmark class once per thread count, so that its results show how it scales from 1 to 64 threads. Thread counts may also
+ * be given as arguments, e.g. 1 4 16.
+ */
+public final class ThreadSweep
+{
+  /**
+   * The default thread counts
+   */
+  public static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+  /**
+   * Private constructor prevents instantiation.
+   */
+  private ThreadSweep()
+  {
+  }
+
+  /**
+   * Runs all benchmarks of the given class at each of the thread counts given as arguments, or at the default counts if there are none
+   * 
+   * @throws RunnerException JMH failed to run a benchmark.
+   * @throws NumberFormatException An argument is not a number.
+   */
+  public static void run(final Class<?> benchmark, final String[] args)
+      throws RunnerException
+  {
+    int[] threads = THREADS;
+    if (args.length > 0)
+    {
+      threads = new int[args.length];
+      for (int i = 0; i < args.length; i++)
+        threads[i] = Integer.parseInt(args[i]);
+    }
+
+    for (int count : threads)
+      new Runner(new OptionsBuilder().include(benchmark.getName() + "\\.").threads(count).build()).run();
+  }
+}
@@ -0,0 +1,125 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+import propel.core.ThreadSweep;
+import propel.core.collections.maps.ISharedHashtable;
+import propel.core.collections.maps.avl.SharedAvlHashtable;
+
+/**
+ * Compares the ISharedHashtable implementations under a mix of gets and writes, the writes alternately adding and removing keys so that
+ * the size of the table stays about the same. Run main() to repeat the comparison at 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SharedHashtableBenchmark
+{
+  @Param({"SharedAvlHashtable", "SharedHashtable", "SharedSkipListHashtable"})
+  public String implementation;
+  /**
+   * The percentage of operations that are writes
+   */
+  @Param({"0", "10", "50"})
+  public int writePercent;
+  /**
+   * The number of distinct keys, a power of 2
+   */
+  @Param({"65536"})
+  public int keyCount;
+
+  private ISharedHashtable<Integer, Integer> table;
+  private Integer[] keys;
+
+  @Setup
+  public void setup()
+  {
+    if ("SharedAvlHashtable".equals(implementation))
+      table = new SharedAvlHashtable<Integer, Integer>(Integer.class, Integer.class);
+    else if ("SharedHashtable".equals(implementation))
+      table = new SharedHashtable<Integer, Integer>(Integer.class, Integer.class);
+    else
+      table = new SharedSkipListHashtable<Integer, Integer>(Integer.class, Integer.class);
+
+    keys = new Integer[keyCount];
+    for (int i = 0; i < keyCount; i++)
+    {
+      keys[i] = i;
+      // half the keys are present initially
+      if ((i & 1) == 0)
+        table.add(keys[i], keys[i]);
+    }
+  }
+
+  @Benchmark
+  public Object mixed(final Random random)
+  {
+    int next = random.next();
+    Integer key = keys[next & (keyCount - 1)];
+
+    if (((next >>> 16) % 100) < writePercent)
+    {
+      if (!table.add(key, key))
+        table.remove(key);
+
+      return key;
+    }
+
+    return table.get(key);
+  }
+
+  public static void main(final String[] args)
+      throws RunnerException
+  {
+    ThreadSweep.run(SharedHashtableBenchmark.class, args);
+  }
+
+  /**
+   * A per-thread xorshift generator, so that threads do not share random state
+   */
+  @State(Scope.Thread)
+  public static class Random
+  {
+    private int state = (int) System.nanoTime() | 1;
+
+    int next()
+    {
+      state ^= state << 13;
+      state ^= state >>> 17;
+      state ^= state << 5;
+      return state & Integer.MAX_VALUE;
+    }
+  }
+}
@@ -0,0 +1,263 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.primitive;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the open-addressing LongHashMap with the bucket-array design it replaced, and with a HashMap of boxed keys, on a single thread.
+ * The maps hold a number of random keys, and each operation gets or overwrites one of them, or looks up a key that is absent. The bucket
+ * map is sized at four times the number of keys, as it could not grow. Run with -prof gc to compare the allocation of each operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongHashMapBenchmark
+{
+  @Param({"LongHashMap", "BucketLongHashMap", "HashMap"})
+  public String implementation;
+  /**
+   * The number of keys, a power of 2
+   */
+  @Param({"1048576"})
+  public int keyCount;
+
+  private LongMap map;
+  private long[] keys;
+  private long[] absentKeys;
+  private int next;
+
+  @Setup
+  public void setup()
+  {
+    if ("LongHashMap".equals(implementation))
+      map = new OpenAddressingMap(keyCount);
+    else if ("BucketLongHashMap".equals(implementation))
+      map = new BucketMap(4 * keyCount);
+    else
+      map = new BoxedMap(keyCount);
+
+    Random random = new Random(42);
+    keys = new long[keyCount];
+    for (int i = 0; i < keyCount; i++)
+    {
+      // zero is a valid key of all maps, but is special-cased by LongHashMap, so it is left out
+      do
+        keys[i] = random.nextLong();
+      while (keys[i] == 0);
+
+      map.put(keys[i], keys);
+    }
+
+    long[] sorted = keys.clone();
+    Arrays.sort(sorted);
+    absentKeys = new long[keyCount];
+    for (int i = 0; i < keyCount; i++)
+      do
+        absentKeys[i] = random.nextLong();
+      while (absentKeys[i] == 0 || Arrays.binarySearch(sorted, absentKeys[i]) >= 0);
+  }
+
+  @Benchmark
+  public Object get()
+  {
+    return map.get(keys[next++ & (keyCount - 1)]);
+  }
+
+  @Benchmark
+  public Object getAbsent()
+  {
+    return map.get(absentKeys[next++ & (keyCount - 1)]);
+  }
+
+  @Benchmark
+  public Object put()
+  {
+    return map.put(keys[next++ & (keyCount - 1)], this);
+  }
+
+  public static void main(final String[] args)
+      throws RunnerException
+  {
+    new Runner(new OptionsBuilder().include(LongHashMapBenchmark.class.getName() + "\\.").build()).run();
+  }
+
+  /**
+   * The operations of the compared maps
+   */
+  private abstract static class LongMap
+  {
+    abstract Object get(long key);
+
+    abstract Object put(long key, Object value);
+  }
+
+  private static final class OpenAddressingMap
+      extends LongMap
+  {
+    private final LongHashMap<Object> map;
+
+    OpenAddressingMap(int keyCount)
+    {
+      map = new LongHashMap<Object>(keyCount, Object.class);
+    }
+
+    @Override
+    Object get(long key)
+    {
+      return map.get(key);
+    }
+
+    @Override
+    Object put(long key, Object value)
+    {
+      return map.put(key, value);
+    }
+  }
+
+  private static final class BoxedMap
+      extends LongMap
+  {
+    private final HashMap<Long, Object> map;
+
+    BoxedMap(int keyCount)
+    {
+      map = new HashMap<Long, Object>(keyCount * 4 / 3 + 1);
+    }
+
+    @Override
+    Object get(long key)
+    {
+      return map.get(key);
+    }
+
+    @Override
+    Object put(long key, Object value)
+    {
+      return map.put(key, value);
+    }
+  }
+
+  /**
+   * The design of LongHashMap before it used open addressing: a table of buckets, each holding parallel arrays of keys and entries, with a
+   * LongEntry allocated per put. It is kept here as the baseline, with the growth of a bucket's key array corrected.
+   */
+  private static final class BucketMap
+      extends LongMap
+  {
+    private final Bucket[] table;
+
+    BucketMap(int capacity)
+    {
+      table = new Bucket[Integer.highestOneBit(capacity - 1) << 1];
+    }
+
+    @Override
+    Object get(long key)
+    {
+      Bucket bucket = table[indexFor(key)];
+      if (bucket != null)
+        for (int i = 0; i < bucket.position; i++)
+        {
+          LongEntry<Object> entry = bucket.entries[i];
+          if (entry.key == key)
+            return entry.value;
+        }
+
+      return null;
+    }
+
+    @Override
+    Object put(long key, Object value)
+    {
+      int index = indexFor(key);
+      if (table[index] == null)
+        table[index] = new Bucket();
+
+      LongEntry<Object> inserted = new LongEntry<Object>(key, value);
+      Bucket bucket = table[index];
+      int existing = bucket.find(key);
+      if (existing >= 0)
+      {
+        LongEntry<Object> old = bucket.entries[existing];
+        bucket.keys[existing] = key;
+        bucket.entries[existing] = inserted;
+        return old.value;
+      }
+
+      bucket.add(inserted);
+      return null;
+    }
+
+    private int indexFor(long key)
+    {
+      return ((int) key / 2) & (table.length - 1);
+    }
+
+    private static final class Bucket
+    {
+      long[] keys = new long[8];
+      @SuppressWarnings("unchecked")
+      LongEntry<Object>[] entries = new LongEntry[8];
+      int position;
+
+      void add(LongEntry<Object> entry)
+      {
+        keys[position] = entry.key;
+        entries[position] = entry;
+        position++;
+
+        if (position >= entries.length)
+        {
+          keys = Arrays.copyOf(keys, keys.length * 2);
+          entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+      }
+
+      int find(long key)
+      {
+        for (int i = 0; i < position; i++)
+          if (keys[i] == key)
+            return i;
+
+        return -1;
+      }
+    }
+  }
+}
@@ -0,0 +1,225 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.primitive;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+import propel.core.ThreadSweep;
+
+/**
+ * Compares SharedLongHashMap with a ConcurrentHashMap of boxed keys, and with a LongHashMap guarded by a single lock, under a mix of gets
+ * and writes. The writes alternately put and remove keys, so that the size of the map stays about the same while removed keys leave
+ * tombstones and segments rehash. Run main() to repeat the comparison at 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SharedLongHashMapBenchmark
+{
+  @Param({"SharedLongHashMap", "ConcurrentHashMap", "SynchronizedLongHashMap"})
+  public String implementation;
+  /**
+   * The percentage of operations that are writes
+   */
+  @Param({"0", "10", "50"})
+  public int writePercent;
+  /**
+   * The number of distinct keys, a power of 2
+   */
+  @Param({"65536"})
+  public int keyCount;
+
+  private LongMap map;
+  private long[] keys;
+
+  @Setup
+  public void setup()
+  {
+    if ("SharedLongHashMap".equals(implementation))
+      map = new SharedMap(keyCount);
+    else if ("ConcurrentHashMap".equals(implementation))
+      map = new BoxedMap(keyCount);
+    else
+      map = new SynchronizedMap(keyCount);
+
+    keys = new long[keyCount];
+    for (int i = 0; i < keyCount; i++)
+    {
+      // keys far apart, so that they do not hash to adjacent slots by construction
+      keys[i] = (i + 1) * 0x5DEECE66DL;
+      // half the keys are present initially
+      if ((i & 1) == 0)
+        map.put(keys[i], this);
+    }
+  }
+
+  @Benchmark
+  public Object mixed(final Random random)
+  {
+    int next = random.next();
+    long key = keys[next & (keyCount - 1)];
+
+    if (((next >>> 16) % 100) < writePercent)
+    {
+      if (map.remove(key) == null)
+        map.put(key, this);
+
+      return key;
+    }
+
+    return map.get(key);
+  }
+
+  public static void main(final String[] args)
+      throws RunnerException
+  {
+    ThreadSweep.run(SharedLongHashMapBenchmark.class, args);
+  }
+
+  /**
+   * A per-thread xorshift generator, so that threads do not share random state
+   */
+  @State(Scope.Thread)
+  public static class Random
+  {
+    private int state = (int) System.nanoTime() | 1;
+
+    int next()
+    {
+      state ^= state << 13;
+      state ^= state >>> 17;
+      state ^= state << 5;
+      return state & Integer.MAX_VALUE;
+    }
+  }
+
+  /**
+   * The operations of the compared maps
+   */
+  private abstract static class LongMap
+  {
+    abstract Object get(long key);
+
+    abstract Object put(long key, Object value);
+
+    abstract Object remove(long key);
+  }
+
+  private static final class SharedMap
+      extends LongMap
+  {
+    private final SharedLongHashMap<Object> map;
+
+    SharedMap(int keyCount)
+    {
+      map = new SharedLongHashMap<Object>(keyCount, Object.class);
+    }
+
+    @Override
+    Object get(long key)
+    {
+      return map.get(key);
+    }
+
+    @Override
+    Object put(long key, Object value)
+    {
+      return map.put(key, value);
+    }
+
+    @Override
+    Object remove(long key)
+    {
+      return map.remove(key);
+    }
+  }
+
+  private static final class BoxedMap
+      extends LongMap
+  {
+    private final ConcurrentHashMap<Long, Object> map;
+
+    BoxedMap(int keyCount)
+    {
+      map = new ConcurrentHashMap<Long, Object>(keyCount);
+    }
+
+    @Override
+    Object get(long key)
+    {
+      return map.get(key);
+    }
+
+    @Override
+    Object put(long key, Object value)
+    {
+      return map.put(key, value);
+    }
+
+    @Override
+    Object remove(long key)
+    {
+      return map.remove(key);
+    }
+  }
+
+  private static final class SynchronizedMap
+      extends LongMap
+  {
+    private final LongHashMap<Object> map;
+
+    SynchronizedMap(int keyCount)
+    {
+      map = new LongHashMap<Object>(keyCount, Object.class);
+    }
+
+    @Override
+    synchronized Object get(long key)
+    {
+      return map.get(key);
+    }
+
+    @Override
+    synchronized Object put(long key, Object value)
+    {
+      return map.put(key, value);
+    }
+
+    @Override
+    synchronized Object remove(long key)
+    {
+      return map.remove(key);
+    }
+  }
+}
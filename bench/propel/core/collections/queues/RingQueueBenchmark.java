@@ -0,0 +1,231 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.queues;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the throughput of handing items from producers to a single consumer through SpscQueue and MpscQueue, compared with
+ * SharedBoundedQueue and ArrayBlockingQueue. Producers offer and the consumer polls without waiting, so that neither side can be left
+ * blocked when an iteration ends; the "offered" and "taken" counters report the successful operations per microsecond. Run main() to
+ * repeat the comparison with 1 to 63 producers; SpscQueue is only measured with a single producer.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RingQueueBenchmark
+{
+  private static final String[] IMPLEMENTATIONS = {"SpscQueue", "MpscQueue", "SharedBoundedQueue", "ArrayBlockingQueue"};
+  private static final Integer ITEM = 42;
+
+  @Param({"SpscQueue", "MpscQueue", "SharedBoundedQueue", "ArrayBlockingQueue"})
+  public String implementation;
+  @Param({"1024"})
+  public int capacity;
+
+  private Handoff handoff;
+
+  @Setup
+  public void setup()
+  {
+    if ("SpscQueue".equals(implementation))
+      handoff = new RingHandoff(new SpscQueue<Integer>(capacity, Integer.class));
+    else if ("MpscQueue".equals(implementation))
+      handoff = new RingHandoff(new MpscQueue<Integer>(capacity, Integer.class));
+    else if ("SharedBoundedQueue".equals(implementation))
+      handoff = new BoundedHandoff(new SharedBoundedQueue<Integer>(capacity, Integer.class));
+    else
+      handoff = new BlockingHandoff(new ArrayBlockingQueue<Integer>(capacity));
+  }
+
+  @Benchmark
+  @Group("handoff")
+  @GroupThreads(1)
+  public boolean offer(final Counters counters)
+  {
+    if (!handoff.offer(ITEM))
+      return false;
+
+    counters.offered++;
+    return true;
+  }
+
+  @Benchmark
+  @Group("handoff")
+  @GroupThreads(1)
+  public boolean poll(final Counters counters)
+  {
+    if (!handoff.poll())
+      return false;
+
+    counters.taken++;
+    return true;
+  }
+
+  /**
+   * Runs the benchmark once per producer count, given as arguments or defaulting to 1 to 63, always with a single consumer
+   * 
+   * @throws RunnerException JMH failed to run a benchmark.
+   * @throws NumberFormatException An argument is not a number.
+   */
+  public static void main(final String[] args)
+      throws RunnerException
+  {
+    int[] producers = {1, 3, 7, 15, 31, 63};
+    if (args.length > 0)
+    {
+      producers = new int[args.length];
+      for (int i = 0; i < args.length; i++)
+        producers[i] = Integer.parseInt(args[i]);
+    }
+
+    for (int count : producers)
+    {
+      // the single-producer queue is only correct with one producer
+      String[] implementations = IMPLEMENTATIONS;
+      if (count > 1)
+      {
+        implementations = new String[IMPLEMENTATIONS.length - 1];
+        System.arraycopy(IMPLEMENTATIONS, 1, implementations, 0, implementations.length);
+      }
+
+      new Runner(new OptionsBuilder().include(RingQueueBenchmark.class.getName() + "\\.").threadGroups(count, 1)
+          .param("implementation", implementations).build()).run();
+    }
+  }
+
+  /**
+   * The successful operations of a thread, reported by JMH as secondary results
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters
+  {
+    public long offered;
+    public long taken;
+
+    @Setup(Level.Iteration)
+    public void reset()
+    {
+      offered = 0;
+      taken = 0;
+    }
+  }
+
+  /**
+   * Hands items over through one of the compared queues, without waiting
+   */
+  private abstract static class Handoff
+  {
+    abstract boolean offer(Integer item);
+
+    abstract boolean poll();
+  }
+
+  private static final class RingHandoff
+      extends Handoff
+  {
+    private final AbstractRingQueue<Integer> queue;
+
+    RingHandoff(AbstractRingQueue<Integer> queue)
+    {
+      this.queue = queue;
+    }
+
+    @Override
+    boolean offer(Integer item)
+    {
+      return queue.offer(item);
+    }
+
+    @Override
+    boolean poll()
+    {
+      return queue.tryGet().isSuccess();
+    }
+  }
+
+  private static final class BoundedHandoff
+      extends Handoff
+  {
+    private final SharedBoundedQueue<Integer> queue;
+
+    BoundedHandoff(SharedBoundedQueue<Integer> queue)
+    {
+      this.queue = queue;
+    }
+
+    @Override
+    boolean offer(Integer item)
+    {
+      return queue.offer(item);
+    }
+
+    @Override
+    boolean poll()
+    {
+      return queue.tryGet().isSuccess();
+    }
+  }
+
+  private static final class BlockingHandoff
+      extends Handoff
+  {
+    private final ArrayBlockingQueue<Integer> queue;
+
+    BlockingHandoff(ArrayBlockingQueue<Integer> queue)
+    {
+      this.queue = queue;
+    }
+
+    @Override
+    boolean offer(Integer item)
+    {
+      return queue.offer(item);
+    }
+
+    @Override
+    boolean poll()
+    {
+      return queue.poll() != null;
+    }
+  }
+}
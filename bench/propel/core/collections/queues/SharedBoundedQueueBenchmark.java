@@ -0,0 +1,201 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.queues;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+import propel.core.ThreadSweep;
+
+/**
+ * Compares SharedBoundedQueue, under each back-pressure that waits for room, with SharedQueue and the bounded and unbounded blocking
+ * queues of java.util.concurrent. Every thread is both a producer and a consumer: each operation puts items and then takes as many, so
+ * any number of threads form a multi-producer multi-consumer workload that can never deadlock, as long as the capacity is at least the
+ * number of threads times the batch size. Run main() to repeat the comparison at 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SharedBoundedQueueBenchmark
+{
+  @Param({"SharedBoundedQueue/Block", "SharedBoundedQueue/SpinThenPark", "SharedQueue", "ArrayBlockingQueue", "LinkedBlockingQueue"})
+  public String implementation;
+  /**
+   * The capacity of the bounded queues, at least 64 threads times the largest batch
+   */
+  @Param({"1024"})
+  public int capacity;
+  /**
+   * The number of items each thread puts and then takes per batch operation
+   */
+  @Param({"16"})
+  public int batch;
+
+  private static final Integer ITEM = 42;
+
+  private Transfer transfer;
+
+  @Setup
+  public void setup()
+  {
+    if ("SharedBoundedQueue/Block".equals(implementation))
+      transfer = new SharedTransfer(new SharedBoundedQueue<Integer>(capacity, BackPressure.Block, Integer.class));
+    else if ("SharedBoundedQueue/SpinThenPark".equals(implementation))
+      transfer = new SharedTransfer(new SharedBoundedQueue<Integer>(capacity, BackPressure.SpinThenPark, Integer.class));
+    else if ("SharedQueue".equals(implementation))
+      transfer = new SharedTransfer(new SharedQueue<Integer>(Integer.class));
+    else if ("ArrayBlockingQueue".equals(implementation))
+      transfer = new BlockingTransfer(new ArrayBlockingQueue<Integer>(capacity));
+    else
+      transfer = new BlockingTransfer(new LinkedBlockingQueue<Integer>(capacity));
+  }
+
+  /**
+   * Puts and takes a single item, through the blocking put() and get()
+   */
+  @Benchmark
+  public Object single()
+      throws InterruptedException
+  {
+    return transfer.single(ITEM);
+  }
+
+  /**
+   * Puts and takes a batch of items, through putRange() and getRange() where the queue supports them. The score counts batches, not items.
+   */
+  @Benchmark
+  public Object range(final Items items)
+      throws InterruptedException
+  {
+    return transfer.range(items.values);
+  }
+
+  public static void main(final String[] args)
+      throws RunnerException
+  {
+    ThreadSweep.run(SharedBoundedQueueBenchmark.class, args);
+  }
+
+  /**
+   * A per-thread batch of items to put
+   */
+  @State(Scope.Thread)
+  public static class Items
+  {
+    private List<Integer> values;
+
+    @Setup
+    public void setup(final SharedBoundedQueueBenchmark benchmark)
+    {
+      values = new ArrayList<Integer>(benchmark.batch);
+      for (int i = 0; i < benchmark.batch; i++)
+        values.add(i);
+    }
+  }
+
+  /**
+   * Moves items through one of the compared queues
+   */
+  private abstract static class Transfer
+  {
+    abstract Object single(Integer item)
+        throws InterruptedException;
+
+    abstract Object range(List<Integer> items)
+        throws InterruptedException;
+  }
+
+  private static final class SharedTransfer
+      extends Transfer
+  {
+    private final ISharedQueue<Integer> queue;
+
+    SharedTransfer(ISharedQueue<Integer> queue)
+    {
+      this.queue = queue;
+    }
+
+    @Override
+    Object single(Integer item)
+    {
+      queue.put(item);
+      return queue.get();
+    }
+
+    @Override
+    Object range(List<Integer> items)
+    {
+      queue.putRange(items);
+      return queue.getRange(items.size());
+    }
+  }
+
+  private static final class BlockingTransfer
+      extends Transfer
+  {
+    private final BlockingQueue<Integer> queue;
+
+    BlockingTransfer(BlockingQueue<Integer> queue)
+    {
+      this.queue = queue;
+    }
+
+    @Override
+    Object single(Integer item)
+        throws InterruptedException
+    {
+      queue.put(item);
+      return queue.take();
+    }
+
+    @Override
+    Object range(List<Integer> items)
+        throws InterruptedException
+    {
+      // there is no bulk put, but drainTo() takes what it can under a single lock acquisition
+      for (Integer item : items)
+        queue.put(item);
+
+      List<Integer> result = new ArrayList<Integer>(items.size());
+      queue.drainTo(result, items.size());
+      while (result.size() < items.size())
+        result.add(queue.take());
+
+      return result;
+    }
+  }
+}
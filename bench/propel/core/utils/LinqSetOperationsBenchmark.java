@@ -0,0 +1,222 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the set operations of Linq, which read their probe side once into a hash lookup, with the design they replaced, which
+ * de-duplicated both sides through a TreeSet and then scanned the second side linearly for every element of the first. Both sides are
+ * arrays of boxed integers of the given size, with duplicates, and half of the distinct values of each side are also in the other.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinqSetOperationsBenchmark
+{
+  @Param({"Linq", "LinearScan"})
+  public String implementation;
+  @Param({"100", "10000"})
+  public int size;
+
+  private SetOperations operations;
+  private Integer[] first;
+  private Integer[] second;
+
+  @Setup
+  public void setup()
+  {
+    operations = "Linq".equals(implementation) ? new LinqOperations() : new LinearScanOperations();
+
+    // values are drawn from a range half the size of the array, so most appear twice, and the ranges of the sides overlap by half
+    Random random = new Random(42);
+    first = new Integer[size];
+    second = new Integer[size];
+    for (int i = 0; i < size; i++)
+    {
+      first[i] = random.nextInt(size / 2);
+      second[i] = size / 4 + random.nextInt(size / 2);
+    }
+  }
+
+  @Benchmark
+  public Object distinct()
+  {
+    return operations.distinct(first);
+  }
+
+  @Benchmark
+  public Object except()
+  {
+    return operations.except(first, second);
+  }
+
+  @Benchmark
+  public Object intersect()
+  {
+    return operations.intersect(first, second);
+  }
+
+  @Benchmark
+  public Object union()
+  {
+    return operations.union(first, second);
+  }
+
+  public static void main(final String[] args)
+      throws RunnerException
+  {
+    new Runner(new OptionsBuilder().include(LinqSetOperationsBenchmark.class.getName() + "\\.").build()).run();
+  }
+
+  /**
+   * The compared set operations
+   */
+  private abstract static class SetOperations
+  {
+    abstract Integer[] distinct(Integer[] values);
+
+    abstract Integer[] except(Integer[] values, Integer[] removedValues);
+
+    abstract Integer[] intersect(Integer[] first, Integer[] second);
+
+    abstract Integer[] union(Integer[] first, Integer[] second);
+  }
+
+  private static final class LinqOperations
+      extends SetOperations
+  {
+    @Override
+    Integer[] distinct(Integer[] values)
+    {
+      return Linq.distinct(values);
+    }
+
+    @Override
+    Integer[] except(Integer[] values, Integer[] removedValues)
+    {
+      return Linq.except(values, removedValues);
+    }
+
+    @Override
+    Integer[] intersect(Integer[] first, Integer[] second)
+    {
+      return Linq.intersect(first, second);
+    }
+
+    @Override
+    Integer[] union(Integer[] first, Integer[] second)
+    {
+      return Linq.union(first, second);
+    }
+  }
+
+  /**
+   * The set operations of Linq before they used lookup sets, kept here as the baseline
+   */
+  private static final class LinearScanOperations
+      extends SetOperations
+  {
+    @Override
+    Integer[] distinct(Integer[] values)
+    {
+      List<Integer> list = new ArrayList<Integer>();
+      Set<Integer> set = new TreeSet<Integer>();
+      for (Integer item : values)
+        if (!set.contains(item))
+        {
+          set.add(item);
+          list.add(item);
+        }
+
+      return list.toArray(new Integer[list.size()]);
+    }
+
+    @Override
+    Integer[] except(Integer[] values, Integer[] removedValues)
+    {
+      Integer[] distinctValues = distinct(values);
+      Integer[] distinctRemovedValues = distinct(removedValues);
+
+      List<Integer> result = new ArrayList<Integer>();
+      for (Integer item : distinctValues)
+        if (!contains(distinctRemovedValues, item))
+          result.add(item);
+
+      return result.toArray(new Integer[result.size()]);
+    }
+
+    @Override
+    Integer[] intersect(Integer[] first, Integer[] second)
+    {
+      Integer[] distinctFirst = distinct(first);
+      Integer[] distinctSecond = distinct(second);
+
+      List<Integer> result = new ArrayList<Integer>();
+      for (Integer item : distinctFirst)
+        if (contains(distinctSecond, item))
+          result.add(item);
+
+      return result.toArray(new Integer[result.size()]);
+    }
+
+    @Override
+    Integer[] union(Integer[] first, Integer[] second)
+    {
+      Integer[] firstDistinct = distinct(first);
+      Integer[] secondDistinct = distinct(second);
+      Integer[] union = new Integer[firstDistinct.length + secondDistinct.length];
+      System.arraycopy(firstDistinct, 0, union, 0, firstDistinct.length);
+      System.arraycopy(secondDistinct, 0, union, firstDistinct.length, secondDistinct.length);
+
+      return distinct(union);
+    }
+
+    private static boolean contains(Integer[] values, Integer item)
+    {
+      for (Integer value : values)
+        if (item.equals(value))
+          return true;
+
+      return false;
+    }
+  }
+}
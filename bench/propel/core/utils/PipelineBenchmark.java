@@ -0,0 +1,293 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.utils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import propel.core.functional.Functions.Function1;
+import propel.core.functional.Predicates.Predicate1;
+
+/**
+ * Compares a where(), select() chain, optionally followed by distinct(), evaluated by a fused Pipeline with the same chain evaluated the
+ * way the Linq operators did before pipelines, i.e. pulling every element through one iterator per stage. The chain is built over a list
+ * of boxed integers, with the same predicate, selector and hash-based distinct in both cases, and is then collected to a list, counted, or
+ * iterated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark
+{
+  private static final Predicate1<Integer> IS_EVEN = new Predicate1<Integer>() {
+    @Override
+    public boolean evaluate(Integer value)
+    {
+      return (value & 1) == 0;
+    }
+  };
+
+  private static final Function1<Integer, Integer> HALF = new Function1<Integer, Integer>() {
+    @Override
+    public Integer apply(Integer value)
+    {
+      return value / 2;
+    }
+  };
+
+  @Param({"Fused", "Unfused"})
+  public String implementation;
+  @Param({"10000"})
+  public int size;
+  @Param({"false", "true"})
+  public boolean distinct;
+
+  private Iterable<Integer> chain;
+
+  @Setup
+  public void setup()
+  {
+    // values are drawn from a range the size of the list, so the distinct stage drops some of them
+    Random random = new Random(42);
+    List<Integer> source = new ArrayList<Integer>(size);
+    for (int i = 0; i < size; i++)
+      source.add(random.nextInt(size));
+
+    if ("Fused".equals(implementation))
+    {
+      Pipeline<Integer> pipeline = Pipeline.from(source).where(IS_EVEN).select(HALF);
+      chain = distinct ? pipeline.distinct() : pipeline;
+    } else
+    {
+      Iterable<Integer> stages = new Select<Integer, Integer>(new Where<Integer>(source, IS_EVEN), HALF);
+      chain = distinct ? new Distinct<Integer>(stages) : stages;
+    }
+  }
+
+  @Benchmark
+  public Object toList()
+  {
+    return Linq.toList(chain);
+  }
+
+  @Benchmark
+  public int count()
+  {
+    return Linq.count(chain);
+  }
+
+  @Benchmark
+  public int iterate()
+  {
+    int sum = 0;
+    for (Integer value : chain)
+      sum += value;
+
+    return sum;
+  }
+
+  public static void main(final String[] args)
+      throws RunnerException
+  {
+    new Runner(new OptionsBuilder().include(PipelineBenchmark.class.getName() + "\\.").build()).run();
+  }
+
+  /**
+   * An unfused stage, which pulls elements from the iterator of the previous stage, one at a time, the way the iterators generated for
+   * the Linq operators did before pipelines
+   */
+  private abstract static class UnfusedStage<TSource, T>
+      implements Iterable<T>
+  {
+    private final Iterable<TSource> source;
+
+    UnfusedStage(Iterable<TSource> source)
+    {
+      this.source = source;
+    }
+
+    /**
+     * Returns the next element of this stage, reading from the given iterator of the previous stage, or sets done if there is none
+     */
+    abstract T advance(Iterator<TSource> previous, State state);
+
+    /**
+     * Returns a fresh state for an iteration of this stage
+     */
+    State newState()
+    {
+      return new State();
+    }
+
+    @Override
+    public Iterator<T> iterator()
+    {
+      final Iterator<TSource> previous = source.iterator();
+      final State state = newState();
+
+      return new Iterator<T>() {
+        private T next;
+        private boolean fetched;
+
+        @Override
+        public boolean hasNext()
+        {
+          if (!fetched)
+          {
+            next = advance(previous, state);
+            fetched = true;
+          }
+
+          return !state.done;
+        }
+
+        @Override
+        public T next()
+        {
+          if (!hasNext())
+            throw new NoSuchElementException();
+
+          fetched = false;
+          return next;
+        }
+
+        @Override
+        public void remove()
+        {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+  }
+
+  /**
+   * The state of an iteration of an unfused stage
+   */
+  private static class State
+  {
+    boolean done;
+  }
+
+  private static final class Where<T>
+      extends UnfusedStage<T, T>
+  {
+    private final Predicate1<? super T> predicate;
+
+    Where(Iterable<T> source, Predicate1<? super T> predicate)
+    {
+      super(source);
+      this.predicate = predicate;
+    }
+
+    @Override
+    T advance(Iterator<T> previous, State state)
+    {
+      while (previous.hasNext())
+      {
+        T item = previous.next();
+        if (predicate.apply(item))
+          return item;
+      }
+
+      state.done = true;
+      return null;
+    }
+  }
+
+  private static final class Select<TSource, T>
+      extends UnfusedStage<TSource, T>
+  {
+    private final Function1<? super TSource, T> selector;
+
+    Select(Iterable<TSource> source, Function1<? super TSource, T> selector)
+    {
+      super(source);
+      this.selector = selector;
+    }
+
+    @Override
+    T advance(Iterator<TSource> previous, State state)
+    {
+      if (previous.hasNext())
+        return selector.apply(previous.next());
+
+      state.done = true;
+      return null;
+    }
+  }
+
+  private static final class Distinct<T>
+      extends UnfusedStage<T, T>
+  {
+    Distinct(Iterable<T> source)
+    {
+      super(source);
+    }
+
+    @Override
+    State newState()
+    {
+      return new DistinctState();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    T advance(Iterator<T> previous, State state)
+    {
+      Set<Object> seen = ((DistinctState) state).seen;
+      while (previous.hasNext())
+      {
+        T item = previous.next();
+        if (seen.add(item))
+          return item;
+      }
+
+      state.done = true;
+      return null;
+    }
+  }
+
+  private static final class DistinctState
+      extends State
+  {
+    final Set<Object> seen = new HashSet<Object>();
+  }
+}
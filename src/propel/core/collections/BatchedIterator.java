@@ -0,0 +1,111 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Base of the weakly consistent iterators of the shared collections. Elements are fetched from the live collection a batch at a time, so
+ * the collection's lock is only held while a batch is copied rather than for the whole traversal, and no full copy is made. Elements
+ * present for the whole traversal are returned, whereas those added or removed meanwhile may or may not be.
+ */
+public abstract class BatchedIterator<T>
+    implements Iterator<T>
+{
+  /**
+   * The number of elements fetched per batch by default
+   */
+  public static final int DEFAULT_BATCH_SIZE = 256;
+
+  private final int batchSize;
+  private List<T> batch;
+  private int index;
+  private boolean exhausted;
+
+  /**
+   * Default constructor, fetching DEFAULT_BATCH_SIZE elements per batch
+   */
+  protected BatchedIterator()
+  {
+    this(DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Constructor initializes with the number of elements to fetch per batch
+   * 
+   * @throws IllegalArgumentException When the batch size is non positive.
+   */
+  protected BatchedIterator(final int batchSize)
+  {
+    if (batchSize <= 0)
+      throw new IllegalArgumentException("batchSize=" + batchSize);
+
+    this.batchSize = batchSize;
+    batch = Collections.emptyList();
+  }
+
+  /**
+   * Fetches up to count elements following those fetched so far. Returning fewer than count elements ends the iteration.
+   */
+  protected abstract List<T> nextBatch(int count);
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean hasNext()
+  {
+    while (index >= batch.size())
+    {
+      if (exhausted)
+        return false;
+
+      batch = nextBatch(batchSize);
+      index = 0;
+      exhausted = batch.size() < batchSize;
+    }
+
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public T next()
+  {
+    if (!hasNext())
+      throw new NoSuchElementException("There is no next element.");
+
+    return batch.get(index++);
+  }
+
+  /**
+   * @throws UnsupportedOperationException The remove operation is not supported.
+   */
+  @Override
+  @Deprecated
+  public void remove()
+  {
+    throw new UnsupportedOperationException();
+  }
+}
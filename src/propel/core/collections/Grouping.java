@@ -0,0 +1,103 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections;
+
+import java.util.Iterator;
+import java.util.List;
+import propel.core.collections.lists.ReadOnlyListIterator;
+
+/**
+ * Encapsulates a key and the elements that were grouped under it, in the order they were encountered. The elements cannot be modified
+ * through this class.
+ * 
+ * @param <TKey> The key type.
+ * @param <TElement> The element type.
+ */
+public final class Grouping<TKey, TElement>
+    implements Iterable<TElement>
+{
+  private final TKey key;
+  private final List<TElement> elements;
+
+  /**
+   * Initializes class with a key and the elements grouped under it. The list is not copied.
+   * 
+   * @throws NullPointerException When the elements list is null.
+   */
+  public Grouping(TKey key, List<TElement> elements)
+  {
+    if (elements == null)
+      throw new NullPointerException("elements");
+
+    this.key = key;
+    this.elements = elements;
+  }
+
+  /**
+   * @return Returns the key.
+   */
+  public TKey getKey()
+  {
+    return key;
+  }
+
+  /**
+   * Returns the number of elements in this group
+   */
+  public int size()
+  {
+    return elements.size();
+  }
+
+  /**
+   * Returns the element at the specified position
+   * 
+   * @throws IndexOutOfBoundsException The index is out of range.
+   */
+  public TElement get(int index)
+  {
+    return elements.get(index);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Iterator<TElement> iterator()
+  {
+    return new ReadOnlyListIterator<TElement>(elements);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public String toString()
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append('[');
+
+    if (key != null)
+      sb.append(key.toString());
+    sb.append(", ");
+    sb.append(elements.toString());
+
+    sb.append(']');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,147 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.caches;
+
+/**
+ * An immutable snapshot of the statistics of a cache
+ */
+public final class CacheStats
+{
+  private final long hitCount;
+  private final long missCount;
+  private final long loadSuccessCount;
+  private final long loadFailureCount;
+  private final long totalLoadNanos;
+  private final long evictionCount;
+  private final long expirationCount;
+
+  /**
+   * Initializes the snapshot with the values of the statistics.
+   * 
+   * @throws IllegalArgumentException When a count is negative.
+   */
+  public CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadNanos, long evictionCount,
+                    long expirationCount)
+  {
+    if (hitCount < 0 || missCount < 0 || loadSuccessCount < 0 || loadFailureCount < 0 || totalLoadNanos < 0 || evictionCount < 0
+        || expirationCount < 0)
+      throw new IllegalArgumentException("Cache statistics cannot be negative.");
+
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.loadSuccessCount = loadSuccessCount;
+    this.loadFailureCount = loadFailureCount;
+    this.totalLoadNanos = totalLoadNanos;
+    this.evictionCount = evictionCount;
+    this.expirationCount = expirationCount;
+  }
+
+  /**
+   * Returns the number of lookups that found a live entry
+   */
+  public long getHitCount()
+  {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of lookups that did not find a live entry
+   */
+  public long getMissCount()
+  {
+    return missCount;
+  }
+
+  /**
+   * Returns the number of lookups
+   */
+  public long getRequestCount()
+  {
+    return hitCount + missCount;
+  }
+
+  /**
+   * Returns the ratio of lookups that found a live entry, or 1 if there have been no lookups
+   */
+  public double getHitRate()
+  {
+    long requests = getRequestCount();
+    return requests == 0 ? 1.0 : (double) hitCount / requests;
+  }
+
+  /**
+   * Returns the number of values loaded successfully, including refreshes
+   */
+  public long getLoadSuccessCount()
+  {
+    return loadSuccessCount;
+  }
+
+  /**
+   * Returns the number of loads that threw an exception or returned null
+   */
+  public long getLoadFailureCount()
+  {
+    return loadFailureCount;
+  }
+
+  /**
+   * Returns the total time spent loading values, in nanoseconds
+   */
+  public long getTotalLoadNanos()
+  {
+    return totalLoadNanos;
+  }
+
+  /**
+   * Returns the average time spent loading a value, in nanoseconds, or 0 if there have been no loads
+   */
+  public double getAverageLoadPenaltyNanos()
+  {
+    long loads = loadSuccessCount + loadFailureCount;
+    return loads == 0 ? 0.0 : (double) totalLoadNanos / loads;
+  }
+
+  /**
+   * Returns the number of entries evicted to make room
+   */
+  public long getEvictionCount()
+  {
+    return evictionCount;
+  }
+
+  /**
+   * Returns the number of entries removed because they expired
+   */
+  public long getExpirationCount()
+  {
+    return expirationCount;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return "hits=" + hitCount + " misses=" + missCount + " hitRate=" + getHitRate() + " loadSuccesses=" + loadSuccessCount
+           + " loadFailures=" + loadFailureCount + " totalLoadNanos=" + totalLoadNanos + " evictions=" + evictionCount + " expirations="
+           + expirationCount;
+  }
+}
@@ -0,0 +1,145 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.caches;
+
+/**
+ * A count-min sketch estimating how often keys have been accessed, used by TinyLFU to decide whether a new entry is worth admitting in place
+ * of an eviction victim. The sketch is a number of rows of 4-bit counters, packed sixteen to a long. A key has a counter in each row,
+ * chosen by double hashing a 64-bit mix of its hash code, and its frequency is the minimum of them. Increments are conservative: only the
+ * counters holding the minimum are incremented, which reduces the overestimation caused by collisions. Once the number of increments
+ * reaches a sample size, all counters are halved, so that the frequencies favour recent accesses. This class is not thread-safe.
+ */
+final class FrequencySketch
+{
+  /**
+   * The number of rows
+   */
+  private static final int DEPTH = 4;
+  /**
+   * Halving a long of packed counters shifts the lowest bit of each counter into the next one down, this clears those bits
+   */
+  private static final long HALVING_MASK = 0x7777777777777777L;
+  /**
+   * The highest value of a counter
+   */
+  static final int MAX_FREQUENCY = 15;
+
+  private final long[] counters;
+  /**
+   * The number of counters in a row, a power of two, minus one
+   */
+  private final int widthMask;
+  private final int sampleSize;
+  private int increments;
+
+  /**
+   * Initializes the sketch for a cache of the given maximum size, with a counter per entry in each row
+   */
+  FrequencySketch(long maximumSize)
+  {
+    int width = (int) Math.min(1 << 26, Math.max(16, maximumSize));
+    width = Integer.highestOneBit(width) == width ? width : Integer.highestOneBit(width) << 1;
+
+    counters = new long[DEPTH * width / 16];
+    widthMask = width - 1;
+    sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * width);
+  }
+
+  /**
+   * Returns the estimated number of accesses of a key, up to MAX_FREQUENCY
+   */
+  int frequency(Object key)
+  {
+    long hash = mix(key.hashCode());
+
+    int result = MAX_FREQUENCY;
+    for (int row = 0; row < DEPTH; row++)
+      result = Math.min(result, get(indexOf(hash, row)));
+
+    return result;
+  }
+
+  /**
+   * Increments those counters of a key that hold its frequency, unless it is saturated, halving all counters once the sample size is
+   * reached
+   */
+  void increment(Object key)
+  {
+    long hash = mix(key.hashCode());
+
+    int frequency = MAX_FREQUENCY;
+    for (int row = 0; row < DEPTH; row++)
+      frequency = Math.min(frequency, get(indexOf(hash, row)));
+
+    if (frequency == MAX_FREQUENCY)
+      return;
+
+    for (int row = 0; row < DEPTH; row++)
+    {
+      int index = indexOf(hash, row);
+      if (get(index) == frequency)
+        counters[index >>> 4] += 1L << ((index & 15) << 2);
+    }
+
+    if (++increments == sampleSize)
+      halve();
+  }
+
+  /**
+   * Returns the value of a counter
+   */
+  private int get(int index)
+  {
+    return (int) (counters[index >>> 4] >>> ((index & 15) << 2)) & 0xf;
+  }
+
+  /**
+   * Halves all counters, and the number of increments since they are now worth half as much
+   */
+  private void halve()
+  {
+    for (int i = 0; i < counters.length; i++)
+      counters[i] = (counters[i] >>> 1) & HALVING_MASK;
+
+    increments >>>= 1;
+  }
+
+  /**
+   * Returns the index of a key's counter in a row, combining the two halves of its hash as h1 + row * h2
+   */
+  private int indexOf(long hash, int row)
+  {
+    int offset = ((int) hash + row * ((int) (hash >>> 32) | 1)) & widthMask;
+    return row * (widthMask + 1) + offset;
+  }
+
+  /**
+   * Spreads the bits of a hash code over a 64-bit hash, using the finalisation step of MurmurHash3, to defend against poor quality hash
+   * codes
+   */
+  private static long mix(long hash)
+  {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,97 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.caches;
+
+import propel.core.functional.Functions.Function1;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The interface of a thread-safe keyed cache, which evicts entries according to its policy and may expire them after a time-to-live. Values
+ * may be loaded on a miss by a loader function, with concurrent misses of the same key sharing a single load.
+ * 
+ * @param <TKey> The key type.
+ * @param <TValue> The value type.
+ */
+public interface ICache<TKey, TValue>
+{
+  /**
+   * Returns the value of a key, or null if it is not cached or has expired.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  TValue getIfPresent(TKey key);
+
+  /**
+   * Returns the value of a key, loading it with the cache's loader if it is not cached or has expired. If the value is due for a refresh,
+   * it is reloaded by this call. Concurrent misses of the same key wait for a single load.
+   * 
+   * @throws NullPointerException When the key is null.
+   * @throws IllegalStateException When the cache has no loader.
+   */
+  TValue get(TKey key);
+
+  /**
+   * Returns the value of a key, loading it with the given loader if it is not cached or has expired. If the value is due for a refresh, it
+   * is reloaded by this call. Concurrent misses of the same key wait for a single load.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  TValue get(TKey key, Function1<TKey, TValue> loader);
+
+  /**
+   * Caches a value by a key, expiring it after the cache's default time-to-live, if any.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  void put(TKey key, TValue value);
+
+  /**
+   * Caches a value by a key, expiring it after the given time-to-live. A non-positive time-to-live means that the entry does not expire.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  void put(TKey key, TValue value, long timeToLive, TimeUnit unit);
+
+  /**
+   * Removes an entry by its key, returning its value, or null if it was not cached.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  TValue remove(TKey key);
+
+  /**
+   * Removes all entries
+   */
+  void clear();
+
+  /**
+   * Returns the number of entries, which may include expired entries that have not been cleaned up yet
+   */
+  int size();
+
+  /**
+   * Performs any pending maintenance, such as applying recorded accesses, evicting entries and removing expired ones
+   */
+  void cleanUp();
+
+  /**
+   * Returns a snapshot of the cache's statistics
+   */
+  CacheStats getStats();
+}
@@ -0,0 +1,369 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.caches;
+
+import propel.core.collections.KeyValuePair;
+import propel.core.functional.Actions.Action2;
+import propel.core.functional.Functions.Function2;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A least recently used (LRU) cache, which evicts the entries that have not been accessed for the longest time once its capacity is
+ * exceeded. Entries are indexed by a hashtable and linked in a doubly linked list in order of recency, so that getting, putting and
+ * evicting an entry are all O(1) operations. Getting or putting an entry makes it the most recently used.
+ * 
+ * The capacity is either a number of entries, or a maximum total weight, in which case each entry is weighed when put. An eviction
+ * listener may be notified of each entry evicted to make room. This class is not thread-safe, see SharedLruCache for a thread-safe
+ * variant. This collection does not allow null keys or values to be inserted.
+ * 
+ * @param <TKey> The key type.
+ * @param <TValue> The value type.
+ */
+public class LruCache<TKey, TValue>
+    implements Iterable<KeyValuePair<TKey, TValue>>
+{
+  private final HashMap<TKey, Entry<TKey, TValue>> index;
+  /**
+   * Links the entries in a circular list, being followed by the least recently used entry and preceded by the most recently used one
+   */
+  private final Entry<TKey, TValue> sentinel;
+  private final long maxWeight;
+  private final Function2<TKey, TValue, Integer> weigher;
+  private final Action2<TKey, TValue> evictionListener;
+  private long weight;
+  private long evictionCount;
+
+  /**
+   * Initializes the cache with a maximum number of entries.
+   * 
+   * @throws IllegalArgumentException When the maximum size is non positive.
+   */
+  public LruCache(int maxSize)
+  {
+    this(maxSize, null, null);
+  }
+
+  /**
+   * Initializes the cache with a maximum number of entries and a listener that is called with each entry evicted to make room.
+   * 
+   * @throws IllegalArgumentException When the maximum size is non positive.
+   */
+  public LruCache(int maxSize, Action2<TKey, TValue> evictionListener)
+  {
+    this(maxSize, null, evictionListener);
+  }
+
+  /**
+   * Initializes the cache with a maximum total weight, a function returning the weight of an entry, and optionally a listener that is
+   * called with each entry evicted to make room. If the weigher is null, each entry weighs 1, so that the maximum weight is the maximum
+   * number of entries.
+   * 
+   * @throws IllegalArgumentException When the maximum weight is non positive.
+   */
+  public LruCache(long maxWeight, Function2<TKey, TValue, Integer> weigher, Action2<TKey, TValue> evictionListener)
+  {
+    if (maxWeight <= 0)
+      throw new IllegalArgumentException("maxWeight=" + maxWeight);
+
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+    this.evictionListener = evictionListener;
+    index = new HashMap<TKey, Entry<TKey, TValue>>();
+    sentinel = new Entry<TKey, TValue>(null, null, 0);
+  }
+
+  /**
+   * Returns the value of a key, or null if it is not cached, making the entry the most recently used. This is an O(1) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public TValue get(TKey key)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    Entry<TKey, TValue> entry = index.get(key);
+    if (entry == null)
+      return null;
+
+    entry.unlink();
+    entry.linkBefore(sentinel);
+    return entry.value;
+  }
+
+  /**
+   * Returns the value of a key, or null if it is not cached, without affecting its recency. This is an O(1) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public TValue peek(TKey key)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    Entry<TKey, TValue> entry = index.get(key);
+    return entry == null ? null : entry.value;
+  }
+
+  /**
+   * Returns true if a key is cached, without affecting its recency. This is an O(1) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public boolean containsKey(TKey key)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    return index.containsKey(key);
+  }
+
+  /**
+   * Caches a value by a key, making the entry the most recently used, then evicts the least recently used entries while the capacity is
+   * exceeded. An entry that weighs more than the maximum weight is evicted immediately. Returns the value previously cached by the key, or
+   * null if there was none. This is an O(1) operation, excluding evictions.
+   * 
+   * @throws NullPointerException When an argument is null.
+   * @throws IllegalArgumentException When the weigher returns a negative weight.
+   */
+  public TValue put(TKey key, TValue value)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+    if (value == null)
+      throw new NullPointerException("value");
+
+    int entryWeight = weigh(key, value);
+
+    TValue result = null;
+    Entry<TKey, TValue> entry = index.get(key);
+    if (entry == null)
+    {
+      entry = new Entry<TKey, TValue>(key, value, entryWeight);
+      index.put(key, entry);
+    } else
+    {
+      result = entry.value;
+      weight -= entry.weight;
+      entry.value = value;
+      entry.weight = entryWeight;
+      entry.unlink();
+    }
+
+    entry.linkBefore(sentinel);
+    weight += entryWeight;
+
+    while (weight > maxWeight)
+      evict(sentinel.next);
+
+    return result;
+  }
+
+  /**
+   * Removes an entry by its key, returning its value, or null if it was not cached. The eviction listener is not called. This is an O(1)
+   * operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public TValue remove(TKey key)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    Entry<TKey, TValue> entry = index.remove(key);
+    if (entry == null)
+      return null;
+
+    entry.unlink();
+    weight -= entry.weight;
+    return entry.value;
+  }
+
+  /**
+   * Removes all entries. The eviction listener is not called. This is an O(n) operation.
+   */
+  public void clear()
+  {
+    index.clear();
+    sentinel.next = sentinel;
+    sentinel.previous = sentinel;
+    weight = 0;
+  }
+
+  /**
+   * Returns the number of entries. This is an O(1) operation.
+   */
+  public int size()
+  {
+    return index.size();
+  }
+
+  /**
+   * Returns true if there are no entries. This is an O(1) operation.
+   */
+  public boolean isEmpty()
+  {
+    return index.isEmpty();
+  }
+
+  /**
+   * Returns the total weight of the entries, which is their number if there is no weigher. This is an O(1) operation.
+   */
+  public long getWeight()
+  {
+    return weight;
+  }
+
+  /**
+   * Returns the maximum total weight of the entries, which is their maximum number if there is no weigher
+   */
+  public long getMaxWeight()
+  {
+    return maxWeight;
+  }
+
+  /**
+   * Returns the number of entries evicted to make room so far
+   */
+  public long getEvictionCount()
+  {
+    return evictionCount;
+  }
+
+  /**
+   * Returns the least recently used entry, i.e. the next to be evicted, or null if there are no entries. This is an O(1) operation.
+   */
+  public KeyValuePair<TKey, TValue> eldest()
+  {
+    Entry<TKey, TValue> entry = sentinel.next;
+    return entry == sentinel ? null : new KeyValuePair<TKey, TValue>(entry.key, entry.value);
+  }
+
+  /**
+   * Evicts the least recently used entry, as if to make room, notifying the listener. Returns the evicted entry, or null if there are no
+   * entries. This is an O(1) operation.
+   */
+  public KeyValuePair<TKey, TValue> evictEldest()
+  {
+    Entry<TKey, TValue> entry = sentinel.next;
+    if (entry == sentinel)
+      return null;
+
+    evict(entry);
+    return new KeyValuePair<TKey, TValue>(entry.key, entry.value);
+  }
+
+  /**
+   * Returns the entries from the least to the most recently used, i.e. in eviction order. This is an O(n) operation.
+   */
+  public List<KeyValuePair<TKey, TValue>> toList()
+  {
+    List<KeyValuePair<TKey, TValue>> result = new ArrayList<KeyValuePair<TKey, TValue>>(index.size());
+    for (Entry<TKey, TValue> entry = sentinel.next; entry != sentinel; entry = entry.next)
+      result.add(new KeyValuePair<TKey, TValue>(entry.key, entry.value));
+
+    return result;
+  }
+
+  /**
+   * Returns an iterator over a copy of the entries, from the least to the most recently used. This is an O(n) operation.
+   */
+  @Override
+  public Iterator<KeyValuePair<TKey, TValue>> iterator()
+  {
+    return toList().iterator();
+  }
+
+  /**
+   * Returns the weight of an entry
+   * 
+   * @throws IllegalArgumentException When the weight is negative.
+   */
+  private int weigh(TKey key, TValue value)
+  {
+    if (weigher == null)
+      return 1;
+
+    int result = weigher.apply(key, value);
+    if (result < 0)
+      throw new IllegalArgumentException("weight=" + result);
+
+    return result;
+  }
+
+  /**
+   * Removes an entry to make room and notifies the listener
+   */
+  private void evict(Entry<TKey, TValue> entry)
+  {
+    index.remove(entry.key);
+    entry.unlink();
+    weight -= entry.weight;
+    evictionCount++;
+
+    if (evictionListener != null)
+      evictionListener.apply(entry.key, entry.value);
+  }
+
+  /**
+   * An entry of the cache, which is also a node of the recency list
+   */
+  private static final class Entry<TKey, TValue>
+  {
+    final TKey key;
+    TValue value;
+    int weight;
+    Entry<TKey, TValue> previous;
+    Entry<TKey, TValue> next;
+
+    Entry(TKey key, TValue value, int weight)
+    {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+      previous = this;
+      next = this;
+    }
+
+    /**
+     * Links the entry in the list, before the given entry
+     */
+    void linkBefore(Entry<TKey, TValue> entry)
+    {
+      next = entry;
+      previous = entry.previous;
+      previous.next = this;
+      entry.previous = this;
+    }
+
+    /**
+     * Unlinks the entry from the list
+     */
+    void unlink()
+    {
+      previous.next = next;
+      next.previous = previous;
+      previous = this;
+      next = this;
+    }
+  }
+}
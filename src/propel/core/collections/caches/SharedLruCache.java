@@ -0,0 +1,434 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.caches;
+
+import propel.core.collections.KeyValuePair;
+import propel.core.functional.Actions.Action2;
+import propel.core.functional.Functions.Function2;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe least recently used (LRU) cache, which stripes its entries over a number of segments by the hash code of their keys. Each
+ * segment is an LruCache guarded by its own lock, so that threads accessing different segments do not contend with each other. The
+ * maximum weight applies to the cache as a whole: the total weight is kept in an atomic counter, and a put that takes it over the maximum
+ * evicts the least recently used entry of each segment in turn until it is back within the maximum. Recency is kept per segment, so that
+ * eviction approximates global LRU order. All operations are O(1), excluding evictions and apart from those that visit all segments.
+ * 
+ * An entry that weighs more than the maximum weight by itself is evicted immediately. While puts run concurrently, the total weight may
+ * momentarily exceed the maximum by the weight of the entries being put. The eviction listener, if any, is called by the thread whose put
+ * caused the eviction, after the segment's lock is released. This collection does not allow null keys or values to be inserted.
+ * 
+ * @param <TKey> The key type.
+ * @param <TValue> The value type.
+ */
+public class SharedLruCache<TKey, TValue>
+    implements Iterable<KeyValuePair<TKey, TValue>>
+{
+  private final LruCache<TKey, TValue>[] segments;
+  private final ReentrantLock[] locks;
+  private final long maxWeight;
+  private final Action2<TKey, TValue> evictionListener;
+  private final AtomicLong weight;
+  /**
+   * The segment to evict from next, which makes evictions go round the segments
+   */
+  private final AtomicInteger evictionCursor;
+
+  /**
+   * Initializes the cache with a maximum number of entries.
+   * 
+   * @throws IllegalArgumentException When the maximum size is non positive.
+   */
+  public SharedLruCache(int maxSize)
+  {
+    this(maxSize, null, null);
+  }
+
+  /**
+   * Initializes the cache with a maximum number of entries and a listener that is called with each entry evicted to make room.
+   * 
+   * @throws IllegalArgumentException When the maximum size is non positive.
+   */
+  public SharedLruCache(int maxSize, Action2<TKey, TValue> evictionListener)
+  {
+    this(maxSize, null, evictionListener);
+  }
+
+  /**
+   * Initializes the cache with a maximum total weight, a function returning the weight of an entry, and optionally a listener that is
+   * called with each entry evicted to make room. If the weigher is null, each entry weighs 1. The number of segments is twice the number of
+   * processors, rounded up to a power of two.
+   * 
+   * @throws IllegalArgumentException When the maximum weight is non positive.
+   */
+  public SharedLruCache(long maxWeight, Function2<TKey, TValue, Integer> weigher, Action2<TKey, TValue> evictionListener)
+  {
+    this(maxWeight, weigher, evictionListener, 2 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Initializes the cache with a maximum total weight, a function returning the weight of an entry, optionally a listener that is called
+   * with each entry evicted to make room, and the number of threads expected to access the cache concurrently. The number of segments is
+   * the concurrency level rounded up to a power of two.
+   * 
+   * @throws IllegalArgumentException When the maximum weight or the concurrency level is non positive.
+   */
+  @SuppressWarnings("unchecked")
+  public SharedLruCache(long maxWeight, Function2<TKey, TValue, Integer> weigher, Action2<TKey, TValue> evictionListener,
+                        int concurrencyLevel)
+  {
+    if (maxWeight <= 0)
+      throw new IllegalArgumentException("maxWeight=" + maxWeight);
+    if (concurrencyLevel <= 0)
+      throw new IllegalArgumentException("concurrencyLevel=" + concurrencyLevel);
+
+    int count = Math.min(concurrencyLevel, 1 << 16);
+    count = Integer.highestOneBit(count) == count ? count : Integer.highestOneBit(count) << 1;
+
+    this.maxWeight = maxWeight;
+    this.evictionListener = evictionListener;
+    weight = new AtomicLong();
+    evictionCursor = new AtomicInteger();
+    segments = new LruCache[count];
+    locks = new ReentrantLock[count];
+    for (int i = 0; i < count; i++)
+    {
+      // the segments never evict by themselves, this cache evicts from them once the total weight is exceeded
+      segments[i] = new LruCache<TKey, TValue>(Long.MAX_VALUE, weigher, null);
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Returns the value of a key, or null if it is not cached, making the entry the most recently used in its segment. This is an O(1)
+   * operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public TValue get(TKey key)
+  {
+    int segment = segmentOf(key);
+    locks[segment].lock();
+    try
+    {
+      return segments[segment].get(key);
+    }
+    finally
+    {
+      locks[segment].unlock();
+    }
+  }
+
+  /**
+   * Returns the value of a key, or null if it is not cached, without affecting its recency. This is an O(1) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public TValue peek(TKey key)
+  {
+    int segment = segmentOf(key);
+    locks[segment].lock();
+    try
+    {
+      return segments[segment].peek(key);
+    }
+    finally
+    {
+      locks[segment].unlock();
+    }
+  }
+
+  /**
+   * Returns true if a key is cached, without affecting its recency. This is an O(1) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public boolean containsKey(TKey key)
+  {
+    int segment = segmentOf(key);
+    locks[segment].lock();
+    try
+    {
+      return segments[segment].containsKey(key);
+    }
+    finally
+    {
+      locks[segment].unlock();
+    }
+  }
+
+  /**
+   * Caches a value by a key, making the entry the most recently used in its segment, then evicts the least recently used entries of the
+   * segments in turn while the maximum weight is exceeded. Returns the value previously cached by the key, or null if there was none. This
+   * is an O(1) operation, excluding evictions.
+   * 
+   * @throws NullPointerException When an argument is null.
+   * @throws IllegalArgumentException When the weigher returns a negative weight.
+   */
+  public TValue put(TKey key, TValue value)
+  {
+    int segment = segmentOf(key);
+    TValue result;
+    locks[segment].lock();
+    try
+    {
+      LruCache<TKey, TValue> cache = segments[segment];
+      long before = cache.getWeight();
+      result = cache.put(key, value);
+      weight.addAndGet(cache.getWeight() - before);
+    }
+    finally
+    {
+      locks[segment].unlock();
+    }
+
+    if (weight.get() > maxWeight)
+      evict(segment, key);
+
+    return result;
+  }
+
+  /**
+   * Removes an entry by its key, returning its value, or null if it was not cached. The eviction listener is not called. This is an O(1)
+   * operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public TValue remove(TKey key)
+  {
+    int segment = segmentOf(key);
+    locks[segment].lock();
+    try
+    {
+      LruCache<TKey, TValue> cache = segments[segment];
+      long before = cache.getWeight();
+      TValue result = cache.remove(key);
+      weight.addAndGet(cache.getWeight() - before);
+      return result;
+    }
+    finally
+    {
+      locks[segment].unlock();
+    }
+  }
+
+  /**
+   * Removes all entries, a segment at a time. Entries put concurrently may or may not be removed. This is an O(n) operation.
+   */
+  public void clear()
+  {
+    for (int i = 0; i < segments.length; i++)
+    {
+      locks[i].lock();
+      try
+      {
+        weight.addAndGet(-segments[i].getWeight());
+        segments[i].clear();
+      }
+      finally
+      {
+        locks[i].unlock();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of entries, summed a segment at a time. This is an O(s) operation, where s is the number of segments.
+   */
+  public int size()
+  {
+    long result = 0;
+    for (int i = 0; i < segments.length; i++)
+    {
+      locks[i].lock();
+      try
+      {
+        result += segments[i].size();
+      }
+      finally
+      {
+        locks[i].unlock();
+      }
+    }
+
+    return (int) Math.min(Integer.MAX_VALUE, result);
+  }
+
+  /**
+   * Returns true if there are no entries. This is an O(s) operation, where s is the number of segments.
+   */
+  public boolean isEmpty()
+  {
+    return size() == 0;
+  }
+
+  /**
+   * Returns the total weight of the entries. This is an O(1) operation.
+   */
+  public long getWeight()
+  {
+    return weight.get();
+  }
+
+  /**
+   * Returns the maximum total weight of the entries, which is their maximum number if there is no weigher
+   */
+  public long getMaxWeight()
+  {
+    return maxWeight;
+  }
+
+  /**
+   * Returns the number of entries evicted to make room so far. This is an O(s) operation, where s is the number of segments.
+   */
+  public long getEvictionCount()
+  {
+    long result = 0;
+    for (int i = 0; i < segments.length; i++)
+    {
+      locks[i].lock();
+      try
+      {
+        result += segments[i].getEvictionCount();
+      }
+      finally
+      {
+        locks[i].unlock();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the number of segments
+   */
+  public int getSegmentCount()
+  {
+    return segments.length;
+  }
+
+  /**
+   * Returns the entries, copying a segment at a time, each from the least to the most recently used. This is an O(n) operation.
+   */
+  public List<KeyValuePair<TKey, TValue>> toList()
+  {
+    List<KeyValuePair<TKey, TValue>> result = new ArrayList<KeyValuePair<TKey, TValue>>();
+    for (int i = 0; i < segments.length; i++)
+    {
+      locks[i].lock();
+      try
+      {
+        result.addAll(segments[i].toList());
+      }
+      finally
+      {
+        locks[i].unlock();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns an iterator over a copy of the entries, as per toList(). This is an O(n) operation.
+   */
+  @Override
+  public Iterator<KeyValuePair<TKey, TValue>> iterator()
+  {
+    return toList().iterator();
+  }
+
+  /**
+   * Evicts the least recently used entry of each segment in turn, while the total weight exceeds the maximum. The entry just put by a key
+   * is spared for as long as any other segment has an entry to evict, so that it is only evicted if it weighs more than the maximum by
+   * itself. The listener is notified of each eviction after the segment's lock is released.
+   */
+  private void evict(int putSegment, TKey putKey)
+  {
+    int mask = segments.length - 1;
+    int segment = evictionCursor.get() & mask;
+    // the number of segments visited in a row without finding an entry to evict
+    int visited = 0;
+
+    while (weight.get() > maxWeight)
+    {
+      // once a whole round of the segments found nothing else, the entry just put is the last one left to evict
+      boolean spare = visited < segments.length;
+      if (!spare)
+      {
+        if (visited > segments.length)
+          return;
+
+        segment = putSegment;
+      }
+
+      KeyValuePair<TKey, TValue> evicted = null;
+      locks[segment].lock();
+      try
+      {
+        LruCache<TKey, TValue> cache = segments[segment];
+        KeyValuePair<TKey, TValue> eldest = cache.eldest();
+        if (eldest != null && !(spare && segment == putSegment && eldest.getKey().equals(putKey)))
+        {
+          long before = cache.getWeight();
+          evicted = cache.evictEldest();
+          weight.addAndGet(cache.getWeight() - before);
+        }
+      }
+      finally
+      {
+        locks[segment].unlock();
+      }
+
+      segment = (segment + 1) & mask;
+      if (evicted == null)
+      {
+        visited++;
+        continue;
+      }
+
+      visited = 0;
+      evictionCursor.lazySet(segment);
+      if (evictionListener != null)
+        evictionListener.apply(evicted.getKey(), evicted.getValue());
+    }
+  }
+
+  /**
+   * Returns the segment of a key, spreading the higher bits of its hash code to the lower ones
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  private int segmentOf(TKey key)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    int hash = key.hashCode();
+    hash ^= (hash >>> 16);
+    hash ^= (hash >>> 8);
+    return hash & (segments.length - 1);
+  }
+}
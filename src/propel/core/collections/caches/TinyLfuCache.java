@@ -0,0 +1,770 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.caches;
+
+import propel.core.collections.queues.MpscQueue;
+import propel.core.collections.queues.WaitStrategy;
+import propel.core.counters.StripedCounter;
+import propel.core.functional.Functions.Function1;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe cache with a maximum size, which evicts entries by the Window TinyLFU policy. New entries are put into a small LRU window,
+ * from which they move into the main space, an LRU split into probation and protected segments, where entries accessed again while on
+ * probation are promoted into the protected segment. When the cache is full, an entry leaving the window competes with the eldest entry on
+ * probation, and the one that has been accessed less often, according to a frequency sketch of recent accesses, is evicted. This retains
+ * popular entries even when a burst of one-off keys passes through the cache, which plain LRU does not.
+ * 
+ * Entries are held in a concurrent map, so that lookups do not lock. Lookups record their accesses into buffers, striped by thread, which
+ * are applied to the eviction policy in batches under a lock, once a buffer fills up or when entries are written; an access is discarded if
+ * its buffer is full and the lock is busy. Writes take the lock. Entries may expire after a time-to-live, either the cache's default or
+ * one given per entry, and may be refreshed when read by get() after a period since they were written, by the reading thread reloading
+ * them while other threads carry on reading the old value. Concurrent misses of the same key share a single load. This collection does not
+ * allow null keys or values to be inserted.
+ * 
+ * @param <TKey> The key type.
+ * @param <TValue> The value type.
+ */
+public class TinyLfuCache<TKey, TValue>
+    implements ICache<TKey, TValue>
+{
+  /**
+   * The capacity of each read buffer
+   */
+  private static final int READ_BUFFER_SIZE = 128;
+  /**
+   * The percentage of the maximum size used by the window
+   */
+  private static final int WINDOW_PERCENT = 1;
+  /**
+   * The percentage of the main space used by the protected segment
+   */
+  private static final int PROTECTED_PERCENT = 80;
+  private static final int WINDOW = 1;
+  private static final int PROBATION = 2;
+  private static final int PROTECTED = 3;
+  private static final int REMOVED = 0;
+
+  private final ConcurrentMap<TKey, Node<TKey, TValue>> data;
+  private final ConcurrentMap<TKey, Loading<TValue>> loads;
+  private final long maximumSize;
+  private final long windowMaximum;
+  private final long protectedMaximum;
+  private final long expireAfterWriteNanos;
+  private final long refreshAfterWriteNanos;
+  private final Function1<TKey, TValue> loader;
+
+  private final ReentrantLock policyLock;
+  private final MpscQueue<Node<TKey, TValue>>[] readBuffers;
+  private final List<Node<TKey, TValue>> drained;
+  private final FrequencySketch sketch;
+  private final Node<TKey, TValue> window;
+  private final Node<TKey, TValue> probation;
+  private final Node<TKey, TValue> protectedSegment;
+  private final TreeSet<Node<TKey, TValue>> expiries;
+  private long windowSize;
+  private long probationSize;
+  private long protectedSize;
+  private long sequence;
+
+  /**
+   * Hits and misses are counted on every lookup, so they are striped to avoid contending on a single counter
+   */
+  private final StripedCounter hitCount;
+  private final StripedCounter missCount;
+  private final AtomicLong loadSuccessCount;
+  private final AtomicLong loadFailureCount;
+  private final AtomicLong totalLoadNanos;
+  private final AtomicLong evictionCount;
+  private final AtomicLong expirationCount;
+
+  /**
+   * Initializes the cache with a maximum number of entries, which do not expire.
+   * 
+   * @throws IllegalArgumentException When the maximum size is non positive.
+   */
+  public TinyLfuCache(long maximumSize)
+  {
+    this(maximumSize, 0, 0, TimeUnit.NANOSECONDS, null);
+  }
+
+  /**
+   * Initializes the cache with a maximum number of entries, which do not expire, and a loader for get(key).
+   * 
+   * @throws IllegalArgumentException When the maximum size is non positive.
+   */
+  public TinyLfuCache(long maximumSize, Function1<TKey, TValue> loader)
+  {
+    this(maximumSize, 0, 0, TimeUnit.NANOSECONDS, loader);
+  }
+
+  /**
+   * Initializes the cache with a maximum number of entries, the default time-to-live of entries after they are written, the period after
+   * they are written when get() reloads them, and optionally a loader for get(key). A non-positive time-to-live or refresh period means that
+   * entries do not expire, or are not refreshed, respectively.
+   * 
+   * @throws IllegalArgumentException When the maximum size is non positive.
+   * @throws NullPointerException When the time unit is null.
+   */
+  @SuppressWarnings("unchecked")
+  public TinyLfuCache(long maximumSize, long expireAfterWrite, long refreshAfterWrite, TimeUnit unit, Function1<TKey, TValue> loader)
+  {
+    if (maximumSize <= 0)
+      throw new IllegalArgumentException("maximumSize=" + maximumSize);
+    if (unit == null)
+      throw new NullPointerException("unit");
+
+    this.maximumSize = maximumSize;
+    windowMaximum = Math.max(1, maximumSize * WINDOW_PERCENT / 100);
+    protectedMaximum = (maximumSize - windowMaximum) * PROTECTED_PERCENT / 100;
+    expireAfterWriteNanos = expireAfterWrite > 0 ? unit.toNanos(expireAfterWrite) : 0;
+    refreshAfterWriteNanos = refreshAfterWrite > 0 ? unit.toNanos(refreshAfterWrite) : 0;
+    this.loader = loader;
+
+    data = new ConcurrentHashMap<TKey, Node<TKey, TValue>>();
+    loads = new ConcurrentHashMap<TKey, Loading<TValue>>();
+
+    policyLock = new ReentrantLock();
+    int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+    readBuffers = new MpscQueue[stripes];
+    for (int i = 0; i < stripes; i++)
+      readBuffers[i] = new MpscQueue<Node<TKey, TValue>>(READ_BUFFER_SIZE, WaitStrategy.Yield, Node.class);
+    drained = new ArrayList<Node<TKey, TValue>>(READ_BUFFER_SIZE);
+    sketch = new FrequencySketch(maximumSize);
+    window = new Node<TKey, TValue>(null, null, 0, 0, 0);
+    probation = new Node<TKey, TValue>(null, null, 0, 0, 0);
+    protectedSegment = new Node<TKey, TValue>(null, null, 0, 0, 0);
+    expiries = new TreeSet<Node<TKey, TValue>>(new Comparator<Node<TKey, TValue>>() {
+      @Override
+      public int compare(Node<TKey, TValue> a, Node<TKey, TValue> b)
+      {
+        if (a.expiresAt != b.expiresAt)
+          return a.expiresAt < b.expiresAt ? -1 : 1;
+
+        return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+      }
+    });
+
+    hitCount = new StripedCounter();
+    missCount = new StripedCounter();
+    loadSuccessCount = new AtomicLong();
+    loadFailureCount = new AtomicLong();
+    totalLoadNanos = new AtomicLong();
+    evictionCount = new AtomicLong();
+    expirationCount = new AtomicLong();
+  }
+
+  /**
+   * Returns the maximum number of entries
+   */
+  public long getMaximumSize()
+  {
+    return maximumSize;
+  }
+
+  /**
+   * {@inheritDoc} This does not lock, unless the access fills up a read buffer. This is an O(1) operation.
+   */
+  @Override
+  public TValue getIfPresent(TKey key)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    Node<TKey, TValue> node = data.get(key);
+    if (node == null || node.isExpired(System.nanoTime()))
+    {
+      missCount.increment();
+      return null;
+    }
+
+    hitCount.increment();
+    recordAccess(node);
+    return node.value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public TValue get(TKey key)
+  {
+    if (loader == null)
+      throw new IllegalStateException("The cache has no loader.");
+
+    return get(key, loader);
+  }
+
+  /**
+   * {@inheritDoc} A value that fails to load, or loads as null, is not cached; a failed refresh keeps the old value. This is an O(1)
+   * operation, excluding loading.
+   */
+  @Override
+  public TValue get(TKey key, Function1<TKey, TValue> loader)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+    if (loader == null)
+      throw new NullPointerException("loader");
+
+    long now = System.nanoTime();
+    Node<TKey, TValue> node = data.get(key);
+    if (node != null && !node.isExpired(now))
+    {
+      hitCount.increment();
+      recordAccess(node);
+
+      if (refreshAfterWriteNanos > 0 && now - node.writeTime >= refreshAfterWriteNanos)
+        return refresh(node, loader);
+
+      return node.value;
+    }
+
+    missCount.increment();
+    return load(key, loader);
+  }
+
+  /**
+   * {@inheritDoc} This is an O(log n) operation, where n is the number of expiring entries, excluding evictions.
+   */
+  @Override
+  public void put(TKey key, TValue value)
+  {
+    put(key, value, expireAfterWriteNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * {@inheritDoc} This is an O(log n) operation, where n is the number of expiring entries, excluding evictions.
+   */
+  @Override
+  public void put(TKey key, TValue value, long timeToLive, TimeUnit unit)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+    if (value == null)
+      throw new NullPointerException("value");
+    if (unit == null)
+      throw new NullPointerException("unit");
+
+    policyLock.lock();
+    try
+    {
+      long now = System.nanoTime();
+      long expiresAt = timeToLive > 0 ? now + unit.toNanos(timeToLive) : Long.MAX_VALUE;
+      Node<TKey, TValue> node = new Node<TKey, TValue>(key, value, now, expiresAt < now ? Long.MAX_VALUE : expiresAt, sequence++);
+
+      drainReadBuffers();
+
+      Node<TKey, TValue> previous = data.put(key, node);
+      if (previous == null)
+      {
+        node.linkBefore(window);
+        node.segment = WINDOW;
+        windowSize++;
+      } else
+      {
+        // the new node takes the place of the previous one
+        node.linkBefore(previous);
+        node.segment = previous.segment;
+        previous.unlink();
+        previous.segment = REMOVED;
+        if (previous.expiresAt != Long.MAX_VALUE)
+          expiries.remove(previous);
+      }
+
+      if (node.expiresAt != Long.MAX_VALUE)
+        expiries.add(node);
+
+      sketch.increment(key);
+      expireEntries(now);
+      evictEntries();
+    }
+    finally
+    {
+      policyLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc} This is an O(log n) operation, where n is the number of expiring entries.
+   */
+  @Override
+  public TValue remove(TKey key)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    policyLock.lock();
+    try
+    {
+      Node<TKey, TValue> node = data.remove(key);
+      if (node == null)
+        return null;
+
+      detach(node);
+      return node.isExpired(System.nanoTime()) ? null : node.value;
+    }
+    finally
+    {
+      policyLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc} This is an O(n) operation.
+   */
+  @Override
+  public void clear()
+  {
+    policyLock.lock();
+    try
+    {
+      drainReadBuffers();
+      for (Node<TKey, TValue> node : data.values())
+        node.segment = REMOVED;
+
+      data.clear();
+      expiries.clear();
+      window.reset();
+      probation.reset();
+      protectedSegment.reset();
+
+      windowSize = 0;
+      probationSize = 0;
+      protectedSize = 0;
+    }
+    finally
+    {
+      policyLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc} This is an O(1) operation.
+   */
+  @Override
+  public int size()
+  {
+    return data.size();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void cleanUp()
+  {
+    policyLock.lock();
+    try
+    {
+      drainReadBuffers();
+      expireEntries(System.nanoTime());
+      evictEntries();
+    }
+    finally
+    {
+      policyLock.unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CacheStats getStats()
+  {
+    return new CacheStats(hitCount.sum(), missCount.sum(), loadSuccessCount.get(), loadFailureCount.get(), totalLoadNanos.get(),
+        evictionCount.get(), expirationCount.get());
+  }
+
+  /**
+   * Loads the value of a key that was missed, unless another thread is already loading it, in which case its load is awaited
+   */
+  private TValue load(TKey key, Function1<TKey, TValue> loader)
+  {
+    Loading<TValue> loading = new Loading<TValue>();
+    Loading<TValue> existing = loads.putIfAbsent(key, loading);
+    if (existing != null)
+      return existing.await();
+
+    try
+    {
+      // another thread may have loaded the value since the miss
+      Node<TKey, TValue> node = data.get(key);
+      if (node != null && !node.isExpired(System.nanoTime()))
+      {
+        loading.complete(node.value);
+        return node.value;
+      }
+
+      TValue value = invoke(key, loader);
+      if (value != null)
+        put(key, value);
+
+      loading.complete(value);
+      return value;
+    }
+    catch(Throwable e)
+    {
+      loading.fail(e);
+      throw e;
+    }
+    finally
+    {
+      loads.remove(key, loading);
+    }
+  }
+
+  /**
+   * Reloads the value of a key that is due for a refresh, unless another thread is already loading it, in which case the current value is
+   * returned
+   */
+  private TValue refresh(Node<TKey, TValue> node, Function1<TKey, TValue> loader)
+  {
+    Loading<TValue> loading = new Loading<TValue>();
+    if (loads.putIfAbsent(node.key, loading) != null)
+      return node.value;
+
+    TValue result = node.value;
+    try
+    {
+      TValue value = invoke(node.key, loader);
+      if (value != null)
+      {
+        put(node.key, value);
+        result = value;
+      }
+    }
+    catch(RuntimeException e)
+    {
+      // keeps the current value
+    }
+    finally
+    {
+      loading.complete(result);
+      loads.remove(node.key, loading);
+    }
+
+    return result;
+  }
+
+  /**
+   * Calls a loader, recording its outcome and duration
+   */
+  private TValue invoke(TKey key, Function1<TKey, TValue> loader)
+  {
+    long start = System.nanoTime();
+    boolean success = false;
+    try
+    {
+      TValue result = loader.apply(key);
+      success = result != null;
+      return result;
+    }
+    finally
+    {
+      totalLoadNanos.addAndGet(System.nanoTime() - start);
+      if (success)
+        loadSuccessCount.incrementAndGet();
+      else
+        loadFailureCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Records an access into the read buffer of the current thread. If the buffer is full, the buffers are drained if the lock is free,
+   * otherwise the access is discarded.
+   */
+  private void recordAccess(Node<TKey, TValue> node)
+  {
+    MpscQueue<Node<TKey, TValue>> buffer = readBuffers[(int) Thread.currentThread().getId() & (readBuffers.length - 1)];
+    if (buffer.offer(node))
+      return;
+
+    if (policyLock.tryLock())
+      try
+      {
+        drainReadBuffers();
+        buffer.offer(node);
+      }
+      finally
+      {
+        policyLock.unlock();
+      }
+  }
+
+  /**
+   * Applies the recorded accesses to the policy. Must be called while holding the lock.
+   */
+  private void drainReadBuffers()
+  {
+    for (MpscQueue<Node<TKey, TValue>> buffer : readBuffers)
+    {
+      buffer.drainTo(drained, READ_BUFFER_SIZE);
+      for (Node<TKey, TValue> node : drained)
+        onAccess(node);
+
+      drained.clear();
+    }
+  }
+
+  /**
+   * Counts an access of a node and refreshes its recency, promoting it from probation to the protected segment. Must be called while
+   * holding the lock.
+   */
+  private void onAccess(Node<TKey, TValue> node)
+  {
+    if (node.segment == REMOVED)
+      return;
+
+    sketch.increment(node.key);
+
+    switch(node.segment)
+    {
+      case WINDOW:
+        node.unlink();
+        node.linkBefore(window);
+        break;
+      case PROBATION:
+        node.unlink();
+        probationSize--;
+        node.linkBefore(protectedSegment);
+        node.segment = PROTECTED;
+        protectedSize++;
+
+        // demotes the eldest protected entries back to probation
+        while (protectedSize > protectedMaximum)
+        {
+          Node<TKey, TValue> demoted = protectedSegment.next;
+          demoted.unlink();
+          protectedSize--;
+          demoted.linkBefore(probation);
+          demoted.segment = PROBATION;
+          probationSize++;
+        }
+        break;
+      default:
+        node.unlink();
+        node.linkBefore(protectedSegment);
+        break;
+    }
+  }
+
+  /**
+   * Removes the entries that have expired. Must be called while holding the lock.
+   */
+  private void expireEntries(long now)
+  {
+    while (!expiries.isEmpty() && expiries.first().isExpired(now))
+    {
+      Node<TKey, TValue> node = expiries.first();
+      data.remove(node.key, node);
+      detach(node);
+      expirationCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Moves the entries overflowing the window to probation, then evicts entries while the cache is over its maximum size, each time keeping
+   * the more frequently accessed of the newest and eldest entries on probation. Must be called while holding the lock.
+   */
+  private void evictEntries()
+  {
+    while (windowSize > windowMaximum)
+    {
+      Node<TKey, TValue> node = window.next;
+      node.unlink();
+      windowSize--;
+      node.linkBefore(probation);
+      node.segment = PROBATION;
+      probationSize++;
+    }
+
+    while (windowSize + probationSize + protectedSize > maximumSize)
+    {
+      Node<TKey, TValue> victim;
+      if (probationSize >= 2)
+      {
+        Node<TKey, TValue> candidate = probation.previous;
+        victim = probation.next;
+        if (sketch.frequency(candidate.key) <= sketch.frequency(victim.key))
+          victim = candidate;
+      } else if (probationSize == 1)
+        victim = probation.next;
+      else if (protectedSize > 0)
+        victim = protectedSegment.next;
+      else
+        victim = window.next;
+
+      data.remove(victim.key, victim);
+      detach(victim);
+      evictionCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Unlinks a node from its segment and the expiry order. Must be called while holding the lock.
+   */
+  private void detach(Node<TKey, TValue> node)
+  {
+    switch(node.segment)
+    {
+      case WINDOW:
+        windowSize--;
+        break;
+      case PROBATION:
+        probationSize--;
+        break;
+      case PROTECTED:
+        protectedSize--;
+        break;
+      default:
+        return;
+    }
+
+    node.unlink();
+    node.segment = REMOVED;
+    if (node.expiresAt != Long.MAX_VALUE)
+      expiries.remove(node);
+  }
+
+  /**
+   * An entry of the cache, which is also a node of the list of its segment. The entry's fields are immutable, as writes replace the node,
+   * while the list fields are guarded by the lock.
+   */
+  private static final class Node<TKey, TValue>
+  {
+    final TKey key;
+    final TValue value;
+    final long writeTime;
+    final long expiresAt;
+    final long sequence;
+    int segment;
+    Node<TKey, TValue> previous;
+    Node<TKey, TValue> next;
+
+    Node(TKey key, TValue value, long writeTime, long expiresAt, long sequence)
+    {
+      this.key = key;
+      this.value = value;
+      this.writeTime = writeTime;
+      this.expiresAt = expiresAt;
+      this.sequence = sequence;
+      previous = this;
+      next = this;
+    }
+
+    boolean isExpired(long now)
+    {
+      return expiresAt != Long.MAX_VALUE && now - expiresAt >= 0;
+    }
+
+    /**
+     * Links the node in a list, before the given node
+     */
+    void linkBefore(Node<TKey, TValue> node)
+    {
+      next = node;
+      previous = node.previous;
+      previous.next = this;
+      node.previous = this;
+    }
+
+    /**
+     * Unlinks the node from its list
+     */
+    void unlink()
+    {
+      previous.next = next;
+      next.previous = previous;
+      reset();
+    }
+
+    /**
+     * Makes the node a list of its own, discarding any other nodes it was linked to
+     */
+    void reset()
+    {
+      previous = this;
+      next = this;
+    }
+  }
+
+  /**
+   * A load in progress, which threads missing the same key wait for
+   */
+  private static final class Loading<TValue>
+  {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private TValue value;
+    private Throwable failure;
+
+    void complete(TValue value)
+    {
+      this.value = value;
+      done.countDown();
+    }
+
+    void fail(Throwable failure)
+    {
+      this.failure = failure;
+      done.countDown();
+    }
+
+    /**
+     * Waits for the load to finish, restoring the thread's interrupt status if it was interrupted, and returns the value or rethrows the
+     * failure of the load
+     */
+    TValue await()
+    {
+      boolean interrupted = false;
+      while (true)
+        try
+        {
+          done.await();
+          break;
+        }
+        catch(InterruptedException e)
+        {
+          interrupted = true;
+        }
+
+      if (interrupted)
+        Thread.currentThread().interrupt();
+
+      if (failure instanceof RuntimeException)
+        throw (RuntimeException) failure;
+      if (failure instanceof Error)
+        throw (Error) failure;
+      if (failure != null)
+        throw new IllegalStateException("The value failed to load.", failure);
+
+      return value;
+    }
+  }
+}
@@ -18,6 +18,7 @@
 // /////////////////////////////////////////////////////////
 package propel.core.collections.lists;
 
+import java.util.Iterator;
 import propel.core.model.IShared;
 
 /**
@@ -40,4 +41,11 @@ public interface ISharedList<T>
    */
   ReifiedList<T> toList();
 
+  /**
+   * Returns a weakly consistent iterator, which walks the live list a batch at a time without copying it or holding its lock for the whole
+   * traversal. Elements are tracked by index, so elements inserted or removed before the iterator's position may cause others to be
+   * skipped or returned twice.
+   */
+  Iterator<T> weaklyConsistentIterator();
+
 }
@@ -18,6 +18,7 @@
 // /////////////////////////////////////////////////////////
 package propel.core.collections.lists;
 
+import propel.core.collections.BatchedIterator;
 import propel.core.collections.ReifiedIterable;
 import java.util.*;
 import java.util.concurrent.locks.ReentrantLock;
@@ -318,6 +319,37 @@ public class SharedList<T>
     }
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Iterator<T> weaklyConsistentIterator()
+  {
+    return new BatchedIterator<T>() {
+      private int position;
+
+      @Override
+      protected List<T> nextBatch(int count)
+      {
+        lock();
+        try
+        {
+          int end = (int) Math.min(SharedList.super.size(), (long) position + count);
+          if (position >= end)
+            return Collections.emptyList();
+
+          List<T> result = new ArrayList<T>(SharedList.super.subList(position, end));
+          position = end;
+          return result;
+        }
+        finally
+        {
+          unlock();
+        }
+      }
+    };
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -0,0 +1,354 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.lists.primitive;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import lombok.Validate;
+import lombok.Validate.NotNull;
+import propel.core.collections.DoubleIterator;
+import propel.core.functional.PrimitiveActions.DoubleAction;
+
+/**
+ * A growable list of double primitives, which stores its elements unboxed in an array, taking 8 bytes per element rather than a reference to
+ * a Double object. Get, set and add at the end are O(1) operations, the latter amortised. Elements are compared as Double.equals() does,
+ * so NaN can be found, whereas 0.0 and -0.0 differ.
+ */
+public class DoubleArrayList
+{
+  /**
+   * The default initial capacity
+   */
+  public static final int DEFAULT_SIZE = 16;
+  /**
+   * The maximum array size, some VMs reserve header words in an array
+   */
+  private static final int MAXIMUM_SIZE = Integer.MAX_VALUE - 8;
+  private double[] elements;
+  private int size;
+
+  /**
+   * Default constructor
+   */
+  public DoubleArrayList()
+  {
+    this(DEFAULT_SIZE);
+  }
+
+  /**
+   * Constructs an empty list with the specified initial capacity
+   * 
+   * @throws IllegalArgumentException An argument is invalid
+   */
+  public DoubleArrayList(final int initialSize)
+  {
+    if (initialSize < 0)
+      throw new IllegalArgumentException("initialSize=" + initialSize);
+
+    elements = new double[initialSize];
+  }
+
+  /**
+   * Constructs a list containing the given elements
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public DoubleArrayList(@NotNull final double[] values)
+  {
+    elements = values.clone();
+    size = values.length;
+  }
+
+  /**
+   * Adds an element at the end of the list. This is an amortised O(1) operation
+   */
+  public void add(final double value)
+  {
+    if (size == elements.length)
+      grow(size + 1);
+
+    elements[size++] = value;
+  }
+
+  /**
+   * Inserts an element at the given index, shifting the following elements. This is an O(n) operation
+   * 
+   * @throws IndexOutOfBoundsException The index is out of range
+   */
+  public void add(final int index, final double value)
+  {
+    if (index < 0 || index > size)
+      throw new IndexOutOfBoundsException("index=" + index + " size=" + size);
+
+    if (size == elements.length)
+      grow(size + 1);
+
+    System.arraycopy(elements, index, elements, index + 1, size - index);
+    elements[index] = value;
+    size++;
+  }
+
+  /**
+   * Adds all given elements at the end of the list. This is an O(m) operation, where m is the number of elements added
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public void addAll(@NotNull final double[] values)
+  {
+    ensureCapacity(size + values.length);
+    System.arraycopy(values, 0, elements, size, values.length);
+    size += values.length;
+  }
+
+  /**
+   * Returns the element at the given index. This is an O(1) operation
+   * 
+   * @throws IndexOutOfBoundsException The index is out of range
+   */
+  public double get(final int index)
+  {
+    checkIndex(index);
+    return elements[index];
+  }
+
+  /**
+   * Replaces the element at the given index, returning the previous one. This is an O(1) operation
+   * 
+   * @throws IndexOutOfBoundsException The index is out of range
+   */
+  public double set(final int index, final double value)
+  {
+    checkIndex(index);
+    double old = elements[index];
+    elements[index] = value;
+    return old;
+  }
+
+  /**
+   * Removes the element at the given index, shifting the following elements, and returns it. This is an O(n) operation
+   * 
+   * @throws IndexOutOfBoundsException The index is out of range
+   */
+  public double removeAt(final int index)
+  {
+    checkIndex(index);
+    double old = elements[index];
+    System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+    size--;
+    return old;
+  }
+
+  /**
+   * Removes the first occurrence of an element, returning true if it was found. This is an O(n) operation
+   */
+  public boolean remove(final double value)
+  {
+    int index = indexOf(value);
+    if (index < 0)
+      return false;
+
+    removeAt(index);
+    return true;
+  }
+
+  /**
+   * Returns the index of the first occurrence of an element, or -1 if it is not found. This is an O(n) operation
+   */
+  public int indexOf(final double value)
+  {
+    for (int i = 0; i < size; i++)
+      if (Double.doubleToLongBits(elements[i]) == Double.doubleToLongBits(value))
+        return i;
+
+    return -1;
+  }
+
+  /**
+   * Returns the index of the last occurrence of an element, or -1 if it is not found. This is an O(n) operation
+   */
+  public int lastIndexOf(final double value)
+  {
+    for (int i = size - 1; i >= 0; i--)
+      if (Double.doubleToLongBits(elements[i]) == Double.doubleToLongBits(value))
+        return i;
+
+    return -1;
+  }
+
+  /**
+   * Returns true if the element is contained. This is an O(n) operation
+   */
+  public boolean contains(final double value)
+  {
+    return indexOf(value) >= 0;
+  }
+
+  /**
+   * Removes all elements, keeping the capacity. This is an O(1) operation
+   */
+  public void clear()
+  {
+    size = 0;
+  }
+
+  /**
+   * Returns true if the list is empty. This is an O(1) operation
+   */
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * Returns the number of elements. This is an O(1) operation
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Returns the number of elements the list holds before it needs to grow. This is an O(1) operation
+   */
+  public int capacity()
+  {
+    return elements.length;
+  }
+
+  /**
+   * Grows the list if necessary, so that it holds at least the given number of elements without growing again
+   * 
+   * @throws IllegalArgumentException An argument is invalid
+   */
+  public void ensureCapacity(final int minCapacity)
+  {
+    if (minCapacity < 0)
+      throw new IllegalArgumentException("minCapacity=" + minCapacity);
+
+    if (minCapacity > elements.length)
+      grow(minCapacity);
+  }
+
+  /**
+   * Shrinks the capacity to the number of elements. This is an O(n) operation
+   */
+  public void trimToSize()
+  {
+    if (size < elements.length)
+      elements = Arrays.copyOf(elements, size);
+  }
+
+  /**
+   * Sorts the elements in ascending order. This is an O(nlog(n)) operation
+   */
+  public void sort()
+  {
+    Arrays.sort(elements, 0, size);
+  }
+
+  /**
+   * Returns the elements in a new array. This is an O(n) operation
+   */
+  public double[] toArray()
+  {
+    return Arrays.copyOf(elements, size);
+  }
+
+  /**
+   * Returns an iterator over the elements. The list must not be modified while iterating.
+   */
+  public DoubleIterator iterator()
+  {
+    return new DoubleIterator() {
+      private int index;
+
+      @Override
+      public boolean hasNext()
+      {
+        return index < size;
+      }
+
+      @Override
+      public double next()
+      {
+        if (index >= size)
+          throw new NoSuchElementException();
+
+        return elements[index++];
+      }
+    };
+  }
+
+  /**
+   * Calls the given action with each element, in order. The list must not be modified by the action. This is an O(n) operation
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public void forEach(@NotNull final DoubleAction action)
+  {
+    for (int i = 0; i < size; i++)
+      action.apply(elements[i]);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    StringBuilder sb = new StringBuilder(size * 4 + 2);
+    sb.append('[');
+    for (int i = 0; i < size; i++)
+    {
+      if (i > 0)
+        sb.append(", ");
+      sb.append(elements[i]);
+    }
+
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Grows the array by half, or to the given capacity if larger
+   * 
+   * @throws OutOfMemoryError The capacity exceeds the maximum array size
+   */
+  private void grow(final int minCapacity)
+  {
+    if (minCapacity > MAXIMUM_SIZE)
+      throw new OutOfMemoryError("minCapacity=" + minCapacity);
+
+    long capacity = Math.max(elements.length + (long) (elements.length >> 1), DEFAULT_SIZE);
+    elements = Arrays.copyOf(elements, (int) Math.min(Math.max(capacity, minCapacity), MAXIMUM_SIZE));
+  }
+
+  /**
+   * Checks that an index refers to an element
+   * 
+   * @throws IndexOutOfBoundsException The index is out of range
+   */
+  private void checkIndex(final int index)
+  {
+    if (index < 0 || index >= size)
+      throw new IndexOutOfBoundsException("index=" + index + " size=" + size);
+  }
+}
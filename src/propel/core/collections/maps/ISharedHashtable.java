@@ -18,7 +18,9 @@
 // /////////////////////////////////////////////////////////
 package propel.core.collections.maps;
 
+import java.util.Iterator;
 import propel.core.collections.KeyNotFoundException;
+import propel.core.collections.KeyValuePair;
 import propel.core.collections.ReifiedIterable;
 import propel.core.model.IShared;
 
@@ -125,4 +127,11 @@ public interface ISharedHashtable<TKey extends Comparable<TKey>, TValue>
    * Returns size of hashtable
    */
   int size();
+
+  /**
+   * Returns a weakly consistent iterator of key/value pairs, which walks the live hashtable without copying it or holding its lock for the
+   * whole traversal. Pairs present for the whole traversal are returned exactly once, whereas those added or removed meanwhile may or may
+   * not be.
+   */
+  Iterator<KeyValuePair<TKey, TValue>> weaklyConsistentIterator();
 }
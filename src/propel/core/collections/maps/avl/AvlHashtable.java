@@ -38,7 +38,8 @@ import java.util.Iterator;
 import java.util.Map;
 
 /**
- * A type-aware AVL-tree-backed hashtable. This map does not allow null keys to be inserted.
+ * A type-aware AVL-tree-backed hashtable. This map does not allow null keys to be inserted. Nodes hold the sizes of their sub-trees, so
+ * that key/value pairs are also accessible by their position in ascending key order, in O(log2(n)).
  */
 public class AvlHashtable<TKey extends Comparable<TKey>, TValue>
     implements IHashtable<TKey, TValue>
@@ -202,6 +203,10 @@ public class AvlHashtable<TKey extends Comparable<TKey>, TValue>
           return false;
       }
 
+      // the new node is in the sub-trees of all its ancestors, rotations below keep the counts of the nodes they move
+      for (AvlNode<TKey, TValue> q = p; q != null; q = q.parent)
+        q.count++;
+
       while ((p.balance != 0) && (p.parent != null))
       {
         if (p.parent.left == p)
@@ -239,6 +244,8 @@ public class AvlHashtable<TKey extends Comparable<TKey>, TValue>
 
             x.balance = 0;
             p.balance = 0;
+            updateCount(p);
+            updateCount(x);
           } else
           {
             AvlNode<TKey, TValue> w = x.right;
@@ -287,6 +294,9 @@ public class AvlHashtable<TKey extends Comparable<TKey>, TValue>
             }
 
             w.balance = 0;
+            updateCount(x);
+            updateCount(p);
+            updateCount(w);
           }
 
           break;
@@ -318,6 +328,8 @@ public class AvlHashtable<TKey extends Comparable<TKey>, TValue>
 
             x.balance = 0;
             p.balance = 0;
+            updateCount(p);
+            updateCount(x);
           } else
           {
             AvlNode<TKey, TValue> w = x.left;
@@ -366,6 +378,9 @@ public class AvlHashtable<TKey extends Comparable<TKey>, TValue>
             }
 
             w.balance = 0;
+            updateCount(x);
+            updateCount(p);
+            updateCount(w);
           }
 
           break;
@@ -494,6 +509,32 @@ public class AvlHashtable<TKey extends Comparable<TKey>, TValue>
     return new AscendingOrderKeyValuePairIterator<TKey, TValue>(p);
   }
 
+  /**
+   * Returns an iterator of the key/value pairs whose keys are greater than the given key, which need not be contained. Results are ordered
+   * in ascending key order. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public Iterator<KeyValuePair<TKey, TValue>> iteratorAfter(TKey key)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    // find the smallest node with a greater key
+    AvlNode<TKey, TValue> next = null;
+    AvlNode<TKey, TValue> p = root;
+
+    while (p != null)
+      if (key.compareTo(p.item.getKey()) < 0)
+      {
+        next = p;
+        p = p.left;
+      } else
+        p = p.right;
+
+    return new AscendingOrderKeyValuePairIterator<TKey, TValue>(next);
+  }
+
   /**
    * Removes a key/value pair based on its key. This is an O(log2(n)) operation.
    * 
@@ -521,264 +562,122 @@ public class AvlHashtable<TKey extends Comparable<TKey>, TValue>
    * 
    * @throws NullPointerException If the key is null.
    */
-  @SuppressWarnings("unchecked")
   @Override
   public boolean remove(TKey key)
   {
     if (key == null)
       throw new NullPointerException("key");
 
-    if (root == null)
+    AvlNode<TKey, TValue> p = find(key);
+    if (p == null)
       return false;
 
+    removeNode(p);
+    return true;
+  }
+
+  /**
+   * Returns the key/value pair at the given position, in ascending key order. This is an O(log2(n)) operation.
+   * 
+   * @param index The position of the key/value pair.
+   * 
+   * @return The key/value pair.
+   * 
+   * @throws IndexOutOfBoundsException The index is out of range.
+   */
+  public KeyValuePair<TKey, TValue> getAt(int index)
+  {
+    return nodeAt(index).item;
+  }
+
+  /**
+   * Returns the position of a key, in ascending key order. This is an O(log2(n)) operation.
+   * 
+   * @param key The key to find.
+   * 
+   * @return The position of the key, or -1 if the key does not exist.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public int indexOf(TKey key)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    int index = 0;
     AvlNode<TKey, TValue> p = root;
-    AvlNode<TKey, TValue>[] nodes = new AvlNode[10];
-    boolean[] path = new boolean[10];
-    int depth = 0;
-    nodes[depth] = new AvlNode<TKey, TValue>();
-    nodes[depth].left = root;
-    path[depth++] = true;
 
     while (p != null)
     {
-      int val = key.compareTo(p.item.getKey());
-      if (val == 0)
-      {
-        break; // have match
-      }
-      nodes[depth] = p;
-      path[depth] = (val < 0);
-      p = (path[depth]) ? p.left : p.right;
-      if (++depth >= nodes.length)
-      {
-        AvlNode<TKey, TValue>[] old = nodes;
-        nodes = new AvlNode[old.length + (old.length >> 1)];
-        System.arraycopy(old, 0, nodes, 0, old.length);
-        boolean[] old2 = path;
-        path = new boolean[old2.length + (old2.length >> 1)];
-        System.arraycopy(old2, 0, path, 0, old2.length);
-      }
-    }
-    // delete item
-    if (p != null)
-    {
-      if (p.right == null)
-      {
-        if (path[depth - 1])
-        {
-          nodes[depth - 1].left = p.left;
-        } else
-        {
-          nodes[depth - 1].right = p.left;
-        }
-      } else
-      {
-        AvlNode<TKey, TValue> r = p.right;
-        if (r.left == null)
-        {
-          r.left = p.left;
-          r.balance = p.balance;
-          if (path[depth - 1])
-          {
-            nodes[depth - 1].left = r;
-          } else
-          {
-            nodes[depth - 1].right = r;
-          }
-          // cannot overflow as only 1 node added
-          nodes[depth] = r;
-          path[depth++] = false;
+      int c = key.compareTo(p.item.getKey());
 
-        } else
-        {
-          AvlNode<TKey, TValue> s;
-          int index = depth;
-          if (++depth >= nodes.length)
-          {
-            AvlNode<TKey, TValue>[] old = nodes;
-            nodes = new AvlNode[old.length + (old.length >> 1)];
-            System.arraycopy(old, 0, nodes, 0, old.length);
-            boolean[] old2 = path;
-            path = new boolean[old2.length + (old2.length >> 1)];
-            System.arraycopy(old2, 0, path, 0, old2.length);
-          }
-          while (true)
-          {
-            nodes[depth] = r;
-            path[depth] = true;
-            if (++depth >= nodes.length)
-            {
-              AvlNode<TKey, TValue>[] old = nodes;
-              nodes = new AvlNode[old.length + (old.length >> 1)];
-              System.arraycopy(old, 0, nodes, 0, old.length);
-              boolean[] old2 = path;
-              path = new boolean[old2.length + (old2.length >> 1)];
-              System.arraycopy(old2, 0, path, 0, old2.length);
-            }
-            s = r.left;
-            if (s.left == null)
-            {
-              break;
-            }
-            r = s;
-          }
-          s.left = p.left;
-          r.left = s.right;
-          s.right = p.right;
-          s.balance = p.balance;
-          if (path[index - 1])
-          {
-            nodes[index - 1].left = s;
-          } else
-          {
-            nodes[index - 1].right = s;
-          }
-          nodes[index] = s;
-          path[index] = false;
-        }
-      }
-      // update balance factors
-      for (int i = depth - 1; i > 0; i--)
-      {
-        if (path[i])
-        {
-          nodes[i].balance++;
-          if (nodes[i].balance == +1)
-          {
-            break;
-          } else if (nodes[i].balance == +2)
-          {
-            AvlNode<TKey, TValue> y = nodes[i];
-            AvlNode<TKey, TValue> x = y.right;
-            if (x.balance == -1)
-            {
-              // left
-              AvlNode<TKey, TValue> w = x.left;
-              x.left = w.right;
-              w.right = x;
-              y.right = w.left;
-              w.left = y;
-              if (w.balance == 1)
-              {
-                x.balance = 0;
-                y.balance = -1;
-              } else if (w.balance == 0)
-              {
-                x.balance = 0;
-                y.balance = 0;
-              } else
-              {
-                x.balance = 1;
-                y.balance = 0;
-              }
-              w.balance = 0;
-              if (path[i - 1])
-              {
-                nodes[i - 1].left = w;
-              } else
-              {
-                nodes[i - 1].right = w;
-              }
-            } else
-            {
-              // right
-              y.right = x.left;
-              x.left = y;
-              if (path[i - 1])
-              {
-                nodes[i - 1].left = x;
-              } else
-              {
-                nodes[i - 1].right = x;
-              }
-              if (x.balance == 0)
-              {
-                x.balance = -1;
-                y.balance = 1;
-                break;
-              } else
-              {
-                x.balance = 0;
-                y.balance = 0;
-              }
-            }
-          }
-        } else
-        {
-          nodes[i].balance--;
-          if (nodes[i].balance == -1)
-          {
-            break;
-          } else if (nodes[i].balance == -2)
-          {
-            AvlNode<TKey, TValue> y = nodes[i];
-            AvlNode<TKey, TValue> x = y.left;
-            if (x.balance == 1)
-            {
-              // right
-              AvlNode<TKey, TValue> w = x.right;
-              x.right = w.left;
-              w.left = x;
-              y.left = w.right;
-              w.right = y;
-              if (w.balance == -1)
-              {
-                x.balance = 0;
-                y.balance = 1;
-              } else if (w.balance == 0)
-              {
-                x.balance = 0;
-                y.balance = 0;
-              } else
-              {
-                x.balance = -1;
-                y.balance = 0;
-              }
-              w.balance = 0;
-              if (path[i - 1])
-              {
-                nodes[i - 1].left = w;
-              } else
-              {
-                nodes[i - 1].right = w;
-              }
-            } else
-            {
-              // left
-              y.left = x.right;
-              x.right = y;
-              if (path[i - 1])
-              {
-                nodes[i - 1].left = x;
-              } else
-              {
-                nodes[i - 1].right = x;
-              }
-              if (x.balance == 0)
-              {
-                x.balance = 1;
-                y.balance = -1;
-                break;
-              } else
-              {
-                x.balance = 0;
-                y.balance = 0;
-              }
-            }
-          }
-        }
-      }
-      if (nodes[0].left != root)
+      if (c < 0)
+        p = p.left;
+      else
       {
-        root = nodes[0].left;
+        int leftCount = count(p.left);
+        if (c == 0)
+          return index + leftCount;
+
+        index += leftCount + 1;
+        p = p.right;
       }
-      return true;
-    } else
-    {
-      // not found
-      return false;
     }
 
+    return -1;
+  }
+
+  /**
+   * Removes the key/value pair at the given position, in ascending key order. This is an O(log2(n)) operation.
+   * 
+   * @param index The position of the key/value pair.
+   * 
+   * @return The removed key/value pair.
+   * 
+   * @throws IndexOutOfBoundsException The index is out of range.
+   */
+  public KeyValuePair<TKey, TValue> removeAt(int index)
+  {
+    AvlNode<TKey, TValue> p = nodeAt(index);
+    KeyValuePair<TKey, TValue> result = p.item;
+
+    removeNode(p);
+    return result;
+  }
+
+  /**
+   * Replaces the value at the given position, in ascending key order. This is an O(log2(n)) operation.
+   * 
+   * @param index The position of the key/value pair.
+   * @param value The new value.
+   * 
+   * @return The replaced key/value pair.
+   * 
+   * @throws IndexOutOfBoundsException The index is out of range.
+   */
+  public KeyValuePair<TKey, TValue> replaceAt(int index, TValue value)
+  {
+    AvlNode<TKey, TValue> p = nodeAt(index);
+    KeyValuePair<TKey, TValue> result = p.item;
+
+    p.item = new KeyValuePair<TKey, TValue>(result.getKey(), value);
+    return result;
+  }
+
+  /**
+   * Returns an iterator of the key/value pairs from the given position onwards. Results are ordered in ascending key order. This is an
+   * O(log2(n)) operation.
+   * 
+   * @param index The position of the first key/value pair, or the size to iterate over none.
+   * 
+   * @throws IndexOutOfBoundsException The index is out of range.
+   */
+  public Iterator<KeyValuePair<TKey, TValue>> iteratorAt(int index)
+  {
+    if (index == size)
+      return new AscendingOrderKeyValuePairIterator<TKey, TValue>(null);
+
+    return new AscendingOrderKeyValuePairIterator<TKey, TValue>(nodeAt(index));
   }
 
   /**
@@ -879,4 +778,252 @@ public class AvlHashtable<TKey extends Comparable<TKey>, TValue>
   {
     return Linq.toString(this);
   }
+
+  /**
+   * Returns the node of a key, or null if the key does not exist
+   */
+  private AvlNode<TKey, TValue> find(TKey key)
+  {
+    AvlNode<TKey, TValue> p = root;
+
+    while (p != null)
+    {
+      int c = key.compareTo(p.item.getKey());
+
+      if (c < 0)
+        p = p.left;
+      else if (c > 0)
+        p = p.right;
+      else
+        return p;
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the node at the given position, in ascending key order, descending by the sizes of the left sub-trees
+   * 
+   * @throws IndexOutOfBoundsException The index is out of range.
+   */
+  private AvlNode<TKey, TValue> nodeAt(int index)
+  {
+    if (index < 0 || index >= size)
+      throw new IndexOutOfBoundsException("index=" + index + " size=" + size);
+
+    AvlNode<TKey, TValue> p = root;
+
+    while (true)
+    {
+      int leftCount = count(p.left);
+
+      if (index < leftCount)
+        p = p.left;
+      else if (index == leftCount)
+        return p;
+      else
+      {
+        index -= leftCount + 1;
+        p = p.right;
+      }
+    }
+  }
+
+  /**
+   * Unlinks a node from the tree, then retraces the path to the root, updating the sub-tree sizes and re-balancing the nodes whose
+   * sub-trees became shorter.
+   */
+  private void removeNode(AvlNode<TKey, TValue> node)
+  {
+    // a node with two children takes the item of its successor, which has no left child, and the successor is unlinked instead
+    if (node.left != null && node.right != null)
+    {
+      AvlNode<TKey, TValue> successor = node.right;
+      while (successor.left != null)
+        successor = successor.left;
+
+      node.item = successor.item;
+      node = successor;
+    }
+
+    AvlNode<TKey, TValue> child = node.left != null ? node.left : node.right;
+    AvlNode<TKey, TValue> p = node.parent;
+
+    if (child != null)
+      child.parent = p;
+
+    size--;
+
+    if (p == null)
+    {
+      root = child;
+      return;
+    }
+
+    boolean left = p.left == node;
+    if (left)
+      p.left = child;
+    else
+      p.right = child;
+
+    for (AvlNode<TKey, TValue> q = p; q != null; q = q.parent)
+      q.count--;
+
+    while (true)
+    {
+      if (left)
+        p.balance++;
+      else
+        p.balance--;
+
+      if (p.balance == 2 || p.balance == -2)
+      {
+        p = rebalance(p);
+
+        // the sub-tree kept its height
+        if (p.balance != 0)
+          break;
+      } else if (p.balance != 0)
+        // the sub-tree was balanced and kept its height
+        break;
+
+      if (p.parent == null)
+        break;
+
+      left = p.parent.left == p;
+      p = p.parent;
+    }
+  }
+
+  /**
+   * Re-balances a node with a balance factor of 2 or -2 after a removal, returning the root of its sub-tree
+   */
+  private AvlNode<TKey, TValue> rebalance(AvlNode<TKey, TValue> p)
+  {
+    if (p.balance == 2)
+    {
+      AvlNode<TKey, TValue> x = p.right;
+
+      if (x.balance >= 0)
+      {
+        rotateLeft(p);
+
+        if (x.balance == 0)
+        {
+          x.balance = -1;
+          p.balance = 1;
+        } else
+        {
+          x.balance = 0;
+          p.balance = 0;
+        }
+
+        return x;
+      }
+
+      AvlNode<TKey, TValue> w = x.left;
+      rotateRight(x);
+      rotateLeft(p);
+
+      p.balance = (byte) (w.balance == 1 ? -1 : 0);
+      x.balance = (byte) (w.balance == -1 ? 1 : 0);
+      w.balance = 0;
+      return w;
+    } else
+    {
+      AvlNode<TKey, TValue> x = p.left;
+
+      if (x.balance <= 0)
+      {
+        rotateRight(p);
+
+        if (x.balance == 0)
+        {
+          x.balance = 1;
+          p.balance = -1;
+        } else
+        {
+          x.balance = 0;
+          p.balance = 0;
+        }
+
+        return x;
+      }
+
+      AvlNode<TKey, TValue> w = x.right;
+      rotateLeft(x);
+      rotateRight(p);
+
+      p.balance = (byte) (w.balance == -1 ? 1 : 0);
+      x.balance = (byte) (w.balance == 1 ? -1 : 0);
+      w.balance = 0;
+      return w;
+    }
+  }
+
+  /**
+   * Rotates a node down to the left, moving its right child up in its place. Balance factors are left to the caller.
+   */
+  private void rotateLeft(AvlNode<TKey, TValue> p)
+  {
+    AvlNode<TKey, TValue> x = p.right;
+
+    p.right = x.left;
+    if (p.right != null)
+      p.right.parent = p;
+
+    replaceChild(p, x);
+    x.left = p;
+    p.parent = x;
+
+    updateCount(p);
+    updateCount(x);
+  }
+
+  /**
+   * Rotates a node down to the right, moving its left child up in its place. Balance factors are left to the caller.
+   */
+  private void rotateRight(AvlNode<TKey, TValue> p)
+  {
+    AvlNode<TKey, TValue> x = p.left;
+
+    p.left = x.right;
+    if (p.left != null)
+      p.left.parent = p;
+
+    replaceChild(p, x);
+    x.right = p;
+    p.parent = x;
+
+    updateCount(p);
+    updateCount(x);
+  }
+
+  /**
+   * Links a node in the place of another in the parent of the latter, or as the root
+   */
+  private void replaceChild(AvlNode<TKey, TValue> node, AvlNode<TKey, TValue> replacement)
+  {
+    replacement.parent = node.parent;
+
+    if (node.parent == null)
+      root = replacement;
+    else if (node.parent.left == node)
+      node.parent.left = replacement;
+    else
+      node.parent.right = replacement;
+  }
+
+  /**
+   * Sets the sub-tree size of a node from the sizes of its children
+   */
+  private static void updateCount(AvlNode<?, ?> node)
+  {
+    node.count = 1 + count(node.left) + count(node.right);
+  }
+
+  private static int count(AvlNode<?, ?> node)
+  {
+    return node == null ? 0 : node.count;
+  }
 }
@@ -30,7 +30,7 @@ import propel.core.collections.KeyValuePair;
 
 /**
  * Represents a node in the AVL hash table. The AvlNode contains a key/value pair, a reference to the parent node, a reference to the left
- * child node, a reference to the right child node and a balance factor for this node.
+ * child node, a reference to the right child node, a balance factor and the size of the sub-tree rooted at this node.
  * 
  * @param <TKey> The key type.
  * @param <TValue> The value type.
@@ -43,6 +43,11 @@ final class AvlNode<TKey extends Comparable<TKey>, TValue>
    * and requires re-balancing the tree.
    */
   byte balance;
+  /**
+   * The number of nodes in the sub-tree rooted at this node, including this node. Used to find nodes by their position in ascending key
+   * order, and the positions of nodes, in O(log2(n)).
+   */
+  int count = 1;
   /**
    * The key/value pair contained in this node.
    */
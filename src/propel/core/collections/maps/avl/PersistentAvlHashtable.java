@@ -0,0 +1,430 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.avl;
+
+import propel.core.TryResult;
+import propel.core.collections.KeyNotFoundException;
+import propel.core.collections.KeyValuePair;
+import propel.core.collections.ReifiedIterable;
+import propel.core.collections.maps.ReifiedMap;
+import propel.core.utils.Linq;
+import propel.core.utils.SuperTypeToken;
+import propel.core.utils.SuperTypeTokenException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A type-aware persistent (immutable) AVL-tree-backed hashtable. Rather than modifying the hashtable, add(), put(), replace() and
+ * remove() return a new version of it, which shares all subtrees that were not changed with the previous version, so that each update
+ * only allocates O(log2(n)) nodes. Versions can therefore be published to other threads without locking or copying. This map does not
+ * allow null keys to be inserted.
+ * 
+ * Instantiate using e.g.: new PersistentAvlHashtable&lt;String, Object&gt;(){}; -OR- new PersistentAvlHashtable&lt;String,
+ * Object&gt;(String.class, Object.class);
+ */
+public class PersistentAvlHashtable<TKey extends Comparable<TKey>, TValue>
+    implements ReifiedMap<TKey, TValue>
+{
+  final PersistentAvlNode<TKey, TValue> root;
+  private final int size;
+  private final Class<?> genericTypeParameterKey;
+  private final Class<?> genericTypeParameterValue;
+
+  /**
+   * Default constructor, creating an empty hashtable
+   * 
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   */
+  public PersistentAvlHashtable()
+  {
+    root = null;
+    size = 0;
+    genericTypeParameterKey = SuperTypeToken.getClazz(this.getClass(), 0);
+    genericTypeParameterValue = SuperTypeToken.getClazz(this.getClass(), 1);
+  }
+
+  /**
+   * Constructor for creating an empty hashtable with the key/value generic type parameters
+   * 
+   * @throws NullPointerException When a generic type parameter is null.
+   */
+  public PersistentAvlHashtable(Class<?> genericTypeParameterKey, Class<?> genericTypeParameterValue)
+  {
+    if (genericTypeParameterKey == null)
+      throw new NullPointerException("genericTypeParameterKey");
+    if (genericTypeParameterValue == null)
+      throw new NullPointerException("genericTypeParameterValue");
+
+    root = null;
+    size = 0;
+    this.genericTypeParameterKey = genericTypeParameterKey;
+    this.genericTypeParameterValue = genericTypeParameterValue;
+  }
+
+  /**
+   * Initializes a version of a hashtable
+   */
+  private PersistentAvlHashtable(PersistentAvlNode<TKey, TValue> root, int size, Class<?> genericTypeParameterKey,
+                                 Class<?> genericTypeParameterValue)
+  {
+    this.root = root;
+    this.size = size;
+    this.genericTypeParameterKey = genericTypeParameterKey;
+    this.genericTypeParameterValue = genericTypeParameterValue;
+  }
+
+  /**
+   * Returns a hashtable containing the key/value pairs of a map, with the map's key/value generic type parameters.
+   * 
+   * @throws NullPointerException When the argument is null, or a key in the map provided is null.
+   */
+  public static <TKey extends Comparable<TKey>, TValue> PersistentAvlHashtable<TKey, TValue> from(ReifiedMap<TKey, TValue> map)
+  {
+    if (map == null)
+      throw new NullPointerException("map");
+
+    PersistentAvlHashtable<TKey, TValue> result = new PersistentAvlHashtable<TKey, TValue>(map.getGenericTypeParameterKey(),
+        map.getGenericTypeParameterValue());
+    for (KeyValuePair<TKey, TValue> kvp : map)
+      result = result.put(kvp.getKey(), kvp.getValue());
+
+    return result;
+  }
+
+  /**
+   * Returns a hashtable containing the key/value pairs of a map, with the given key/value generic type parameters.
+   * 
+   * @throws NullPointerException When an argument is null, or a key in the map provided is null.
+   */
+  public static <TKey extends Comparable<TKey>, TValue> PersistentAvlHashtable<TKey, TValue>
+      from(Map<? extends TKey, ? extends TValue> map, Class<?> genericTypeParameterKey, Class<?> genericTypeParameterValue)
+  {
+    if (map == null)
+      throw new NullPointerException("map");
+
+    PersistentAvlHashtable<TKey, TValue> result = new PersistentAvlHashtable<TKey, TValue>(genericTypeParameterKey,
+        genericTypeParameterValue);
+    for (Map.Entry<? extends TKey, ? extends TValue> entry : map.entrySet())
+      result = result.put(entry.getKey(), entry.getValue());
+
+    return result;
+  }
+
+  /**
+   * Returns a version with a new key/value pair added, or this version if the key exists. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public PersistentAvlHashtable<TKey, TValue> add(TKey key, TValue value)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    return version(PersistentAvlNode.put(root, new KeyValuePair<TKey, TValue>(key, value), true, false), size + 1);
+  }
+
+  /**
+   * Returns a version with a key/value pair added, or with the key's value replaced if the key exists. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public PersistentAvlHashtable<TKey, TValue> put(TKey key, TValue value)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    PersistentAvlNode<TKey, TValue> newRoot = PersistentAvlNode.put(root, new KeyValuePair<TKey, TValue>(key, value), true, true);
+    return version(newRoot, PersistentAvlNode.find(root, key) == null ? size + 1 : size);
+  }
+
+  /**
+   * Returns a version with a key's value replaced, or this version if the key does not exist. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public PersistentAvlHashtable<TKey, TValue> replace(TKey key, TValue value)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    return version(PersistentAvlNode.put(root, new KeyValuePair<TKey, TValue>(key, value), false, true), size);
+  }
+
+  /**
+   * Returns a version with a key/value pair removed, or this version if the key does not exist. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public PersistentAvlHashtable<TKey, TValue> remove(TKey key)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    return version(PersistentAvlNode.remove(root, key), size - 1);
+  }
+
+  /**
+   * Returns an empty version, with the same generic type parameters. This is an O(1) operation.
+   */
+  public PersistentAvlHashtable<TKey, TValue> clear()
+  {
+    return version(null, 0);
+  }
+
+  /**
+   * Returns true if the key exists. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public boolean containsKey(TKey key)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    return PersistentAvlNode.find(root, key) != null;
+  }
+
+  /**
+   * Gets the value associated with the specified key. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   * @throws KeyNotFoundException When the key does not exist.
+   */
+  public TValue get(TKey key)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    PersistentAvlNode<TKey, TValue> node = PersistentAvlNode.find(root, key);
+    if (node == null)
+      throw new KeyNotFoundException(key.toString());
+
+    return node.item.getValue();
+  }
+
+  /**
+   * Gets the value associated with the specified key, or the specified nullValue if the key does not exist. This is an O(log2(n))
+   * operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public TValue get(TKey key, TValue nullValue)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    PersistentAvlNode<TKey, TValue> node = PersistentAvlNode.find(root, key);
+    return node == null ? nullValue : node.item.getValue();
+  }
+
+  /**
+   * Attempts to get the value associated with the specified key. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public TryResult<TValue> tryGetValue(TKey key)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    PersistentAvlNode<TKey, TValue> node = PersistentAvlNode.find(root, key);
+    return node == null ? new TryResult<TValue>() : new TryResult<TValue>(node.item.getValue());
+  }
+
+  /**
+   * Returns all keys, in ascending order. This is an O(1) operation, as the keys are not copied.
+   */
+  public ReifiedIterable<TKey> getKeys()
+  {
+    return new ReifiedIterable<TKey>() {
+      @Override
+      public Iterator<TKey> iterator()
+      {
+        return new AscendingOrderIterator<TKey, TValue, TKey>(root) {
+          @Override
+          protected TKey select(KeyValuePair<TKey, TValue> item)
+          {
+            return item.getKey();
+          }
+        };
+      }
+
+      @Override
+      public Class<?> getGenericTypeParameter()
+      {
+        return genericTypeParameterKey;
+      }
+    };
+  }
+
+  /**
+   * Returns the values of all key/value pairs, in ascending key order. This is an O(1) operation, as the values are not copied.
+   */
+  public ReifiedIterable<TValue> getValues()
+  {
+    return new ReifiedIterable<TValue>() {
+      @Override
+      public Iterator<TValue> iterator()
+      {
+        return new AscendingOrderIterator<TKey, TValue, TValue>(root) {
+          @Override
+          protected TValue select(KeyValuePair<TKey, TValue> item)
+          {
+            return item.getValue();
+          }
+        };
+      }
+
+      @Override
+      public Class<?> getGenericTypeParameter()
+      {
+        return genericTypeParameterValue;
+      }
+    };
+  }
+
+  /**
+   * Returns an iterator of key/value pairs. Results are ordered in ascending key order.
+   */
+  @Override
+  public Iterator<KeyValuePair<TKey, TValue>> iterator()
+  {
+    return new AscendingOrderIterator<TKey, TValue, KeyValuePair<TKey, TValue>>(root) {
+      @Override
+      protected KeyValuePair<TKey, TValue> select(KeyValuePair<TKey, TValue> item)
+      {
+        return item;
+      }
+    };
+  }
+
+  /**
+   * Returns true if there are no key/value pairs
+   */
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * Returns the number of key/value pairs. This is an O(1) operation.
+   */
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<?> getGenericTypeParameterKey()
+  {
+    return genericTypeParameterKey;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<?> getGenericTypeParameterValue()
+  {
+    return genericTypeParameterValue;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return Linq.toString(this);
+  }
+
+  /**
+   * Returns the version with the given root, or this version if the root has not changed
+   */
+  private PersistentAvlHashtable<TKey, TValue> version(PersistentAvlNode<TKey, TValue> newRoot, int newSize)
+  {
+    if (newRoot == root)
+      return this;
+
+    return new PersistentAvlHashtable<TKey, TValue>(newRoot, newSize, genericTypeParameterKey, genericTypeParameterValue);
+  }
+
+  /**
+   * Enumerates the key/value pairs of a persistent AVL tree in ascending order, using a stack of the nodes whose left subtrees are being
+   * visited, as the nodes do not reference their parents.
+   */
+  private abstract static class AscendingOrderIterator<TKey extends Comparable<TKey>, TValue, T>
+      implements Iterator<T>
+  {
+    private final Deque<PersistentAvlNode<TKey, TValue>> stack = new ArrayDeque<PersistentAvlNode<TKey, TValue>>();
+
+    AscendingOrderIterator(PersistentAvlNode<TKey, TValue> root)
+    {
+      pushLeft(root);
+    }
+
+    /**
+     * Returns the element to return for a key/value pair
+     */
+    protected abstract T select(KeyValuePair<TKey, TValue> item);
+
+    @Override
+    public boolean hasNext()
+    {
+      return !stack.isEmpty();
+    }
+
+    @Override
+    public T next()
+    {
+      if (stack.isEmpty())
+        throw new NoSuchElementException("There is no next element.");
+
+      PersistentAvlNode<TKey, TValue> node = stack.pop();
+      pushLeft(node.right);
+      return select(node.item);
+    }
+
+    /**
+     * @throws UnsupportedOperationException The remove operation is not supported.
+     */
+    @Override
+    @Deprecated
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    private void pushLeft(PersistentAvlNode<TKey, TValue> node)
+    {
+      while (node != null)
+      {
+        stack.push(node);
+        node = node.left;
+      }
+    }
+  }
+}
@@ -0,0 +1,185 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.avl;
+
+import lombok.val;
+import propel.core.collections.KeyValuePair;
+
+/**
+ * An immutable node of a persistent AVL tree. Updates create new nodes along the path from the root to the updated node, sharing all other
+ * subtrees with the previous version of the tree.
+ */
+final class PersistentAvlNode<TKey extends Comparable<TKey>, TValue>
+{
+  /**
+   * The key/value pair contained in this node
+   */
+  final KeyValuePair<TKey, TValue> item;
+  /**
+   * The left subtree, or null
+   */
+  final PersistentAvlNode<TKey, TValue> left;
+  /**
+   * The right subtree, or null
+   */
+  final PersistentAvlNode<TKey, TValue> right;
+  /**
+   * The height of the subtree rooted at this node, 1 for a leaf
+   */
+  final int height;
+
+  /**
+   * Initializes a node with its contents and subtrees, which must be balanced
+   */
+  PersistentAvlNode(final KeyValuePair<TKey, TValue> item, final PersistentAvlNode<TKey, TValue> left,
+                    final PersistentAvlNode<TKey, TValue> right)
+  {
+    this.item = item;
+    this.left = left;
+    this.right = right;
+    this.height = Math.max(height(left), height(right)) + 1;
+  }
+
+  /**
+   * Returns the node with the given key in a tree, or null if there is none
+   */
+  static <TKey extends Comparable<TKey>, TValue> PersistentAvlNode<TKey, TValue>
+      find(PersistentAvlNode<TKey, TValue> node, final TKey key)
+  {
+    while (node != null)
+    {
+      int c = key.compareTo(node.item.getKey());
+
+      if (c < 0)
+        node = node.left;
+      else if (c > 0)
+        node = node.right;
+      else
+        return node;
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns a tree with the given key/value pair added. If the key exists, its value is replaced if replace is true, otherwise the same
+   * tree is returned. If the key does not exist and add is false, the same tree is returned.
+   */
+  static <TKey extends Comparable<TKey>, TValue> PersistentAvlNode<TKey, TValue>
+      put(final PersistentAvlNode<TKey, TValue> node, final KeyValuePair<TKey, TValue> item, final boolean add, final boolean replace)
+  {
+    if (node == null)
+      return add ? new PersistentAvlNode<TKey, TValue>(item, null, null) : null;
+
+    int c = item.getKey().compareTo(node.item.getKey());
+    if (c < 0)
+    {
+      val left = put(node.left, item, add, replace);
+      return left == node.left ? node : balance(node.item, left, node.right);
+    } else if (c > 0)
+    {
+      val right = put(node.right, item, add, replace);
+      return right == node.right ? node : balance(node.item, node.left, right);
+    }
+
+    return replace ? new PersistentAvlNode<TKey, TValue>(item, node.left, node.right) : node;
+  }
+
+  /**
+   * Returns a tree with the given key removed, or the same tree if the key does not exist
+   */
+  static <TKey extends Comparable<TKey>, TValue> PersistentAvlNode<TKey, TValue>
+      remove(final PersistentAvlNode<TKey, TValue> node, final TKey key)
+  {
+    if (node == null)
+      return null;
+
+    int c = key.compareTo(node.item.getKey());
+    if (c < 0)
+    {
+      val left = remove(node.left, key);
+      return left == node.left ? node : balance(node.item, left, node.right);
+    } else if (c > 0)
+    {
+      val right = remove(node.right, key);
+      return right == node.right ? node : balance(node.item, node.left, right);
+    }
+
+    if (node.left == null)
+      return node.right;
+    if (node.right == null)
+      return node.left;
+
+    // replace with the in-order successor
+    PersistentAvlNode<TKey, TValue> successor = node.right;
+    while (successor.left != null)
+      successor = successor.left;
+
+    return balance(successor.item, node.left, removeFirst(node.right));
+  }
+
+  /**
+   * Returns a tree with its smallest key removed
+   */
+  private static <TKey extends Comparable<TKey>, TValue> PersistentAvlNode<TKey, TValue>
+      removeFirst(final PersistentAvlNode<TKey, TValue> node)
+  {
+    if (node.left == null)
+      return node.right;
+
+    return balance(node.item, removeFirst(node.left), node.right);
+  }
+
+  /**
+   * Creates a node from a key/value pair and two subtrees whose heights differ by at most two, rotating as necessary to balance it
+   */
+  private static <TKey extends Comparable<TKey>, TValue> PersistentAvlNode<TKey, TValue>
+      balance(final KeyValuePair<TKey, TValue> item, final PersistentAvlNode<TKey, TValue> left,
+              final PersistentAvlNode<TKey, TValue> right)
+  {
+    int difference = height(left) - height(right);
+
+    if (difference > 1)
+    {
+      if (height(left.left) >= height(left.right))
+        return node(left.item, left.left, node(item, left.right, right));
+
+      return node(left.right.item, node(left.item, left.left, left.right.left), node(item, left.right.right, right));
+    } else if (difference < -1)
+    {
+      if (height(right.right) >= height(right.left))
+        return node(right.item, node(item, left, right.left), right.right);
+
+      return node(right.left.item, node(item, left, right.left.left), node(right.item, right.left.right, right.right));
+    }
+
+    return node(item, left, right);
+  }
+
+  private static <TKey extends Comparable<TKey>, TValue> PersistentAvlNode<TKey, TValue>
+      node(final KeyValuePair<TKey, TValue> item, final PersistentAvlNode<TKey, TValue> left, final PersistentAvlNode<TKey, TValue> right)
+  {
+    return new PersistentAvlNode<TKey, TValue>(item, left, right);
+  }
+
+  private static int height(final PersistentAvlNode<?, ?> node)
+  {
+    return node == null ? 0 : node.height;
+  }
+}
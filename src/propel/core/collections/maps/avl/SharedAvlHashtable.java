@@ -18,6 +18,7 @@
 // /////////////////////////////////////////////////////////
 package propel.core.collections.maps.avl;
 
+import propel.core.collections.BatchedIterator;
 import propel.core.collections.KeyValuePair;
 import propel.core.collections.ReifiedIterable;
 import propel.core.collections.lists.ReifiedArrayList;
@@ -342,6 +343,41 @@ public class SharedAvlHashtable<TKey extends Comparable<TKey>, TValue>
     }
   }
 
+  /**
+   * {@inheritDoc} Each batch is located by key, which is an O(log2(n)) operation.
+   */
+  @Override
+  public Iterator<KeyValuePair<TKey, TValue>> weaklyConsistentIterator()
+  {
+    return new BatchedIterator<KeyValuePair<TKey, TValue>>() {
+      // the key of the last pair returned, or null at the start
+      private TKey last;
+
+      @Override
+      protected List<KeyValuePair<TKey, TValue>> nextBatch(int count)
+      {
+        List<KeyValuePair<TKey, TValue>> result = new ArrayList<KeyValuePair<TKey, TValue>>(count);
+
+        lock();
+        try
+        {
+          Iterator<KeyValuePair<TKey, TValue>> iterator = last == null ? hashtable.iterator() : hashtable.iteratorAfter(last);
+          while (iterator.hasNext() && result.size() < count)
+            result.add(iterator.next());
+        }
+        finally
+        {
+          unlock();
+        }
+
+        if (result.size() > 0)
+          last = result.get(result.size() - 1).getKey();
+
+        return result;
+      }
+    };
+  }
+
   /**
    * Removes a value by its key. Returns true if successfully done, false if no such key. This is an O(log2(n)) operation.
    * 
@@ -0,0 +1,487 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.avl;
+
+import propel.core.collections.KeyValuePair;
+import propel.core.collections.ReifiedIterable;
+import propel.core.collections.maps.ISharedHashtable;
+import propel.core.collections.maps.ReifiedMap;
+import propel.core.utils.Linq;
+import propel.core.utils.SuperTypeToken;
+import propel.core.utils.SuperTypeTokenException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A type-aware thread-safe hashtable that publishes versions of a PersistentAvlHashtable through an atomic reference. Readers work on the
+ * current version, so they never block and always see a consistent hashtable, and snapshot() is an O(1) operation. Writers are serialised
+ * by the lock and publish a new version per operation, or one per bulk operation, which bulk operations therefore apply atomically. This
+ * suits hashtables that are read far more often than they are updated. This map does not allow null keys to be inserted.
+ * 
+ * Instantiate using e.g.: new SharedPersistentAvlHashtable&lt;String, Object&gt;(){}; -OR- new SharedPersistentAvlHashtable&lt;String,
+ * Object&gt;(String.class, Object.class);
+ */
+public class SharedPersistentAvlHashtable<TKey extends Comparable<TKey>, TValue>
+    implements ISharedHashtable<TKey, TValue>
+{
+  private final AtomicReference<PersistentAvlHashtable<TKey, TValue>> current;
+  private final ReentrantLock reEntrantLock;
+
+  /**
+   * Default constructor
+   * 
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   */
+  public SharedPersistentAvlHashtable()
+  {
+    Class<?> keyClass = SuperTypeToken.getClazz(this.getClass(), 0);
+    Class<?> valueClass = SuperTypeToken.getClazz(this.getClass(), 1);
+
+    current = new AtomicReference<PersistentAvlHashtable<TKey, TValue>>(new PersistentAvlHashtable<TKey, TValue>(keyClass, valueClass));
+    reEntrantLock = new ReentrantLock();
+  }
+
+  /**
+   * Constructor for initializing with the key/value generic type parameters
+   * 
+   * @throws NullPointerException When a generic type parameter is null.
+   */
+  public SharedPersistentAvlHashtable(Class<?> genericTypeParameterKey, Class<?> genericTypeParameterValue)
+  {
+    this(new PersistentAvlHashtable<TKey, TValue>(genericTypeParameterKey, genericTypeParameterValue));
+  }
+
+  /**
+   * Constructor initializes with another reified map
+   * 
+   * @throws NullPointerException When the argument is null, or a key in the map provided is null.
+   */
+  public SharedPersistentAvlHashtable(ReifiedMap<TKey, TValue> map)
+  {
+    this(PersistentAvlHashtable.from(map));
+  }
+
+  /**
+   * Constructor initializes from another map
+   * 
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   * @throws NullPointerException When the argument is null, or a key in the map provided is null.
+   */
+  public SharedPersistentAvlHashtable(Map<? extends TKey, ? extends TValue> map)
+  {
+    this();
+    current.set(PersistentAvlHashtable.<TKey, TValue>from(map, getGenericTypeParameterKey(), getGenericTypeParameterValue()));
+  }
+
+  /**
+   * Constructor initializes from another map and the key/value generic type parameters
+   * 
+   * @throws NullPointerException When an argument is null, or a key in the map provided is null.
+   */
+  public SharedPersistentAvlHashtable(Map<? extends TKey, ? extends TValue> map, Class<?> genericTypeParameterKey,
+                                      Class<?> genericTypeParameterValue)
+  {
+    this(PersistentAvlHashtable.<TKey, TValue>from(map, genericTypeParameterKey, genericTypeParameterValue));
+  }
+
+  /**
+   * Constructor initializes with a version of a persistent hashtable
+   * 
+   * @throws NullPointerException When the argument is null.
+   */
+  public SharedPersistentAvlHashtable(PersistentAvlHashtable<TKey, TValue> hashtable)
+  {
+    if (hashtable == null)
+      throw new NullPointerException("hashtable");
+
+    current = new AtomicReference<PersistentAvlHashtable<TKey, TValue>>(hashtable);
+    reEntrantLock = new ReentrantLock();
+  }
+
+  /**
+   * Returns the current version of the hashtable, which is not affected by subsequent updates. This is an O(1) operation.
+   */
+  public PersistentAvlHashtable<TKey, TValue> snapshot()
+  {
+    return current.get();
+  }
+
+  /**
+   * Adds a new key/value pair. Returns true if successful, false if another object with same key exists. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  @Override
+  public boolean add(TKey key, TValue value)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    lock();
+    try
+    {
+      return publish(current.get().add(key, value));
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * Bulk adds key/value pairs, publishing them at once. Returns true for elements that were successfully added, false for those that were
+   * not. If a key is null, no pairs are added. This is an O(mlog2(n)) operation where m is the provided element count, n is the
+   * hashtables's element Count.
+   * 
+   * @throws NullPointerException When the keys or values argument is null, or a key is null.
+   * @throws IllegalArgumentException When the key count is not equal to the value count in the provided sequences.
+   */
+  @Override
+  public Iterable<Boolean> addRange(Iterable<? extends TKey> keys, Iterable<? extends TValue> values)
+  {
+    lock();
+    try
+    {
+      List<Boolean> result = new ArrayList<Boolean>(64);
+      publish(addAll(current.get(), keys, values, result));
+      return result;
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * Removes all keys and values. This is an O(1) operation.
+   */
+  @Override
+  public void clear()
+  {
+    lock();
+    try
+    {
+      publish(current.get().clear());
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * Returns true if the key exists. This is an O(log2(n)) operation that does not block.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  @Override
+  public boolean contains(TKey key)
+  {
+    return current.get().containsKey(key);
+  }
+
+  /**
+   * Returns the value of a key, if found. Otherwise a null value is returned. This is an O(log2(n)) operation that does not block.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  @Override
+  public TValue get(TKey key)
+  {
+    return current.get().get(key, null);
+  }
+
+  /**
+   * Returns the value of a key, if found. Otherwise the specified nullValue is returned. This is an O(log2(n)) operation that does not
+   * block.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  @Override
+  public TValue get(TKey key, TValue nullValue)
+  {
+    return current.get().get(key, nullValue);
+  }
+
+  /**
+   * Returns the keys of the current version, in ascending order. This is an O(1) operation, as versions are immutable and need not be
+   * copied.
+   */
+  @Override
+  public ReifiedIterable<TKey> getKeys()
+  {
+    return current.get().getKeys();
+  }
+
+  /**
+   * Returns the values of the current version, in ascending key order. This is an O(1) operation, as versions are immutable and need not
+   * be copied.
+   */
+  @Override
+  public ReifiedIterable<TValue> getValues()
+  {
+    return current.get().getValues();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<?> getGenericTypeParameterKey()
+  {
+    return current.get().getGenericTypeParameterKey();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<?> getGenericTypeParameterValue()
+  {
+    return current.get().getGenericTypeParameterValue();
+  }
+
+  /**
+   * Returns an iterator of the key/value pairs of the current version, in ascending key order. This is an O(1) operation, as versions are
+   * immutable and need not be copied.
+   */
+  @Override
+  public Iterator<KeyValuePair<TKey, TValue>> iterator()
+  {
+    return current.get().iterator();
+  }
+
+  /**
+   * {@inheritDoc} This iterates the current version, so it is also consistent.
+   */
+  @Override
+  public Iterator<KeyValuePair<TKey, TValue>> weaklyConsistentIterator()
+  {
+    return current.get().iterator();
+  }
+
+  /**
+   * Removes a value by its key. Returns true if successfully done, false if no such key. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  @Override
+  public boolean remove(TKey key)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    lock();
+    try
+    {
+      return publish(current.get().remove(key));
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * If the key is contained, the key/value pair is removed and the value returned. Otherwise the specified nullValue (E.g. null) is
+   * returned. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  @Override
+  public TValue removeAndGet(TKey key, TValue nullValue)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    lock();
+    try
+    {
+      PersistentAvlHashtable<TKey, TValue> hashtable = current.get();
+      TValue result = hashtable.get(key, nullValue);
+      return publish(hashtable.remove(key)) ? result : nullValue;
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * Removes a number of elements by key, publishing the removals at once. Returns true for those successfully removed, false for those
+   * that there was no such key. If a key is null, no elements are removed. This is an O(mlog2(n)) operation where m is the provided element
+   * count, n is the hashtables's element Count.
+   * 
+   * @throws NullPointerException When the keys argument is null, or a key is null.
+   */
+  @Override
+  public Iterable<Boolean> removeRange(Iterable<? extends TKey> keys)
+  {
+    if (keys == null)
+      throw new NullPointerException("keys");
+
+    List<Boolean> result = new ArrayList<Boolean>(64);
+
+    lock();
+    try
+    {
+      PersistentAvlHashtable<TKey, TValue> hashtable = current.get();
+      for (TKey key : keys)
+      {
+        PersistentAvlHashtable<TKey, TValue> next = hashtable.remove(key);
+        result.add(next != hashtable);
+        hashtable = next;
+      }
+
+      publish(hashtable);
+      return result;
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * Replaces a key's value, returning true if this was successful. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  @Override
+  public boolean replace(TKey key, TValue newValue)
+  {
+    if (key == null)
+      throw new NullPointerException("key");
+
+    lock();
+    try
+    {
+      return publish(current.get().replace(key, newValue));
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * Replaces all key/value pairs with the given ones, publishing them at once so that readers never see the hashtable partially populated.
+   * Returns true for elements that were successfully added, false for those that were not. If a key is null, the hashtable is not changed.
+   * This is an O(mlog2(m)) operation where m is the provided element count.
+   * 
+   * @throws NullPointerException When the keys or values argument is null, or a key is null.
+   * @throws IllegalArgumentException When the key count is not equal to the value count in the given collections.
+   */
+  @Override
+  public Iterable<Boolean> replaceAll(Iterable<? extends TKey> keys, Iterable<? extends TValue> values)
+  {
+    lock();
+    try
+    {
+      List<Boolean> result = new ArrayList<Boolean>(64);
+      publish(addAll(current.get().clear(), keys, values, result));
+      return result;
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * Returns the size of the hashtable. This is an O(1) operation.
+   */
+  @Override
+  public int size()
+  {
+    return current.get().size();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return Linq.toString(current.get());
+  }
+
+  /**
+   * Locks the collection against updates. Readers are not blocked.
+   */
+  @Override
+  public void lock()
+  {
+    reEntrantLock.lock();
+  }
+
+  /**
+   * Unlocks the collection.
+   * 
+   * @throws IllegalMonitorStateException When the current thread does not own the lock.
+   */
+  @Override
+  public void unlock()
+  {
+    reEntrantLock.unlock();
+  }
+
+  /**
+   * Publishes a new version, returning false if it is the current one i.e. nothing changed
+   */
+  private boolean publish(PersistentAvlHashtable<TKey, TValue> hashtable)
+  {
+    if (hashtable == current.get())
+      return false;
+
+    current.set(hashtable);
+    return true;
+  }
+
+  /**
+   * Adds key/value pairs to a version, recording whether each was added
+   */
+  private PersistentAvlHashtable<TKey, TValue> addAll(PersistentAvlHashtable<TKey, TValue> hashtable, Iterable<? extends TKey> keys,
+                                                      Iterable<? extends TValue> values, List<Boolean> result)
+  {
+    if (keys == null)
+      throw new NullPointerException("keys");
+    if (values == null)
+      throw new NullPointerException("values");
+
+    int keyCount = Linq.count(keys);
+    int valueCount = Linq.count(values);
+    if (keyCount != valueCount)
+      throw new IllegalArgumentException("keys=" + keyCount + " values=" + valueCount);
+
+    Iterator<? extends TValue> valueIterator = values.iterator();
+    for (TKey key : keys)
+    {
+      PersistentAvlHashtable<TKey, TValue> next = hashtable.add(key, valueIterator.next());
+      result.add(next != hashtable);
+      hashtable = next;
+    }
+
+    return hashtable;
+  }
+}
@@ -18,12 +18,10 @@
 // /////////////////////////////////////////////////////////
 package propel.core.collections.maps.combinational;
 
-import static propel.core.functional.projections.Tuples.kvpValueSelector;
 import propel.core.collections.KeyNotFoundException;
 import propel.core.collections.KeyValuePair;
 import propel.core.collections.maps.ReifiedMap;
 import propel.core.collections.maps.avl.AvlHashtable;
-import propel.core.functional.Functions.Function1;
 import propel.core.utils.Linq;
 import propel.core.utils.SuperTypeToken;
 import propel.core.utils.SuperTypeTokenException;
@@ -35,8 +33,9 @@ import lombok.Validate;
 import lombok.Validate.NotNull;
 
 /**
- * A type-aware AVL-tree-backed map holding values which are accessible by key as well as a list-style index. This map does not allow null
- * keys to be inserted.
+ * A type-aware AVL-tree-backed map holding values which are accessible by key as well as a list-style index, which is the position of the
+ * key in ascending key order. The nodes of the tree hold the sizes of their sub-trees, so that both kinds of access are O(log2(n)). This
+ * map does not allow null keys to be inserted.
  * 
  * Instantiate using e.g.: new AvlTreeList&lt;String, Object&gt;(){}; -OR- new AvlTreeList&lt;String, Object&gt;(String.class,
  * Object.class);
@@ -44,13 +43,8 @@ import lombok.Validate.NotNull;
 public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
     implements IListMap<TKey, TValue>
 {
-  // holds key->value
+  // holds key->value, also allows int->value access
   private final AvlHashtable<TKey, TValue> hashtable;
-  // holds values, to allow int->value access
-  private final List<KeyValuePair<TKey, TValue>> list;
-
-  @SuppressWarnings("rawtypes")
-  private static Function1 valueSelector = kvpValueSelector();
 
   /**
    * Default constructor
@@ -60,7 +54,6 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
   public AvlTreeList()
   {
     hashtable = new AvlHashtable<TKey, TValue>(SuperTypeToken.getClazz(this.getClass(), 0), SuperTypeToken.getClazz(this.getClass(), 1));
-    list = new ArrayList<KeyValuePair<TKey, TValue>>();
   }
 
   /**
@@ -71,7 +64,6 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
   public AvlTreeList(Class<?> genericTypeParameterKey, Class<?> genericTypeParameterValue)
   {
     hashtable = new AvlHashtable<TKey, TValue>(genericTypeParameterKey, genericTypeParameterValue);
-    list = new ArrayList<KeyValuePair<TKey, TValue>>();
   }
 
   /**
@@ -83,11 +75,9 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
   public AvlTreeList(@NotNull final ReifiedMap<TKey, TValue> map)
   {
     hashtable = new AvlHashtable<TKey, TValue>(map.getGenericTypeParameterKey(), map.getGenericTypeParameterValue());
-    list = new ArrayList<KeyValuePair<TKey, TValue>>();
 
     for (KeyValuePair<TKey, TValue> entry : map)
-      if (hashtable.add(entry.getKey(), entry.getValue()))
-        list.add(entry);
+      hashtable.add(entry.getKey(), entry.getValue());
   }
 
   /**
@@ -100,15 +90,9 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
   public AvlTreeList(@NotNull final Map<? extends TKey, ? extends TValue> map)
   {
     hashtable = new AvlHashtable<TKey, TValue>(SuperTypeToken.getClazz(this.getClass(), 0), SuperTypeToken.getClazz(this.getClass(), 1));
-    list = new ArrayList<KeyValuePair<TKey, TValue>>();
 
     for (Map.Entry<? extends TKey, ? extends TValue> entry : map.entrySet())
-    {
-      TKey key = entry.getKey();
-      TValue value = entry.getValue();
-      if (hashtable.add(key, value))
-        list.add(new KeyValuePair<TKey, TValue>(key, value));
-    }
+      hashtable.add(entry.getKey(), entry.getValue());
   }
 
   /**
@@ -126,15 +110,9 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
       throw new NullPointerException("genericTypeParameterValue");
 
     hashtable = new AvlHashtable<TKey, TValue>(genericTypeParameterKey, genericTypeParameterValue);
-    list = new ArrayList<KeyValuePair<TKey, TValue>>();
 
     for (Map.Entry<? extends TKey, ? extends TValue> entry : map.entrySet())
-    {
-      TKey key = entry.getKey();
-      TValue value = entry.getValue();
-      if (hashtable.add(key, value))
-        list.add(new KeyValuePair<TKey, TValue>(key, value));
-    }
+      hashtable.add(entry.getKey(), entry.getValue());
   }
 
   /**
@@ -148,13 +126,7 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
   @Validate
   public boolean add(@NotNull final TKey key, TValue value)
   {
-    if (hashtable.add(key, value))
-    {
-      list.add(new KeyValuePair<TKey, TValue>(key, value));
-      return true;
-    }
-
-    return false;
+    return hashtable.add(key, value);
   }
 
   /**
@@ -177,7 +149,6 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
   @Override
   public void clear()
   {
-    list.clear();
     hashtable.clear();
   }
 
@@ -210,17 +181,33 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
   }
 
   /**
-   * Returns the key's value if the position exists. This is an O(1) operation.
+   * Returns the key's value if the position exists. This is an O(log2(n)) operation.
    * 
    * @throws IndexOutOfBoundsException The index provided was out of range.
    */
   @Override
   public TValue getAt(int index)
   {
-    if (index < 0 || index >= list.size())
-      throw new IndexOutOfBoundsException("index=" + index + " size=" + list.size());
+    return hashtable.getAt(index).getValue();
+  }
 
-    return list.get(index).getValue();
+  /**
+   * Returns the key/value pairs from the fromIndex position, inclusive, to the toIndex position, exclusive, in ascending key order. This is
+   * an O(log2(n) + k) operation, where k is the number of key/value pairs returned.
+   * 
+   * @throws IndexOutOfBoundsException An index provided was out of range.
+   */
+  public List<KeyValuePair<TKey, TValue>> getRange(int fromIndex, int toIndex)
+  {
+    if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex)
+      throw new IndexOutOfBoundsException("fromIndex=" + fromIndex + " toIndex=" + toIndex + " size=" + size());
+
+    List<KeyValuePair<TKey, TValue>> result = new ArrayList<KeyValuePair<TKey, TValue>>(toIndex - fromIndex);
+    Iterator<KeyValuePair<TKey, TValue>> iterator = hashtable.iteratorAt(fromIndex);
+    for (int i = fromIndex; i < toIndex; i++)
+      result.add(iterator.next());
+
+    return result;
   }
 
   /**
@@ -251,18 +238,17 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
   }
 
   /**
-   * Returns all values in the order they were input. This is an O(n) operation.
+   * Returns all values in ascending key order. This is an O(1) operation.
    */
   @Override
-  @SuppressWarnings("unchecked")
   public Iterable<TValue> getValues()
   {
-    return Linq.select(list, (Function1<KeyValuePair<TKey, TValue>, TValue>) valueSelector);
+    return hashtable.getValues();
   }
 
   /**
    * Returns the index of the given key, if it is contained in the collection. Otherwise returns -1 as it is not contained in the
-   * collection. This is an O(n) operation.
+   * collection. This is an O(log2(n)) operation.
    * 
    * @throws NullPointerException If the key is null
    */
@@ -270,11 +256,7 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
   @Validate
   public int indexOf(@NotNull final TKey key)
   {
-    if (!hashtable.containsKey(key))
-      return -1;
-
-    TValue value = hashtable.get(key);
-    return list.indexOf(new KeyValuePair<TKey, TValue>(key, value));
+    return hashtable.indexOf(key);
   }
 
   /**
@@ -287,7 +269,7 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
   }
 
   /**
-   * Removes an item from the collection. Returns true if item was found and removed. This is an O(n) operation.
+   * Removes an item from the collection. Returns true if item was found and removed. This is an O(log2(n)) operation.
    * 
    * @throws NullPointerException If the key is null
    */
@@ -295,44 +277,22 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
   @Validate
   public boolean remove(@NotNull final TKey key)
   {
-    if (!hashtable.containsKey(key))
-      return false;
-
-    if (hashtable.remove(key))
-    {
-      // find key in list
-      int index = 0;
-      for (int i = 0; i < list.size(); i++)
-        if (list.get(i).getKey().equals(key))
-        {
-          index = i;
-          break;
-        }
-      list.remove(index);
-      return true;
-    }
-
-    return false;
+    return hashtable.remove(key);
   }
 
   /**
-   * Removes an item from the collection. Returns true if item was found and removed. This is an O(n) operation.
+   * Removes an item from the collection. This is an O(log2(n)) operation.
    * 
    * @throws IndexOutOfBoundsException If the index is out of range
    */
   @Override
   public void removeAt(int index)
   {
-    if (index < 0 || index >= list.size())
-      throw new IndexOutOfBoundsException("index=" + index + " size=" + size());
-
-    KeyValuePair<TKey, TValue> kvp = list.get(index);
-    if (hashtable.remove(kvp.getKey()))
-      list.remove(index);
+    hashtable.removeAt(index);
   }
 
   /**
-   * Replaces a key's value with the specified new value. Returns true if the key was found and replaced. This is an O(n) operation.
+   * Replaces a key's value with the specified new value. Returns true if the key was found and replaced. This is an O(log2(n)) operation.
    * 
    * @throws NullPointerException If the key is null.
    */
@@ -340,22 +300,7 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
   @Validate
   public boolean replace(@NotNull final TKey key, TValue newValue)
   {
-    TValue value;
-    try
-    {
-      value = hashtable.get(key);
-    }
-    catch(KeyNotFoundException e)
-    {
-      return false;
-    }
-
-    int index = list.indexOf(new KeyValuePair<TKey, TValue>(key, value));
-    list.set(index, new KeyValuePair<TKey, TValue>(key, newValue));
-
-    hashtable.replace(key, newValue);
-
-    return false;
+    return hashtable.replace(key, newValue);
   }
 
   /**
@@ -366,13 +311,7 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
   @Override
   public void replaceAt(int index, TValue newValue)
   {
-    if (index < 0 || index >= list.size())
-      throw new IndexOutOfBoundsException("index=" + index + " size=" + list.size());
-
-    KeyValuePair<TKey, TValue> kvp = list.get(index);
-    list.set(index, new KeyValuePair<TKey, TValue>(kvp.getKey(), newValue));
-
-    hashtable.replace(kvp.getKey(), newValue);
+    hashtable.replaceAt(index, newValue);
   }
 
   /**
@@ -381,7 +320,7 @@ public class AvlTreeList<TKey extends Comparable<TKey>, TValue>
   @Override
   public int size()
   {
-    return list.size();
+    return hashtable.size();
   }
 
   /**
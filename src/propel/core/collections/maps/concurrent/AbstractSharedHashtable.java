@@ -0,0 +1,438 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.concurrent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.Validate;
+import lombok.Validate.NotNull;
+import lombok.val;
+import propel.core.collections.KeyValuePair;
+import propel.core.collections.ReifiedIterable;
+import propel.core.collections.lists.ReifiedArrayList;
+import propel.core.collections.maps.ISharedHashtable;
+import propel.core.collections.maps.ReifiedMap;
+import propel.core.utils.Linq;
+import propel.core.utils.SuperTypeToken;
+import propel.core.utils.SuperTypeTokenException;
+
+/**
+ * Base of the ISharedHashtable implementations that are backed by a ConcurrentMap. Single-key operations go straight to the map, so they
+ * do not block each other and writes only contend with writes to nearby keys. As the map does not allow null values, these are stored as a
+ * sentinel.
+ * 
+ * Single-key operations take no lock. Bulk operations, copies and callers of lock() share one lock, so holding lock() excludes the bulk
+ * operations and copies of other threads, but unlike SharedAvlHashtable it does not exclude their single-key operations.
+ */
+@SuppressWarnings("unchecked")
+abstract class AbstractSharedHashtable<TKey extends Comparable<TKey>, TValue>
+    implements ISharedHashtable<TKey, TValue>
+{
+  private static final Object NULL_VALUE = new Object();
+
+  protected final ConcurrentMap<TKey, Object> map;
+  private final Class<?> keyType;
+  private final Class<?> valueType;
+  /**
+   * Taken by lock(), the bulk operations and the copies
+   */
+  private final ReentrantLock bulkLock;
+
+  /**
+   * Initializes with the backing map, resolving the key/value generic type parameters from the class's type arguments
+   * 
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   */
+  protected AbstractSharedHashtable(final ConcurrentMap<TKey, Object> map)
+  {
+    this.map = map;
+    keyType = SuperTypeToken.getClazz(this.getClass(), 0);
+    valueType = SuperTypeToken.getClazz(this.getClass(), 1);
+    bulkLock = new ReentrantLock();
+  }
+
+  /**
+   * Initializes with the backing map and the key/value generic type parameters
+   * 
+   * @throws NullPointerException When a generic type parameter is null.
+   */
+  @Validate
+  protected AbstractSharedHashtable(final ConcurrentMap<TKey, Object> map, @NotNull final Class<?> genericTypeParameterKey,
+                                    @NotNull final Class<?> genericTypeParameterValue)
+  {
+    this.map = map;
+    keyType = genericTypeParameterKey;
+    valueType = genericTypeParameterValue;
+    bulkLock = new ReentrantLock();
+  }
+
+  /**
+   * Adds the key/value pairs of a reified map, used by constructors.
+   * 
+   * @throws NullPointerException When a key is null.
+   */
+  protected void addAll(final ReifiedMap<TKey, TValue> values)
+  {
+    for (KeyValuePair<TKey, TValue> kvp : values)
+      add(kvp.getKey(), kvp.getValue());
+  }
+
+  /**
+   * Adds the key/value pairs of a map, used by constructors.
+   * 
+   * @throws NullPointerException When a key is null.
+   */
+  protected void addAll(final Map<? extends TKey, ? extends TValue> values)
+  {
+    for (Map.Entry<? extends TKey, ? extends TValue> entry : values.entrySet())
+      add(entry.getKey(), entry.getValue());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Validate
+  public boolean add(@NotNull final TKey key, final TValue value)
+  {
+    return map.putIfAbsent(key, mask(value)) == null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Validate
+  public Iterable<Boolean> addRange(@NotNull final Iterable<? extends TKey> keys, @NotNull final Iterable<? extends TValue> values)
+  {
+    int keyCount = Linq.count(keys);
+    int valueCount = Linq.count(values);
+    if (keyCount != valueCount)
+      throw new IllegalArgumentException("keys=" + keyCount + " values=" + valueCount);
+
+    List<Boolean> result = new ArrayList<Boolean>(keyCount);
+
+    lock();
+    try
+    {
+      Iterator<? extends TKey> keyIterator = keys.iterator();
+      Iterator<? extends TValue> valueIterator = values.iterator();
+
+      while (keyIterator.hasNext())
+        result.add(add(keyIterator.next(), valueIterator.next()));
+
+      return result;
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void clear()
+  {
+    lock();
+    try
+    {
+      map.clear();
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Validate
+  public boolean contains(@NotNull final TKey key)
+  {
+    return map.containsKey(key);
+  }
+
+  /**
+   * Returns the value of a key, if found. Otherwise a null value is returned.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  @Override
+  public TValue get(final TKey key)
+  {
+    return get(key, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Validate
+  public TValue get(@NotNull final TKey key, final TValue nullValue)
+  {
+    Object value = map.get(key);
+    return value == null ? nullValue : unmask(value);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReifiedIterable<TKey> getKeys()
+  {
+    lock();
+    try
+    {
+      return new ReifiedArrayList<TKey>(map.keySet(), keyType);
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReifiedIterable<TValue> getValues()
+  {
+    lock();
+    try
+    {
+      val result = new ReifiedArrayList<TValue>(map.size(), valueType);
+      for (Object value : map.values())
+        result.add(unmask(value));
+
+      return result;
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<?> getGenericTypeParameterKey()
+  {
+    return keyType;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<?> getGenericTypeParameterValue()
+  {
+    return valueType;
+  }
+
+  /**
+   * Returns all key/value pairs in a list copy of key/value pairs. This is an O(n) operation.
+   */
+  @Override
+  public Iterator<KeyValuePair<TKey, TValue>> iterator()
+  {
+    lock();
+    try
+    {
+      List<KeyValuePair<TKey, TValue>> result = new ArrayList<KeyValuePair<TKey, TValue>>(map.size());
+      for (Map.Entry<TKey, Object> entry : map.entrySet())
+        result.add(new KeyValuePair<TKey, TValue>(entry.getKey(), unmask(entry.getValue())));
+
+      return result.iterator();
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc} This iterates the backing map directly, without taking the lock.
+   */
+  @Override
+  public Iterator<KeyValuePair<TKey, TValue>> weaklyConsistentIterator()
+  {
+    final Iterator<Map.Entry<TKey, Object>> iterator = map.entrySet().iterator();
+
+    return new Iterator<KeyValuePair<TKey, TValue>>() {
+      @Override
+      public boolean hasNext()
+      {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public KeyValuePair<TKey, TValue> next()
+      {
+        Map.Entry<TKey, Object> entry = iterator.next();
+        return new KeyValuePair<TKey, TValue>(entry.getKey(), AbstractSharedHashtable.<TValue>unmask(entry.getValue()));
+      }
+
+      @Override
+      public void remove()
+      {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Validate
+  public boolean remove(@NotNull final TKey key)
+  {
+    return map.remove(key) != null;
+  }
+
+  /**
+   * If the key is contained, the key/value pair is removed and the value returned. Otherwise null is returned.
+   * 
+   * @throws NullPointerException When the key is null.
+   */
+  public TValue removeAndGet(final TKey key)
+  {
+    return removeAndGet(key, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Validate
+  public TValue removeAndGet(@NotNull final TKey key, final TValue nullValue)
+  {
+    Object value = map.remove(key);
+    return value == null ? nullValue : unmask(value);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Validate
+  public Iterable<Boolean> removeRange(@NotNull final Iterable<? extends TKey> keys)
+  {
+    List<Boolean> result = new ArrayList<Boolean>(64);
+
+    lock();
+    try
+    {
+      for (TKey key : keys)
+        result.add(remove(key));
+
+      return result;
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  @Validate
+  public boolean replace(@NotNull final TKey key, final TValue newValue)
+  {
+    return map.replace(key, mask(newValue)) != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Iterable<Boolean> replaceAll(final Iterable<? extends TKey> keys, final Iterable<? extends TValue> values)
+  {
+    lock();
+    try
+    {
+      clear();
+      return addRange(keys, values);
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int size()
+  {
+    return map.size();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return Linq.toString(this);
+  }
+
+  /**
+   * Locks the collection, blocking the bulk operations and copies of other threads until unlocked. Single-key operations do not take this
+   * lock and so are not blocked. The lock is re-entrant, and the thread holding it may call any other operation.
+   */
+  @Override
+  public void lock()
+  {
+    bulkLock.lock();
+  }
+
+  /**
+   * Unlocks the collection.
+   * 
+   * @throws IllegalMonitorStateException When the current thread does not own the lock.
+   */
+  @Override
+  public void unlock()
+  {
+    bulkLock.unlock();
+  }
+
+  private static Object mask(final Object value)
+  {
+    return value == null ? NULL_VALUE : value;
+  }
+
+  private static <T> T unmask(final Object value)
+  {
+    return value == NULL_VALUE ? null : (T) value;
+  }
+}
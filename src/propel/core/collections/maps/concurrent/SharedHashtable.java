@@ -0,0 +1,109 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.concurrent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentHashMap;
+import propel.core.collections.maps.ReifiedMap;
+import propel.core.utils.SuperTypeTokenException;
+
+/**
+ * A type-aware thread-safe hashtable backed by a ConcurrentHashMap. Reads take no lock and writes lock only the segment of the table they
+ * fall in, so unlike SharedAvlHashtable the table does not serialise its readers behind its writers, and lock() only excludes the bulk
+ * operations and copies of other threads. Keys are compared using their equals() and hashCode(), which must therefore be consistent with
+ * compareTo(), and are not kept in sorted order; use SharedSkipListHashtable where sorted keys are needed. This map does not allow null
+ * keys to be inserted. Get, add, remove and replace are O(1) operations.
+ * 
+ * Instantiate using e.g.: new SharedHashtable&lt;String, Object&gt;(){}; -OR- new SharedHashtable&lt;String, Object&gt;(String.class,
+ * Object.class);
+ */
+public class SharedHashtable<TKey extends Comparable<TKey>, TValue>
+    extends AbstractSharedHashtable<TKey, TValue>
+{
+  private static final int INITIAL_CAPACITY = 16;
+  private static final float LOAD_FACTOR = 0.75f;
+  /**
+   * The number of segments that can be written concurrently
+   */
+  private static final int CONCURRENCY_LEVEL = Math.max(16, Runtime.getRuntime().availableProcessors() * 2);
+
+  /**
+   * Default constructor
+   * 
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   */
+  public SharedHashtable()
+  {
+    super(newMap());
+  }
+
+  /**
+   * Constructor for initializing with the key/value generic type parameters
+   * 
+   * @throws NullPointerException When a generic type parameter is null.
+   */
+  public SharedHashtable(final Class<?> genericTypeParameterKey, final Class<?> genericTypeParameterValue)
+  {
+    super(newMap(), genericTypeParameterKey, genericTypeParameterValue);
+  }
+
+  /**
+   * Constructor initializes with another reified map
+   * 
+   * @throws NullPointerException When the argument is null, or a key in the map provided is null.
+   */
+  public SharedHashtable(final ReifiedMap<TKey, TValue> map)
+  {
+    super(newMap(), map.getGenericTypeParameterKey(), map.getGenericTypeParameterValue());
+    addAll(map);
+  }
+
+  /**
+   * Constructor initializes from another map
+   * 
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   * @throws NullPointerException When the argument is null, or a key in the map provided is null.
+   */
+  public SharedHashtable(final Map<? extends TKey, ? extends TValue> map)
+  {
+    super(newMap());
+    addAll(map);
+  }
+
+  /**
+   * Constructor initializes from another map and the key/value generic type parameters
+   * 
+   * @throws NullPointerException When an argument is null, or a key in the map provided is null.
+   */
+  public SharedHashtable(final Map<? extends TKey, ? extends TValue> map, final Class<?> genericTypeParameterKey,
+                         final Class<?> genericTypeParameterValue)
+  {
+    super(newMap(), genericTypeParameterKey, genericTypeParameterValue);
+    addAll(map);
+  }
+
+  /**
+   * Creates the backing map
+   */
+  private static <TKey, TValue> ConcurrentMap<TKey, TValue> newMap()
+  {
+    return new ConcurrentHashMap<TKey, TValue>(INITIAL_CAPACITY, LOAD_FACTOR, CONCURRENCY_LEVEL);
+  }
+}
@@ -0,0 +1,83 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.primitive;
+
+/**
+ * Interface of a hash table of primitive int -> V
+ */
+public interface IIntHashMap<V>
+{
+  /**
+   * Puts the given key in the map, returning any previously associated value of the given key
+   */
+  V put(int key, V value);
+
+  /**
+   * Removes the given key from the map, returning its associated value, or null if no such key exists
+   */
+  V remove(int key);
+
+  /**
+   * Returns true if the given key exists
+   */
+  boolean containsKey(int key);
+
+  /**
+   * Returns the key/value pair, if the given value exists, otherwise returns null
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  IntEntry<V> containsValue(V value);
+
+  /**
+   * Returns the set of key/value entries contained
+   */
+  IntEntry<V>[] entries();
+
+  /**
+   * Returns the value associated with a key, or null if no such key exists
+   */
+  V get(int key);
+
+  /**
+   * Returns true if the map is empty
+   */
+  boolean isEmpty();
+
+  /**
+   * Returns all values
+   */
+  V[] values();
+
+  /**
+   * Returns all keys
+   */
+  int[] keySet();
+
+  /**
+   * Returns the number of key/value pairs
+   */
+  int size();
+
+  /**
+   * Returns the map capacity
+   */
+  int capacity();
+
+}
@@ -28,6 +28,11 @@ public interface ILongHashMap<V>
    */
   V put(long key, V value);
 
+  /**
+   * Removes the given key from the map, returning its associated value, or null if no such key exists
+   */
+  V remove(long key);
+
   /**
    * Returns true if the given key exists
    */
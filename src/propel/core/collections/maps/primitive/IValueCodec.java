@@ -0,0 +1,51 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.primitive;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interface of a codec that writes values to, and reads them from, a fixed number of bytes of a buffer. Used by off-heap maps to hold
+ * values outside the Java heap. Codecs use absolute buffer positions only, so that they do not change the position of the buffer.
+ */
+public interface IValueCodec<V>
+{
+  /**
+   * Returns the number of bytes that each value occupies
+   */
+  int getSize();
+
+  /**
+   * Returns the class of the values
+   */
+  Class<?> getValueType();
+
+  /**
+   * Writes a value to the buffer, at the given offset
+   * 
+   * @throws NullPointerException An argument is null
+   * @throws IllegalArgumentException The value cannot be written in the number of bytes of the codec
+   */
+  void write(ByteBuffer buffer, int offset, V value);
+
+  /**
+   * Reads a value from the buffer, at the given offset
+   */
+  V read(ByteBuffer buffer, int offset);
+}
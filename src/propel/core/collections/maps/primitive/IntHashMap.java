@@ -0,0 +1,532 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.primitive;
+
+import java.util.NoSuchElementException;
+import lombok.Validate;
+import lombok.Validate.NotNull;
+import propel.core.collections.IntIterator;
+import propel.core.collections.lists.ReifiedArrayList;
+import propel.core.functional.PrimitiveActions.IntObjectAction;
+import propel.core.utils.SuperTypeToken;
+import propel.core.utils.SuperTypeTokenException;
+
+/**
+ * Implementation of an int -> V hash map with an emphasis on lookup speed and reduction of memory footprint. Keys and values are held in
+ * two parallel arrays, using open addressing with linear probing, so that no objects are allocated per entry and lookups scan adjacent
+ * slots rather than following references. The table doubles once the load factor is exceeded, and removals shift the following entries
+ * back rather than leaving tombstones, so lookups do not slow down as keys are removed. Get, put and remove do not allocate.
+ */
+@SuppressWarnings("unchecked")
+public class IntHashMap<V>
+    implements IIntHashMap<V>
+{
+  /**
+   * The maximum capacity, used if a higher value is implicitly specified by either of the constructors with arguments
+   */
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+  /**
+   * The ratio of entries to slots above which the table is doubled
+   */
+  private static final float LOAD_FACTOR = 0.75f;
+  /**
+   * The key marking a free slot. The value of this key is held outside the table.
+   */
+  private static final int FREE_KEY = 0;
+  /**
+   * Multiplier that spreads keys over the whole table, 2^32 divided by the golden ratio
+   */
+  private static final int GOLDEN_RATIO = 0x9E3779B9;
+  private final Class<?> genericTypeParameterValue;
+  private int[] keys;
+  private Object[] values;
+  private int shift;
+  private int threshold;
+  private boolean hasFreeKey;
+  private Object freeKeyValue;
+  private int size;
+
+  /**
+   * Constructs an empty map that holds up to the specified number of entries before it needs to grow
+   * 
+   * @throws NullPointerException An argument is null
+   * @throws IllegalArgumentException An argument is invalid
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   */
+  public IntHashMap(final int maxCapacity)
+  {
+    this.genericTypeParameterValue = SuperTypeToken.getClazz(getClass());
+    init(maxCapacity);
+  }
+
+  /**
+   * Constructs an empty map that holds up to the specified number of entries before it needs to grow
+   * 
+   * @throws NullPointerException An argument is null
+   * @throws IllegalArgumentException An argument is invalid
+   */
+  @Validate
+  public IntHashMap(final int maxCapacity, @NotNull final Class<?> genericTypeParameterValue)
+  {
+    this.genericTypeParameterValue = genericTypeParameterValue;
+    init(maxCapacity);
+  }
+
+  /**
+   * Initialisation moved here for re-use
+   */
+  private void init(final int maxCapacity)
+  {
+    if (maxCapacity < 0)
+      throw new IllegalArgumentException("maxCapacity=" + maxCapacity);
+
+    allocate(tableSize(maxCapacity));
+  }
+
+  /**
+   * Clears the contents. This is an O(n) operation
+   */
+  public void clear()
+  {
+    for (int i = 0; i < keys.length; i++)
+    {
+      keys[i] = FREE_KEY;
+      values[i] = null;
+    }
+
+    hasFreeKey = false;
+    freeKeyValue = null;
+    size = 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   * 
+   * @throws IllegalStateException The map holds the maximum number of entries
+   */
+  @Override
+  public V put(final int key, final V value)
+  {
+    if (key == FREE_KEY)
+    {
+      V old = (V) freeKeyValue;
+      if (!hasFreeKey)
+      {
+        hasFreeKey = true;
+        size++;
+      }
+
+      freeKeyValue = value;
+      return old;
+    }
+
+    int index = indexFor(key);
+    while (true)
+    {
+      int current = keys[index];
+      if (current == key)
+      {
+        // this does not increase the hash map size
+        V old = (V) values[index];
+        values[index] = value;
+        return old;
+      }
+
+      if (current == FREE_KEY)
+        break;
+
+      index = (index + 1) & (keys.length - 1);
+    }
+
+    // otherwise insert new, this increases the size
+    if (size >= threshold)
+    {
+      grow();
+      index = indexFor(key);
+      while (keys[index] != FREE_KEY)
+        index = (index + 1) & (keys.length - 1);
+    }
+
+    keys[index] = key;
+    values[index] = value;
+    size++;
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   */
+  @Override
+  public V remove(final int key)
+  {
+    if (key == FREE_KEY)
+    {
+      V old = (V) freeKeyValue;
+      if (hasFreeKey)
+      {
+        hasFreeKey = false;
+        freeKeyValue = null;
+        size--;
+      }
+
+      return old;
+    }
+
+    int index = find(key);
+    if (index < 0)
+      return null;
+
+    V old = (V) values[index];
+    shiftBack(index);
+    size--;
+    return old;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   */
+  @Override
+  public boolean containsKey(final int key)
+  {
+    if (key == FREE_KEY)
+      return hasFreeKey;
+
+    return find(key) >= 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(n) operation
+   */
+  @Override
+  @Validate
+  public IntEntry<V> containsValue(@NotNull final V value)
+  {
+    if (hasFreeKey && value.equals(freeKeyValue))
+      return new IntEntry<V>(FREE_KEY, (V) freeKeyValue);
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY && value.equals(values[i]))
+        return new IntEntry<V>(keys[i], (V) values[i]);
+
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(n) operation
+   */
+  @Override
+  public IntEntry<V>[] entries()
+  {
+    ReifiedArrayList<IntEntry<V>> result = new ReifiedArrayList<IntEntry<V>>(size, IntEntry.class);
+    if (hasFreeKey)
+      result.add(new IntEntry<V>(FREE_KEY, (V) freeKeyValue));
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY)
+        result.add(new IntEntry<V>(keys[i], (V) values[i]));
+
+    return result.toArray();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   */
+  @Override
+  public V get(final int key)
+  {
+    if (key == FREE_KEY)
+      return (V) freeKeyValue;
+
+    int index = find(key);
+    return index < 0 ? null : (V) values[index];
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   */
+  @Override
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(n) operation
+   */
+  @Override
+  public V[] values()
+  {
+    ReifiedArrayList<V> result = new ReifiedArrayList<V>(size, genericTypeParameterValue);
+    if (hasFreeKey)
+      result.add((V) freeKeyValue);
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY)
+        result.add((V) values[i]);
+
+    return result.toArray();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(n) operation
+   */
+  @Override
+  public int[] keySet()
+  {
+    int index = 0;
+    int[] result = new int[size];
+    if (hasFreeKey)
+      result[index++] = FREE_KEY;
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY)
+        result[index++] = keys[i];
+
+    return result;
+  }
+
+  /**
+   * Returns an iterator over the keys. The map must not be modified while iterating.
+   */
+  public IntIterator keyIterator()
+  {
+    return new IntIterator() {
+      private boolean freeKeyPending = hasFreeKey;
+      private int index = nextSlot(0);
+
+      @Override
+      public boolean hasNext()
+      {
+        return freeKeyPending || index < keys.length;
+      }
+
+      @Override
+      public int next()
+      {
+        if (freeKeyPending)
+        {
+          freeKeyPending = false;
+          return FREE_KEY;
+        }
+
+        if (index >= keys.length)
+          throw new NoSuchElementException();
+
+        int result = keys[index];
+        index = nextSlot(index + 1);
+        return result;
+      }
+    };
+  }
+
+  /**
+   * Calls the given action with each key and its value. The map must not be modified by the action. This is an O(n) operation
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public void forEach(@NotNull final IntObjectAction<? super V> action)
+  {
+    if (hasFreeKey)
+      action.apply(FREE_KEY, (V) freeKeyValue);
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY)
+        action.apply(keys[i], (V) values[i]);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   */
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   */
+  @Override
+  public int capacity()
+  {
+    return keys.length;
+  }
+
+  /**
+   * Resizes the hash map, so that it holds up to the given number of entries, or its current size if larger, before it needs to grow.
+   * 
+   * This is an O(n) operation, note that it more than doubles the space used for a short while
+   */
+  public void resize(int capacity)
+  {
+    if (capacity < 0)
+      throw new IllegalArgumentException("capacity=" + capacity);
+
+    rehash(tableSize(Math.max(capacity, size)));
+  }
+
+  /**
+   * Returns the number of slots needed to hold the given number of entries without exceeding the load factor
+   */
+  private static int tableSize(final int maxCapacity)
+  {
+    long required = (long) Math.ceil(maxCapacity / (double) LOAD_FACTOR);
+
+    // find a power of 2 >= required, must not be over the maximum
+    int capacity = 2;
+    while (capacity < required && capacity < MAXIMUM_CAPACITY)
+      capacity <<= 1;
+
+    return capacity;
+  }
+
+  /**
+   * Allocates an empty table with the given power of 2 number of slots
+   */
+  private void allocate(final int capacity)
+  {
+    keys = new int[capacity];
+    values = new Object[capacity];
+    shift = 32 - Integer.numberOfTrailingZeros(capacity);
+
+    // a full table must keep a free slot to end probes at
+    threshold = capacity == MAXIMUM_CAPACITY ? capacity - 1 : (int) (capacity * LOAD_FACTOR);
+  }
+
+  /**
+   * Doubles the table
+   * 
+   * @throws IllegalStateException The table cannot grow any further
+   */
+  private void grow()
+  {
+    if (keys.length >= MAXIMUM_CAPACITY)
+      throw new IllegalStateException("The map cannot hold more than " + threshold + " entries.");
+
+    rehash(keys.length << 1);
+  }
+
+  /**
+   * Moves all entries to a new table with the given number of slots
+   */
+  private void rehash(final int capacity)
+  {
+    int[] oldKeys = keys;
+    Object[] oldValues = values;
+    allocate(capacity);
+
+    for (int i = 0; i < oldKeys.length; i++)
+      if (oldKeys[i] != FREE_KEY)
+      {
+        int index = indexFor(oldKeys[i]);
+        while (keys[index] != FREE_KEY)
+          index = (index + 1) & (keys.length - 1);
+
+        keys[index] = oldKeys[i];
+        values[index] = oldValues[i];
+      }
+  }
+
+  /**
+   * Returns the slot of a key that is not the free key, or -1 if the key does not exist
+   */
+  private int find(final int key)
+  {
+    int index = indexFor(key);
+    while (true)
+    {
+      int current = keys[index];
+      if (current == key)
+        return index;
+      if (current == FREE_KEY)
+        return -1;
+
+      index = (index + 1) & (keys.length - 1);
+    }
+  }
+
+  /**
+   * Returns the first occupied slot at or after the given one, or the table length if there is none
+   */
+  private int nextSlot(int index)
+  {
+    while (index < keys.length && keys[index] == FREE_KEY)
+      index++;
+
+    return index;
+  }
+
+  /**
+   * Frees a slot, moving back the entries that follow it in its probe sequence, so that they remain reachable without tombstones
+   */
+  private void shiftBack(int gap)
+  {
+    int mask = keys.length - 1;
+    int index = gap;
+    while (true)
+    {
+      index = (index + 1) & mask;
+      int key = keys[index];
+      if (key == FREE_KEY)
+        break;
+
+      // an entry can fill the gap only if the gap lies between its home slot and its slot
+      if (((index - indexFor(key)) & mask) >= ((index - gap) & mask))
+      {
+        keys[gap] = key;
+        values[gap] = values[index];
+        gap = index;
+      }
+    }
+
+    keys[gap] = FREE_KEY;
+    values[gap] = null;
+  }
+
+  /**
+   * Returns the home slot of a key, taken from the high bits of its Fibonacci hash
+   */
+  private int indexFor(final int key)
+  {
+    return (key * GOLDEN_RATIO) >>> shift;
+  }
+}
@@ -0,0 +1,476 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.primitive;
+
+import java.util.NoSuchElementException;
+import lombok.Validate;
+import lombok.Validate.NotNull;
+import propel.core.collections.IntIterator;
+import propel.core.functional.PrimitiveActions.IntIntAction;
+
+/**
+ * Implementation of an int -> int hash map, which stores its keys and values unboxed in two parallel arrays, using open addressing with
+ * linear probing as LongHashMap does. As values are primitives, absent keys are signalled by a configurable no-value, which is 0 by
+ * default. Get, put and remove do not allocate.
+ */
+public class IntIntMap
+{
+  /**
+   * The maximum capacity, used if a higher value is implicitly specified by either of the constructors with arguments
+   */
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+  /**
+   * The ratio of entries to slots above which the table is doubled
+   */
+  private static final float LOAD_FACTOR = 0.75f;
+  /**
+   * The key marking a free slot. The value of this key is held outside the table.
+   */
+  private static final int FREE_KEY = 0;
+  /**
+   * Multiplier that spreads keys over the whole table, 2^32 divided by the golden ratio
+   */
+  private static final int GOLDEN_RATIO = 0x9E3779B9;
+  private final int noValue;
+  private int[] keys;
+  private int[] values;
+  private int shift;
+  private int threshold;
+  private boolean hasFreeKey;
+  private int freeKeyValue;
+  private int size;
+
+  /**
+   * Constructs an empty map that holds up to the specified number of entries before it needs to grow, returning 0 for absent keys
+   * 
+   * @throws IllegalArgumentException An argument is invalid
+   */
+  public IntIntMap(final int maxCapacity)
+  {
+    this(maxCapacity, 0);
+  }
+
+  /**
+   * Constructs an empty map that holds up to the specified number of entries before it needs to grow, returning the given no-value for
+   * absent keys
+   * 
+   * @throws IllegalArgumentException An argument is invalid
+   */
+  public IntIntMap(final int maxCapacity, final int noValue)
+  {
+    if (maxCapacity < 0)
+      throw new IllegalArgumentException("maxCapacity=" + maxCapacity);
+
+    this.noValue = noValue;
+    allocate(tableSize(maxCapacity));
+  }
+
+  /**
+   * Clears the contents. This is an O(n) operation
+   */
+  public void clear()
+  {
+    for (int i = 0; i < keys.length; i++)
+    {
+      keys[i] = FREE_KEY;
+      values[i] = 0;
+    }
+
+    hasFreeKey = false;
+    freeKeyValue = 0;
+    size = 0;
+  }
+
+  /**
+   * Puts the given key in the map, returning the previously associated value of the given key, or the no-value if it did not exist. This is
+   * an O(1) operation
+   * 
+   * @throws IllegalStateException The map holds the maximum number of entries
+   */
+  public int put(final int key, final int value)
+  {
+    if (key == FREE_KEY)
+    {
+      int old = hasFreeKey ? freeKeyValue : noValue;
+      if (!hasFreeKey)
+      {
+        hasFreeKey = true;
+        size++;
+      }
+
+      freeKeyValue = value;
+      return old;
+    }
+
+    int index = indexFor(key);
+    while (true)
+    {
+      int current = keys[index];
+      if (current == key)
+      {
+        // this does not increase the hash map size
+        int old = values[index];
+        values[index] = value;
+        return old;
+      }
+
+      if (current == FREE_KEY)
+        break;
+
+      index = (index + 1) & (keys.length - 1);
+    }
+
+    // otherwise insert new, this increases the size
+    if (size >= threshold)
+    {
+      grow();
+      index = indexFor(key);
+      while (keys[index] != FREE_KEY)
+        index = (index + 1) & (keys.length - 1);
+    }
+
+    keys[index] = key;
+    values[index] = value;
+    size++;
+    return noValue;
+  }
+
+  /**
+   * Adds the given amount to the value of a key, treating an absent key as having the no-value, and returns the resulting value. This is an
+   * O(1) operation
+   * 
+   * @throws IllegalStateException The map holds the maximum number of entries
+   */
+  public int addTo(final int key, final int amount)
+  {
+    if (key != FREE_KEY)
+    {
+      int index = find(key);
+      if (index >= 0)
+        return values[index] += amount;
+    }
+
+    int result = get(key) + amount;
+    put(key, result);
+    return result;
+  }
+
+  /**
+   * Removes the given key from the map, returning its associated value, or the no-value if it did not exist. This is an O(1) operation
+   */
+  public int remove(final int key)
+  {
+    if (key == FREE_KEY)
+    {
+      if (!hasFreeKey)
+        return noValue;
+
+      hasFreeKey = false;
+      size--;
+      return freeKeyValue;
+    }
+
+    int index = find(key);
+    if (index < 0)
+      return noValue;
+
+    int old = values[index];
+    shiftBack(index);
+    size--;
+    return old;
+  }
+
+  /**
+   * Returns true if the given key exists. This is an O(1) operation
+   */
+  public boolean containsKey(final int key)
+  {
+    if (key == FREE_KEY)
+      return hasFreeKey;
+
+    return find(key) >= 0;
+  }
+
+  /**
+   * Returns the value associated with a key, or the no-value if no such key exists. This is an O(1) operation
+   */
+  public int get(final int key)
+  {
+    if (key == FREE_KEY)
+      return hasFreeKey ? freeKeyValue : noValue;
+
+    int index = find(key);
+    return index < 0 ? noValue : values[index];
+  }
+
+  /**
+   * Returns the value that signals an absent key
+   */
+  public int getNoValue()
+  {
+    return noValue;
+  }
+
+  /**
+   * Returns true if the map is empty. This is an O(1) operation
+   */
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * Returns all keys. This is an O(n) operation
+   */
+  public int[] keySet()
+  {
+    int index = 0;
+    int[] result = new int[size];
+    if (hasFreeKey)
+      result[index++] = FREE_KEY;
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY)
+        result[index++] = keys[i];
+
+    return result;
+  }
+
+  /**
+   * Returns all values, in the same order as the keys returned by keySet(). This is an O(n) operation
+   */
+  public int[] values()
+  {
+    int index = 0;
+    int[] result = new int[size];
+    if (hasFreeKey)
+      result[index++] = freeKeyValue;
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY)
+        result[index++] = values[i];
+
+    return result;
+  }
+
+  /**
+   * Returns an iterator over the keys. The map must not be modified while iterating.
+   */
+  public IntIterator keyIterator()
+  {
+    return new IntIterator() {
+      private boolean freeKeyPending = hasFreeKey;
+      private int index = nextSlot(0);
+
+      @Override
+      public boolean hasNext()
+      {
+        return freeKeyPending || index < keys.length;
+      }
+
+      @Override
+      public int next()
+      {
+        if (freeKeyPending)
+        {
+          freeKeyPending = false;
+          return FREE_KEY;
+        }
+
+        if (index >= keys.length)
+          throw new NoSuchElementException();
+
+        int result = keys[index];
+        index = nextSlot(index + 1);
+        return result;
+      }
+    };
+  }
+
+  /**
+   * Calls the given action with each key and its value. The map must not be modified by the action. This is an O(n) operation
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public void forEach(@NotNull final IntIntAction action)
+  {
+    if (hasFreeKey)
+      action.apply(FREE_KEY, freeKeyValue);
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY)
+        action.apply(keys[i], values[i]);
+  }
+
+  /**
+   * Returns the number of key/value pairs. This is an O(1) operation
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Returns the number of slots of the table. This is an O(1) operation
+   */
+  public int capacity()
+  {
+    return keys.length;
+  }
+
+  /**
+   * Resizes the hash map, so that it holds up to the given number of entries, or its current size if larger, before it needs to grow.
+   * 
+   * This is an O(n) operation, note that it more than doubles the space used for a short while
+   */
+  public void resize(int capacity)
+  {
+    if (capacity < 0)
+      throw new IllegalArgumentException("capacity=" + capacity);
+
+    rehash(tableSize(Math.max(capacity, size)));
+  }
+
+  /**
+   * Returns the number of slots needed to hold the given number of entries without exceeding the load factor
+   */
+  private static int tableSize(final int maxCapacity)
+  {
+    long required = (long) Math.ceil(maxCapacity / (double) LOAD_FACTOR);
+
+    // find a power of 2 >= required, must not be over the maximum
+    int capacity = 2;
+    while (capacity < required && capacity < MAXIMUM_CAPACITY)
+      capacity <<= 1;
+
+    return capacity;
+  }
+
+  /**
+   * Allocates an empty table with the given power of 2 number of slots
+   */
+  private void allocate(final int capacity)
+  {
+    keys = new int[capacity];
+    values = new int[capacity];
+    shift = 32 - Integer.numberOfTrailingZeros(capacity);
+
+    // a full table must keep a free slot to end probes at
+    threshold = capacity == MAXIMUM_CAPACITY ? capacity - 1 : (int) (capacity * LOAD_FACTOR);
+  }
+
+  /**
+   * Doubles the table
+   * 
+   * @throws IllegalStateException The table cannot grow any further
+   */
+  private void grow()
+  {
+    if (keys.length >= MAXIMUM_CAPACITY)
+      throw new IllegalStateException("The map cannot hold more than " + threshold + " entries.");
+
+    rehash(keys.length << 1);
+  }
+
+  /**
+   * Moves all entries to a new table with the given number of slots
+   */
+  private void rehash(final int capacity)
+  {
+    int[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate(capacity);
+
+    for (int i = 0; i < oldKeys.length; i++)
+      if (oldKeys[i] != FREE_KEY)
+      {
+        int index = indexFor(oldKeys[i]);
+        while (keys[index] != FREE_KEY)
+          index = (index + 1) & (keys.length - 1);
+
+        keys[index] = oldKeys[i];
+        values[index] = oldValues[i];
+      }
+  }
+
+  /**
+   * Returns the slot of a key that is not the free key, or -1 if the key does not exist
+   */
+  private int find(final int key)
+  {
+    int index = indexFor(key);
+    while (true)
+    {
+      int current = keys[index];
+      if (current == key)
+        return index;
+      if (current == FREE_KEY)
+        return -1;
+
+      index = (index + 1) & (keys.length - 1);
+    }
+  }
+
+  /**
+   * Returns the first occupied slot at or after the given one, or the table length if there is none
+   */
+  private int nextSlot(int index)
+  {
+    while (index < keys.length && keys[index] == FREE_KEY)
+      index++;
+
+    return index;
+  }
+
+  /**
+   * Frees a slot, moving back the entries that follow it in its probe sequence, so that they remain reachable without tombstones
+   */
+  private void shiftBack(int gap)
+  {
+    int mask = keys.length - 1;
+    int index = gap;
+    while (true)
+    {
+      index = (index + 1) & mask;
+      int key = keys[index];
+      if (key == FREE_KEY)
+        break;
+
+      // an entry can fill the gap only if the gap lies between its home slot and its slot
+      if (((index - indexFor(key)) & mask) >= ((index - gap) & mask))
+      {
+        keys[gap] = key;
+        values[gap] = values[index];
+        gap = index;
+      }
+    }
+
+    keys[gap] = FREE_KEY;
+    values[gap] = 0;
+  }
+
+  /**
+   * Returns the home slot of a key, taken from the high bits of its Fibonacci hash
+   */
+  private int indexFor(final int key)
+  {
+    return (key * GOLDEN_RATIO) >>> shift;
+  }
+}
@@ -18,17 +18,22 @@
 // /////////////////////////////////////////////////////////
 package propel.core.collections.maps.primitive;
 
+import java.util.NoSuchElementException;
 import lombok.Validate;
 import lombok.Validate.NotNull;
-import lombok.val;
+import propel.core.collections.LongIterator;
 import propel.core.collections.lists.ReifiedArrayList;
-import propel.core.utils.ArrayUtils;
+import propel.core.functional.PrimitiveActions.LongObjectAction;
 import propel.core.utils.SuperTypeToken;
 import propel.core.utils.SuperTypeTokenException;
 
 /**
- * Implementation of a long -> V hash map with an emphasis on lookup speed and reduction of memory footprint.
+ * Implementation of a long -> V hash map with an emphasis on lookup speed and reduction of memory footprint. Keys and values are held in
+ * two parallel arrays, using open addressing with linear probing, so that no objects are allocated per entry and lookups scan adjacent
+ * slots rather than following references. The table doubles once the load factor is exceeded, and removals shift the following entries
+ * back rather than leaving tombstones, so lookups do not slow down as keys are removed. Get, put and remove do not allocate.
  */
+@SuppressWarnings("unchecked")
 public class LongHashMap<V>
     implements ILongHashMap<V>
 {
@@ -36,12 +41,29 @@ public class LongHashMap<V>
    * The maximum capacity, used if a higher value is implicitly specified by either of the constructors with arguments
    */
   private static final int MAXIMUM_CAPACITY = 1 << 30;
+  /**
+   * The ratio of entries to slots above which the table is doubled
+   */
+  private static final float LOAD_FACTOR = 0.75f;
+  /**
+   * The key marking a free slot. The value of this key is held outside the table.
+   */
+  private static final long FREE_KEY = 0;
+  /**
+   * Multiplier that spreads keys over the whole table, 2^64 divided by the golden ratio
+   */
+  private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
   private final Class<?> genericTypeParameterValue;
-  private BucketEntry[] table;
+  private long[] keys;
+  private Object[] values;
+  private int shift;
+  private int threshold;
+  private boolean hasFreeKey;
+  private Object freeKeyValue;
   private int size;
 
   /**
-   * Constructs an empty map with the specified max capacity
+   * Constructs an empty map that holds up to the specified number of entries before it needs to grow
    * 
    * @throws NullPointerException An argument is null
    * @throws IllegalArgumentException An argument is invalid
@@ -54,7 +76,7 @@ public class LongHashMap<V>
   }
 
   /**
-   * Constructs an empty map with the specified max capacity.
+   * Constructs an empty map that holds up to the specified number of entries before it needs to grow
    * 
    * @throws NullPointerException An argument is null
    * @throws IllegalArgumentException An argument is invalid
@@ -74,16 +96,7 @@ public class LongHashMap<V>
     if (maxCapacity < 0)
       throw new IllegalArgumentException("maxCapacity=" + maxCapacity);
 
-    // Find a power of 2 >= maxSize
-    int capacity = 1;
-    while (capacity < maxCapacity)
-      capacity <<= 1;
-
-    // must not be over this maximum
-    if (capacity > MAXIMUM_CAPACITY)
-      capacity = MAXIMUM_CAPACITY;
-
-    this.table = ArrayUtils.create(BucketEntry.class, capacity);
+    allocate(tableSize(maxCapacity));
   }
 
   /**
@@ -91,10 +104,14 @@ public class LongHashMap<V>
    */
   public void clear()
   {
-    // clear all bucket entries
-    for (int i = 0; i < table.length; i++)
-      table[i] = null;
+    for (int i = 0; i < keys.length; i++)
+    {
+      keys[i] = FREE_KEY;
+      values[i] = null;
+    }
 
+    hasFreeKey = false;
+    freeKeyValue = null;
     size = 0;
   }
 
@@ -102,36 +119,89 @@ public class LongHashMap<V>
    * {@inheritDoc}
    * 
    * This is an O(1) operation
+   * 
+   * @throws IllegalStateException The map holds the maximum number of entries
    */
   @Override
   public V put(final long key, final V value)
   {
-    // find bucket entry
+    if (key == FREE_KEY)
+    {
+      V old = (V) freeKeyValue;
+      if (!hasFreeKey)
+      {
+        hasFreeKey = true;
+        size++;
+      }
+
+      freeKeyValue = value;
+      return old;
+    }
+
     int index = indexFor(key);
-    if (table[index] == null)
-      table[index] = new BucketEntry();
+    while (true)
+    {
+      long current = keys[index];
+      if (current == key)
+      {
+        // this does not increase the hash map size
+        V old = (V) values[index];
+        values[index] = value;
+        return old;
+      }
 
-    // the new long->V entry
-    val inserted = new LongEntry<V>(key, value);
+      if (current == FREE_KEY)
+        break;
 
-    // attempt to find old long->V entry, if existent, to replace it
-    BucketEntry bucket = table[index];
-    int existingIndex = bucket.find(key);
+      index = (index + 1) & (keys.length - 1);
+    }
 
-    // if existent, replace
-    if (existingIndex >= 0)
+    // otherwise insert new, this increases the size
+    if (size >= threshold)
     {
-      // this does not increase the hash map size
-      val oldItem = bucket.set(existingIndex, inserted);
-      return oldItem.value;
+      grow();
+      index = indexFor(key);
+      while (keys[index] != FREE_KEY)
+        index = (index + 1) & (keys.length - 1);
     }
 
-    // otherwise insert new, this increases the size
-    bucket.add(inserted);
+    keys[index] = key;
+    values[index] = value;
     size++;
     return null;
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   */
+  @Override
+  public V remove(final long key)
+  {
+    if (key == FREE_KEY)
+    {
+      V old = (V) freeKeyValue;
+      if (hasFreeKey)
+      {
+        hasFreeKey = false;
+        freeKeyValue = null;
+        size--;
+      }
+
+      return old;
+    }
+
+    int index = find(key);
+    if (index < 0)
+      return null;
+
+    V old = (V) values[index];
+    shiftBack(index);
+    size--;
+    return old;
+  }
+
   /**
    * {@inheritDoc}
    * 
@@ -140,11 +210,10 @@ public class LongHashMap<V>
   @Override
   public boolean containsKey(final long key)
   {
-    int index = indexFor(key);
-    if (table[index] != null)
-      return table[index].find(key) >= 0;
+    if (key == FREE_KEY)
+      return hasFreeKey;
 
-    return false;
+    return find(key) >= 0;
   }
 
   /**
@@ -156,15 +225,12 @@ public class LongHashMap<V>
   @Validate
   public LongEntry<V> containsValue(@NotNull final V value)
   {
-    for (int i = 0; i < table.length; i++)
-      if (table[i] != null)
-        for (int j = 0; j < table[i].position; j++)
-        {
-          val item = table[i].entries[j];
-          if (item.value != null)
-            if (item.value.equals(value))
-              return item;
-        }
+    if (hasFreeKey && value.equals(freeKeyValue))
+      return new LongEntry<V>(FREE_KEY, (V) freeKeyValue);
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY && value.equals(values[i]))
+        return new LongEntry<V>(keys[i], (V) values[i]);
 
     return null;
   }
@@ -177,10 +243,13 @@ public class LongHashMap<V>
   @Override
   public LongEntry<V>[] entries()
   {
-    val result = new ReifiedArrayList<LongEntry<V>>(size, LongEntry.class);
-    for (int i = 0; i < table.length; i++)
-      if (table[i] != null)
-        result.addAll(table[i].entries);
+    ReifiedArrayList<LongEntry<V>> result = new ReifiedArrayList<LongEntry<V>>(size, LongEntry.class);
+    if (hasFreeKey)
+      result.add(new LongEntry<V>(FREE_KEY, (V) freeKeyValue));
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY)
+        result.add(new LongEntry<V>(keys[i], (V) values[i]));
 
     return result.toArray();
   }
@@ -191,18 +260,13 @@ public class LongHashMap<V>
    * This is an O(1) operation
    */
   @Override
-  public V get(long key)
+  public V get(final long key)
   {
-    BucketEntry bucket = table[indexFor(key)];
-    if (bucket != null)
-      for (int i = 0; i < bucket.position; i++)
-      {
-        val entry = bucket.entries[i];
-        if (entry.key == key)
-          return entry.value;
-      }
+    if (key == FREE_KEY)
+      return (V) freeKeyValue;
 
-    return null;
+    int index = find(key);
+    return index < 0 ? null : (V) values[index];
   }
 
   /**
@@ -224,15 +288,13 @@ public class LongHashMap<V>
   @Override
   public V[] values()
   {
-    val result = new ReifiedArrayList<V>(size, genericTypeParameterValue);
-    for (int i = 0; i < table.length; i++)
-      if (table[i] != null)
-        for (int j = 0; j < table[i].position; j++)
-        {
-          val item = table[i].entries[j];
-          if (item != null)
-            result.add(item.value);
-        }
+    ReifiedArrayList<V> result = new ReifiedArrayList<V>(size, genericTypeParameterValue);
+    if (hasFreeKey)
+      result.add((V) freeKeyValue);
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY)
+        result.add((V) values[i]);
 
     return result.toArray();
   }
@@ -247,15 +309,64 @@ public class LongHashMap<V>
   {
     int index = 0;
     long[] result = new long[size];
-    for (int i = 0; i < table.length; i++)
-      if (table[i] != null)
-        for (int j = 0; j < table[i].position; j++)
+    if (hasFreeKey)
+      result[index++] = FREE_KEY;
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY)
+        result[index++] = keys[i];
+
+    return result;
+  }
+
+  /**
+   * Returns an iterator over the keys. The map must not be modified while iterating.
+   */
+  public LongIterator keyIterator()
+  {
+    return new LongIterator() {
+      private boolean freeKeyPending = hasFreeKey;
+      private int index = nextSlot(0);
+
+      @Override
+      public boolean hasNext()
+      {
+        return freeKeyPending || index < keys.length;
+      }
+
+      @Override
+      public long next()
+      {
+        if (freeKeyPending)
         {
-          val item = table[i].entries[j];
-          result[index++] = item.key;
+          freeKeyPending = false;
+          return FREE_KEY;
         }
 
-    return result;
+        if (index >= keys.length)
+          throw new NoSuchElementException();
+
+        long result = keys[index];
+        index = nextSlot(index + 1);
+        return result;
+      }
+    };
+  }
+
+  /**
+   * Calls the given action with each key and its value. The map must not be modified by the action. This is an O(n) operation
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public void forEach(@NotNull final LongObjectAction<? super V> action)
+  {
+    if (hasFreeKey)
+      action.apply(FREE_KEY, (V) freeKeyValue);
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY)
+        action.apply(keys[i], (V) values[i]);
   }
 
   /**
@@ -274,82 +385,148 @@ public class LongHashMap<V>
    * 
    * This is an O(1) operation
    */
+  @Override
   public int capacity()
   {
-    return table.length;
+    return keys.length;
   }
 
   /**
-   * Resizes the hash map.
+   * Resizes the hash map, so that it holds up to the given number of entries, or its current size if larger, before it needs to grow.
    * 
    * This is an O(n) operation, note that it more than doubles the space used for a short while
    */
   public void resize(int capacity)
   {
-    BucketEntry[] tableCopy = ArrayUtils.clone(table);
-    init(capacity);
-    for (BucketEntry bucket : tableCopy)
-      if (bucket != null)
-        for (val item : bucket.entries)
-          put(item.key, item.value);
+    if (capacity < 0)
+      throw new IllegalArgumentException("capacity=" + capacity);
+
+    rehash(tableSize(Math.max(capacity, size)));
   }
 
   /**
-   * Returns index for hash code h.
+   * Returns the number of slots needed to hold the given number of entries without exceeding the load factor
    */
-  private int indexFor(long key)
+  private static int tableSize(final int maxCapacity)
   {
-    return ((int) key / 2) & (table.length - 1);
+    long required = (long) Math.ceil(maxCapacity / (double) LOAD_FACTOR);
+
+    // find a power of 2 >= required, must not be over the maximum
+    int capacity = 2;
+    while (capacity < required && capacity < MAXIMUM_CAPACITY)
+      capacity <<= 1;
+
+    return capacity;
   }
 
   /**
-   * The hash map contains multiple bucket entry classes such as this
+   * Allocates an empty table with the given power of 2 number of slots
    */
-  final class BucketEntry
+  private void allocate(final int capacity)
   {
-    long[] keys;
-    LongEntry<V>[] entries;
-    int position;
+    keys = new long[capacity];
+    values = new Object[capacity];
+    shift = 64 - Integer.numberOfTrailingZeros(capacity);
 
-    BucketEntry()
-    {
-      keys = new long[8];
-      entries = ArrayUtils.create(LongEntry.class, 8);
-      position = 0;
-    }
+    // a full table must keep a free slot to end probes at
+    threshold = capacity == MAXIMUM_CAPACITY ? capacity - 1 : (int) (capacity * LOAD_FACTOR);
+  }
 
-    void add(LongEntry<V> entry)
-    {
-      keys[position] = entry.key;
-      entries[position] = entry;
-      position++;
+  /**
+   * Doubles the table
+   * 
+   * @throws IllegalStateException The table cannot grow any further
+   */
+  private void grow()
+  {
+    if (keys.length >= MAXIMUM_CAPACITY)
+      throw new IllegalStateException("The map cannot hold more than " + threshold + " entries.");
+
+    rehash(keys.length << 1);
+  }
 
-      // ensure capacity
-      if (position >= entries.length)
+  /**
+   * Moves all entries to a new table with the given number of slots
+   */
+  private void rehash(final int capacity)
+  {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    allocate(capacity);
+
+    for (int i = 0; i < oldKeys.length; i++)
+      if (oldKeys[i] != FREE_KEY)
       {
-        val newKeys = new long[(int) (keys.length * 0.75f)];
-        System.arraycopy(keys, 0, newKeys, 0, entries.length);
-        keys = newKeys;
-        entries = ArrayUtils.resize(entries, entries.length * 2);
+        int index = indexFor(oldKeys[i]);
+        while (keys[index] != FREE_KEY)
+          index = (index + 1) & (keys.length - 1);
+
+        keys[index] = oldKeys[i];
+        values[index] = oldValues[i];
       }
-    }
+  }
 
-    int find(long key)
+  /**
+   * Returns the slot of a key that is not the free key, or -1 if the key does not exist
+   */
+  private int find(final long key)
+  {
+    int index = indexFor(key);
+    while (true)
     {
-      for (int i = 0; i < position; i++)
-        if (keys[i] == key)
-          return i;
+      long current = keys[index];
+      if (current == key)
+        return index;
+      if (current == FREE_KEY)
+        return -1;
 
-      return -1;
+      index = (index + 1) & (keys.length - 1);
     }
+  }
+
+  /**
+   * Returns the first occupied slot at or after the given one, or the table length if there is none
+   */
+  private int nextSlot(int index)
+  {
+    while (index < keys.length && keys[index] == FREE_KEY)
+      index++;
 
-    LongEntry<V> set(int index, LongEntry<V> entry)
+    return index;
+  }
+
+  /**
+   * Frees a slot, moving back the entries that follow it in its probe sequence, so that they remain reachable without tombstones
+   */
+  private void shiftBack(int gap)
+  {
+    int mask = keys.length - 1;
+    int index = gap;
+    while (true)
     {
-      keys[index] = entry.key;
-      val old = entries[index];
-      entries[index] = entry;
-      return old;
+      index = (index + 1) & mask;
+      long key = keys[index];
+      if (key == FREE_KEY)
+        break;
+
+      // an entry can fill the gap only if the gap lies between its home slot and its slot
+      if (((index - indexFor(key)) & mask) >= ((index - gap) & mask))
+      {
+        keys[gap] = key;
+        values[gap] = values[index];
+        gap = index;
+      }
     }
+
+    keys[gap] = FREE_KEY;
+    values[gap] = null;
+  }
+
+  /**
+   * Returns the home slot of a key, taken from the high bits of its Fibonacci hash
+   */
+  private int indexFor(final long key)
+  {
+    return (int) ((key * GOLDEN_RATIO) >>> shift);
   }
-  
 }
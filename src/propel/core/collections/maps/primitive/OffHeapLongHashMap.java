@@ -0,0 +1,1030 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.primitive;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.NoSuchElementException;
+import lombok.Validate;
+import lombok.Validate.NotNull;
+import lombok.val;
+import propel.core.collections.LongIterator;
+import propel.core.collections.lists.ReifiedArrayList;
+import propel.core.functional.PrimitiveActions.LongObjectAction;
+
+/**
+ * Implementation of a long -> V hash map whose keys and values are held outside the Java heap, in direct buffers or in a memory-mapped
+ * file, so that very large maps add neither to the heap size nor to garbage collection pauses. Values have a fixed size and are written to
+ * and read from the buffers by a codec, see ValueCodecs, so values must not be null. The slots of the table hold a key followed by its
+ * value, using open addressing with linear probing, and removals shift the following entries back rather than leaving tombstones.
+ * 
+ * The table is sized once, for the maximum number of entries given on creation, because growing it would need the old and the new table
+ * in memory at the same time. Buffers are split in chunks of up to 1GB, so that the table may hold more than 2^31 bytes.
+ * 
+ * A map created with create() is persisted in a file, which open() maps again on restart, without reading or rehashing its entries. Writes
+ * reach the file when the operating system flushes the mapped pages, or when flush() or close() is called. Persisted files use the native
+ * byte order of the machine that created them, and are read in that order elsewhere.
+ * 
+ * Maps of the built-in ValueCodecs.LONG, INT and DOUBLE codecs can also be read and written with getLong() and putLong(), and their int and
+ * double counterparts, which do not box values.
+ * 
+ * The map must be closed once no longer used, which releases its memory or mapping immediately, rather than when the buffers are garbage
+ * collected. This class is not thread-safe.
+ */
+public final class OffHeapLongHashMap<V>
+    implements ILongHashMap<V>, Closeable
+{
+  /**
+   * The ratio of entries to slots that the table is sized for
+   */
+  private static final double LOAD_FACTOR = 0.75;
+  /**
+   * The key marking a free slot. The value of this key is held in the header.
+   */
+  private static final long FREE_KEY = 0;
+  /**
+   * Multiplier that spreads keys over the whole table, 2^64 divided by the golden ratio
+   */
+  private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+  /**
+   * The maximum number of bytes of a single buffer
+   */
+  private static final int MAX_CHUNK_BYTES = 1 << 30;
+  /**
+   * Marks the beginning of a persisted file
+   */
+  private static final long MAGIC = 0x50524F50454C4D50L;
+  private static final int VERSION = 1;
+  // the layout of the header, which precedes the slots in persisted files
+  private static final int MAGIC_OFFSET = 0;
+  private static final int VERSION_OFFSET = 8;
+  private static final int VALUE_SIZE_OFFSET = 12;
+  private static final int SLOTS_OFFSET = 16;
+  private static final int SIZE_OFFSET = 24;
+  private static final int HAS_FREE_KEY_OFFSET = 32;
+  private static final int BYTE_ORDER_OFFSET = 33;
+  private static final int FREE_KEY_VALUE_OFFSET = 40;
+  /**
+   * Stands for the slot of the free key, whose value is held in the header, when locating the value of a key
+   */
+  private static final long FREE_KEY_SLOT = -1;
+  /**
+   * Stands for the slot of a key that does not exist, when locating the value of a key
+   */
+  private static final long NO_SLOT = -2;
+
+  private final IValueCodec<V> codec;
+  private final boolean mapped;
+  private final long slots;
+  private final long threshold;
+  private final int shift;
+  private final int slotSize;
+  private final int chunkShift;
+  private final long chunkMask;
+  private ByteBuffer header;
+  private ByteBuffer[] chunks;
+  private long size;
+
+  /**
+   * Constructs an empty map, held in direct buffers, that holds up to the specified number of entries
+   * 
+   * @throws NullPointerException An argument is null
+   * @throws IllegalArgumentException An argument is invalid
+   */
+  public OffHeapLongHashMap(final long maxCapacity, final IValueCodec<V> codec)
+  {
+    this(codec, tableSize(maxCapacity), false);
+
+    header = ByteBuffer.allocateDirect(headerSize(codec)).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < chunks.length; i++)
+      chunks[i] = ByteBuffer.allocateDirect(chunkBytes(i)).order(ByteOrder.nativeOrder());
+
+    writeHeader();
+  }
+
+  /**
+   * Initialises the layout of a table with the given number of slots, leaving the buffers to be allocated or mapped
+   */
+  private OffHeapLongHashMap(final IValueCodec<V> codec, final long slots, final boolean mapped)
+  {
+    if (codec.getSize() <= 0)
+      throw new IllegalArgumentException("codec size=" + codec.getSize());
+
+    this.codec = codec;
+    this.mapped = mapped;
+    this.slots = slots;
+    this.shift = 64 - Long.numberOfTrailingZeros(slots);
+
+    // a full table must keep a free slot to end probes at
+    this.threshold = Math.min(slots - 1, (long) (slots * LOAD_FACTOR));
+
+    // keys are 8 bytes, values are padded so that the keys of all slots are aligned
+    this.slotSize = 8 + ((codec.getSize() + 7) & ~7);
+
+    long slotsPerChunk = Math.min(slots, Long.highestOneBit(MAX_CHUNK_BYTES / slotSize));
+    this.chunkShift = Long.numberOfTrailingZeros(slotsPerChunk);
+    this.chunkMask = slotsPerChunk - 1;
+    this.chunks = new ByteBuffer[(int) ((slots + chunkMask) >>> chunkShift)];
+  }
+
+  /**
+   * Creates an empty map, persisted in the given file, that holds up to the specified number of entries. Any existing file is replaced.
+   * 
+   * @throws NullPointerException An argument is null
+   * @throws IllegalArgumentException An argument is invalid
+   * @throws IOException An I/O exception occurred.
+   */
+  @Validate
+  public static <V> OffHeapLongHashMap<V> create(@NotNull final File file, final long maxCapacity, @NotNull final IValueCodec<V> codec)
+      throws IOException
+  {
+    val result = new OffHeapLongHashMap<V>(codec, tableSize(maxCapacity), true);
+
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try
+    {
+      // truncating first discards any previous content, the file is then extended with zeros, i.e. free slots
+      raf.setLength(0);
+      raf.setLength(result.slotsOffset() + result.slots * result.slotSize);
+      result.map(raf.getChannel(), ByteOrder.nativeOrder());
+    }
+    finally
+    {
+      raf.close();
+    }
+
+    result.writeHeader();
+    return result;
+  }
+
+  /**
+   * Opens a map persisted in the given file by create(), mapping its entries without reading them
+   * 
+   * @throws NullPointerException An argument is null
+   * @throws IllegalArgumentException The file was not created with a codec of the same size
+   * @throws IOException An I/O exception occurred, or the file is not a persisted map.
+   */
+  @Validate
+  public static <V> OffHeapLongHashMap<V> open(@NotNull final File file, @NotNull final IValueCodec<V> codec)
+      throws IOException
+  {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try
+    {
+      FileChannel channel = raf.getChannel();
+      if (channel.size() < FREE_KEY_VALUE_OFFSET)
+        throw new IOException("Not a persisted map: " + file);
+
+      ByteBuffer header = ByteBuffer.allocate(FREE_KEY_VALUE_OFFSET);
+      while (header.hasRemaining())
+        if (channel.read(header, header.position()) < 0)
+          throw new IOException("Not a persisted map: " + file);
+
+      header.order(header.get(BYTE_ORDER_OFFSET) == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+      if (header.getLong(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION)
+        throw new IOException("Not a persisted map: " + file);
+      if (header.getInt(VALUE_SIZE_OFFSET) != codec.getSize())
+        throw new IllegalArgumentException("The map holds values of " + header.getInt(VALUE_SIZE_OFFSET) + " bytes, the codec writes "
+                                           + codec.getSize());
+
+      long slots = header.getLong(SLOTS_OFFSET);
+      if (slots < 2 || Long.bitCount(slots) != 1)
+        throw new IOException("Not a persisted map: " + file);
+
+      val result = new OffHeapLongHashMap<V>(codec, slots, true);
+      if (channel.size() < result.slotsOffset() + slots * result.slotSize)
+        throw new IOException("Truncated persisted map: " + file);
+
+      result.map(channel, header.order());
+      result.size = result.header.getLong(SIZE_OFFSET);
+      return result;
+    }
+    finally
+    {
+      raf.close();
+    }
+  }
+
+  /**
+   * Clears the contents. This is an O(n) operation
+   * 
+   * @throws IllegalStateException The map is closed
+   */
+  public void clear()
+  {
+    ensureOpen();
+
+    for (long slot = 0; slot < slots; slot++)
+      chunk(slot).putLong(offset(slot), FREE_KEY);
+
+    header.put(HAS_FREE_KEY_OFFSET, (byte) 0);
+    setSize(0);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   * 
+   * @throws NullPointerException An argument is null
+   * @throws IllegalStateException The map is closed, or holds the maximum number of entries
+   */
+  @Override
+  @Validate
+  public V put(final long key, @NotNull final V value)
+  {
+    ensureOpen();
+
+    if (key == FREE_KEY)
+    {
+      V old = hasFreeKey() ? codec.read(header, FREE_KEY_VALUE_OFFSET) : null;
+      codec.write(header, FREE_KEY_VALUE_OFFSET, value);
+      if (old == null)
+      {
+        header.put(HAS_FREE_KEY_OFFSET, (byte) 1);
+        setSize(size + 1);
+      }
+
+      return old;
+    }
+
+    long slot = indexFor(key);
+    while (true)
+    {
+      ByteBuffer chunk = chunk(slot);
+      int offset = offset(slot);
+      long current = chunk.getLong(offset);
+      if (current == key)
+      {
+        // this does not increase the hash map size
+        V old = codec.read(chunk, offset + 8);
+        codec.write(chunk, offset + 8, value);
+        return old;
+      }
+
+      if (current == FREE_KEY)
+      {
+        if (size >= threshold)
+          throw new IllegalStateException("The map cannot hold more than " + threshold + " entries.");
+
+        // the value is written first, so that a value the codec rejects leaves no key behind
+        codec.write(chunk, offset + 8, value);
+        chunk.putLong(offset, key);
+        setSize(size + 1);
+        return null;
+      }
+
+      slot = (slot + 1) & (slots - 1);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   * 
+   * @throws IllegalStateException The map is closed
+   */
+  @Override
+  public V remove(final long key)
+  {
+    ensureOpen();
+
+    if (key == FREE_KEY)
+    {
+      if (!hasFreeKey())
+        return null;
+
+      header.put(HAS_FREE_KEY_OFFSET, (byte) 0);
+      setSize(size - 1);
+      return codec.read(header, FREE_KEY_VALUE_OFFSET);
+    }
+
+    long slot = find(key);
+    if (slot < 0)
+      return null;
+
+    V old = codec.read(chunk(slot), offset(slot) + 8);
+    shiftBack(slot);
+    setSize(size - 1);
+    return old;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   * 
+   * @throws IllegalStateException The map is closed
+   */
+  @Override
+  public boolean containsKey(final long key)
+  {
+    ensureOpen();
+
+    if (key == FREE_KEY)
+      return hasFreeKey();
+
+    return find(key) >= 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * Values are compared by their encoded bytes. This is an O(n) operation
+   * 
+   * @throws IllegalStateException The map is closed
+   */
+  @Override
+  @Validate
+  public LongEntry<V> containsValue(@NotNull final V value)
+  {
+    ensureOpen();
+
+    ByteBuffer encoded = ByteBuffer.allocate(codec.getSize()).order(header.order());
+    codec.write(encoded, 0, value);
+
+    if (hasFreeKey() && equalsEncoded(header, FREE_KEY_VALUE_OFFSET, encoded))
+      return new LongEntry<V>(FREE_KEY, codec.read(header, FREE_KEY_VALUE_OFFSET));
+
+    for (long slot = 0; slot < slots; slot++)
+    {
+      ByteBuffer chunk = chunk(slot);
+      int offset = offset(slot);
+      long key = chunk.getLong(offset);
+      if (key != FREE_KEY && equalsEncoded(chunk, offset + 8, encoded))
+        return new LongEntry<V>(key, codec.read(chunk, offset + 8));
+    }
+
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(n) operation
+   * 
+   * @throws IllegalStateException The map is closed
+   */
+  @Override
+  public LongEntry<V>[] entries()
+  {
+    ensureOpen();
+
+    final ReifiedArrayList<LongEntry<V>> result = new ReifiedArrayList<LongEntry<V>>(size(), LongEntry.class);
+    forEach(new LongObjectAction<V>() {
+      @Override
+      public void apply(long key, V value)
+      {
+        result.add(new LongEntry<V>(key, value));
+      }
+    });
+
+    return result.toArray();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   * 
+   * @throws IllegalStateException The map is closed
+   */
+  @Override
+  public V get(final long key)
+  {
+    ensureOpen();
+
+    if (key == FREE_KEY)
+      return hasFreeKey() ? codec.read(header, FREE_KEY_VALUE_OFFSET) : null;
+
+    long slot = find(key);
+    return slot < 0 ? null : codec.read(chunk(slot), offset(slot) + 8);
+  }
+
+  /**
+   * Returns the value of a key without boxing it, or the default value if the key does not exist. This is an O(1) operation
+   * 
+   * @throws UnsupportedOperationException The codec of the map is not ValueCodecs.LONG
+   * @throws IllegalStateException The map is closed
+   */
+  public long getLong(final long key, final long defaultValue)
+  {
+    ensureCodec(ValueCodecs.LONG);
+
+    long slot = lookup(key);
+    return slot == NO_SLOT ? defaultValue : valueBuffer(slot).getLong(valueOffset(slot));
+  }
+
+  /**
+   * Puts the value of a key without boxing it, returning true if the key was added, or false if its value was replaced. This is an O(1)
+   * operation
+   * 
+   * @throws UnsupportedOperationException The codec of the map is not ValueCodecs.LONG
+   * @throws IllegalStateException The map is closed, or holds the maximum number of entries
+   */
+  public boolean putLong(final long key, final long value)
+  {
+    ensureCodec(ValueCodecs.LONG);
+
+    long before = size;
+    long slot = claim(key);
+    valueBuffer(slot).putLong(valueOffset(slot), value);
+    return size > before;
+  }
+
+  /**
+   * Returns the value of a key without boxing it, or the default value if the key does not exist. This is an O(1) operation
+   * 
+   * @throws UnsupportedOperationException The codec of the map is not ValueCodecs.INT
+   * @throws IllegalStateException The map is closed
+   */
+  public int getInt(final long key, final int defaultValue)
+  {
+    ensureCodec(ValueCodecs.INT);
+
+    long slot = lookup(key);
+    return slot == NO_SLOT ? defaultValue : valueBuffer(slot).getInt(valueOffset(slot));
+  }
+
+  /**
+   * Puts the value of a key without boxing it, returning true if the key was added, or false if its value was replaced. This is an O(1)
+   * operation
+   * 
+   * @throws UnsupportedOperationException The codec of the map is not ValueCodecs.INT
+   * @throws IllegalStateException The map is closed, or holds the maximum number of entries
+   */
+  public boolean putInt(final long key, final int value)
+  {
+    ensureCodec(ValueCodecs.INT);
+
+    long before = size;
+    long slot = claim(key);
+    valueBuffer(slot).putInt(valueOffset(slot), value);
+    return size > before;
+  }
+
+  /**
+   * Returns the value of a key without boxing it, or the default value if the key does not exist. This is an O(1) operation
+   * 
+   * @throws UnsupportedOperationException The codec of the map is not ValueCodecs.DOUBLE
+   * @throws IllegalStateException The map is closed
+   */
+  public double getDouble(final long key, final double defaultValue)
+  {
+    ensureCodec(ValueCodecs.DOUBLE);
+
+    long slot = lookup(key);
+    return slot == NO_SLOT ? defaultValue : valueBuffer(slot).getDouble(valueOffset(slot));
+  }
+
+  /**
+   * Puts the value of a key without boxing it, returning true if the key was added, or false if its value was replaced. This is an O(1)
+   * operation
+   * 
+   * @throws UnsupportedOperationException The codec of the map is not ValueCodecs.DOUBLE
+   * @throws IllegalStateException The map is closed, or holds the maximum number of entries
+   */
+  public boolean putDouble(final long key, final double value)
+  {
+    ensureCodec(ValueCodecs.DOUBLE);
+
+    long before = size;
+    long slot = claim(key);
+    valueBuffer(slot).putDouble(valueOffset(slot), value);
+    return size > before;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   */
+  @Override
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(n) operation
+   * 
+   * @throws IllegalStateException The map is closed
+   */
+  @Override
+  public V[] values()
+  {
+    ensureOpen();
+
+    final ReifiedArrayList<V> result = new ReifiedArrayList<V>(size(), codec.getValueType());
+    forEach(new LongObjectAction<V>() {
+      @Override
+      public void apply(long key, V value)
+      {
+        result.add(value);
+      }
+    });
+
+    return result.toArray();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(n) operation
+   * 
+   * @throws IllegalStateException The map is closed
+   */
+  @Override
+  public long[] keySet()
+  {
+    ensureOpen();
+
+    int index = 0;
+    long[] result = new long[size()];
+    for (LongIterator iterator = keyIterator(); iterator.hasNext();)
+      result[index++] = iterator.next();
+
+    return result;
+  }
+
+  /**
+   * Returns an iterator over the keys. The map must not be modified or closed while iterating.
+   * 
+   * @throws IllegalStateException The map is closed
+   */
+  public LongIterator keyIterator()
+  {
+    ensureOpen();
+
+    return new LongIterator() {
+      private boolean freeKeyPending = hasFreeKey();
+      private long slot = nextSlot(0);
+
+      @Override
+      public boolean hasNext()
+      {
+        return freeKeyPending || slot < slots;
+      }
+
+      @Override
+      public long next()
+      {
+        if (freeKeyPending)
+        {
+          freeKeyPending = false;
+          return FREE_KEY;
+        }
+
+        if (slot >= slots)
+          throw new NoSuchElementException();
+
+        long result = chunk(slot).getLong(offset(slot));
+        slot = nextSlot(slot + 1);
+        return result;
+      }
+    };
+  }
+
+  /**
+   * Calls the given action with each key and its value. The map must not be modified by the action. This is an O(n) operation
+   * 
+   * @throws NullPointerException An argument is null
+   * @throws IllegalStateException The map is closed
+   */
+  @Validate
+  public void forEach(@NotNull final LongObjectAction<? super V> action)
+  {
+    ensureOpen();
+
+    if (hasFreeKey())
+      action.apply(FREE_KEY, codec.read(header, FREE_KEY_VALUE_OFFSET));
+
+    for (long slot = 0; slot < slots; slot++)
+    {
+      ByteBuffer chunk = chunk(slot);
+      int offset = offset(slot);
+      long key = chunk.getLong(offset);
+      if (key != FREE_KEY)
+        action.apply(key, codec.read(chunk, offset + 8));
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   * 
+   * @throws IllegalStateException The map holds more than Integer.MAX_VALUE entries, see longSize()
+   */
+  @Override
+  public int size()
+  {
+    if (size > Integer.MAX_VALUE)
+      throw new IllegalStateException("The map holds " + size + " entries.");
+
+    return (int) size;
+  }
+
+  /**
+   * Returns the number of key/value pairs. This is an O(1) operation
+   */
+  public long longSize()
+  {
+    return size;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * Returns Integer.MAX_VALUE if the table has more slots. This is an O(1) operation
+   */
+  @Override
+  public int capacity()
+  {
+    return (int) Math.min(slots, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the maximum number of entries the map holds. This is an O(1) operation
+   */
+  public long maxCapacity()
+  {
+    return threshold;
+  }
+
+  /**
+   * Returns true if the map has been closed
+   */
+  public boolean isClosed()
+  {
+    return chunks == null;
+  }
+
+  /**
+   * Writes the changes of a persisted map to its file. Does nothing for maps held in direct buffers.
+   * 
+   * @throws IllegalStateException The map is closed
+   */
+  public void flush()
+  {
+    ensureOpen();
+
+    if (mapped)
+    {
+      for (ByteBuffer chunk : chunks)
+        ((MappedByteBuffer) chunk).force();
+
+      ((MappedByteBuffer) header).force();
+    }
+  }
+
+  /**
+   * Flushes a persisted map and releases the memory or mapping of the map. Closing a closed map has no effect.
+   */
+  @Override
+  public void close()
+  {
+    if (isClosed())
+      return;
+
+    flush();
+
+    ByteBuffer[] released = chunks;
+    ByteBuffer releasedHeader = header;
+    chunks = null;
+    header = null;
+
+    for (ByteBuffer chunk : released)
+      free(chunk);
+    free(releasedHeader);
+  }
+
+  /**
+   * Maps the header and the slots of a persisted map from a file channel
+   */
+  private void map(final FileChannel channel, final ByteOrder order)
+      throws IOException
+  {
+    header = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize(codec)).order(order);
+
+    long position = slotsOffset();
+    for (int i = 0; i < chunks.length; i++)
+    {
+      chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, chunkBytes(i)).order(order);
+      position += chunkBytes(i);
+    }
+  }
+
+  /**
+   * Writes the header of a new map
+   */
+  private void writeHeader()
+  {
+    header.putLong(MAGIC_OFFSET, MAGIC);
+    header.putInt(VERSION_OFFSET, VERSION);
+    header.putInt(VALUE_SIZE_OFFSET, codec.getSize());
+    header.putLong(SLOTS_OFFSET, slots);
+    header.putLong(SIZE_OFFSET, 0);
+    header.put(HAS_FREE_KEY_OFFSET, (byte) 0);
+    header.put(BYTE_ORDER_OFFSET, (byte) (header.order() == ByteOrder.BIG_ENDIAN ? 0 : 1));
+  }
+
+  /**
+   * Returns the number of bytes of the header, which is followed by the slots
+   */
+  private static int headerSize(final IValueCodec<?> codec)
+  {
+    return (FREE_KEY_VALUE_OFFSET + codec.getSize() + 7) & ~7;
+  }
+
+  private long slotsOffset()
+  {
+    return headerSize(codec);
+  }
+
+  /**
+   * Returns the number of bytes of the chunk with the given index, all chunks are full apart from the last
+   */
+  private int chunkBytes(final int index)
+  {
+    long first = (long) index << chunkShift;
+    return (int) (Math.min(chunkMask + 1, slots - first) * slotSize);
+  }
+
+  /**
+   * Returns the number of slots needed to hold the given number of entries without exceeding the load factor
+   */
+  private static long tableSize(final long maxCapacity)
+  {
+    if (maxCapacity < 0)
+      throw new IllegalArgumentException("maxCapacity=" + maxCapacity);
+
+    long required = (long) Math.ceil(maxCapacity / LOAD_FACTOR) + 1;
+    if (required > 1L << 62)
+      throw new IllegalArgumentException("maxCapacity=" + maxCapacity);
+
+    // find a power of 2 >= required
+    long capacity = 2;
+    while (capacity < required)
+      capacity <<= 1;
+
+    return capacity;
+  }
+
+  private void ensureOpen()
+  {
+    if (chunks == null)
+      throw new IllegalStateException("The map is closed.");
+  }
+
+  private void ensureCodec(final IValueCodec<?> expected)
+  {
+    if (codec != expected)
+      throw new UnsupportedOperationException("The values of the map are not " + expected.getValueType().getSimpleName() + "s.");
+  }
+
+  private boolean hasFreeKey()
+  {
+    return header.get(HAS_FREE_KEY_OFFSET) != 0;
+  }
+
+  /**
+   * Updates the size, also in the header so that it is persisted
+   */
+  private void setSize(final long size)
+  {
+    this.size = size;
+    header.putLong(SIZE_OFFSET, size);
+  }
+
+  /**
+   * Returns the buffer holding a slot
+   */
+  private ByteBuffer chunk(final long slot)
+  {
+    return chunks[(int) (slot >>> chunkShift)];
+  }
+
+  /**
+   * Returns the offset of a slot within its buffer
+   */
+  private int offset(final long slot)
+  {
+    return (int) (slot & chunkMask) * slotSize;
+  }
+
+  /**
+   * Returns the slot of a key that is not the free key, or -1 if the key does not exist
+   */
+  private long find(final long key)
+  {
+    long slot = indexFor(key);
+    while (true)
+    {
+      long current = chunk(slot).getLong(offset(slot));
+      if (current == key)
+        return slot;
+      if (current == FREE_KEY)
+        return -1;
+
+      slot = (slot + 1) & (slots - 1);
+    }
+  }
+
+  /**
+   * Returns the slot of a key, FREE_KEY_SLOT if it is the free key and exists, or NO_SLOT if it does not exist
+   */
+  private long lookup(final long key)
+  {
+    ensureOpen();
+
+    if (key == FREE_KEY)
+      return hasFreeKey() ? FREE_KEY_SLOT : NO_SLOT;
+
+    long slot = find(key);
+    return slot < 0 ? NO_SLOT : slot;
+  }
+
+  /**
+   * Returns the slot of a key, or FREE_KEY_SLOT if it is the free key, adding the key if it does not exist. The caller must then write the
+   * value, so this may only be used with codecs that cannot reject a value.
+   * 
+   * @throws IllegalStateException The map is closed, or holds the maximum number of entries
+   */
+  private long claim(final long key)
+  {
+    ensureOpen();
+
+    if (key == FREE_KEY)
+    {
+      if (!hasFreeKey())
+      {
+        header.put(HAS_FREE_KEY_OFFSET, (byte) 1);
+        setSize(size + 1);
+      }
+
+      return FREE_KEY_SLOT;
+    }
+
+    long slot = indexFor(key);
+    while (true)
+    {
+      ByteBuffer chunk = chunk(slot);
+      int offset = offset(slot);
+      long current = chunk.getLong(offset);
+      if (current == key)
+        return slot;
+
+      if (current == FREE_KEY)
+      {
+        if (size >= threshold)
+          throw new IllegalStateException("The map cannot hold more than " + threshold + " entries.");
+
+        chunk.putLong(offset, key);
+        setSize(size + 1);
+        return slot;
+      }
+
+      slot = (slot + 1) & (slots - 1);
+    }
+  }
+
+  /**
+   * Returns the buffer holding the value of a slot, which is the header for the free key
+   */
+  private ByteBuffer valueBuffer(final long slot)
+  {
+    return slot == FREE_KEY_SLOT ? header : chunk(slot);
+  }
+
+  /**
+   * Returns the offset of the value of a slot within its buffer
+   */
+  private int valueOffset(final long slot)
+  {
+    return slot == FREE_KEY_SLOT ? FREE_KEY_VALUE_OFFSET : offset(slot) + 8;
+  }
+
+  /**
+   * Returns the first occupied slot at or after the given one, or the number of slots if there is none
+   */
+  private long nextSlot(long slot)
+  {
+    while (slot < slots && chunk(slot).getLong(offset(slot)) == FREE_KEY)
+      slot++;
+
+    return slot;
+  }
+
+  /**
+   * Frees a slot, moving back the entries that follow it in its probe sequence, so that they remain reachable without tombstones
+   */
+  private void shiftBack(long gap)
+  {
+    long mask = slots - 1;
+    long slot = gap;
+    while (true)
+    {
+      slot = (slot + 1) & mask;
+      ByteBuffer chunk = chunk(slot);
+      int offset = offset(slot);
+      long key = chunk.getLong(offset);
+      if (key == FREE_KEY)
+        break;
+
+      // an entry can fill the gap only if the gap lies between its home slot and its slot
+      if (((slot - indexFor(key)) & mask) >= ((slot - gap) & mask))
+      {
+        ByteBuffer gapChunk = chunk(gap);
+        int gapOffset = offset(gap);
+        gapChunk.putLong(gapOffset, key);
+        for (int i = 8; i < slotSize; i += 8)
+          gapChunk.putLong(gapOffset + i, chunk.getLong(offset + i));
+
+        gap = slot;
+      }
+    }
+
+    chunk(gap).putLong(offset(gap), FREE_KEY);
+  }
+
+  /**
+   * Returns true if the value at the given offset has the same bytes as the encoded value
+   */
+  private static boolean equalsEncoded(final ByteBuffer buffer, final int offset, final ByteBuffer encoded)
+  {
+    for (int i = 0; i < encoded.capacity(); i++)
+      if (buffer.get(offset + i) != encoded.get(i))
+        return false;
+
+    return true;
+  }
+
+  private long indexFor(final long key)
+  {
+    return (key * GOLDEN_RATIO) >>> shift;
+  }
+
+  /**
+   * Releases the memory or mapping of a buffer, without waiting for it to be garbage collected. Buffers that cannot be released this way,
+   * because the JVM does not expose the means to, are left to the garbage collector.
+   */
+  private static void free(final ByteBuffer buffer)
+  {
+    try
+    {
+      // Java 9 and later
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      invokeCleaner.invoke(theUnsafe.get(null), buffer);
+      return;
+    }
+    catch(Exception e)
+    {
+      // not available, tries the cleaner of the buffer
+    }
+
+    try
+    {
+      // Java 8 and earlier
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null)
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+    }
+    catch(Exception e)
+    {
+      // left to the garbage collector
+    }
+  }
+}
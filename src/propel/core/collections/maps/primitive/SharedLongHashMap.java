@@ -0,0 +1,765 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.primitive;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.Validate;
+import lombok.Validate.NotNull;
+import propel.core.collections.lists.ReifiedArrayList;
+import propel.core.collections.lists.primitive.LongArrayList;
+import propel.core.functional.Functions.LongToObjectFunction;
+import propel.core.utils.SuperTypeToken;
+import propel.core.utils.SuperTypeTokenException;
+
+/**
+ * A thread-safe long -> V hash map. Keys are spread over segments, each an open addressing table like LongHashMap's, with its own lock
+ * that is only taken by writes, so that writes to different segments proceed in parallel and each segment resizes on its own. Reads do
+ * not lock: keys and values are read from atomic arrays, and a value is published before its key, so that a reader finding a key always
+ * finds its value. As readers may be probing a table while it is written, removed keys keep their slots, marked as removed, until the
+ * next resize of their segment. Get, put and remove are O(1) operations, and get does not allocate.
+ * 
+ * Operations over the whole map, such as size(), keySet() and values(), are weakly consistent: they do not lock the map, so they reflect
+ * each segment at a different time.
+ */
+@SuppressWarnings("unchecked")
+public class SharedLongHashMap<V>
+    implements ILongHashMap<V>
+{
+  /**
+   * The maximum capacity of a segment
+   */
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+  /**
+   * The maximum number of segments
+   */
+  private static final int MAXIMUM_SEGMENTS = 1 << 16;
+  /**
+   * The default number of segments that can be written concurrently
+   */
+  private static final int CONCURRENCY_LEVEL = Math.max(16, Runtime.getRuntime().availableProcessors() * 2);
+  /**
+   * The ratio of used slots to slots above which a segment is resized
+   */
+  private static final float LOAD_FACTOR = 0.75f;
+  /**
+   * The key marking a free slot. The value of this key is held outside the tables.
+   */
+  private static final long FREE_KEY = 0;
+  /**
+   * Multiplier that spreads keys over the whole table, 2^64 divided by the golden ratio
+   */
+  private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+  /**
+   * Stored in place of null values, as a null slot marks a value that has not been published
+   */
+  private static final Object NULL_VALUE = new Object();
+  /**
+   * Stored in place of the value of a removed key
+   */
+  private static final Object REMOVED = new Object();
+
+  private final Class<?> genericTypeParameterValue;
+  private final Segment[] segments;
+  private final int segmentShift;
+
+  /**
+   * Constructs an empty map that holds up to the specified number of entries before it needs to grow
+   * 
+   * @throws IllegalArgumentException An argument is invalid
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   */
+  public SharedLongHashMap(final int maxCapacity)
+  {
+    this.genericTypeParameterValue = SuperTypeToken.getClazz(getClass());
+    segments = createSegments(maxCapacity, CONCURRENCY_LEVEL);
+    segmentShift = 64 - Integer.numberOfTrailingZeros(segments.length);
+  }
+
+  /**
+   * Constructs an empty map that holds up to the specified number of entries before it needs to grow
+   * 
+   * @throws NullPointerException An argument is null
+   * @throws IllegalArgumentException An argument is invalid
+   */
+  @Validate
+  public SharedLongHashMap(final int maxCapacity, @NotNull final Class<?> genericTypeParameterValue)
+  {
+    this.genericTypeParameterValue = genericTypeParameterValue;
+    segments = createSegments(maxCapacity, CONCURRENCY_LEVEL);
+    segmentShift = 64 - Integer.numberOfTrailingZeros(segments.length);
+  }
+
+  /**
+   * Constructs an empty map that holds up to the specified number of entries before it needs to grow, with at least as many segments as
+   * the given number of threads expected to write concurrently
+   * 
+   * @throws NullPointerException An argument is null
+   * @throws IllegalArgumentException An argument is invalid
+   */
+  @Validate
+  public SharedLongHashMap(final int maxCapacity, final int concurrencyLevel, @NotNull final Class<?> genericTypeParameterValue)
+  {
+    this.genericTypeParameterValue = genericTypeParameterValue;
+    segments = createSegments(maxCapacity, concurrencyLevel);
+    segmentShift = 64 - Integer.numberOfTrailingZeros(segments.length);
+  }
+
+  /**
+   * Creates the segments, dividing the capacity among them
+   */
+  private static Segment[] createSegments(final int maxCapacity, final int concurrencyLevel)
+  {
+    if (maxCapacity < 0)
+      throw new IllegalArgumentException("maxCapacity=" + maxCapacity);
+    if (concurrencyLevel <= 0)
+      throw new IllegalArgumentException("concurrencyLevel=" + concurrencyLevel);
+
+    // find a power of 2 >= concurrencyLevel, there are at least 2 so that the segment bits of hashes can be shifted out
+    int count = 2;
+    while (count < concurrencyLevel && count < MAXIMUM_SEGMENTS)
+      count <<= 1;
+
+    int segmentBits = Integer.numberOfTrailingZeros(count);
+    int capacity = tableSize((maxCapacity + count - 1) / count);
+
+    Segment[] result = new Segment[count];
+    for (int i = 0; i < count; i++)
+      result[i] = new Segment(capacity, segmentBits);
+
+    return result;
+  }
+
+  /**
+   * Clears the contents. This is an O(n) operation
+   */
+  public void clear()
+  {
+    for (Segment segment : segments)
+      segment.clear();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   * 
+   * @throws IllegalStateException A segment holds the maximum number of entries
+   */
+  @Override
+  public V put(final long key, final V value)
+  {
+    long hash = key * GOLDEN_RATIO;
+    return unmask(segmentFor(hash).put(key, hash, mask(value), false));
+  }
+
+  /**
+   * Puts the given key in the map unless it already exists, returning the value already associated with the key, or null if the key was
+   * put. This is an O(1) operation
+   * 
+   * @throws IllegalStateException A segment holds the maximum number of entries
+   */
+  public V putIfAbsent(final long key, final V value)
+  {
+    long hash = key * GOLDEN_RATIO;
+    return unmask(segmentFor(hash).put(key, hash, mask(value), true));
+  }
+
+  /**
+   * Returns the value associated with a key, computing it with the given function and putting it in the map if the key does not exist. The
+   * function is called at most once per key, while holding the lock of the key's segment, so it should be short and must not access the
+   * map. If the function returns null, nothing is put. This is an O(1) operation
+   * 
+   * @throws NullPointerException An argument is null
+   * @throws IllegalStateException A segment holds the maximum number of entries
+   */
+  @Validate
+  public V computeIfAbsent(final long key, @NotNull final LongToObjectFunction<? extends V> function)
+  {
+    long hash = key * GOLDEN_RATIO;
+    Segment segment = segmentFor(hash);
+
+    Object value = segment.get(key, hash);
+    if (value == null)
+      value = segment.computeIfAbsent(key, hash, function);
+
+    return unmask(value);
+  }
+
+  /**
+   * Replaces the value of the given key if it exists, returning its previous value, or null if the key does not exist. This is an O(1)
+   * operation
+   */
+  public V replace(final long key, final V value)
+  {
+    long hash = key * GOLDEN_RATIO;
+    return unmask(segmentFor(hash).replace(key, hash, null, mask(value)));
+  }
+
+  /**
+   * Replaces the value of the given key if it exists and is equal to the expected value, returning true if it was replaced. This is an
+   * O(1) operation
+   */
+  public boolean replace(final long key, final V expectedValue, final V newValue)
+  {
+    long hash = key * GOLDEN_RATIO;
+    return segmentFor(hash).replace(key, hash, mask(expectedValue), mask(newValue)) != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   */
+  @Override
+  public V remove(final long key)
+  {
+    long hash = key * GOLDEN_RATIO;
+    return unmask(segmentFor(hash).remove(key, hash));
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   */
+  @Override
+  public boolean containsKey(final long key)
+  {
+    long hash = key * GOLDEN_RATIO;
+    return segmentFor(hash).get(key, hash) != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(n) operation
+   */
+  @Override
+  @Validate
+  public LongEntry<V> containsValue(@NotNull final V value)
+  {
+    for (Segment segment : segments)
+    {
+      Object freeKeyValue = segment.freeKeyValue;
+      if (freeKeyValue != null && value.equals(unmask(freeKeyValue)))
+        return new LongEntry<V>(FREE_KEY, (V) unmask(freeKeyValue));
+
+      Table table = segment.table;
+      for (int i = 0; i < table.keys.length(); i++)
+      {
+        long key = table.keys.get(i);
+        if (key != FREE_KEY)
+        {
+          Object current = table.values.get(i);
+          if (current != REMOVED && value.equals(unmask(current)))
+            return new LongEntry<V>(key, (V) unmask(current));
+        }
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(n) operation
+   */
+  @Override
+  public LongEntry<V>[] entries()
+  {
+    ReifiedArrayList<LongEntry<V>> result = new ReifiedArrayList<LongEntry<V>>(size(), LongEntry.class);
+    for (Segment segment : segments)
+    {
+      Object freeKeyValue = segment.freeKeyValue;
+      if (freeKeyValue != null)
+        result.add(new LongEntry<V>(FREE_KEY, (V) unmask(freeKeyValue)));
+
+      Table table = segment.table;
+      for (int i = 0; i < table.keys.length(); i++)
+      {
+        long key = table.keys.get(i);
+        if (key != FREE_KEY)
+        {
+          Object value = table.values.get(i);
+          if (value != REMOVED)
+            result.add(new LongEntry<V>(key, (V) unmask(value)));
+        }
+      }
+    }
+
+    return result.toArray();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(1) operation
+   */
+  @Override
+  public V get(final long key)
+  {
+    long hash = key * GOLDEN_RATIO;
+    return unmask(segmentFor(hash).get(key, hash));
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(s) operation, where s is the number of segments
+   */
+  @Override
+  public boolean isEmpty()
+  {
+    for (Segment segment : segments)
+      if (segment.count > 0 || segment.freeKeyValue != null)
+        return false;
+
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(n) operation
+   */
+  @Override
+  public V[] values()
+  {
+    ReifiedArrayList<V> result = new ReifiedArrayList<V>(size(), genericTypeParameterValue);
+    for (Segment segment : segments)
+    {
+      Object freeKeyValue = segment.freeKeyValue;
+      if (freeKeyValue != null)
+        result.add((V) unmask(freeKeyValue));
+
+      Table table = segment.table;
+      for (int i = 0; i < table.keys.length(); i++)
+        if (table.keys.get(i) != FREE_KEY)
+        {
+          Object value = table.values.get(i);
+          if (value != REMOVED)
+            result.add((V) unmask(value));
+        }
+    }
+
+    return result.toArray();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(n) operation
+   */
+  @Override
+  public long[] keySet()
+  {
+    LongArrayList result = new LongArrayList(size());
+    for (Segment segment : segments)
+    {
+      if (segment.freeKeyValue != null)
+        result.add(FREE_KEY);
+
+      Table table = segment.table;
+      for (int i = 0; i < table.keys.length(); i++)
+      {
+        long key = table.keys.get(i);
+        if (key != FREE_KEY && table.values.get(i) != REMOVED)
+          result.add(key);
+      }
+    }
+
+    return result.toArray();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(s) operation, where s is the number of segments
+   */
+  @Override
+  public int size()
+  {
+    long result = 0;
+    for (Segment segment : segments)
+      result += segment.count + (segment.freeKeyValue != null ? 1 : 0);
+
+    return (int) Math.min(result, Integer.MAX_VALUE);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * This is an O(s) operation, where s is the number of segments
+   */
+  @Override
+  public int capacity()
+  {
+    long result = 0;
+    for (Segment segment : segments)
+      result += segment.table.keys.length();
+
+    return (int) Math.min(result, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the segment of a key's hash, selected by the hash's high bits
+   */
+  private Segment segmentFor(final long hash)
+  {
+    return segments[(int) (hash >>> segmentShift)];
+  }
+
+  /**
+   * Returns the number of slots needed to hold the given number of entries without exceeding the load factor
+   */
+  private static int tableSize(final int maxCapacity)
+  {
+    long required = (long) Math.ceil(maxCapacity / (double) LOAD_FACTOR);
+
+    // find a power of 2 >= required, must not be over the maximum
+    int capacity = 2;
+    while (capacity < required && capacity < MAXIMUM_CAPACITY)
+      capacity <<= 1;
+
+    return capacity;
+  }
+
+  private static Object mask(final Object value)
+  {
+    return value == null ? NULL_VALUE : value;
+  }
+
+  private static <V> V unmask(final Object value)
+  {
+    return value == NULL_VALUE ? null : (V) value;
+  }
+
+  /**
+   * An open addressing table of a segment. Slots are written only while holding the segment's lock, and a value is always written before
+   * its key, so that readers that find a key find its value too.
+   */
+  private static final class Table
+  {
+    final AtomicLongArray keys;
+    final AtomicReferenceArray<Object> values;
+    final int shift;
+    final int threshold;
+    /**
+     * The number of slots holding a key, including removed keys, accessed while holding the segment's lock
+     */
+    int used;
+
+    Table(final int capacity)
+    {
+      keys = new AtomicLongArray(capacity);
+      values = new AtomicReferenceArray<Object>(capacity);
+      shift = 64 - Integer.numberOfTrailingZeros(capacity);
+
+      // a full table must keep a free slot to end probes at
+      threshold = capacity == MAXIMUM_CAPACITY ? capacity - 1 : (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Returns the slot of a key that is not the free key, or else the free slot where it would be put
+     */
+    int probe(final long key, final long slotHash)
+    {
+      int mask = keys.length() - 1;
+      int index = (int) (slotHash >>> shift);
+      while (true)
+      {
+        long current = keys.get(index);
+        if (current == key || current == FREE_KEY)
+          return index;
+
+        index = (index + 1) & mask;
+      }
+    }
+  }
+
+  /**
+   * A part of the map, holding the keys whose hashes start with its index
+   */
+  private static final class Segment
+  {
+    private final ReentrantLock reEntrantLock = new ReentrantLock();
+    private final int segmentBits;
+    volatile Table table;
+    /**
+     * The masked value of the free key, if it is in this segment, or null
+     */
+    volatile Object freeKeyValue;
+    /**
+     * The number of keys in the table that have not been removed, written while holding the lock
+     */
+    volatile int count;
+
+    Segment(final int capacity, final int segmentBits)
+    {
+      this.segmentBits = segmentBits;
+      table = new Table(capacity);
+    }
+
+    /**
+     * Returns the masked value of a key, or null if it does not exist, without locking
+     */
+    Object get(final long key, final long hash)
+    {
+      if (key == FREE_KEY)
+        return freeKeyValue;
+
+      Table current = table;
+      int index = current.probe(key, hash << segmentBits);
+      if (current.keys.get(index) != key)
+        return null;
+
+      Object value = current.values.get(index);
+      return value == REMOVED ? null : value;
+    }
+
+    Object put(final long key, final long hash, final Object value, final boolean onlyIfAbsent)
+    {
+      reEntrantLock.lock();
+      try
+      {
+        if (key == FREE_KEY)
+        {
+          Object old = freeKeyValue;
+          if (old == null || !onlyIfAbsent)
+            freeKeyValue = value;
+
+          return old;
+        }
+
+        Table current = table;
+        int index = current.probe(key, hash << segmentBits);
+        if (current.keys.get(index) == key)
+        {
+          Object old = current.values.get(index);
+          if (old == REMOVED)
+          {
+            current.values.set(index, value);
+            count++;
+            return null;
+          }
+
+          if (!onlyIfAbsent)
+            current.values.set(index, value);
+
+          return old;
+        }
+
+        insert(current, index, key, hash, value);
+        return null;
+      }
+      finally
+      {
+        reEntrantLock.unlock();
+      }
+    }
+
+    Object computeIfAbsent(final long key, final long hash, final LongToObjectFunction<?> function)
+    {
+      reEntrantLock.lock();
+      try
+      {
+        if (key == FREE_KEY)
+        {
+          if (freeKeyValue == null)
+          {
+            Object value = function.apply(key);
+            if (value != null)
+              freeKeyValue = value;
+
+            return value;
+          }
+
+          return freeKeyValue;
+        }
+
+        Table current = table;
+        int index = current.probe(key, hash << segmentBits);
+        boolean existing = current.keys.get(index) == key;
+        if (existing)
+        {
+          Object old = current.values.get(index);
+          if (old != REMOVED)
+            return old;
+        }
+
+        Object value = function.apply(key);
+        if (value == null)
+          return null;
+
+        if (existing)
+        {
+          current.values.set(index, value);
+          count++;
+        } else
+          insert(current, index, key, hash, value);
+
+        return value;
+      }
+      finally
+      {
+        reEntrantLock.unlock();
+      }
+    }
+
+    /**
+     * Replaces the value of an existing key, if it is equal to the expected value or no value is expected, returning the previous value,
+     * or null if the key does not exist or its value is not the expected one
+     */
+    Object replace(final long key, final long hash, final Object expectedValue, final Object value)
+    {
+      reEntrantLock.lock();
+      try
+      {
+        if (key == FREE_KEY)
+        {
+          Object old = freeKeyValue;
+          if (old == null || (expectedValue != null && !old.equals(expectedValue)))
+            return null;
+
+          freeKeyValue = value;
+          return old;
+        }
+
+        Table current = table;
+        int index = current.probe(key, hash << segmentBits);
+        if (current.keys.get(index) != key)
+          return null;
+
+        Object old = current.values.get(index);
+        if (old == REMOVED || (expectedValue != null && !old.equals(expectedValue)))
+          return null;
+
+        current.values.set(index, value);
+        return old;
+      }
+      finally
+      {
+        reEntrantLock.unlock();
+      }
+    }
+
+    Object remove(final long key, final long hash)
+    {
+      reEntrantLock.lock();
+      try
+      {
+        if (key == FREE_KEY)
+        {
+          Object old = freeKeyValue;
+          freeKeyValue = null;
+          return old;
+        }
+
+        Table current = table;
+        int index = current.probe(key, hash << segmentBits);
+        if (current.keys.get(index) != key)
+          return null;
+
+        Object old = current.values.get(index);
+        if (old == REMOVED)
+          return null;
+
+        // the slot is kept, as moving other keys back into it could hide them from readers
+        current.values.set(index, REMOVED);
+        count--;
+        return old;
+      }
+      finally
+      {
+        reEntrantLock.unlock();
+      }
+    }
+
+    void clear()
+    {
+      reEntrantLock.lock();
+      try
+      {
+        table = new Table(table.keys.length());
+        freeKeyValue = null;
+        count = 0;
+      }
+      finally
+      {
+        reEntrantLock.unlock();
+      }
+    }
+
+    /**
+     * Puts a new key in the given free slot, resizing the table first if it is full. Must be called while holding the lock.
+     */
+    private void insert(Table current, int index, final long key, final long hash, final Object value)
+    {
+      if (current.used >= current.threshold)
+      {
+        current = rehash(current);
+        index = current.probe(key, hash << segmentBits);
+      }
+
+      current.values.set(index, value);
+      current.keys.set(index, key);
+      current.used++;
+      count++;
+    }
+
+    /**
+     * Moves the keys that have not been removed to a new table, which is doubled unless most used slots are of removed keys, and publishes
+     * it. Readers of the old table are unaffected, as it is no longer written.
+     * 
+     * @throws IllegalStateException The table cannot grow any further
+     */
+    private Table rehash(final Table old)
+    {
+      int capacity = old.keys.length();
+      if (count >= old.threshold / 2)
+      {
+        if (capacity >= MAXIMUM_CAPACITY)
+          throw new IllegalStateException("The segment cannot hold more than " + old.threshold + " entries.");
+
+        capacity <<= 1;
+      }
+
+      Table result = new Table(capacity);
+      for (int i = 0; i < old.keys.length(); i++)
+      {
+        long key = old.keys.get(i);
+        Object value = old.values.get(i);
+        if (key != FREE_KEY && value != REMOVED)
+        {
+          int index = result.probe(key, (key * GOLDEN_RATIO) << segmentBits);
+          result.values.lazySet(index, value);
+          result.keys.lazySet(index, key);
+          result.used++;
+        }
+      }
+
+      // publishing the table makes the lazily set slots visible to the readers that find it
+      table = result;
+      return result;
+    }
+  }
+}
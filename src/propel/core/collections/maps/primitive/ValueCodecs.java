@@ -0,0 +1,166 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.primitive;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Provides codecs for values of a fixed size, to be held by off-heap maps
+ */
+public final class ValueCodecs
+{
+  /**
+   * Codec of long values, occupying 8 bytes
+   */
+  public static final IValueCodec<Long> LONG = new IValueCodec<Long>() {
+    @Override
+    public int getSize()
+    {
+      return 8;
+    }
+
+    @Override
+    public Class<?> getValueType()
+    {
+      return Long.class;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, int offset, Long value)
+    {
+      buffer.putLong(offset, value);
+    }
+
+    @Override
+    public Long read(ByteBuffer buffer, int offset)
+    {
+      return buffer.getLong(offset);
+    }
+  };
+
+  /**
+   * Codec of int values, occupying 4 bytes
+   */
+  public static final IValueCodec<Integer> INT = new IValueCodec<Integer>() {
+    @Override
+    public int getSize()
+    {
+      return 4;
+    }
+
+    @Override
+    public Class<?> getValueType()
+    {
+      return Integer.class;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, int offset, Integer value)
+    {
+      buffer.putInt(offset, value);
+    }
+
+    @Override
+    public Integer read(ByteBuffer buffer, int offset)
+    {
+      return buffer.getInt(offset);
+    }
+  };
+
+  /**
+   * Codec of double values, occupying 8 bytes
+   */
+  public static final IValueCodec<Double> DOUBLE = new IValueCodec<Double>() {
+    @Override
+    public int getSize()
+    {
+      return 8;
+    }
+
+    @Override
+    public Class<?> getValueType()
+    {
+      return Double.class;
+    }
+
+    @Override
+    public void write(ByteBuffer buffer, int offset, Double value)
+    {
+      buffer.putDouble(offset, value);
+    }
+
+    @Override
+    public Double read(ByteBuffer buffer, int offset)
+    {
+      return buffer.getDouble(offset);
+    }
+  };
+
+  /**
+   * Private constructor prevents instantiation.
+   */
+  private ValueCodecs()
+  {
+  }
+
+  /**
+   * Returns a codec of byte arrays of the given length, occupying that many bytes. Only arrays of exactly that length may be written.
+   * 
+   * @throws IllegalArgumentException An argument is invalid
+   */
+  public static IValueCodec<byte[]> bytes(final int length)
+  {
+    if (length <= 0)
+      throw new IllegalArgumentException("length=" + length);
+
+    return new IValueCodec<byte[]>() {
+      @Override
+      public int getSize()
+      {
+        return length;
+      }
+
+      @Override
+      public Class<?> getValueType()
+      {
+        return byte[].class;
+      }
+
+      @Override
+      public void write(ByteBuffer buffer, int offset, byte[] value)
+      {
+        if (value.length != length)
+          throw new IllegalArgumentException("Expected " + length + " bytes, got " + value.length);
+
+        for (int i = 0; i < length; i++)
+          buffer.put(offset + i, value[i]);
+      }
+
+      @Override
+      public byte[] read(ByteBuffer buffer, int offset)
+      {
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; i++)
+          result[i] = buffer.get(offset + i);
+
+        return result;
+      }
+    };
+  }
+}
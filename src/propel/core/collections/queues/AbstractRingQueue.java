@@ -0,0 +1,519 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.queues;
+
+import propel.core.TryResult;
+import propel.core.collections.lists.ReifiedArrayList;
+import propel.core.collections.lists.ReifiedList;
+import propel.core.utils.Linq;
+import propel.core.utils.SuperTypeToken;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The base of single-consumer queues backed by a ring buffer, which is implemented here along with the consumer side of the queue. The
+ * consumer and producers communicate through ordered writes of the padded head and tail indices, without locking. Each side caches the
+ * last index of the other side it has seen, and only re-reads it when the cached value says the queue is empty or full. A free slot holds
+ * null, so null items are stored as a sentinel. Waiting for the queue to become ready is delegated to the queue's wait strategy.
+ */
+abstract class AbstractRingQueue<T>
+    implements ISharedQueue<T>
+{
+  /**
+   * Stands for null items in the buffer
+   */
+  private static final Object NULL_ITEM = new Object();
+  /**
+   * Returned when there is nothing to de-queue
+   */
+  private static final Object EMPTY = new Object();
+
+  protected final int capacity;
+  protected final int mask;
+  protected final AtomicReferenceArray<Object> items;
+  /**
+   * The position of the next item to get, advanced by the consumer, caching the last tail position it has seen
+   */
+  protected final PaddedSequence head;
+  /**
+   * The position of the next item to put, advanced by the producer(s), caching the last head position seen
+   */
+  protected final PaddedSequence tail;
+  protected final WaitStrategy waitStrategy;
+
+  private final Class<?> genericTypeParameter;
+  private final ReentrantLock reEntrantLock;
+
+  /**
+   * Initializes the queue, resolving the generic type parameter from the class's type argument if requested. The capacity is rounded up to
+   * a power of two.
+   * 
+   * @throws IllegalArgumentException When the capacity is out of range.
+   * @throws NullPointerException When the wait strategy is null, or the generic type parameter is null and is not resolved.
+   */
+  protected AbstractRingQueue(int capacity, WaitStrategy waitStrategy, Class<?> genericTypeParameter, boolean resolveType)
+  {
+    if (!resolveType && genericTypeParameter == null)
+      throw new NullPointerException("genericTypeParameter");
+    if (capacity <= 0 || capacity > (1 << 30))
+      throw new IllegalArgumentException("capacity=" + capacity);
+    if (waitStrategy == null)
+      throw new NullPointerException("waitStrategy");
+
+    this.genericTypeParameter = resolveType ? SuperTypeToken.getClazz(this.getClass()) : genericTypeParameter;
+    this.waitStrategy = waitStrategy;
+    this.capacity = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+    mask = this.capacity - 1;
+    items = new AtomicReferenceArray<Object>(this.capacity);
+    head = new PaddedSequence();
+    tail = new PaddedSequence();
+    reEntrantLock = new ReentrantLock();
+  }
+
+  /**
+   * En-queues an object, if there is room for it, returning true if successful. This never blocks. This is an O(1) operation.
+   */
+  public abstract boolean offer(T item);
+
+  /**
+   * Returns the capacity of the queue
+   */
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  /**
+   * Returns how threads wait for the queue to become ready
+   */
+  public WaitStrategy getWaitStrategy()
+  {
+    return waitStrategy;
+  }
+
+  /**
+   * Removes all items. Items put concurrently may or may not be removed. This must only be called by the consumer. This is an O(n)
+   * operation.
+   */
+  @Override
+  public void clear()
+  {
+    while (dequeue() != EMPTY)
+      continue;
+  }
+
+  /**
+   * De-queues an object, otherwise waits until one becomes available. This must only be called by the consumer. This is an O(1)
+   * operation.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public T get()
+  {
+    Object result;
+    for (int attempt = 0; (result = dequeue()) == EMPTY; attempt++)
+      waitStrategy.idle(attempt);
+
+    return (T) result;
+  }
+
+  /**
+   * De-queues a number of objects, waiting if not all are available. Each iteration takes all the available items, up to the remaining
+   * count, and then advances the head once. This must only be called by the consumer. This is an O(n) operation where n is the count.
+   * 
+   * @throws IllegalArgumentException Count is out of range.
+   */
+  @Override
+  public Iterable<T> getRange(int count)
+  {
+    if (count < 0)
+      throw new IllegalArgumentException("count=" + count);
+
+    List<T> result = new ArrayList<T>(Math.min(count, capacity));
+    for (int attempt = 0; result.size() < count;)
+      if (drain(result, count - result.size()) > 0)
+        attempt = 0;
+      else
+        waitStrategy.idle(attempt++);
+
+    return result;
+  }
+
+  /**
+   * {@inheritDoc} This must only be called by the consumer. This is an O(1) operation.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public TryResult<T> tryGet()
+  {
+    Object result = dequeue();
+    if (result == EMPTY)
+      return new TryResult<T>();
+
+    return new TryResult<T>((T) result);
+  }
+
+  /**
+   * {@inheritDoc} The consumer waits according to the queue's wait strategy, checking for interrupts between attempts. This must only be
+   * called by the consumer. This is an O(1) operation.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public TryResult<T> poll(long timeout, TimeUnit unit)
+      throws InterruptedException
+  {
+    long nanos = unit.toNanos(timeout);
+    long start = System.nanoTime();
+
+    Object result;
+    for (int attempt = 0; (result = dequeue()) == EMPTY; attempt++)
+      if (!idle(attempt, nanos - (System.nanoTime() - start)))
+        return new TryResult<T>();
+
+    return new TryResult<T>((T) result);
+  }
+
+  /**
+   * {@inheritDoc} The head is advanced once. This must only be called by the consumer. This is an O(n) operation where n is the number of
+   * objects moved.
+   */
+  @Override
+  public int drainTo(Collection<? super T> collection, int max)
+  {
+    if (collection == null)
+      throw new NullPointerException("collection");
+    if (collection == this)
+      throw new IllegalArgumentException("Cannot drain a queue to itself.");
+    if (max < 0)
+      throw new IllegalArgumentException("max=" + max);
+
+    return drain(collection, max);
+  }
+
+  /**
+   * {@inheritDoc} The head is advanced once. This must only be called by the consumer. This is an O(n) operation where n is the number of
+   * objects returned.
+   */
+  @Override
+  public List<T> getUpTo(int max, long timeout, TimeUnit unit)
+      throws InterruptedException
+  {
+    if (max < 0)
+      throw new IllegalArgumentException("max=" + max);
+
+    long nanos = unit.toNanos(timeout);
+    long start = System.nanoTime();
+
+    List<T> result = new ArrayList<T>(Math.min(max, capacity));
+    for (int attempt = 0; max > 0 && drain(result, max) == 0; attempt++)
+      if (!idle(attempt, nanos - (System.nanoTime() - start)))
+        break;
+
+    return result;
+  }
+
+  /**
+   * Returns the next element without removing it. If there are no elements, an exception will be thrown. This may be called by any thread.
+   * This is an O(1) operation.
+   * 
+   * @throws NoSuchElementException When the queue is empty.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public T peek()
+  {
+    while (true)
+    {
+      long h = head.get();
+      if (h >= tail.get())
+      {
+        if (h == head.get())
+          throw new NoSuchElementException("Cannot perform a peek operation when the queue is empty.");
+
+        continue;
+      }
+
+      // the item is only valid if it was not consumed while being read
+      Object item = items.get((int) h & mask);
+      if (item != null && h == head.get())
+        return (T) unwrap(item);
+    }
+  }
+
+  /**
+   * Returns the queue length. This is an O(1) operation, whose result may be outdated by the time it is returned.
+   */
+  @Override
+  public int size()
+  {
+    long h = head.get();
+    return (int) Math.max(0, Math.min(capacity, tail.get() - h));
+  }
+
+  /**
+   * Puts all elements in an array and returns them. This is an O(n) operation.
+   */
+  @Override
+  public T[] toArray()
+  {
+    return toList().toArray();
+  }
+
+  /**
+   * Puts all elements in a list and returns them. Elements are those that are found while walking the queue, as per
+   * weaklyConsistentIterator(). This is an O(n) operation.
+   */
+  @Override
+  public ReifiedList<T> toList()
+  {
+    ReifiedList<T> result = new ReifiedArrayList<T>(Math.max(1, size()), genericTypeParameter);
+
+    Iterator<T> iterator = weaklyConsistentIterator();
+    while (iterator.hasNext())
+      result.add(iterator.next());
+
+    return result;
+  }
+
+  /**
+   * Returns an iterator over a copy of the queue. This is an O(n) operation.
+   */
+  @Override
+  public Iterator<T> iterator()
+  {
+    return toList().iterator();
+  }
+
+  /**
+   * {@inheritDoc} This walks the ring buffer without locking or copying it, and may be called by any thread.
+   */
+  @Override
+  public Iterator<T> weaklyConsistentIterator()
+  {
+    return new Iterator<T>() {
+      private long position = head.get();
+      private Object next = EMPTY;
+      private boolean done;
+
+      @Override
+      public boolean hasNext()
+      {
+        while (next == EMPTY && !done)
+        {
+          long h = head.get();
+          if (position < h)
+            position = h;
+
+          if (position >= tail.get())
+            done = true;
+          else
+          {
+            // the item is only valid if it was not consumed while being read
+            Object item = items.get((int) position & mask);
+            if (item != null && position >= head.get())
+            {
+              next = unwrap(item);
+              position++;
+            }
+          }
+        }
+
+        return !done;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public T next()
+      {
+        if (!hasNext())
+          throw new NoSuchElementException("There is no next element.");
+
+        Object result = next;
+        next = EMPTY;
+        return (T) result;
+      }
+
+      @Override
+      public void remove()
+      {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<?> getGenericTypeParameter()
+  {
+    return genericTypeParameter;
+  }
+
+  /**
+   * Locks the collection. This does not block any queue operations.
+   */
+  @Override
+  public void lock()
+  {
+    reEntrantLock.lock();
+  }
+
+  /**
+   * Unlocks the collection.
+   * 
+   * @throws IllegalMonitorStateException When the current thread does not own the lock.
+   */
+  @Override
+  public void unlock()
+  {
+    reEntrantLock.unlock();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return Linq.toString(toList());
+  }
+
+  /**
+   * Returns the position up to which producers may put items, re-reading the head only if the cached limit has been reached. With several
+   * producers the cache is shared, so it may be stale, but it is never ahead of the head.
+   */
+  protected long limit(long t)
+  {
+    long limit = tail.cache + capacity;
+    if (t >= limit)
+    {
+      long h = head.get();
+      tail.cache = h;
+      limit = h + capacity;
+    }
+
+    return limit;
+  }
+
+  /**
+   * Returns the position up to which the consumer may take items, re-reading the tail only if the cached one has been reached
+   */
+  private long available(long h)
+  {
+    long t = head.cache;
+    if (h >= t)
+    {
+      t = tail.get();
+      head.cache = t;
+    }
+
+    return t;
+  }
+
+  /**
+   * Idles according to the wait strategy, unless no time remains, returning false in that case
+   * 
+   * @throws InterruptedException When the thread is interrupted.
+   */
+  private boolean idle(int attempt, long remaining)
+      throws InterruptedException
+  {
+    if (Thread.interrupted())
+      throw new InterruptedException();
+    if (remaining <= 0)
+      return false;
+
+    waitStrategy.idle(attempt);
+    return true;
+  }
+
+  /**
+   * Takes the item at the head, if there is one, returning EMPTY if the queue is empty
+   */
+  private Object dequeue()
+  {
+    long h = head.get();
+    if (h >= available(h))
+      return EMPTY;
+
+    Object result = take(h);
+    head.lazySet(h + 1);
+    return unwrap(result);
+  }
+
+  /**
+   * Takes up to count available items into the given collection and advances the head once, returning the number of items taken. The tail
+   * is always re-read, so that all the items put so far are taken.
+   */
+  private int drain(Collection<? super T> result, int count)
+  {
+    long h = head.get();
+    long t = tail.get();
+    head.cache = t;
+
+    int taken = (int) Math.min(count, t - h);
+    if (taken <= 0)
+      return 0;
+
+    for (long position = h; position < h + taken; position++)
+      result.add(AbstractRingQueue.<T>unwrap(take(position)));
+
+    head.lazySet(h + taken);
+    return taken;
+  }
+
+  /**
+   * Takes the item from the slot of a position below the tail, waiting for a producer that has claimed the position to put its item
+   */
+  private Object take(long position)
+  {
+    int index = (int) position & mask;
+
+    Object result;
+    for (int spins = 0; (result = items.get(index)) == null; spins++)
+      WaitStrategy.SpinThenPark.idle(spins);
+
+    items.lazySet(index, null);
+    return result;
+  }
+
+  /**
+   * Returns the object to store in the buffer for an item
+   */
+  protected static Object wrap(Object item)
+  {
+    return item == null ? NULL_ITEM : item;
+  }
+
+  /**
+   * Returns the item stored in the buffer as the given object
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> T unwrap(Object value)
+  {
+    return value == NULL_ITEM ? null : (T) value;
+  }
+}
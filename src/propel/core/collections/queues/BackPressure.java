@@ -0,0 +1,39 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.queues;
+
+/**
+ * How a bounded queue reacts when an item is put while the queue is full.
+ */
+public enum BackPressure
+{
+  /**
+   * The producer blocks until a consumer makes room, being signalled by it
+   */
+  Block,
+  /**
+   * The producer busy-spins, then yields, then parks for short periods until there is room, without requiring consumers to signal it. This
+   * reacts fastest to room being made, at the expense of CPU time.
+   */
+  SpinThenPark,
+  /**
+   * The put fails immediately with an IllegalStateException
+   */
+  FailFast
+}
@@ -18,10 +18,15 @@
 // /////////////////////////////////////////////////////////
 package propel.core.collections.queues;
 
+import propel.core.TryResult;
 import propel.core.collections.ReifiedIterable;
 import propel.core.collections.lists.ReifiedList;
 import propel.core.model.IShared;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The interface of a type-aware thread-safe queue
@@ -48,6 +53,44 @@ public interface ISharedQueue<T>
    */
   Iterable<T> getRange(int count);
 
+  /**
+   * Dequeues an object if one is available, without blocking.
+   * 
+   * @return Results in success with the dequeued object, or failure if the queue is empty.
+   */
+  TryResult<T> tryGet();
+
+  /**
+   * Dequeues an object, waiting up to the given timeout for one to become available.
+   * 
+   * @return Results in success with the dequeued object, or failure if the timeout elapsed first.
+   * 
+   * @throws NullPointerException When the time unit is null.
+   * @throws InterruptedException When the thread is interrupted while waiting.
+   */
+  TryResult<T> poll(long timeout, TimeUnit unit)
+      throws InterruptedException;
+
+  /**
+   * Dequeues up to a maximum number of the available objects into a collection, without blocking, returning the number of objects moved.
+   * 
+   * @throws NullPointerException When the collection is null.
+   * @throws IllegalArgumentException When the maximum is out of range or the collection is this queue.
+   */
+  int drainTo(Collection<? super T> collection, int max);
+
+  /**
+   * Dequeues up to a maximum number of objects, waiting up to the given timeout for at least one to become available. This returns as soon
+   * as there are objects to return, with all those available up to the maximum, so that consumers can process them in batches. If the
+   * timeout elapses first, the result is empty.
+   * 
+   * @throws IllegalArgumentException When the maximum is out of range.
+   * @throws NullPointerException When the time unit is null.
+   * @throws InterruptedException When the thread is interrupted while waiting.
+   */
+  List<T> getUpTo(int max, long timeout, TimeUnit unit)
+      throws InterruptedException;
+
   /**
    * Returns the next element without removing it. If there are no elements, an exception will be thrown.
    * 
@@ -81,4 +124,11 @@ public interface ISharedQueue<T>
    * Puts all elements in a list and returns them.
    */
   ReifiedList<T> toList();
+
+  /**
+   * Returns a weakly consistent iterator, which walks the live queue from head to tail a batch at a time without copying it or holding its
+   * lock for the whole traversal. Elements that are dequeued before the iterator reaches them are skipped, and those enqueued meanwhile
+   * may or may not be returned.
+   */
+  Iterator<T> weaklyConsistentIterator();
 }
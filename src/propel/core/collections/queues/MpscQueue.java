@@ -0,0 +1,148 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.queues;
+
+import propel.core.utils.Linq;
+import propel.core.utils.SuperTypeTokenException;
+
+/**
+ * A type-aware bounded queue for handing items from any number of producer threads to a single consumer thread, backed by a ring buffer.
+ * Producers claim positions with a CAS on the tail, and then put their items with an ordered write, while the consumer owns the head and
+ * publishes it with an ordered write. Each side only re-reads the other side's index when its cached copy says the queue is empty or
+ * full. putRange() claims all the positions it can with a single CAS, and getRange() takes all the available items before advancing the
+ * head once. When the queue is full or empty, producers or the consumer wait according to the queue's wait strategy. This collection
+ * allows null items to be inserted.
+ * 
+ * Only one thread may get items, or clear the queue, at any time; peek(), size() and iteration may be used by any thread. The lock of this
+ * queue is not taken by any of its operations.
+ * 
+ * Instantiate using e.g.: new MpscQueue&lt;String&gt;(1024){}; -OR- new MpscQueue&lt;String&gt;(1024, String.class);
+ */
+public class MpscQueue<T>
+    extends AbstractRingQueue<T>
+{
+  /**
+   * Constructor initializes with a capacity, spinning, then yielding, then parking while waiting.
+   * 
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   * @throws IllegalArgumentException When the capacity is out of range.
+   */
+  public MpscQueue(int capacity)
+  {
+    this(capacity, WaitStrategy.SpinThenPark);
+  }
+
+  /**
+   * Constructor initializes with a capacity and the way to wait for the queue to become ready.
+   * 
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   * @throws IllegalArgumentException When the capacity is out of range.
+   * @throws NullPointerException When the wait strategy is null.
+   */
+  public MpscQueue(int capacity, WaitStrategy waitStrategy)
+  {
+    super(capacity, waitStrategy, null, true);
+  }
+
+  /**
+   * Constructor initializes with a capacity and the generic type parameter, spinning, then yielding, then parking while waiting.
+   * 
+   * @throws IllegalArgumentException When the capacity is out of range.
+   * @throws NullPointerException When the generic type parameter is null.
+   */
+  public MpscQueue(int capacity, Class<?> genericTypeParameter)
+  {
+    super(capacity, WaitStrategy.SpinThenPark, genericTypeParameter, false);
+  }
+
+  /**
+   * Constructor initializes with a capacity, the way to wait for the queue to become ready and the generic type parameter. The capacity is
+   * rounded up to a power of two.
+   * 
+   * @throws IllegalArgumentException When the capacity is out of range.
+   * @throws NullPointerException When an argument is null.
+   */
+  public MpscQueue(int capacity, WaitStrategy waitStrategy, Class<?> genericTypeParameter)
+  {
+    super(capacity, waitStrategy, genericTypeParameter, false);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean offer(T item)
+  {
+    long t;
+    do
+    {
+      t = tail.get();
+      if (t >= limit(t))
+        return false;
+    } while (!tail.compareAndSet(t, t + 1));
+
+    items.lazySet((int) t & mask, wrap(item));
+    return true;
+  }
+
+  /**
+   * En-queues an object, otherwise waits until there is room for it. This is an O(1) operation.
+   */
+  @Override
+  public void put(T item)
+  {
+    for (int attempt = 0; !offer(item); attempt++)
+      waitStrategy.idle(attempt);
+  }
+
+  /**
+   * En-queues a number of objects. Each iteration claims as many positions as there is room for, up to the remaining count, with a single
+   * CAS. Items put concurrently by other producers may be interleaved with these. This is an O(n) operation where n is the item count.
+   * 
+   * @throws NullPointerException When the argument is null.
+   */
+  @Override
+  public void putRange(Iterable<? extends T> items)
+  {
+    if (items == null)
+      throw new NullPointerException("items");
+
+    Object[] values = Linq.toList(items).toArray();
+    int offset = 0;
+
+    for (int attempt = 0; offset < values.length;)
+    {
+      long t = tail.get();
+      int claimed = (int) Math.min(values.length - offset, limit(t) - t);
+      if (claimed <= 0)
+      {
+        waitStrategy.idle(attempt++);
+        continue;
+      }
+
+      if (tail.compareAndSet(t, t + claimed))
+      {
+        for (long position = t; position < t + claimed; position++)
+          this.items.lazySet((int) position & mask, wrap(values[offset++]));
+
+        attempt = 0;
+      }
+    }
+  }
+}
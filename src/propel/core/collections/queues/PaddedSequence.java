@@ -0,0 +1,88 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.queues;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A head or tail index of a ring buffer queue, padded on both sides so that it does not share a cache line with the other index, which is
+ * written by the opposite side of the queue, or with any other object. It also holds the last value of the other index seen by the side
+ * that advances this one, so that it is only re-read when this one appears to have caught up with it.
+ * 
+ * The JVM lays out the fields of a superclass before those of its subclasses, so the padding before the index is declared in a superclass
+ * and the padding after it in this class.
+ */
+@SuppressWarnings("unused")
+final class PaddedSequence
+    extends PaddedSequenceValue
+{
+  private long p8, p9, p10, p11, p12, p13, p14;
+
+  PaddedSequence()
+  {
+  }
+
+  /**
+   * Returns the index, with volatile read semantics
+   */
+  long get()
+  {
+    return value;
+  }
+
+  /**
+   * Sets the index with an ordered write, which is not immediately visible to other threads, but never before the writes preceding it
+   */
+  void lazySet(long newValue)
+  {
+    VALUE.lazySet(this, newValue);
+  }
+
+  /**
+   * Sets the index to the new value if it currently holds the expected one, returning true if successful
+   */
+  boolean compareAndSet(long expected, long newValue)
+  {
+    return VALUE.compareAndSet(this, expected, newValue);
+  }
+}
+
+/**
+ * The padding that precedes the index of a PaddedSequence
+ */
+@SuppressWarnings("unused")
+abstract class PaddedSequenceLeftPadding
+{
+  private long p1, p2, p3, p4, p5, p6, p7;
+}
+
+/**
+ * The index of a PaddedSequence and the cached value of the opposite index, which are written by the same side of the queue
+ */
+abstract class PaddedSequenceValue
+    extends PaddedSequenceLeftPadding
+{
+  static final AtomicLongFieldUpdater<PaddedSequenceValue> VALUE = AtomicLongFieldUpdater.newUpdater(PaddedSequenceValue.class, "value");
+
+  volatile long value;
+  /**
+   * The last observed value of the opposite index
+   */
+  volatile long cache;
+}
@@ -0,0 +1,794 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.queues;
+
+import propel.core.TryResult;
+import propel.core.collections.lists.ReifiedArrayList;
+import propel.core.collections.lists.ReifiedList;
+import propel.core.utils.Linq;
+import propel.core.utils.SuperTypeToken;
+import propel.core.utils.SuperTypeTokenException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A type-aware thread-safe bounded queue, backed by a ring buffer, which producers and consumers access without locking. Each slot of the
+ * buffer carries a sequence number, which tells whether the slot is free or holds an item for the current lap of the buffer. Producers and
+ * consumers claim positions with a CAS on the tail and head counters respectively, so only threads contending for the same end of the
+ * queue interfere with each other, and putRange() and getRange() claim all the slots they can in a single CAS. When the queue is full, put
+ * reacts according to the BackPressure it was created with. This collection allows null items to be inserted.
+ * 
+ * The lock of this queue is not taken by any of its operations, so it only serialises callers of lock() among themselves.
+ * 
+ * Instantiate using e.g.: new SharedBoundedQueue&lt;String&gt;(1024){}; -OR- new SharedBoundedQueue&lt;String&gt;(1024, String.class);
+ */
+public class SharedBoundedQueue<T>
+    implements ISharedQueue<T>
+{
+  private static final Object EMPTY = new Object();
+
+  private final Class<?> genericTypeParameter;
+  private final BackPressure backPressure;
+  private final int capacity;
+  private final int mask;
+  private final AtomicReferenceArray<Object> items;
+  /**
+   * A slot's sequence equals the position that may be put into it next when the slot is free, or that position plus one once the item is
+   * put
+   */
+  private final AtomicLongArray sequences;
+  private final AtomicLong head;
+  private final AtomicLong tail;
+
+  private final ReentrantLock reEntrantLock;
+  private final ReentrantLock waitLock;
+  private final Condition notEmpty;
+  private final Condition notFull;
+  private final AtomicInteger waitingConsumers;
+  private final AtomicInteger waitingProducers;
+
+  /**
+   * Constructor initializes with a capacity, blocking producers while the queue is full.
+   * 
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   * @throws IllegalArgumentException When the capacity is out of range.
+   */
+  public SharedBoundedQueue(int capacity)
+  {
+    this(capacity, BackPressure.Block);
+  }
+
+  /**
+   * Constructor initializes with a capacity and the reaction to the queue being full.
+   * 
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   * @throws IllegalArgumentException When the capacity is out of range.
+   * @throws NullPointerException When the back-pressure is null.
+   */
+  public SharedBoundedQueue(int capacity, BackPressure backPressure)
+  {
+    this(capacity, backPressure, null, true);
+  }
+
+  /**
+   * Constructor initializes with a capacity and the generic type parameter, blocking producers while the queue is full.
+   * 
+   * @throws IllegalArgumentException When the capacity is out of range.
+   * @throws NullPointerException When the generic type parameter is null.
+   */
+  public SharedBoundedQueue(int capacity, Class<?> genericTypeParameter)
+  {
+    this(capacity, BackPressure.Block, genericTypeParameter, false);
+  }
+
+  /**
+   * Constructor initializes with a capacity, the reaction to the queue being full and the generic type parameter. The capacity is rounded
+   * up to a power of two.
+   * 
+   * @throws IllegalArgumentException When the capacity is out of range.
+   * @throws NullPointerException When an argument is null.
+   */
+  public SharedBoundedQueue(int capacity, BackPressure backPressure, Class<?> genericTypeParameter)
+  {
+    this(capacity, backPressure, genericTypeParameter, false);
+  }
+
+  /**
+   * Initializes the queue, resolving the generic type parameter from the class's type argument if requested
+   */
+  private SharedBoundedQueue(int capacity, BackPressure backPressure, Class<?> genericTypeParameter, boolean resolveType)
+  {
+    if (!resolveType && genericTypeParameter == null)
+      throw new NullPointerException("genericTypeParameter");
+    if (capacity <= 0 || capacity > (1 << 30))
+      throw new IllegalArgumentException("capacity=" + capacity);
+    if (backPressure == null)
+      throw new NullPointerException("backPressure");
+
+    this.genericTypeParameter = resolveType ? SuperTypeToken.getClazz(this.getClass()) : genericTypeParameter;
+    this.backPressure = backPressure;
+    this.capacity = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+    mask = this.capacity - 1;
+    items = new AtomicReferenceArray<Object>(this.capacity);
+    sequences = new AtomicLongArray(this.capacity);
+    for (int i = 0; i < this.capacity; i++)
+      sequences.set(i, i);
+    head = new AtomicLong();
+    tail = new AtomicLong();
+
+    reEntrantLock = new ReentrantLock();
+    waitLock = new ReentrantLock();
+    notEmpty = waitLock.newCondition();
+    notFull = waitLock.newCondition();
+    waitingConsumers = new AtomicInteger();
+    waitingProducers = new AtomicInteger();
+  }
+
+  /**
+   * Returns the capacity of the queue
+   */
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  /**
+   * Returns the reaction of the queue to an item being put while it is full
+   */
+  public BackPressure getBackPressure()
+  {
+    return backPressure;
+  }
+
+  /**
+   * Removes all items. Items put concurrently may or may not be removed. This is an O(n) operation.
+   */
+  @Override
+  public void clear()
+  {
+    while (dequeue() != EMPTY)
+      continue;
+
+    signalNotFull();
+  }
+
+  /**
+   * De-queues an object, otherwise blocks until one becomes available. This is an O(1) operation.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public T get()
+  {
+    Object result;
+    for (int attempt = 0; (result = dequeue()) == EMPTY; attempt++)
+      awaitNotEmpty(attempt);
+
+    signalNotFull();
+    return (T) result;
+  }
+
+  /**
+   * De-queues a number of objects, blocking if not all are available. Each iteration claims all the available items, up to the remaining
+   * count, with a single CAS. This is an O(n) operation where n is the count.
+   * 
+   * @throws IllegalArgumentException Count is out of range.
+   */
+  @Override
+  public Iterable<T> getRange(int count)
+  {
+    if (count < 0)
+      throw new IllegalArgumentException("count=" + count);
+
+    List<T> result = new ArrayList<T>(Math.min(count, capacity));
+    for (int attempt = 0; result.size() < count;)
+      if (drain(result, count - result.size()) > 0)
+        attempt = 0;
+      else
+        awaitNotEmpty(attempt++);
+
+    return result;
+  }
+
+  /**
+   * {@inheritDoc} This is an O(1) operation.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public TryResult<T> tryGet()
+  {
+    Object result = dequeue();
+    if (result == EMPTY)
+      return new TryResult<T>();
+
+    signalNotFull();
+    return new TryResult<T>((T) result);
+  }
+
+  /**
+   * {@inheritDoc} Consumers wait as they do in get(), but only up to the timeout. This is an O(1) operation.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public TryResult<T> poll(long timeout, TimeUnit unit)
+      throws InterruptedException
+  {
+    long nanos = unit.toNanos(timeout);
+    long start = System.nanoTime();
+
+    Object result;
+    for (int attempt = 0; (result = dequeue()) == EMPTY; attempt++)
+    {
+      long remaining = nanos - (System.nanoTime() - start);
+      if (remaining <= 0)
+        return new TryResult<T>();
+
+      awaitNotEmpty(attempt, remaining);
+    }
+
+    signalNotFull();
+    return new TryResult<T>((T) result);
+  }
+
+  /**
+   * {@inheritDoc} The objects are claimed with a single CAS. This is an O(n) operation where n is the number of objects moved.
+   */
+  @Override
+  public int drainTo(Collection<? super T> collection, int max)
+  {
+    if (collection == null)
+      throw new NullPointerException("collection");
+    if (collection == this)
+      throw new IllegalArgumentException("Cannot drain a queue to itself.");
+    if (max < 0)
+      throw new IllegalArgumentException("max=" + max);
+
+    return drain(collection, max);
+  }
+
+  /**
+   * {@inheritDoc} The objects are claimed with a single CAS. This is an O(n) operation where n is the number of objects returned.
+   */
+  @Override
+  public List<T> getUpTo(int max, long timeout, TimeUnit unit)
+      throws InterruptedException
+  {
+    if (max < 0)
+      throw new IllegalArgumentException("max=" + max);
+
+    long nanos = unit.toNanos(timeout);
+    long start = System.nanoTime();
+
+    List<T> result = new ArrayList<T>(Math.min(max, capacity));
+    for (int attempt = 0; max > 0 && drain(result, max) == 0; attempt++)
+    {
+      long remaining = nanos - (System.nanoTime() - start);
+      if (remaining <= 0)
+        break;
+
+      awaitNotEmpty(attempt, remaining);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the next element without removing it. If there are no elements, an exception will be thrown. This is an O(1) operation.
+   * 
+   * @throws NoSuchElementException When the queue is empty.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public T peek()
+  {
+    while (true)
+    {
+      long h = head.get();
+      int index = (int) h & mask;
+      if (sequences.get(index) != h + 1)
+      {
+        if (h == head.get())
+          throw new NoSuchElementException("Cannot perform a peek operation when the queue is empty.");
+
+        continue;
+      }
+
+      // the item is only valid if it was not consumed while being read
+      Object result = items.get(index);
+      if (sequences.get(index) == h + 1)
+        return (T) result;
+    }
+  }
+
+  /**
+   * En-queues an object, if there is room for it, returning true if successful. This never blocks. This is an O(1) operation.
+   */
+  public boolean offer(T item)
+  {
+    if (!tryPut(item))
+      return false;
+
+    signalNotEmpty();
+    return true;
+  }
+
+  /**
+   * En-queues an object. If the queue is full, this blocks, spins or fails depending on the queue's back-pressure. This is an O(1)
+   * operation.
+   * 
+   * @throws IllegalStateException When the queue is full and its back-pressure is FailFast.
+   */
+  @Override
+  public void put(T item)
+  {
+    for (int attempt = 0; !tryPut(item); attempt++)
+      awaitNotFull(attempt, 1);
+
+    signalNotEmpty();
+  }
+
+  /**
+   * En-queues a number of objects. Each iteration claims as many slots as are free, up to the remaining count, with a single CAS. If the
+   * queue is full, this blocks, spins or fails depending on the queue's back-pressure; with FailFast, either all items are put, claiming
+   * their slots in a single CAS, or none are. This is an O(n) operation where n is the item count.
+   * 
+   * @throws NullPointerException When the argument is null.
+   * @throws IllegalStateException When there is not enough room for all items and the back-pressure is FailFast.
+   */
+  @Override
+  public void putRange(Iterable<? extends T> items)
+  {
+    if (items == null)
+      throw new NullPointerException("items");
+
+    Object[] values = Linq.toList(items).toArray();
+    int offset = 0;
+
+    for (int attempt = 0; offset < values.length;)
+    {
+      long t = tail.get();
+      int free = (int) (capacity - (t - head.get()));
+      int claimed = Math.min(values.length - offset, free);
+      if (claimed <= 0 || (backPressure == BackPressure.FailFast && claimed < values.length))
+      {
+        awaitNotFull(attempt++, values.length);
+        continue;
+      }
+
+      if (tail.compareAndSet(t, t + claimed))
+      {
+        for (long position = t; position < t + claimed; position++)
+        {
+          int index = (int) position & mask;
+
+          // the consumer of the previous lap may still be taking its item
+          for (int spins = 0; sequences.get(index) != position; spins++)
+            backOff(spins);
+
+          this.items.lazySet(index, values[offset++]);
+          sequences.set(index, position + 1);
+        }
+
+        signalNotEmpty();
+        attempt = 0;
+      }
+    }
+  }
+
+  /**
+   * Returns the queue length. This is an O(1) operation, whose result may be outdated by the time it is returned.
+   */
+  @Override
+  public int size()
+  {
+    long h = head.get();
+    return (int) Math.min(capacity, tail.get() - h);
+  }
+
+  /**
+   * Puts all elements in an array and returns them. This is an O(n) operation.
+   */
+  @Override
+  public T[] toArray()
+  {
+    return toList().toArray();
+  }
+
+  /**
+   * Puts all elements in a list and returns them. Elements are those that are found while walking the queue, as per
+   * weaklyConsistentIterator(). This is an O(n) operation.
+   */
+  @Override
+  public ReifiedList<T> toList()
+  {
+    ReifiedList<T> result = new ReifiedArrayList<T>(Math.max(1, size()), genericTypeParameter);
+
+    Iterator<T> iterator = weaklyConsistentIterator();
+    while (iterator.hasNext())
+      result.add(iterator.next());
+
+    return result;
+  }
+
+  /**
+   * Returns an iterator over a copy of the queue. This is an O(n) operation.
+   */
+  @Override
+  public Iterator<T> iterator()
+  {
+    return toList().iterator();
+  }
+
+  /**
+   * {@inheritDoc} This walks the ring buffer without locking or copying it.
+   */
+  @Override
+  public Iterator<T> weaklyConsistentIterator()
+  {
+    return new Iterator<T>() {
+      private long position = head.get();
+      private Object next = EMPTY;
+      private boolean done;
+
+      @Override
+      public boolean hasNext()
+      {
+        while (next == EMPTY && !done)
+        {
+          long h = head.get();
+          if (position < h)
+            position = h;
+
+          int index = (int) position & mask;
+          long sequence = sequences.get(index);
+          if (position >= tail.get() || sequence < position + 1)
+            done = true;
+          else if (sequence == position + 1)
+          {
+            // the item is only valid if it was not consumed while being read
+            Object item = items.get(index);
+            if (sequences.get(index) == position + 1)
+            {
+              next = item;
+              position++;
+            }
+          }
+        }
+
+        return !done;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public T next()
+      {
+        if (!hasNext())
+          throw new NoSuchElementException("There is no next element.");
+
+        Object result = next;
+        next = EMPTY;
+        return (T) result;
+      }
+
+      @Override
+      public void remove()
+      {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<?> getGenericTypeParameter()
+  {
+    return genericTypeParameter;
+  }
+
+  /**
+   * Locks the collection. This does not block any queue operations.
+   */
+  @Override
+  public void lock()
+  {
+    reEntrantLock.lock();
+  }
+
+  /**
+   * Unlocks the collection.
+   * 
+   * @throws IllegalMonitorStateException When the current thread does not own the lock.
+   */
+  @Override
+  public void unlock()
+  {
+    reEntrantLock.unlock();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return Linq.toString(toList());
+  }
+
+  /**
+   * Puts an item into the slot at the tail, if it is free, returning false if the queue is full
+   */
+  private boolean tryPut(T item)
+  {
+    long t = tail.get();
+    while (true)
+    {
+      int index = (int) t & mask;
+      long difference = sequences.get(index) - t;
+
+      if (difference == 0)
+      {
+        if (tail.compareAndSet(t, t + 1))
+        {
+          items.lazySet(index, item);
+          sequences.set(index, t + 1);
+          return true;
+        }
+      } else if (difference < 0)
+        return false;
+
+      t = tail.get();
+    }
+  }
+
+  /**
+   * Takes the item from the slot at the head, if it has been put, returning EMPTY if the queue is empty
+   */
+  private Object dequeue()
+  {
+    long h = head.get();
+    while (true)
+    {
+      int index = (int) h & mask;
+      long difference = sequences.get(index) - (h + 1);
+
+      if (difference == 0)
+      {
+        if (head.compareAndSet(h, h + 1))
+        {
+          Object result = items.get(index);
+          items.lazySet(index, null);
+          sequences.set(index, h + capacity);
+          return result;
+        }
+      } else if (difference < 0)
+        return EMPTY;
+
+      h = head.get();
+    }
+  }
+
+  /**
+   * Claims all the available items, up to the given count, with a single CAS, and moves them to a collection, returning their number
+   */
+  @SuppressWarnings("unchecked")
+  private int drain(Collection<? super T> collection, int count)
+  {
+    while (true)
+    {
+      long h = head.get();
+      int claimed = (int) Math.min(count, tail.get() - h);
+      if (claimed <= 0)
+        return 0;
+
+      if (head.compareAndSet(h, h + claimed))
+      {
+        for (long position = h; position < h + claimed; position++)
+        {
+          int index = (int) position & mask;
+
+          // the producer of a claimed position may still be putting its item
+          for (int spins = 0; sequences.get(index) != position + 1; spins++)
+            backOff(spins);
+
+          collection.add((T) items.get(index));
+          items.lazySet(index, null);
+          sequences.set(index, position + capacity);
+        }
+
+        signalNotFull();
+        return claimed;
+      }
+    }
+  }
+
+  /**
+   * Waits for a slot to become free, according to the back-pressure, for putting the given number of items
+   * 
+   * @throws IllegalStateException When the back-pressure is FailFast.
+   */
+  private void awaitNotFull(int attempt, int count)
+  {
+    switch(backPressure)
+    {
+      case FailFast:
+        throw new IllegalStateException("The queue does not have room for " + count + " item(s).");
+      case SpinThenPark:
+        backOff(attempt);
+        break;
+      default:
+        waitLock.lock();
+        try
+        {
+          waitingProducers.incrementAndGet();
+          try
+          {
+            if (isFull())
+              notFull.awaitUninterruptibly();
+          }
+          finally
+          {
+            waitingProducers.decrementAndGet();
+          }
+        }
+        finally
+        {
+          waitLock.unlock();
+        }
+        break;
+    }
+  }
+
+  /**
+   * Waits for an item to be put. Consumers spin like producers with SpinThenPark, otherwise they block.
+   */
+  private void awaitNotEmpty(int attempt)
+  {
+    if (backPressure == BackPressure.SpinThenPark)
+    {
+      backOff(attempt);
+      return;
+    }
+
+    waitLock.lock();
+    try
+    {
+      waitingConsumers.incrementAndGet();
+      try
+      {
+        if (isEmpty())
+          notEmpty.awaitUninterruptibly();
+      }
+      finally
+      {
+        waitingConsumers.decrementAndGet();
+      }
+    }
+    finally
+    {
+      waitLock.unlock();
+    }
+  }
+
+  /**
+   * Waits up to the given number of nanoseconds for an item to be put, responding to interrupts. Consumers spin like producers with
+   * SpinThenPark, otherwise they block.
+   * 
+   * @throws InterruptedException When the thread is interrupted.
+   */
+  private void awaitNotEmpty(int attempt, long nanos)
+      throws InterruptedException
+  {
+    if (Thread.interrupted())
+      throw new InterruptedException();
+
+    if (backPressure == BackPressure.SpinThenPark)
+    {
+      backOff(attempt);
+      return;
+    }
+
+    waitLock.lockInterruptibly();
+    try
+    {
+      waitingConsumers.incrementAndGet();
+      try
+      {
+        if (isEmpty())
+          notEmpty.awaitNanos(nanos);
+      }
+      finally
+      {
+        waitingConsumers.decrementAndGet();
+      }
+    }
+    finally
+    {
+      waitLock.unlock();
+    }
+  }
+
+  /**
+   * Wakes up blocked producers, if any
+   */
+  private void signalNotFull()
+  {
+    if (waitingProducers.get() > 0)
+    {
+      waitLock.lock();
+      try
+      {
+        notFull.signalAll();
+      }
+      finally
+      {
+        waitLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Wakes up blocked consumers, if any
+   */
+  private void signalNotEmpty()
+  {
+    if (waitingConsumers.get() > 0)
+    {
+      waitLock.lock();
+      try
+      {
+        notEmpty.signalAll();
+      }
+      finally
+      {
+        waitLock.unlock();
+      }
+    }
+  }
+
+  private boolean isFull()
+  {
+    long t = tail.get();
+    return sequences.get((int) t & mask) < t;
+  }
+
+  private boolean isEmpty()
+  {
+    long h = head.get();
+    return sequences.get((int) h & mask) < h + 1;
+  }
+
+  /**
+   * Busy-spins, then yields, then parks, as the number of attempts grows
+   */
+  private static void backOff(int attempt)
+  {
+    WaitStrategy.SpinThenPark.idle(attempt);
+  }
+}
@@ -18,6 +18,8 @@
 // /////////////////////////////////////////////////////////
 package propel.core.collections.queues;
 
+import propel.core.TryResult;
+import propel.core.collections.BatchedIterator;
 import propel.core.collections.ReifiedIterable;
 import propel.core.collections.lists.ReifiedLinkedList;
 import propel.core.collections.lists.ReifiedList;
@@ -25,9 +27,14 @@ import propel.core.utils.Linq;
 import propel.core.utils.SuperTypeToken;
 import propel.core.utils.SuperTypeTokenException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -41,8 +48,15 @@ public class SharedQueue<T>
     implements ISharedQueue<T>
 {
   protected final Lock lockObject;
+  /**
+   * The backing list, whose head is the head of the queue. Subclasses may use it while holding the lock.
+   */
   protected final ReifiedLinkedList<T> queue;
   protected final Condition notEmpty;
+  /**
+   * The backing list, through which its nodes are reached
+   */
+  private final NodeList<T> nodes;
 
   /**
    * Default constructor.
@@ -51,7 +65,7 @@ public class SharedQueue<T>
    */
   public SharedQueue()
   {
-    queue = new ReifiedLinkedList<T>(SuperTypeToken.getClazz(this.getClass()));
+    queue = nodes = new NodeList<T>(SuperTypeToken.getClazz(this.getClass()));
     lockObject = new ReentrantLock();
     notEmpty = lockObject.newCondition();
   }
@@ -66,7 +80,7 @@ public class SharedQueue<T>
     if (genericTypeParameter == null)
       throw new NullPointerException("genericTypeParameter");
 
-    queue = new ReifiedLinkedList<T>(genericTypeParameter);
+    queue = nodes = new NodeList<T>(genericTypeParameter);
     lockObject = new ReentrantLock();
     notEmpty = lockObject.newCondition();
   }
@@ -81,12 +95,12 @@ public class SharedQueue<T>
     if (iterable == null)
       throw new NullPointerException("iterable");
 
-    queue = new ReifiedLinkedList<T>(iterable.getGenericTypeParameter());
+    queue = nodes = new NodeList<T>(iterable.getGenericTypeParameter());
     lockObject = new ReentrantLock();
     notEmpty = lockObject.newCondition();
 
     for (T item : iterable)
-      queue.add(item);
+      nodes.addLast(item);
   }
 
   /**
@@ -100,12 +114,12 @@ public class SharedQueue<T>
     if (iterable == null)
       throw new NullPointerException("iterable");
 
-    queue = new ReifiedLinkedList<T>(SuperTypeToken.getClazz(this.getClass()));
+    queue = nodes = new NodeList<T>(SuperTypeToken.getClazz(this.getClass()));
     lockObject = new ReentrantLock();
     notEmpty = lockObject.newCondition();
 
     for (T item : iterable)
-      queue.add(item);
+      nodes.addLast(item);
   }
 
   /**
@@ -120,12 +134,12 @@ public class SharedQueue<T>
     if (genericTypeParameter == null)
       throw new NullPointerException("genericTypeParameter");
 
-    queue = new ReifiedLinkedList<T>(genericTypeParameter);
+    queue = nodes = new NodeList<T>(genericTypeParameter);
     lockObject = new ReentrantLock();
     notEmpty = lockObject.newCondition();
 
     for (T item : iterable)
-      queue.add(item);
+      nodes.addLast(item);
   }
 
   /**
@@ -138,16 +152,16 @@ public class SharedQueue<T>
     if (array == null)
       throw new NullPointerException("array");
 
-    queue = new ReifiedLinkedList<T>(array.getClass().getComponentType());
+    queue = nodes = new NodeList<T>(array.getClass().getComponentType());
     lockObject = new ReentrantLock();
     notEmpty = lockObject.newCondition();
 
     for (T item : array)
-      queue.add(item);
+      nodes.addLast(item);
   }
 
   /**
-   * Clears the queue. This is an O(1) operation.
+   * Clears the queue. This is an O(n) operation.
    */
   @Override
   public void clear()
@@ -155,7 +169,7 @@ public class SharedQueue<T>
     lock();
     try
     {
-      queue.clear();
+      nodes.clear();
     }
     finally
     {
@@ -164,7 +178,8 @@ public class SharedQueue<T>
   }
 
   /**
-   * De-queues an object, otherwise blocks until one becomes available. This is an O(1) operation.
+   * De-queues an object, otherwise blocks until one becomes available. If the thread is interrupted while waiting, it carries on waiting
+   * and its interrupt status is restored on return. This is an O(1) operation.
    */
   @Override
   public T get()
@@ -172,19 +187,9 @@ public class SharedQueue<T>
     lock();
     try
     {
-      while (queue.size() <= 0)
-      {
-        try
-        {
-          notEmpty.await();
-        }
-        catch(InterruptedException e)
-        {
-          continue;
-        }
-      }
+      awaitNotEmptyUninterruptibly();
 
-      return queue.removeFirst();
+      return nodes.removeFirst();
     }
     finally
     {
@@ -193,7 +198,8 @@ public class SharedQueue<T>
   }
 
   /**
-   * De-queues a number of objects, blocking if not all are available. This is an O(n) operation where n is the count.
+   * De-queues a number of objects, blocking if not all are available. If the thread is interrupted while waiting, it carries on waiting and
+   * its interrupt status is restored on return. This is an O(n) operation where n is the count.
    * 
    * @throws IllegalArgumentException Count is out of range.
    */
@@ -210,17 +216,9 @@ public class SharedQueue<T>
     {
       for (int i = 0; i < count; i++)
       {
-        while (queue.size() <= 0)
-        {
-          try
-          {
-            notEmpty.await();
-          }
-          catch(InterruptedException e)
-          {}
-        }
+        awaitNotEmptyUninterruptibly();
 
-        result.add(queue.removeFirst());
+        result.add(nodes.removeFirst());
       }
     }
     finally
@@ -231,6 +229,102 @@ public class SharedQueue<T>
     return result;
   }
 
+  /**
+   * {@inheritDoc} This is an O(1) operation.
+   */
+  @Override
+  public TryResult<T> tryGet()
+  {
+    lock();
+    try
+    {
+      if (nodes.size <= 0)
+        return new TryResult<T>();
+
+      return new TryResult<T>(nodes.removeFirst());
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc} This is an O(1) operation.
+   */
+  @Override
+  public TryResult<T> poll(long timeout, TimeUnit unit)
+      throws InterruptedException
+  {
+    long nanos = unit.toNanos(timeout);
+
+    lockObject.lockInterruptibly();
+    try
+    {
+      if (!awaitNotEmpty(nanos))
+        return new TryResult<T>();
+
+      return new TryResult<T>(nodes.removeFirst());
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc} This is an O(n) operation where n is the number of objects moved.
+   */
+  @Override
+  public int drainTo(Collection<? super T> collection, int max)
+  {
+    if (collection == null)
+      throw new NullPointerException("collection");
+    if (collection == this)
+      throw new IllegalArgumentException("Cannot drain a queue to itself.");
+    if (max < 0)
+      throw new IllegalArgumentException("max=" + max);
+
+    lock();
+    try
+    {
+      return drain(collection, max);
+    }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * {@inheritDoc} This is an O(n) operation where n is the number of objects returned.
+   */
+  @Override
+  public List<T> getUpTo(int max, long timeout, TimeUnit unit)
+      throws InterruptedException
+  {
+    if (max < 0)
+      throw new IllegalArgumentException("max=" + max);
+
+    long nanos = unit.toNanos(timeout);
+    List<T> result = new ArrayList<T>();
+    if (max == 0)
+      return result;
+
+    lockObject.lockInterruptibly();
+    try
+    {
+      if (awaitNotEmpty(nanos))
+        drain(result, max);
+    }
+    finally
+    {
+      unlock();
+    }
+
+    return result;
+  }
+
   /**
    * Returns an iterator over a copy of the backing list. This is an O(n) operation.
    */
@@ -240,7 +334,7 @@ public class SharedQueue<T>
     lock();
     try
     {
-      return queue.toList().iterator();
+      return nodes.toList().iterator();
     }
     finally
     {
@@ -248,13 +342,67 @@ public class SharedQueue<T>
     }
   }
 
+  /**
+   * {@inheritDoc} Each batch resumes from the node following the last element returned, i.e. an O(n) operation where n is the batch size.
+   */
+  @Override
+  public Iterator<T> weaklyConsistentIterator()
+  {
+    return new BatchedIterator<T>() {
+      // the number of elements dequeued before the next element to return
+      private long position = -1;
+      // the node of the last element returned, whose successor is the next element for as long as it is still queued
+      private Node<T> last;
+
+      @Override
+      protected List<T> nextBatch(int count)
+      {
+        lock();
+        try
+        {
+          Node<T> node;
+          if (last != null && !last.isRemoved())
+            node = last.next;
+          else
+          {
+            // the last element returned has since been removed, so carry on from the element now at its position
+            if (position < nodes.dequeued)
+              position = nodes.dequeued;
+
+            node = nodes.head;
+            for (long i = nodes.dequeued; i < position && node != null; i++)
+              node = node.next;
+          }
+
+          if (node == null)
+            return Collections.emptyList();
+
+          List<T> result = new ArrayList<T>(Math.min(count, nodes.size));
+          while (node != null && result.size() < count)
+          {
+            result.add(node.value);
+            last = node;
+            node = node.next;
+          }
+
+          position += result.size();
+          return result;
+        }
+        finally
+        {
+          unlock();
+        }
+      }
+    };
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public Class<?> getGenericTypeParameter()
   {
-    return queue.getGenericTypeParameter();
+    return nodes.getGenericTypeParameter();
   }
 
   /**
@@ -268,10 +416,10 @@ public class SharedQueue<T>
     lock();
     try
     {
-      if (queue.size() <= 0)
+      if (nodes.size <= 0)
         throw new NoSuchElementException("Cannot perform a peek operation when the queue is empty.");
 
-      return queue.peekFirst();
+      return nodes.head.value;
     }
     finally
     {
@@ -288,7 +436,7 @@ public class SharedQueue<T>
     lock();
     try
     {
-      queue.addLast(item);
+      nodes.addLast(item);
       notEmpty.signalAll();
     }
     finally
@@ -312,7 +460,7 @@ public class SharedQueue<T>
     try
     {
       for (T item : items)
-        queue.addLast(item);
+        nodes.addLast(item);
 
       notEmpty.signalAll();
     }
@@ -331,7 +479,7 @@ public class SharedQueue<T>
     lock();
     try
     {
-      return queue.size();
+      return nodes.size;
     }
     finally
     {
@@ -348,7 +496,7 @@ public class SharedQueue<T>
     lock();
     try
     {
-      return queue.toArray();
+      return nodes.toArray();
     }
     finally
     {
@@ -365,7 +513,7 @@ public class SharedQueue<T>
     lock();
     try
     {
-      return queue.toList();
+      return nodes.toList();
     }
     finally
     {
@@ -409,4 +557,627 @@ public class SharedQueue<T>
       unlock();
     }
   }
+
+  /**
+   * Waits while the queue is empty, without responding to interrupts, but restoring the thread's interrupt status if it was interrupted.
+   * Must be called while holding the lock.
+   */
+  private void awaitNotEmptyUninterruptibly()
+  {
+    boolean interrupted = false;
+    while (nodes.size <= 0)
+    {
+      try
+      {
+        notEmpty.await();
+      }
+      catch(InterruptedException e)
+      {
+        interrupted = true;
+      }
+    }
+
+    if (interrupted)
+      Thread.currentThread().interrupt();
+  }
+
+  /**
+   * Waits up to the given number of nanoseconds while the queue is empty, returning false if it is still empty. Must be called while
+   * holding the lock.
+   * 
+   * @throws InterruptedException When the thread is interrupted while waiting.
+   */
+  private boolean awaitNotEmpty(long nanos)
+      throws InterruptedException
+  {
+    while (nodes.size <= 0)
+    {
+      if (nanos <= 0)
+        return false;
+
+      nanos = notEmpty.awaitNanos(nanos);
+    }
+
+    return true;
+  }
+
+  /**
+   * Moves up to a maximum number of objects from the head of the queue to a collection, returning the number moved. Must be called while
+   * holding the lock.
+   */
+  private int drain(Collection<? super T> collection, int max)
+  {
+    int count = Math.min(max, nodes.size);
+    for (int i = 0; i < count; i++)
+      collection.add(nodes.removeFirst());
+
+    return count;
+  }
+
+  /**
+   * The backing doubly-linked list. Removed nodes are self-linked, so that a weakly consistent iterator holding one can tell that it is no
+   * longer queued, and so that an abandoned iterator does not keep the nodes removed after it reachable. All the List and Deque methods of
+   * LinkedList are implemented over these nodes, apart from spliterator(), which LinkedList implements over its own private nodes.
+   */
+  private static final class NodeList<T>
+      extends ReifiedLinkedList<T>
+  {
+    private static final long serialVersionUID = -1843625402916547352L;
+    private transient Node<T> head;
+    private transient Node<T> tail;
+    private transient int size;
+    /**
+     * The number of elements ever removed from the head of the list, by which weakly consistent iterators keep their position
+     */
+    private transient long dequeued;
+
+    NodeList(Class<?> genericTypeParameter)
+    {
+      super(genericTypeParameter);
+    }
+
+    @Override
+    public int size()
+    {
+      return size;
+    }
+
+    @Override
+    public void clear()
+    {
+      while (head != null)
+        unlink(head);
+    }
+
+    @Override
+    public boolean add(T item)
+    {
+      addLast(item);
+      return true;
+    }
+
+    @Override
+    public void add(int index, T item)
+    {
+      checkPosition(index);
+      linkBefore(item, index == size ? null : node(index));
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> items)
+    {
+      return addAll(size, items);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean addAll(int index, Collection<? extends T> items)
+    {
+      checkPosition(index);
+      Node<T> successor = index == size ? null : node(index);
+      Object[] values = items.toArray();
+      for (Object value : values)
+        linkBefore((T) value, successor);
+
+      return values.length > 0;
+    }
+
+    @Override
+    public void addFirst(T item)
+    {
+      linkBefore(item, head);
+    }
+
+    @Override
+    public void addLast(T item)
+    {
+      linkBefore(item, null);
+    }
+
+    @Override
+    public boolean offer(T item)
+    {
+      addLast(item);
+      return true;
+    }
+
+    @Override
+    public boolean offerFirst(T item)
+    {
+      addFirst(item);
+      return true;
+    }
+
+    @Override
+    public boolean offerLast(T item)
+    {
+      addLast(item);
+      return true;
+    }
+
+    @Override
+    public void push(T item)
+    {
+      addFirst(item);
+    }
+
+    @Override
+    public T get(int index)
+    {
+      checkElement(index);
+      return node(index).value;
+    }
+
+    @Override
+    public T set(int index, T item)
+    {
+      checkElement(index);
+      Node<T> node = node(index);
+      T old = node.value;
+      node.value = item;
+      return old;
+    }
+
+    @Override
+    public T getFirst()
+    {
+      if (head == null)
+        throw new NoSuchElementException();
+
+      return head.value;
+    }
+
+    @Override
+    public T getLast()
+    {
+      if (tail == null)
+        throw new NoSuchElementException();
+
+      return tail.value;
+    }
+
+    @Override
+    public T element()
+    {
+      return getFirst();
+    }
+
+    @Override
+    public T peek()
+    {
+      return head == null ? null : head.value;
+    }
+
+    @Override
+    public T peekFirst()
+    {
+      return peek();
+    }
+
+    @Override
+    public T peekLast()
+    {
+      return tail == null ? null : tail.value;
+    }
+
+    @Override
+    public T remove(int index)
+    {
+      checkElement(index);
+      return unlink(node(index));
+    }
+
+    @Override
+    public T remove()
+    {
+      return removeFirst();
+    }
+
+    @Override
+    public T removeFirst()
+    {
+      if (head == null)
+        throw new NoSuchElementException();
+
+      return unlink(head);
+    }
+
+    @Override
+    public T removeLast()
+    {
+      if (tail == null)
+        throw new NoSuchElementException();
+
+      return unlink(tail);
+    }
+
+    @Override
+    public T poll()
+    {
+      return head == null ? null : unlink(head);
+    }
+
+    @Override
+    public T pollFirst()
+    {
+      return poll();
+    }
+
+    @Override
+    public T pollLast()
+    {
+      return tail == null ? null : unlink(tail);
+    }
+
+    @Override
+    public T pop()
+    {
+      return removeFirst();
+    }
+
+    @Override
+    public boolean remove(Object item)
+    {
+      return removeFirstOccurrence(item);
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object item)
+    {
+      for (Node<T> node = head; node != null; node = node.next)
+        if (equal(item, node.value))
+        {
+          unlink(node);
+          return true;
+        }
+
+      return false;
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object item)
+    {
+      for (Node<T> node = tail; node != null; node = node.previous)
+        if (equal(item, node.value))
+        {
+          unlink(node);
+          return true;
+        }
+
+      return false;
+    }
+
+    @Override
+    public boolean contains(Object item)
+    {
+      return indexOf(item) >= 0;
+    }
+
+    @Override
+    public int indexOf(Object item)
+    {
+      int index = 0;
+      for (Node<T> node = head; node != null; node = node.next, index++)
+        if (equal(item, node.value))
+          return index;
+
+      return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object item)
+    {
+      int index = size - 1;
+      for (Node<T> node = tail; node != null; node = node.previous, index--)
+        if (equal(item, node.value))
+          return index;
+
+      return -1;
+    }
+
+    @Override
+    public Iterator<T> iterator()
+    {
+      return new NodeIterator(0);
+    }
+
+    @Override
+    public ListIterator<T> listIterator(int index)
+    {
+      checkPosition(index);
+      return new NodeIterator(index);
+    }
+
+    @Override
+    public Iterator<T> descendingIterator()
+    {
+      final NodeIterator iterator = new NodeIterator(size);
+
+      return new Iterator<T>() {
+        @Override
+        public boolean hasNext()
+        {
+          return iterator.hasPrevious();
+        }
+
+        @Override
+        public T next()
+        {
+          return iterator.previous();
+        }
+
+        @Override
+        public void remove()
+        {
+          iterator.remove();
+        }
+      };
+    }
+
+    @Override
+    public <E> E[] toArray(E[] array)
+    {
+      return toList().toArray(array);
+    }
+
+    /**
+     * Returns a ReifiedLinkedList holding the same elements
+     */
+    @Override
+    public Object clone()
+    {
+      return new ReifiedLinkedList<T>(this, getGenericTypeParameter());
+    }
+
+    /**
+     * Serializes a ReifiedLinkedList holding the same elements, as LinkedList only serializes its own nodes
+     */
+    private Object writeReplace()
+    {
+      return new ReifiedLinkedList<T>(this, getGenericTypeParameter());
+    }
+
+    /**
+     * Inserts an element before the given node, or at the tail if the node is null
+     */
+    private void linkBefore(T item, Node<T> successor)
+    {
+      Node<T> predecessor = successor == null ? tail : successor.previous;
+      Node<T> node = new Node<T>(item, predecessor, successor);
+      if (predecessor == null)
+        head = node;
+      else
+        predecessor.next = node;
+
+      if (successor == null)
+        tail = node;
+      else
+        successor.previous = node;
+
+      size++;
+      modCount++;
+    }
+
+    /**
+     * Removes a node, self-linking it, and returns its element
+     */
+    private T unlink(Node<T> node)
+    {
+      Node<T> predecessor = node.previous;
+      Node<T> successor = node.next;
+      if (predecessor == null)
+      {
+        head = successor;
+        dequeued++;
+      } else
+        predecessor.next = successor;
+
+      if (successor == null)
+        tail = predecessor;
+      else
+        successor.previous = predecessor;
+
+      node.previous = null;
+      node.next = node;
+      size--;
+      modCount++;
+      return node.value;
+    }
+
+    /**
+     * Returns the node at an index, walking from the nearer end of the list
+     */
+    private Node<T> node(int index)
+    {
+      Node<T> result;
+      if (index < size / 2)
+      {
+        result = head;
+        for (int i = 0; i < index; i++)
+          result = result.next;
+      } else
+      {
+        result = tail;
+        for (int i = size - 1; i > index; i--)
+          result = result.previous;
+      }
+
+      return result;
+    }
+
+    private void checkElement(int index)
+    {
+      if (index < 0 || index >= size)
+        throw new IndexOutOfBoundsException("index=" + index + " size=" + size);
+    }
+
+    private void checkPosition(int index)
+    {
+      if (index < 0 || index > size)
+        throw new IndexOutOfBoundsException("index=" + index + " size=" + size);
+    }
+
+    private static boolean equal(Object a, Object b)
+    {
+      return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * A fail-fast list iterator over the nodes
+     */
+    private final class NodeIterator
+        implements ListIterator<T>
+    {
+      private Node<T> next;
+      private Node<T> lastReturned;
+      private int nextIndex;
+      private int expectedModCount = modCount;
+
+      NodeIterator(int index)
+      {
+        next = index == size ? null : node(index);
+        nextIndex = index;
+      }
+
+      @Override
+      public boolean hasNext()
+      {
+        return nextIndex < size;
+      }
+
+      @Override
+      public T next()
+      {
+        checkForComodification();
+        if (!hasNext())
+          throw new NoSuchElementException();
+
+        lastReturned = next;
+        next = next.next;
+        nextIndex++;
+        return lastReturned.value;
+      }
+
+      @Override
+      public boolean hasPrevious()
+      {
+        return nextIndex > 0;
+      }
+
+      @Override
+      public T previous()
+      {
+        checkForComodification();
+        if (!hasPrevious())
+          throw new NoSuchElementException();
+
+        next = next == null ? tail : next.previous;
+        lastReturned = next;
+        nextIndex--;
+        return lastReturned.value;
+      }
+
+      @Override
+      public int nextIndex()
+      {
+        return nextIndex;
+      }
+
+      @Override
+      public int previousIndex()
+      {
+        return nextIndex - 1;
+      }
+
+      @Override
+      public void remove()
+      {
+        checkForComodification();
+        if (lastReturned == null)
+          throw new IllegalStateException();
+
+        // read the successor before unlinking, as unlinking self-links the node
+        Node<T> successor = lastReturned.next;
+        unlink(lastReturned);
+        if (next == lastReturned)
+          next = successor;
+        else
+          nextIndex--;
+
+        lastReturned = null;
+        expectedModCount++;
+      }
+
+      @Override
+      public void set(T item)
+      {
+        if (lastReturned == null)
+          throw new IllegalStateException();
+
+        checkForComodification();
+        lastReturned.value = item;
+      }
+
+      @Override
+      public void add(T item)
+      {
+        checkForComodification();
+        lastReturned = null;
+        linkBefore(item, next);
+        nextIndex++;
+        expectedModCount++;
+      }
+
+      private void checkForComodification()
+      {
+        if (modCount != expectedModCount)
+          throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  /**
+   * A node of the backing list
+   */
+  private static final class Node<T>
+  {
+    private T value;
+    private Node<T> previous;
+    private Node<T> next;
+
+    private Node(T value, Node<T> previous, Node<T> next)
+    {
+      this.value = value;
+      this.previous = previous;
+      this.next = next;
+    }
+
+    /**
+     * Returns true if the node has been removed from the list, which self-links it
+     */
+    private boolean isRemoved()
+    {
+      return next == this;
+    }
+  }
 }
@@ -0,0 +1,98 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.queues;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread waits for a queue to become ready, e.g. for an item to be put into an empty queue. Each wait is made of successive idle
+ * calls, given the number of attempts made so far, between which the thread re-checks the queue. None of the strategies require the
+ * opposite side of the queue to signal the waiting thread.
+ */
+public enum WaitStrategy
+{
+  /**
+   * The thread re-checks the queue continuously. This has the lowest latency but occupies a CPU for as long as it waits, so it should only
+   * be used when producers and consumers have a CPU each.
+   */
+  BusySpin
+  {
+    @Override
+    public void idle(int attempt)
+    {
+    }
+  },
+  /**
+   * The thread yields between checks, giving other threads a chance to run on its CPU
+   */
+  Yield
+  {
+    @Override
+    public void idle(int attempt)
+    {
+      Thread.yield();
+    }
+  },
+  /**
+   * The thread parks for short periods between checks. This uses the least CPU time at the expense of latency.
+   */
+  Park
+  {
+    @Override
+    public void idle(int attempt)
+    {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+  },
+  /**
+   * The thread busy-spins, then yields, then parks for short periods, as the number of attempts grows
+   */
+  SpinThenPark
+  {
+    @Override
+    public void idle(int attempt)
+    {
+      if (attempt < SPIN_TRIES)
+        return;
+
+      if (attempt < SPIN_TRIES + YIELD_TRIES)
+        Thread.yield();
+      else
+        LockSupport.parkNanos(PARK_NANOS);
+    }
+  };
+
+  /**
+   * The number of times a waiting thread busy-spins before yielding, with SpinThenPark
+   */
+  private static final int SPIN_TRIES = 100;
+  /**
+   * The number of times a waiting thread yields before parking, with SpinThenPark
+   */
+  private static final int YIELD_TRIES = 100;
+  /**
+   * The period a waiting thread parks for, with Park and SpinThenPark
+   */
+  private static final long PARK_NANOS = 50000;
+
+  /**
+   * Idles the thread once, before it re-checks the queue, given the number of attempts made so far
+   */
+  public abstract void idle(int attempt);
+}
@@ -18,6 +18,7 @@
 // /////////////////////////////////////////////////////////
 package propel.core.collections.sets;
 
+import propel.core.collections.KeyValuePair;
 import propel.core.collections.ReifiedIterable;
 import propel.core.collections.lists.ReifiedList;
 import propel.core.collections.maps.avl.AvlHashtable;
@@ -169,6 +170,37 @@ public class AvlTreeSet<T extends Comparable<T>>
     return store.getKeys().iterator();
   }
 
+  /**
+   * Returns an ascending order iterator over the items that are greater than the given item, which need not be contained. This is an
+   * O(log2(n)) operation, not taking element traversal into account.
+   * 
+   * @throws NullPointerException When the item is null.
+   */
+  Iterator<T> iteratorAfter(T item)
+  {
+    final Iterator<KeyValuePair<T, Object>> iterator = store.iteratorAfter(item);
+
+    return new Iterator<T>() {
+      @Override
+      public boolean hasNext()
+      {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public T next()
+      {
+        return iterator.next().getKey();
+      }
+
+      @Override
+      public void remove()
+      {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
   /**
    * Removes an item from the collection. This is an O(log2(n)) operation.
    * 
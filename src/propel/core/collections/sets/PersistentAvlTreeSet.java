@@ -0,0 +1,200 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.sets;
+
+import propel.core.collections.ReifiedIterable;
+import propel.core.collections.lists.ReifiedArrayList;
+import propel.core.collections.lists.ReifiedList;
+import propel.core.collections.maps.avl.PersistentAvlHashtable;
+import propel.core.utils.Linq;
+import propel.core.utils.SuperTypeToken;
+import propel.core.utils.SuperTypeTokenException;
+import java.util.Iterator;
+
+/**
+ * A type-aware persistent (immutable) AVL-tree-backed set. Rather than modifying the set, add() and remove() return a new version of it,
+ * which shares all subtrees that were not changed with the previous version, so that versions can be published to other threads without
+ * locking or copying. This collection does not allow null items to be inserted.
+ * 
+ * Instantiate using e.g.: new PersistentAvlTreeSet&lt;String&gt;(){}; -OR- new PersistentAvlTreeSet&lt;String&gt;(String.class);
+ */
+public class PersistentAvlTreeSet<T extends Comparable<T>>
+    implements ReifiedIterable<T>
+{
+  private final PersistentAvlHashtable<T, Object> store;
+
+  /**
+   * Default constructor, creating an empty set
+   * 
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   */
+  public PersistentAvlTreeSet()
+  {
+    store = new PersistentAvlHashtable<T, Object>(SuperTypeToken.getClazz(this.getClass()), Object.class);
+  }
+
+  /**
+   * Constructor for creating an empty set with the generic type parameter
+   * 
+   * @throws NullPointerException When the generic type parameter is null.
+   */
+  public PersistentAvlTreeSet(Class<?> genericTypeParameter)
+  {
+    if (genericTypeParameter == null)
+      throw new NullPointerException("genericTypeParameter");
+
+    store = new PersistentAvlHashtable<T, Object>(genericTypeParameter, Object.class);
+  }
+
+  /**
+   * Initializes a version of a set
+   */
+  private PersistentAvlTreeSet(PersistentAvlHashtable<T, Object> store)
+  {
+    this.store = store;
+  }
+
+  /**
+   * Returns a version with an item added, or this version if the item is contained. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the item is null.
+   */
+  public PersistentAvlTreeSet<T> add(T item)
+  {
+    if (item == null)
+      throw new NullPointerException("item");
+
+    return version(store.add(item, null));
+  }
+
+  /**
+   * Returns a version with the given items added. This is an O(mlog2(n)) operation where m is the provided item count.
+   * 
+   * @throws NullPointerException When the argument or an item is null.
+   */
+  public PersistentAvlTreeSet<T> addAll(Iterable<? extends T> items)
+  {
+    if (items == null)
+      throw new NullPointerException("items");
+
+    PersistentAvlHashtable<T, Object> result = store;
+    for (T item : items)
+    {
+      if (item == null)
+        throw new NullPointerException("item");
+
+      result = result.add(item, null);
+    }
+
+    return version(result);
+  }
+
+  /**
+   * Returns a version with an item removed, or this version if the item is not contained. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the item is null.
+   */
+  public PersistentAvlTreeSet<T> remove(T item)
+  {
+    if (item == null)
+      throw new NullPointerException("item");
+
+    return version(store.remove(item));
+  }
+
+  /**
+   * Returns an empty version, with the same generic type parameter. This is an O(1) operation.
+   */
+  public PersistentAvlTreeSet<T> clear()
+  {
+    return version(store.clear());
+  }
+
+  /**
+   * Returns true if an item is contained in the collection. This is an O(log2(n)) operation.
+   * 
+   * @throws NullPointerException When the item is null.
+   */
+  public boolean contains(T item)
+  {
+    if (item == null)
+      throw new NullPointerException("item");
+
+    return store.containsKey(item);
+  }
+
+  /**
+   * Returns true if the set is empty
+   */
+  public boolean isEmpty()
+  {
+    return store.isEmpty();
+  }
+
+  /**
+   * Returns an ascending order iterator over the set
+   */
+  @Override
+  public Iterator<T> iterator()
+  {
+    return store.getKeys().iterator();
+  }
+
+  /**
+   * Returns the collection size. This is an O(1) operation.
+   */
+  public int size()
+  {
+    return store.size();
+  }
+
+  /**
+   * Puts all elements in a list and returns them. This is an O(n) operation.
+   */
+  public ReifiedList<T> toList()
+  {
+    return new ReifiedArrayList<T>(store.getKeys());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<?> getGenericTypeParameter()
+  {
+    return store.getGenericTypeParameterKey();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return Linq.toString(this);
+  }
+
+  /**
+   * Returns the version with the given store, or this version if the store has not changed
+   */
+  private PersistentAvlTreeSet<T> version(PersistentAvlHashtable<T, Object> newStore)
+  {
+    return newStore == store ? this : new PersistentAvlTreeSet<T>(newStore);
+  }
+}
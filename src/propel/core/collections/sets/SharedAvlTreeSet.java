@@ -18,6 +18,7 @@
 // /////////////////////////////////////////////////////////
 package propel.core.collections.sets;
 
+import propel.core.collections.BatchedIterator;
 import propel.core.collections.ReifiedIterable;
 import propel.core.collections.lists.ReifiedList;
 import propel.core.model.IShared;
@@ -172,6 +173,42 @@ public class SharedAvlTreeSet<T extends Comparable<T>>
     }
   }
 
+  /**
+   * Returns a weakly consistent iterator, which walks the live set in ascending order a batch at a time without copying it or holding its
+   * lock for the whole traversal. Items present for the whole traversal are returned exactly once, whereas those added or removed
+   * meanwhile may or may not be. Each batch is located by item, which is an O(log2(n)) operation.
+   */
+  public Iterator<T> weaklyConsistentIterator()
+  {
+    return new BatchedIterator<T>() {
+      // the last item returned, or null at the start
+      private T last;
+
+      @Override
+      protected List<T> nextBatch(int count)
+      {
+        List<T> result = new ArrayList<T>(count);
+
+        lock();
+        try
+        {
+          Iterator<T> iterator = last == null ? SharedAvlTreeSet.super.iterator() : iteratorAfter(last);
+          while (iterator.hasNext() && result.size() < count)
+            result.add(iterator.next());
+        }
+        finally
+        {
+          unlock();
+        }
+
+        if (result.size() > 0)
+          last = result.get(result.size() - 1);
+
+        return result;
+      }
+    };
+  }
+
   /**
    * {@inheritDoc}
    */
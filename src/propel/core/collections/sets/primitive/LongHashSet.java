@@ -0,0 +1,394 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.sets.primitive;
+
+import java.util.NoSuchElementException;
+import lombok.Validate;
+import lombok.Validate.NotNull;
+import propel.core.collections.LongIterator;
+import propel.core.functional.PrimitiveActions.LongAction;
+
+/**
+ * Implementation of a set of long primitives, which stores its elements unboxed in an array, using open addressing with linear probing as
+ * LongHashMap does. Add, contains and remove do not allocate.
+ */
+public class LongHashSet
+{
+  /**
+   * The maximum capacity, used if a higher value is implicitly specified by the constructor
+   */
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+  /**
+   * The ratio of elements to slots above which the table is doubled
+   */
+  private static final float LOAD_FACTOR = 0.75f;
+  /**
+   * The element marking a free slot. Whether the set contains this element is held outside the table.
+   */
+  private static final long FREE_KEY = 0;
+  /**
+   * Multiplier that spreads elements over the whole table, 2^64 divided by the golden ratio
+   */
+  private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+  private long[] keys;
+  private int shift;
+  private int threshold;
+  private boolean hasFreeKey;
+  private int size;
+
+  /**
+   * Constructs an empty set that holds up to the specified number of elements before it needs to grow
+   * 
+   * @throws IllegalArgumentException An argument is invalid
+   */
+  public LongHashSet(final int maxCapacity)
+  {
+    if (maxCapacity < 0)
+      throw new IllegalArgumentException("maxCapacity=" + maxCapacity);
+
+    allocate(tableSize(maxCapacity));
+  }
+
+  /**
+   * Constructs a set containing the given elements
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public LongHashSet(@NotNull final long[] values)
+  {
+    allocate(tableSize(values.length));
+    for (long value : values)
+      add(value);
+  }
+
+  /**
+   * Adds an element, returning true if it was not already contained. This is an O(1) operation
+   * 
+   * @throws IllegalStateException The set holds the maximum number of elements
+   */
+  public boolean add(final long value)
+  {
+    if (value == FREE_KEY)
+    {
+      if (hasFreeKey)
+        return false;
+
+      hasFreeKey = true;
+      size++;
+      return true;
+    }
+
+    int index = indexFor(value);
+    while (true)
+    {
+      long current = keys[index];
+      if (current == value)
+        return false;
+      if (current == FREE_KEY)
+        break;
+
+      index = (index + 1) & (keys.length - 1);
+    }
+
+    if (size >= threshold)
+    {
+      grow();
+      index = indexFor(value);
+      while (keys[index] != FREE_KEY)
+        index = (index + 1) & (keys.length - 1);
+    }
+
+    keys[index] = value;
+    size++;
+    return true;
+  }
+
+  /**
+   * Removes an element, returning true if it was contained. This is an O(1) operation
+   */
+  public boolean remove(final long value)
+  {
+    if (value == FREE_KEY)
+    {
+      if (!hasFreeKey)
+        return false;
+
+      hasFreeKey = false;
+      size--;
+      return true;
+    }
+
+    int index = find(value);
+    if (index < 0)
+      return false;
+
+    shiftBack(index);
+    size--;
+    return true;
+  }
+
+  /**
+   * Returns true if the given element is contained. This is an O(1) operation
+   */
+  public boolean contains(final long value)
+  {
+    if (value == FREE_KEY)
+      return hasFreeKey;
+
+    return find(value) >= 0;
+  }
+
+  /**
+   * Clears the contents. This is an O(n) operation
+   */
+  public void clear()
+  {
+    for (int i = 0; i < keys.length; i++)
+      keys[i] = FREE_KEY;
+
+    hasFreeKey = false;
+    size = 0;
+  }
+
+  /**
+   * Returns true if the set is empty. This is an O(1) operation
+   */
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * Returns the number of elements. This is an O(1) operation
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Returns the number of slots of the table. This is an O(1) operation
+   */
+  public int capacity()
+  {
+    return keys.length;
+  }
+
+  /**
+   * Returns all elements. This is an O(n) operation
+   */
+  public long[] toArray()
+  {
+    int index = 0;
+    long[] result = new long[size];
+    if (hasFreeKey)
+      result[index++] = FREE_KEY;
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY)
+        result[index++] = keys[i];
+
+    return result;
+  }
+
+  /**
+   * Returns an iterator over the elements. The set must not be modified while iterating.
+   */
+  public LongIterator iterator()
+  {
+    return new LongIterator() {
+      private boolean freeKeyPending = hasFreeKey;
+      private int index = nextSlot(0);
+
+      @Override
+      public boolean hasNext()
+      {
+        return freeKeyPending || index < keys.length;
+      }
+
+      @Override
+      public long next()
+      {
+        if (freeKeyPending)
+        {
+          freeKeyPending = false;
+          return FREE_KEY;
+        }
+
+        if (index >= keys.length)
+          throw new NoSuchElementException();
+
+        long result = keys[index];
+        index = nextSlot(index + 1);
+        return result;
+      }
+    };
+  }
+
+  /**
+   * Calls the given action with each element. The set must not be modified by the action. This is an O(n) operation
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public void forEach(@NotNull final LongAction action)
+  {
+    if (hasFreeKey)
+      action.apply(FREE_KEY);
+
+    for (int i = 0; i < keys.length; i++)
+      if (keys[i] != FREE_KEY)
+        action.apply(keys[i]);
+  }
+
+  /**
+   * Resizes the set, so that it holds up to the given number of elements, or its current size if larger, before it needs to grow.
+   * 
+   * This is an O(n) operation, note that it more than doubles the space used for a short while
+   */
+  public void resize(int capacity)
+  {
+    if (capacity < 0)
+      throw new IllegalArgumentException("capacity=" + capacity);
+
+    rehash(tableSize(Math.max(capacity, size)));
+  }
+
+  /**
+   * Returns the number of slots needed to hold the given number of elements without exceeding the load factor
+   */
+  private static int tableSize(final int maxCapacity)
+  {
+    long required = (long) Math.ceil(maxCapacity / (double) LOAD_FACTOR);
+
+    // find a power of 2 >= required, must not be over the maximum
+    int capacity = 2;
+    while (capacity < required && capacity < MAXIMUM_CAPACITY)
+      capacity <<= 1;
+
+    return capacity;
+  }
+
+  /**
+   * Allocates an empty table with the given power of 2 number of slots
+   */
+  private void allocate(final int capacity)
+  {
+    keys = new long[capacity];
+    shift = 64 - Integer.numberOfTrailingZeros(capacity);
+
+    // a full table must keep a free slot to end probes at
+    threshold = capacity == MAXIMUM_CAPACITY ? capacity - 1 : (int) (capacity * LOAD_FACTOR);
+  }
+
+  /**
+   * Doubles the table
+   * 
+   * @throws IllegalStateException The table cannot grow any further
+   */
+  private void grow()
+  {
+    if (keys.length >= MAXIMUM_CAPACITY)
+      throw new IllegalStateException("The set cannot hold more than " + threshold + " elements.");
+
+    rehash(keys.length << 1);
+  }
+
+  /**
+   * Moves all elements to a new table with the given number of slots
+   */
+  private void rehash(final int capacity)
+  {
+    long[] oldKeys = keys;
+    allocate(capacity);
+
+    for (int i = 0; i < oldKeys.length; i++)
+      if (oldKeys[i] != FREE_KEY)
+      {
+        int index = indexFor(oldKeys[i]);
+        while (keys[index] != FREE_KEY)
+          index = (index + 1) & (keys.length - 1);
+
+        keys[index] = oldKeys[i];
+      }
+  }
+
+  /**
+   * Returns the slot of an element that is not the free key, or -1 if the element is not contained
+   */
+  private int find(final long value)
+  {
+    int index = indexFor(value);
+    while (true)
+    {
+      long current = keys[index];
+      if (current == value)
+        return index;
+      if (current == FREE_KEY)
+        return -1;
+
+      index = (index + 1) & (keys.length - 1);
+    }
+  }
+
+  /**
+   * Returns the first occupied slot at or after the given one, or the table length if there is none
+   */
+  private int nextSlot(int index)
+  {
+    while (index < keys.length && keys[index] == FREE_KEY)
+      index++;
+
+    return index;
+  }
+
+  /**
+   * Frees a slot, moving back the elements that follow it in its probe sequence, so that they remain reachable without tombstones
+   */
+  private void shiftBack(int gap)
+  {
+    int mask = keys.length - 1;
+    int index = gap;
+    while (true)
+    {
+      index = (index + 1) & mask;
+      long key = keys[index];
+      if (key == FREE_KEY)
+        break;
+
+      // an element can fill the gap only if the gap lies between its home slot and its slot
+      if (((index - indexFor(key)) & mask) >= ((index - gap) & mask))
+      {
+        keys[gap] = key;
+        gap = index;
+      }
+    }
+
+    keys[gap] = FREE_KEY;
+  }
+
+  /**
+   * Returns the home slot of an element, taken from the high bits of its Fibonacci hash
+   */
+  private int indexFor(final long value)
+  {
+    return (int) ((value * GOLDEN_RATIO) >>> shift);
+  }
+}
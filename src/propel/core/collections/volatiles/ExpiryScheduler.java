@@ -0,0 +1,92 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.volatiles;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes the expired items of session stores periodically, using a single daemon thread for all stores, rather than a thread per store.
+ * Stores are referenced weakly, so that a store that is no longer used is garbage collected and its schedule cancelled.
+ */
+final class ExpiryScheduler
+{
+  private static final ScheduledThreadPoolExecutor EXECUTOR;
+
+  static
+  {
+    EXECUTOR = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable)
+      {
+        // daemon thread, allows for app shutdown when no other thread exists that could use the stores
+        Thread result = new Thread(runnable, "propel-session-expiry");
+        result.setDaemon(true);
+        return result;
+      }
+    });
+    EXECUTOR.setRemoveOnCancelPolicy(true);
+  }
+
+  /**
+   * Private constructor prevents instantiation.
+   */
+  private ExpiryScheduler()
+  {
+  }
+
+  /**
+   * Schedules the removal of a store's expired items, every period after an initial delay, until the store is garbage collected.
+   * 
+   * @throws IllegalArgumentException When the period is non positive.
+   */
+  static void schedule(IExpiringStore store, long initialDelayMillis, long periodMillis)
+  {
+    ExpiryTask task = new ExpiryTask(store);
+    task.future = EXECUTOR.scheduleAtFixedRate(task, initialDelayMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Removes the expired items of a store, unless it has been garbage collected, in which case the task cancels itself
+   */
+  private static final class ExpiryTask
+      implements Runnable
+  {
+    private final WeakReference<IExpiringStore> store;
+    private volatile ScheduledFuture<?> future;
+
+    ExpiryTask(IExpiringStore store)
+    {
+      this.store = new WeakReference<IExpiringStore>(store);
+    }
+
+    @Override
+    public void run()
+    {
+      IExpiringStore target = store.get();
+      if (target != null)
+        target.removeExpired();
+      else if (future != null)
+        future.cancel(false);
+    }
+  }
+}
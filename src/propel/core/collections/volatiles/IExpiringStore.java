@@ -0,0 +1,31 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.volatiles;
+
+/**
+ * A store whose expired items are removed periodically by the ExpiryScheduler. This is internal to the session stores, so that removing
+ * expired items is not part of the ISessionStore contract that other implementations have to fulfil.
+ */
+interface IExpiringStore
+{
+  /**
+   * Removes the items whose sessions have expired. This is called every polling interval by a scheduler shared by all stores.
+   */
+  void removeExpired();
+}
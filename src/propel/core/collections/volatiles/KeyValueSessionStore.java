@@ -18,7 +18,7 @@
 // /////////////////////////////////////////////////////////
 package propel.core.collections.volatiles;
 
-import org.joda.time.LocalDateTime;
+import propel.core.TryResult;
 import propel.core.collections.IKeyValueStore;
 import propel.core.collections.KeyNotFoundException;
 import propel.core.collections.KeyValuePair;
@@ -32,13 +32,14 @@ import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A type-aware thread-safe session storage object that allows multiple threads to operate on a collection of time-expiring key/value pairs.
- * This map does not allow null keys to be inserted.
+ * Session deadlines are kept in a timing wheel, from which the expired keys are removed every polling interval by a scheduler shared by
+ * all stores, so that each check only visits the keys that have expired. This map does not allow null keys to be inserted.
  * 
  * Instantiate using e.g.: new KeyValueSessionStore&lt;String, Object&gt;(1000*60, 5000){}; -OR- new KeyValueSessionStore&lt;String,
  * Object&gt;(1000*60, 5000, String.class, Object.class);
  */
 public class KeyValueSessionStore<TKey extends Comparable<TKey>, TValue>
-    implements ISessionStore<TKey>, IKeyValueStore<TKey, TValue>
+    implements ISessionStore<TKey>, IKeyValueStore<TKey, TValue>, IExpiringStore
 {
   /**
    * The default expiration time for session objects is 30 minutes.
@@ -48,8 +49,8 @@ public class KeyValueSessionStore<TKey extends Comparable<TKey>, TValue>
    * The default polling interval to determine expired objects is 1 minute.
    */
   public static final int DEFAULT_POLLING_MILLIS = 60 * 1000;
-  private final Timer expirationTimer;
-  private final AvlHashtable<TKey, LocalDateTime> expiries;
+  private final AvlHashtable<TKey, TimingWheel.Node<TKey>> expiries;
+  private final TimingWheel<TKey> wheel;
   private final ReentrantLock reEntrantLock;
   private final AvlHashtable<TKey, TValue> store;
   private int expirationMillis;
@@ -69,15 +70,12 @@ public class KeyValueSessionStore<TKey extends Comparable<TKey>, TValue>
 
     reEntrantLock = new ReentrantLock();
     store = new AvlHashtable<TKey, TValue>(SuperTypeToken.getClazz(this.getClass(), 0), SuperTypeToken.getClazz(this.getClass(), 1));
-    expiries = new AvlHashtable<TKey, LocalDateTime>(store.getGenericTypeParameterKey(), LocalDateTime.class);
-
-    // daemon timer, allows for app shutdown when no other thread exists that could use the session
-    expirationTimer = new Timer(true);
+    expiries = new AvlHashtable<TKey, TimingWheel.Node<TKey>>(store.getGenericTypeParameterKey(), TimingWheel.Node.class);
+    wheel = new TimingWheel<TKey>();
 
     // check if expiration is enabled
     if (expirationMillis >= 0)
-      expirationTimer.scheduleAtFixedRate(new ExpirationCheckingTimerTask(), new LocalDateTime().plusMillis(expirationMillis).toDateTime()
-          .toDate(), pollingIntervalMillis);
+      ExpiryScheduler.schedule(this, expirationMillis, pollingIntervalMillis);
   }
 
   /**
@@ -95,15 +93,12 @@ public class KeyValueSessionStore<TKey extends Comparable<TKey>, TValue>
 
     reEntrantLock = new ReentrantLock();
     store = new AvlHashtable<TKey, TValue>(genericTypeParameterKey, genericTypeParameterValue);
-    expiries = new AvlHashtable<TKey, LocalDateTime>(genericTypeParameterKey, LocalDateTime.class);
-
-    // daemon timer, allows for app shutdown when no other thread exists that could use the session
-    expirationTimer = new Timer(true);
+    expiries = new AvlHashtable<TKey, TimingWheel.Node<TKey>>(genericTypeParameterKey, TimingWheel.Node.class);
+    wheel = new TimingWheel<TKey>();
 
     // check if expiration is enabled
     if (expirationMillis >= 0)
-      expirationTimer.scheduleAtFixedRate(new ExpirationCheckingTimerTask(), new LocalDateTime().plusMillis(expirationMillis).toDateTime()
-          .toDate(), pollingIntervalMillis);
+      ExpiryScheduler.schedule(this, expirationMillis, pollingIntervalMillis);
   }
 
   /**
@@ -124,7 +119,7 @@ public class KeyValueSessionStore<TKey extends Comparable<TKey>, TValue>
       if (store.add(key, value))
       {
         // set expiry
-        expiries.add(key, new LocalDateTime().plusMillis(expirationMillis));
+        expiries.add(key, wheel.schedule(key, deadline()));
         return true;
       }
 
@@ -146,6 +141,8 @@ public class KeyValueSessionStore<TKey extends Comparable<TKey>, TValue>
     try
     {
       store.clear();
+      expiries.clear();
+      wheel.clear();
     }
     finally
     {
@@ -189,7 +186,7 @@ public class KeyValueSessionStore<TKey extends Comparable<TKey>, TValue>
     lock();
     try
     {
-      return expiries.replace(key, new LocalDateTime());
+      return reschedule(key, wheel.nanoTime());
     }
     finally
     {
@@ -304,7 +301,7 @@ public class KeyValueSessionStore<TKey extends Comparable<TKey>, TValue>
     lock();
     try
     {
-      return expiries.replace(key, new LocalDateTime().plusMillis(expirationMillis));
+      return reschedule(key, deadline());
     }
     finally
     {
@@ -328,6 +325,7 @@ public class KeyValueSessionStore<TKey extends Comparable<TKey>, TValue>
     {
       if (store.remove(key))
       {
+        wheel.cancel(expiries.get(key));
         expiries.remove(key);
         return true;
       }
@@ -449,36 +447,53 @@ public class KeyValueSessionStore<TKey extends Comparable<TKey>, TValue>
   {
     return Linq.toString(this);
   }
-  
+
   /**
-   * Scans all objects and removes the ones that have expired. This is an O(nlog2(n)) operation.
+   * Removes the items whose sessions have expired. This is an O(mlog2(n)) operation, where m is the number of expired items.
    */
-  private class ExpirationCheckingTimerTask
-      extends TimerTask
+  @Override
+  public void removeExpired()
   {
-    @Override
-    public void run()
+    lock();
+    try
     {
-      lock();
-      try
-      {
-        // check objects expiring before now
-        LocalDateTime now = new LocalDateTime();
-        List<TKey> toBeRemoved = new ArrayList<TKey>(64);
-
-        // add expiring object to a list
-        for (TKey key : store.getKeys())
-          if (expiries.get(key).isBefore(now))
-            toBeRemoved.add(key);
-
-        // remove from store/expiry table
-        for (TKey key : toBeRemoved)
-          remove(key);
-      }
-      finally
+      List<TKey> expired = new ArrayList<TKey>();
+      wheel.advance(wheel.nanoTime(), expired);
+
+      // remove from store/expiry table
+      for (TKey key : expired)
       {
-        unlock();
+        store.remove(key);
+        expiries.remove(key);
       }
     }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * Returns the deadline of a session starting now, in nanoseconds of the timing wheel
+   */
+  private long deadline()
+  {
+    if (expirationMillis == CONSTANT.TIMEOUT_INFINITE)
+      return Long.MAX_VALUE;
+
+    return wheel.nanoTime() + expirationMillis * 1000000L;
+  }
+
+  /**
+   * Moves the deadline of a key's session, returning false if the key is not found. Must be called while holding the lock.
+   */
+  private boolean reschedule(TKey key, long deadline)
+  {
+    TryResult<TimingWheel.Node<TKey>> node = expiries.tryGetValue(key);
+    if (!node.isSuccess())
+      return false;
+
+    wheel.reschedule(node.getResult(), deadline);
+    return true;
   }
 }
@@ -0,0 +1,587 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.volatiles;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.Validate;
+import lombok.Validate.NotNull;
+import propel.core.TryResult;
+import propel.core.collections.IKeyValueStore;
+import propel.core.collections.KeyNotFoundException;
+import propel.core.collections.KeyValuePair;
+import propel.core.collections.ReifiedIterable;
+import propel.core.collections.lists.ReifiedArrayList;
+import propel.core.common.CONSTANT;
+import propel.core.utils.Linq;
+import propel.core.utils.SuperTypeToken;
+import propel.core.utils.SuperTypeTokenException;
+
+/**
+ * A type-aware thread-safe session storage object that allows multiple threads to operate on a collection of time-expiring key/value pairs.
+ * Unlike KeyValueSessionStore, entries are kept in a ConcurrentHashMap, whose segments are locked only by writes to keys that fall in
+ * them, so reads never block and scale with the number of cores. Each entry holds its value together with its deadline, which is checked
+ * on every access, so that expired entries are never returned; the removal of expired entries that are not accessed again is left to a
+ * sweep that runs every polling interval. Sessions can either expire a fixed time after they start, or slide on every read.
+ * 
+ * Keys are compared using their equals() and hashCode(), which must therefore be consistent with compareTo(), and are not kept in sorted
+ * order. This map does not allow null keys to be inserted. Get, add, remove and replace are O(1) operations.
+ * 
+ * Instantiate using e.g.: new SharedKeyValueSessionStore&lt;String, Object&gt;(1000*60, 5000){}; -OR- new
+ * SharedKeyValueSessionStore&lt;String, Object&gt;(1000*60, 5000, ExpirationMode.Sliding, String.class, Object.class);
+ */
+public class SharedKeyValueSessionStore<TKey extends Comparable<TKey>, TValue>
+    implements ISessionStore<TKey>, IKeyValueStore<TKey, TValue>, IExpiringStore
+{
+  /**
+   * The default expiration time for session objects is 30 minutes.
+   */
+  public static final int DEFAULT_EXPIRATION_MILLIS = 30 * 60 * 1000;
+  /**
+   * The default polling interval to determine expired objects is 1 minute.
+   */
+  public static final int DEFAULT_POLLING_MILLIS = 60 * 1000;
+  private static final int INITIAL_CAPACITY = 16;
+  private static final float LOAD_FACTOR = 0.75f;
+  /**
+   * The number of segments that can be written concurrently
+   */
+  private static final int CONCURRENCY_LEVEL = Math.max(16, Runtime.getRuntime().availableProcessors() * 2);
+  /**
+   * Sliding reads do not renew a session whose deadline would move by less than this, so that reads of a hot key do not all write to it
+   */
+  private static final long RENEWAL_NANOS = 1000000L;
+
+  private final ConcurrentMap<TKey, Entry<TValue>> map = newMap();
+  private final ReentrantLock reEntrantLock = new ReentrantLock();
+  private final long origin = System.nanoTime();
+  private final Class<?> keyType;
+  private final Class<?> valueType;
+  private final ExpirationMode mode;
+  private int expirationMillis;
+  private int pollingIntervalMillis;
+
+  /**
+   * Overloaded constructor, initializes session with a session expiration time and polling interval in milliseconds. Set to
+   * CONSTANT.TIMEOUT_INFINITE to disable expiration. Sessions expire a fixed time after they start.
+   * 
+   * @throws IllegalArgumentException When the values provided are out of range.
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   */
+  public SharedKeyValueSessionStore(int expirationMillis, int pollingIntervalMillis)
+  {
+    this(expirationMillis, pollingIntervalMillis, ExpirationMode.Absolute);
+  }
+
+  /**
+   * Overloaded constructor, initializes session with a session expiration time and polling interval in milliseconds, and the way sessions
+   * are renewed. Set to CONSTANT.TIMEOUT_INFINITE to disable expiration.
+   * 
+   * @throws IllegalArgumentException When the values provided are out of range.
+   * @throws NullPointerException When the expiration mode is null.
+   * @throws SuperTypeTokenException When called without using anonymous class semantics.
+   */
+  @Validate
+  public SharedKeyValueSessionStore(int expirationMillis, int pollingIntervalMillis, @NotNull final ExpirationMode mode)
+  {
+    setExpirationMillis(expirationMillis);
+    setPollingIntervalMillis(pollingIntervalMillis);
+
+    this.mode = mode;
+    keyType = SuperTypeToken.getClazz(this.getClass(), 0);
+    valueType = SuperTypeToken.getClazz(this.getClass(), 1);
+
+    // check if expiration is enabled
+    if (expirationMillis >= 0)
+      ExpiryScheduler.schedule(this, pollingIntervalMillis, pollingIntervalMillis);
+  }
+
+  /**
+   * Overloaded constructor, initializes session with a session expiration time and polling interval in milliseconds. Set to
+   * CONSTANT.TIMEOUT_INFINITE to disable expiration. Sessions expire a fixed time after they start.
+   * 
+   * @throws IllegalArgumentException When the values provided are out of range.
+   * @throws NullPointerException When a generic type parameter class is null.
+   */
+  public SharedKeyValueSessionStore(int expirationMillis, int pollingIntervalMillis, Class<?> genericTypeParameterKey,
+                                    Class<?> genericTypeParameterValue)
+  {
+    this(expirationMillis, pollingIntervalMillis, ExpirationMode.Absolute, genericTypeParameterKey, genericTypeParameterValue);
+  }
+
+  /**
+   * Overloaded constructor, initializes session with a session expiration time and polling interval in milliseconds, the way sessions are
+   * renewed, and the key/value generic type parameters. Set to CONSTANT.TIMEOUT_INFINITE to disable expiration.
+   * 
+   * @throws IllegalArgumentException When the values provided are out of range.
+   * @throws NullPointerException When the expiration mode or a generic type parameter class is null.
+   */
+  @Validate
+  public SharedKeyValueSessionStore(int expirationMillis, int pollingIntervalMillis, @NotNull final ExpirationMode mode,
+                                    @NotNull final Class<?> genericTypeParameterKey, @NotNull final Class<?> genericTypeParameterValue)
+  {
+    setExpirationMillis(expirationMillis);
+    setPollingIntervalMillis(pollingIntervalMillis);
+
+    this.mode = mode;
+    keyType = genericTypeParameterKey;
+    valueType = genericTypeParameterValue;
+
+    // check if expiration is enabled
+    if (expirationMillis >= 0)
+      ExpiryScheduler.schedule(this, pollingIntervalMillis, pollingIntervalMillis);
+  }
+
+  /**
+   * Adds an item to the collection, replacing an expired entry of the same key. Returns true if successful. This is an O(1) operation.
+   * 
+   * @throws NullPointerException Key is null
+   */
+  @Override
+  @Validate
+  public boolean add(@NotNull final TKey key, final TValue value)
+  {
+    Entry<TValue> entry = new Entry<TValue>(value, deadline(now()));
+
+    while (true)
+    {
+      Entry<TValue> existing = map.putIfAbsent(key, entry);
+      if (existing == null)
+        return true;
+
+      if (!existing.isExpired(now()))
+        return false;
+
+      if (map.replace(key, existing, entry))
+        return true;
+    }
+  }
+
+  /**
+   * Clears the collection
+   */
+  @Override
+  public void clear()
+  {
+    map.clear();
+  }
+
+  /**
+   * Returns true if the given key is contained in the collection and its session has not expired. This does not renew sliding sessions.
+   * This is an O(1) operation.
+   * 
+   * @throws NullPointerException Key is null
+   */
+  @Override
+  @Validate
+  public boolean containsKey(@NotNull final TKey key)
+  {
+    return live(key, now()) != null;
+  }
+
+  /**
+   * Expires the time of a session item, i.e. removes the item from the collection. This is an O(1) operation.
+   * 
+   * @throws NullPointerException Key is null
+   */
+  @Override
+  @Validate
+  public boolean expire(@NotNull final TKey key)
+  {
+    Entry<TValue> entry = live(key, now());
+    if (entry == null || !entry.expire())
+      return false;
+
+    map.remove(key, entry);
+    return true;
+  }
+
+  /**
+   * Returns the value associated with a key, renewing its session if sessions are sliding. Throws KeyNotFoundException if the key does not
+   * exist or its session has expired. This is an O(1) operation.
+   * 
+   * @throws NullPointerException Key is null
+   * @throws KeyNotFoundException When the key is not found
+   */
+  @Override
+  public TValue get(final TKey key)
+  {
+    TryResult<TValue> result = tryGet(key);
+    if (!result.isSuccess())
+      throw new KeyNotFoundException("The key was not found: " + key);
+
+    return result.getResult();
+  }
+
+  /**
+   * Returns the value associated with a key, renewing its session if sessions are sliding. The result is unsuccessful if the key does not
+   * exist or its session has expired. This is an O(1) operation.
+   * 
+   * @throws NullPointerException Key is null
+   */
+  @Validate
+  public TryResult<TValue> tryGet(@NotNull final TKey key)
+  {
+    long now = now();
+    Entry<TValue> entry = live(key, now);
+    if (entry == null)
+      return new TryResult<TValue>();
+
+    if (mode == ExpirationMode.Sliding)
+      entry.renew(now, deadline(now));
+
+    return new TryResult<TValue>(entry.value);
+  }
+
+  /**
+   * Returns the keys whose sessions have not expired, in no particular order. This is an O(n) operation.
+   */
+  @Override
+  public ReifiedIterable<TKey> getKeys()
+  {
+    long now = now();
+    ReifiedArrayList<TKey> result = new ReifiedArrayList<TKey>(map.size(), keyType);
+    for (Map.Entry<TKey, Entry<TValue>> entry : map.entrySet())
+      if (!entry.getValue().isExpired(now))
+        result.add(entry.getKey());
+
+    return result;
+  }
+
+  /**
+   * Returns the values whose sessions have not expired, in no particular order. This does not renew sliding sessions. This is an O(n)
+   * operation.
+   */
+  @Override
+  public ReifiedIterable<TValue> getValues()
+  {
+    long now = now();
+    ReifiedArrayList<TValue> result = new ReifiedArrayList<TValue>(map.size(), valueType);
+    for (Entry<TValue> entry : map.values())
+      if (!entry.isExpired(now))
+        result.add(entry.value);
+
+    return result;
+  }
+
+  /**
+   * Gets the duration of a session in milliseconds. If the value is CONSTANT.TIMEOUT_INFINITE then there is no expiration.
+   */
+  @Override
+  public int getExpirationMillis()
+  {
+    return expirationMillis;
+  }
+
+  /**
+   * Gets the polling interval in milliseconds. If the value is CONSTANT.TIMEOUT_INFINITE then there is no polling.
+   */
+  @Override
+  public int getPollingIntervalMillis()
+  {
+    return pollingIntervalMillis;
+  }
+
+  /**
+   * Returns the way sessions are renewed
+   */
+  public ExpirationMode getExpirationMode()
+  {
+    return mode;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<?> getGenericTypeParameterKey()
+  {
+    return keyType;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<?> getGenericTypeParameterValue()
+  {
+    return valueType;
+  }
+
+  /**
+   * Renews the session expiration time for an item. Returns true if the item was found and refreshed. This is an O(1) operation.
+   * 
+   * @throws NullPointerException Key is null
+   */
+  @Override
+  @Validate
+  public boolean refresh(@NotNull final TKey key)
+  {
+    long now = now();
+    Entry<TValue> entry = live(key, now);
+
+    return entry != null && entry.refresh(now, deadline(now));
+  }
+
+  /**
+   * Removes an item from the collection. Returns true if the item was found and its session had not expired. This is an O(1) operation.
+   * 
+   * @throws NullPointerException Key is null.
+   */
+  @Override
+  @Validate
+  public boolean remove(@NotNull final TKey key)
+  {
+    Entry<TValue> entry = map.remove(key);
+    return entry != null && !entry.isExpired(now());
+  }
+
+  /**
+   * Replaces a key's value with the given new value, keeping its session. Returns true if the key was found and its value was replaced. This
+   * is an O(1) operation.
+   * 
+   * @throws NullPointerException Key is null
+   */
+  @Override
+  @Validate
+  public boolean replace(@NotNull final TKey key, final TValue newValue)
+  {
+    Entry<TValue> entry = live(key, now());
+    if (entry == null)
+      return false;
+
+    entry.value = newValue;
+    return true;
+  }
+
+  /**
+   * Sets the duration of a session in milliseconds. If the value is CONSTANT.TIMEOUT_INFINITE then there is no expiration.
+   * 
+   * @throws IllegalArgumentException When the period is a negative but not CONSTANT.TIMEOUT_INFINITE
+   */
+  protected void setExpirationMillis(int value)
+  {
+    if ((value != CONSTANT.TIMEOUT_INFINITE) && (value < 0))
+      throw new IllegalArgumentException("The expiration period can either be CONSTANT.TIMEOUT_INFINITE, or a positive number: " + value);
+    this.expirationMillis = value;
+  }
+
+  /**
+   * Sets polling interval in milliseconds.
+   * 
+   * @throws IllegalArgumentException When the interval is a non-positive number.
+   */
+  protected void setPollingIntervalMillis(int value)
+  {
+    if (value < 0)
+      throw new IllegalArgumentException("The polling interval must be a positive number: " + value);
+    this.pollingIntervalMillis = value;
+  }
+
+  /**
+   * Returns the number of items whose sessions have not expired. This is an O(n) operation.
+   */
+  @Override
+  public int size()
+  {
+    long now = now();
+    int result = 0;
+    for (Entry<TValue> entry : map.values())
+      if (!entry.isExpired(now))
+        result++;
+
+    return result;
+  }
+
+  /**
+   * Locks the collection against other callers of lock(). Single-key operations are not blocked.
+   */
+  @Override
+  public void lock()
+  {
+    reEntrantLock.lock();
+  }
+
+  /**
+   * Unlocks the collection.
+   * 
+   * @throws IllegalMonitorStateException The current thread does not own the lock
+   */
+  @Override
+  public void unlock()
+  {
+    reEntrantLock.unlock();
+  }
+
+  /**
+   * Returns the key/value pairs whose sessions have not expired, in a list copy. This does not renew sliding sessions. This is an O(n)
+   * operation.
+   */
+  @Override
+  public Iterator<KeyValuePair<TKey, TValue>> iterator()
+  {
+    long now = now();
+    List<KeyValuePair<TKey, TValue>> result = new ArrayList<KeyValuePair<TKey, TValue>>(map.size());
+    for (Map.Entry<TKey, Entry<TValue>> entry : map.entrySet())
+      if (!entry.getValue().isExpired(now))
+        result.add(new KeyValuePair<TKey, TValue>(entry.getKey(), entry.getValue().value));
+
+    return result.iterator();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return Linq.toString(this);
+  }
+
+  /**
+   * Removes the items whose sessions have expired. Reads never return expired items, so this only reclaims the memory of items that are
+   * not accessed again. This is an O(n) operation that does not block other threads.
+   */
+  @Override
+  public void removeExpired()
+  {
+    long now = now();
+    for (Map.Entry<TKey, Entry<TValue>> entry : map.entrySet())
+      if (entry.getValue().isExpired(now))
+        map.remove(entry.getKey(), entry.getValue());
+  }
+
+  /**
+   * Creates the backing map
+   */
+  private static <TKey, TValue> ConcurrentMap<TKey, Entry<TValue>> newMap()
+  {
+    return new ConcurrentHashMap<TKey, Entry<TValue>>(INITIAL_CAPACITY, LOAD_FACTOR, CONCURRENCY_LEVEL);
+  }
+
+  /**
+   * Returns the entry of a key if its session has not expired, otherwise removes it if it has and returns null
+   */
+  private Entry<TValue> live(final TKey key, final long now)
+  {
+    Entry<TValue> entry = map.get(key);
+    if (entry == null)
+      return null;
+
+    if (entry.isExpired(now))
+    {
+      map.remove(key, entry);
+      return null;
+    }
+
+    return entry;
+  }
+
+  /**
+   * Returns the current time, in nanoseconds since the store was created
+   */
+  private long now()
+  {
+    return System.nanoTime() - origin;
+  }
+
+  /**
+   * Returns the deadline of a session starting at the given time
+   */
+  private long deadline(final long now)
+  {
+    if (expirationMillis == CONSTANT.TIMEOUT_INFINITE)
+      return Long.MAX_VALUE;
+
+    return now + expirationMillis * 1000000L;
+  }
+
+  /**
+   * A value and the deadline of its session. Deadlines only move forward while the session is live, and an expired session is never
+   * renewed, so that an entry is removed at most once from the map.
+   */
+  private static final class Entry<TValue>
+  {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<Entry> DEADLINE = AtomicLongFieldUpdater.newUpdater(Entry.class, "deadline");
+    /**
+     * The deadline of an entry that has been expired explicitly
+     */
+    private static final long EXPIRED = Long.MIN_VALUE;
+
+    volatile TValue value;
+    volatile long deadline;
+
+    Entry(final TValue value, final long deadline)
+    {
+      this.value = value;
+      this.deadline = deadline;
+    }
+
+    boolean isExpired(final long now)
+    {
+      return deadline <= now;
+    }
+
+    /**
+     * Moves the deadline to the given one if it is later, unless the session has expired. Returns false if the session has expired.
+     */
+    boolean refresh(final long now, final long newDeadline)
+    {
+      while (true)
+      {
+        long current = deadline;
+        if (current <= now)
+          return false;
+        if (current >= newDeadline || DEADLINE.compareAndSet(this, current, newDeadline))
+          return true;
+      }
+    }
+
+    /**
+     * Refreshes the session of a read, unless its deadline would move by less than RENEWAL_NANOS
+     */
+    void renew(final long now, final long newDeadline)
+    {
+      if (newDeadline - deadline >= RENEWAL_NANOS)
+        refresh(now, newDeadline);
+    }
+
+    /**
+     * Expires the session, returning false if it had already expired
+     */
+    boolean expire()
+    {
+      while (true)
+      {
+        long current = deadline;
+        if (current == EXPIRED)
+          return false;
+        if (DEADLINE.compareAndSet(this, current, EXPIRED))
+          return true;
+      }
+    }
+  }
+}
@@ -0,0 +1,226 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.volatiles;
+
+import java.util.Collection;
+
+/**
+ * A hierarchical timing wheel, which keeps items in buckets by their deadlines, so that the items whose deadlines have passed are found
+ * without visiting the others. Each of its levels has 64 buckets, which are 2^20 nanoseconds (about a millisecond) wide on the first level
+ * and 64 times wider on each following level. An item is put in a bucket of the lowest level that spans its deadline, and as time
+ * advances, the buckets that have been passed are emptied, expiring their items if their deadlines have passed and moving the others to
+ * lower levels. Scheduling, rescheduling and cancelling an item are O(1) operations, and advancing the wheel visits only the passed
+ * buckets, with items being moved at most once per level.
+ * 
+ * Times are in nanoseconds since the wheel was created, as returned by nanoTime(). This class is not thread-safe.
+ */
+final class TimingWheel<T>
+{
+  private static final int BUCKETS = 64;
+  /**
+   * The base 2 logarithm of the width of the buckets of each level, in nanoseconds
+   */
+  private static final int[] SHIFTS = {20, 26, 32, 38, 44, 50};
+
+  private final Node<T>[][] wheel;
+  private final long origin;
+  /**
+   * The time up to which the wheel has advanced
+   */
+  private long time;
+
+  /**
+   * Initializes the wheel, starting its time at zero
+   */
+  @SuppressWarnings("unchecked")
+  TimingWheel()
+  {
+    origin = System.nanoTime();
+    wheel = new Node[SHIFTS.length][BUCKETS];
+    for (int level = 0; level < SHIFTS.length; level++)
+      for (int bucket = 0; bucket < BUCKETS; bucket++)
+        wheel[level][bucket] = new Node<T>(null, 0);
+  }
+
+  /**
+   * Returns the current time of the wheel, i.e. the nanoseconds elapsed since it was created
+   */
+  long nanoTime()
+  {
+    return System.nanoTime() - origin;
+  }
+
+  /**
+   * Schedules an item to expire at a deadline, returning its node, by which it may be rescheduled or cancelled. A deadline of
+   * Long.MAX_VALUE never expires.
+   */
+  Node<T> schedule(T item, long deadline)
+  {
+    Node<T> node = new Node<T>(item, deadline);
+    link(node);
+    return node;
+  }
+
+  /**
+   * Moves a scheduled item to a new deadline, or schedules it again if it has expired
+   */
+  void reschedule(Node<T> node, long deadline)
+  {
+    node.unlink();
+    node.deadline = deadline;
+    link(node);
+  }
+
+  /**
+   * Cancels a scheduled item, so that it does not expire
+   */
+  void cancel(Node<T> node)
+  {
+    node.unlink();
+  }
+
+  /**
+   * Cancels all scheduled items
+   */
+  void clear()
+  {
+    for (Node<T>[] buckets : wheel)
+      for (Node<T> sentinel : buckets)
+      {
+        for (Node<T> node = sentinel.next; node != sentinel;)
+        {
+          Node<T> next = node.next;
+          node.reset();
+          node = next;
+        }
+
+        sentinel.reset();
+      }
+  }
+
+  /**
+   * Advances the wheel to the given time, adding the items whose deadlines have passed to a collection
+   */
+  void advance(long now, Collection<? super T> expired)
+  {
+    long previous = time;
+    if (now <= previous)
+      return;
+
+    time = now;
+    for (int level = 0; level < SHIFTS.length; level++)
+    {
+      long previousTicks = previous >>> SHIFTS[level];
+      long currentTicks = now >>> SHIFTS[level];
+      if (currentTicks <= previousTicks)
+        break;
+
+      // visits the buckets from the one the previous advance stopped at, up to the current one, at most once each
+      int steps = (int) Math.min(currentTicks - previousTicks + 1, BUCKETS);
+      for (int i = 0; i < steps; i++)
+        expire(wheel[level][(int) ((previousTicks + i) & (BUCKETS - 1))], expired);
+    }
+  }
+
+  /**
+   * Empties a bucket, expiring the items whose deadlines have passed and scheduling the others again
+   */
+  private void expire(Node<T> sentinel, Collection<? super T> expired)
+  {
+    Node<T> node = sentinel.next;
+    sentinel.reset();
+
+    while (node != sentinel)
+    {
+      Node<T> next = node.next;
+      node.reset();
+
+      if (node.deadline - time > 0)
+        link(node);
+      else
+        expired.add(node.item);
+
+      node = next;
+    }
+  }
+
+  /**
+   * Links a node in the bucket of the lowest level that spans its deadline. Deadlines that have passed go in the current bucket of the first
+   * level, to expire on the next advance.
+   */
+  private void link(Node<T> node)
+  {
+    long deadline = Math.max(node.deadline, time);
+    long delay = deadline - time;
+
+    int level = 0;
+    while (level < SHIFTS.length - 1 && delay >= (1L << SHIFTS[level + 1]))
+      level++;
+
+    node.linkBefore(wheel[level][(int) ((deadline >>> SHIFTS[level]) & (BUCKETS - 1))]);
+  }
+
+  /**
+   * A scheduled item, which is also a node of the list of its bucket
+   */
+  static final class Node<T>
+  {
+    final T item;
+    long deadline;
+    Node<T> previous;
+    Node<T> next;
+
+    Node(T item, long deadline)
+    {
+      this.item = item;
+      this.deadline = deadline;
+      previous = this;
+      next = this;
+    }
+
+    /**
+     * Returns the deadline of the item, in nanoseconds since the wheel was created
+     */
+    long getDeadline()
+    {
+      return deadline;
+    }
+
+    void linkBefore(Node<T> node)
+    {
+      next = node;
+      previous = node.previous;
+      previous.next = this;
+      node.previous = this;
+    }
+
+    void unlink()
+    {
+      previous.next = next;
+      next.previous = previous;
+      reset();
+    }
+
+    void reset()
+    {
+      previous = this;
+      next = this;
+    }
+  }
+}
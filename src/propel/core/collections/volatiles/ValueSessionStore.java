@@ -18,7 +18,7 @@
 // /////////////////////////////////////////////////////////
 package propel.core.collections.volatiles;
 
-import org.joda.time.LocalDateTime;
+import propel.core.TryResult;
 import propel.core.collections.IValueStore;
 import propel.core.collections.lists.ReifiedList;
 import propel.core.collections.maps.avl.AvlHashtable;
@@ -30,14 +30,15 @@ import java.util.*;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * A type-aware thread-safe Session object that allows multiple threads to operate on a collection of time-expiring objects. This collection
- * does not allow null keys to be inserted.
+ * A type-aware thread-safe Session object that allows multiple threads to operate on a collection of time-expiring objects. Session
+ * deadlines are kept in a timing wheel, from which the expired objects are removed every polling interval by a scheduler shared by all
+ * stores, so that each check only visits the objects that have expired. This collection does not allow null keys to be inserted.
  * 
  * Instantiate using e.g.: new ValueSessionStore&lt;String&gt;(1000*60, 5000){}; -OR- new ValueSessionStore&lt;String&gt;(1000*60, 5000,
  * String.class);
  */
 public class ValueSessionStore<T extends Comparable<T>>
-    implements ISessionStore<T>, IValueStore<T>
+    implements ISessionStore<T>, IValueStore<T>, IExpiringStore
 {
   /**
    * The default expiration time for session objects is 30 minutes.
@@ -48,13 +49,10 @@ public class ValueSessionStore<T extends Comparable<T>>
    */
   public static final int DEFAULT_POLLING_MILLIS = 60 * 1000;
   /**
-   * Timer used for removing expired objects
+   * Objects and their expiry scheduling are stored here
    */
-  private Timer expirationTimer;
-  /**
-   * Objects and their expiry date are stored here
-   */
-  private final AvlHashtable<T, LocalDateTime> expiries;
+  private final AvlHashtable<T, TimingWheel.Node<T>> expiries;
+  private final TimingWheel<T> wheel;
   private final ReentrantLock reEntrantLock;
   private int expirationMillis;
   private int pollingIntervalMillis;
@@ -72,15 +70,12 @@ public class ValueSessionStore<T extends Comparable<T>>
     setPollingIntervalMillis(pollingIntervalMillis);
 
     reEntrantLock = new ReentrantLock();
-    expiries = new AvlHashtable<T, LocalDateTime>(SuperTypeToken.getClazz(this.getClass(), 0), LocalDateTime.class);
-
-    // daemon timer
-    expirationTimer = new Timer(true);
+    expiries = new AvlHashtable<T, TimingWheel.Node<T>>(SuperTypeToken.getClazz(this.getClass(), 0), TimingWheel.Node.class);
+    wheel = new TimingWheel<T>();
 
     // check if expiration is enabled
     if (expirationMillis >= 0)
-      expirationTimer.scheduleAtFixedRate(new ExpirationCheckingTimerTask(), new LocalDateTime().plusMillis(expirationMillis).toDateTime()
-          .toDate(), pollingIntervalMillis);
+      ExpiryScheduler.schedule(this, expirationMillis, pollingIntervalMillis);
   }
 
   /**
@@ -96,15 +91,12 @@ public class ValueSessionStore<T extends Comparable<T>>
     setPollingIntervalMillis(pollingIntervalMillis);
 
     reEntrantLock = new ReentrantLock();
-    expiries = new AvlHashtable<T, LocalDateTime>(genericTypeParameter, LocalDateTime.class);
-
-    // daemon timer
-    expirationTimer = new Timer(true);
+    expiries = new AvlHashtable<T, TimingWheel.Node<T>>(genericTypeParameter, TimingWheel.Node.class);
+    wheel = new TimingWheel<T>();
 
     // check if expiration is enabled
     if (expirationMillis >= 0)
-      expirationTimer.scheduleAtFixedRate(new ExpirationCheckingTimerTask(), new LocalDateTime().plusMillis(expirationMillis).toDateTime()
-          .toDate(), pollingIntervalMillis);
+      ExpiryScheduler.schedule(this, expirationMillis, pollingIntervalMillis);
   }
 
   /**
@@ -121,7 +113,10 @@ public class ValueSessionStore<T extends Comparable<T>>
     lock();
     try
     {
-      return expiries.add(item, new LocalDateTime().plusMillis(expirationMillis));
+      if (expiries.containsKey(item))
+        return false;
+
+      return expiries.add(item, wheel.schedule(item, deadline()));
     }
     finally
     {
@@ -139,6 +134,7 @@ public class ValueSessionStore<T extends Comparable<T>>
     try
     {
       expiries.clear();
+      wheel.clear();
     }
     finally
     {
@@ -182,7 +178,7 @@ public class ValueSessionStore<T extends Comparable<T>>
     lock();
     try
     {
-      return expiries.replace(item, new LocalDateTime());
+      return reschedule(item, wheel.nanoTime());
     }
     finally
     {
@@ -247,7 +243,7 @@ public class ValueSessionStore<T extends Comparable<T>>
     lock();
     try
     {
-      return expiries.replace(item, new LocalDateTime().plusMillis(expirationMillis));
+      return reschedule(item, deadline());
     }
     finally
     {
@@ -269,6 +265,11 @@ public class ValueSessionStore<T extends Comparable<T>>
     lock();
     try
     {
+      TryResult<TimingWheel.Node<T>> node = expiries.tryGetValue(item);
+      if (!node.isSuccess())
+        return false;
+
+      wheel.cancel(node.getResult());
       return expiries.remove(item);
     }
     finally
@@ -380,36 +381,50 @@ public class ValueSessionStore<T extends Comparable<T>>
   {
     return Linq.toString(this);
   }
-  
+
   /**
-   * Scans all objects and removes the ones that have expired. This is an O(nlog2(n)) operation.
+   * Removes the items whose sessions have expired. This is an O(mlog2(n)) operation, where m is the number of expired items.
    */
-  private class ExpirationCheckingTimerTask
-      extends TimerTask
+  @Override
+  public void removeExpired()
   {
-    @Override
-    public void run()
+    lock();
+    try
     {
-      lock();
-      try
-      {
-        // check objects expiring before now
-        LocalDateTime now = new LocalDateTime();
-        List<T> toBeRemoved = new ArrayList<T>(64);
-
-        // add expiring object to a list
-        for (T key : expiries.getKeys())
-          if (expiries.get(key).isBefore(now))
-            toBeRemoved.add(key);
-
-        // remove from store
-        for (T key : toBeRemoved)
-          expiries.remove(key);
-      }
-      finally
-      {
-        unlock();
-      }
+      List<T> expired = new ArrayList<T>();
+      wheel.advance(wheel.nanoTime(), expired);
+
+      // remove from store
+      for (T item : expired)
+        expiries.remove(item);
     }
+    finally
+    {
+      unlock();
+    }
+  }
+
+  /**
+   * Returns the deadline of a session starting now, in nanoseconds of the timing wheel
+   */
+  private long deadline()
+  {
+    if (expirationMillis == CONSTANT.TIMEOUT_INFINITE)
+      return Long.MAX_VALUE;
+
+    return wheel.nanoTime() + expirationMillis * 1000000L;
+  }
+
+  /**
+   * Moves the deadline of an item's session, returning false if the item is not found. Must be called while holding the lock.
+   */
+  private boolean reschedule(T item, long deadline)
+  {
+    TryResult<TimingWheel.Node<T>> node = expiries.tryGetValue(item);
+    if (!node.isSuccess())
+      return false;
+
+    wheel.reschedule(node.getResult(), deadline);
+    return true;
   }
 }
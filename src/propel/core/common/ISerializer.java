@@ -0,0 +1,48 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The interface of a serializer, which writes items to and reads them back from a binary stream. Each item must be read back using exactly
+ * the bytes written for it, so that items can be stored one after another.
+ * 
+ * @param <T> The type of the items serialized.
+ */
+public interface ISerializer<T>
+{
+  /**
+   * Writes an item to the output.
+   * 
+   * @throws IOException An I/O error occurs
+   */
+  void serialize(T item, DataOutput output)
+      throws IOException;
+
+  /**
+   * Reads the next item from the input.
+   * 
+   * @throws IOException An I/O error occurs
+   */
+  T deserialize(DataInput input)
+      throws IOException;
+}
@@ -0,0 +1,149 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+
+/**
+ * Provides commonly used serializers. All of them support null items.
+ */
+public final class Serializers
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * Serializes strings as their UTF-8 bytes, prefixed by their length. Unlike DataOutput.writeUTF(), strings of any length are supported.
+   */
+  public static final ISerializer<String> STRING = new ISerializer<String>() {
+    @Override
+    public void serialize(String item, DataOutput output)
+        throws IOException
+    {
+      writeBytes(item == null ? null : item.getBytes(UTF8), output);
+    }
+
+    @Override
+    public String deserialize(DataInput input)
+        throws IOException
+    {
+      byte[] bytes = readBytes(input);
+      return bytes == null ? null : new String(bytes, UTF8);
+    }
+  };
+
+  /**
+   * Serializes Serializable objects using Java serialization
+   */
+  private static final ISerializer<Serializable> JAVA = new ISerializer<Serializable>() {
+    @Override
+    public void serialize(Serializable item, DataOutput output)
+        throws IOException
+    {
+      if (item == null)
+      {
+        writeBytes(null, output);
+        return;
+      }
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream stream = new ObjectOutputStream(bytes);
+      stream.writeObject(item);
+      stream.close();
+
+      writeBytes(bytes.toByteArray(), output);
+    }
+
+    @Override
+    public Serializable deserialize(DataInput input)
+        throws IOException
+    {
+      byte[] bytes = readBytes(input);
+      if (bytes == null)
+        return null;
+
+      ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(bytes));
+      try
+      {
+        return (Serializable) stream.readObject();
+      }
+      catch(ClassNotFoundException e)
+      {
+        throw new IOException("Could not deserialize item: " + e.getMessage(), e);
+      }
+      finally
+      {
+        stream.close();
+      }
+    }
+  };
+
+  /**
+   * Private constructor prevents instantiation.
+   */
+  private Serializers()
+  {
+  }
+
+  /**
+   * Returns a serializer that uses Java serialization, writing each item as a length-prefixed, self-contained object stream.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends Serializable> ISerializer<T> serializable()
+  {
+    return (ISerializer<T>) JAVA;
+  }
+
+  /**
+   * Writes a length-prefixed byte array, using a length of -1 for null
+   */
+  private static void writeBytes(final byte[] bytes, final DataOutput output)
+      throws IOException
+  {
+    if (bytes == null)
+      output.writeInt(-1);
+    else
+    {
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  /**
+   * Reads a length-prefixed byte array, written using writeBytes()
+   */
+  private static byte[] readBytes(final DataInput input)
+      throws IOException
+  {
+    int length = input.readInt();
+    if (length < 0)
+      return null;
+
+    byte[] result = new byte[length];
+    input.readFully(result);
+    return result;
+  }
+}
@@ -65,6 +65,21 @@ public final class ConfigurableConsts
    */
   public static final KeyValuePair<String, Integer> LINQ_DEFAULT_LIST_SIZE = new KeyValuePair<String, Integer>("Linq.DEFAULT_LIST_SIZE",
       128);
+  /**
+   * ParallelLinq processes sequences shorter than this sequentially, and does not split work into chunks smaller than this.
+   */
+  public static final KeyValuePair<String, Integer> LINQ_PARALLEL_THRESHOLD = new KeyValuePair<String, Integer>(
+      "Linq.PARALLEL_THRESHOLD", 8192);
+  /**
+   * The number of worker threads used by ParallelLinq
+   */
+  public static final KeyValuePair<String, Integer> LINQ_PARALLELISM = new KeyValuePair<String, Integer>(
+      "Linq.PARALLELISM", Runtime.getRuntime().availableProcessors());
+  /**
+   * The maximum number of elements Linq's external sort holds in memory, i.e. the number of elements per run spilled to disk
+   */
+  public static final KeyValuePair<String, Integer> LINQ_EXTERNAL_SORT_RUN_SIZE = new KeyValuePair<String, Integer>(
+      "Linq.EXTERNAL_SORT_RUN_SIZE", 100000);
 
   // Network
   /**
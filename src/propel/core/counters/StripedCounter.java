@@ -0,0 +1,110 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.counters;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe counter which spreads its additions over a number of cells, each on its own cache line, chosen by the identifier of the
+ * adding thread. Threads adding concurrently therefore rarely contend for the same cell, unlike with a single AtomicLong. The value is the
+ * sum of the cells, so reading it is an O(c) operation where c is the number of cells, and it is only exact while no additions are in
+ * progress. Should be preferred over an AtomicLong for counters that are updated often by many threads but read rarely, such as statistics.
+ */
+public final class StripedCounter
+{
+  /**
+   * The distance between two cells, in longs, so that they do not share a cache line, nor a pair of adjacent lines
+   */
+  private static final int STRIDE = 16;
+  private final AtomicLongArray cells;
+  private final int mask;
+
+  /**
+   * Initializes the counter with twice as many cells as there are processors, rounded up to a power of two.
+   */
+  public StripedCounter()
+  {
+    this(2 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Initializes the counter with a cell per thread expected to add to it concurrently, rounded up to a power of two.
+   * 
+   * @throws IllegalArgumentException When the concurrency level is non positive.
+   */
+  public StripedCounter(int concurrencyLevel)
+  {
+    if (concurrencyLevel <= 0)
+      throw new IllegalArgumentException("concurrencyLevel=" + concurrencyLevel);
+
+    int count = Math.min(concurrencyLevel, 1 << 16);
+    count = Integer.highestOneBit(count) == count ? count : Integer.highestOneBit(count) << 1;
+
+    // the first and last cells are also padded from the array header and from whatever follows the array
+    cells = new AtomicLongArray((count + 1) * STRIDE);
+    mask = count - 1;
+  }
+
+  /**
+   * Adds one to the counter
+   */
+  public void increment()
+  {
+    add(1);
+  }
+
+  /**
+   * Adds a value to the counter
+   */
+  public void add(long value)
+  {
+    cells.getAndAdd(cellOf(Thread.currentThread()), value);
+  }
+
+  /**
+   * Returns the sum of the cells. This is an O(c) operation where c is the number of cells.
+   */
+  public long sum()
+  {
+    long result = 0;
+    for (int i = 0; i <= mask; i++)
+      result += cells.get((i + 1) * STRIDE);
+
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString()
+  {
+    return Long.toString(sum());
+  }
+
+  /**
+   * Returns the array index of a thread's cell. Thread identifiers are usually sequential, so they are multiplied by the golden ratio to
+   * spread them over the cells.
+   */
+  private int cellOf(Thread thread)
+  {
+    int hash = (int) thread.getId() * 0x9e3779b9;
+    return (((hash ^ (hash >>> 16)) & mask) + 1) * STRIDE;
+  }
+}
@@ -375,4 +375,44 @@ public final class Functions
       return TypeArguments.getClassFor(getClass(), 7);
     }
   }
+
+  /**
+   * Encapsulates a method that has a single int parameter and returns an int, without boxing either.
+   */
+  public static abstract class IntFunction1
+  {
+    public abstract int apply(int t1);
+  }
+
+  /**
+   * Encapsulates a method that has a single long parameter and returns a long, without boxing either.
+   */
+  public static abstract class LongFunction1
+  {
+    public abstract long apply(long t1);
+  }
+
+  /**
+   * Encapsulates a method that has a single double parameter and returns a double, without boxing either.
+   */
+  public static abstract class DoubleFunction1
+  {
+    public abstract double apply(double t1);
+  }
+
+  /**
+   * Encapsulates a method that has a single long parameter and returns a value of the type specified by the R parameter, without boxing
+   * the parameter.
+   * 
+   * @param <R> The type of the return value of the method that this delegate encapsulates.
+   */
+  public static abstract class LongToObjectFunction<R>
+  {
+    public abstract R apply(long t1);
+
+    public final Class<?> getReturnType()
+    {
+      return TypeArguments.getClassFor(getClass(), 0);
+    }
+  }
 }
@@ -41,4 +41,30 @@ public final class Predicates
 
     public abstract boolean evaluate(T1 t1);
   }
+
+  /**
+   * Represents the method that defines a set of criteria and determines whether the specified int meets those criteria, without boxing it.
+   */
+  public static abstract class IntPredicate1
+  {
+    public abstract boolean evaluate(int t1);
+  }
+
+  /**
+   * Represents the method that defines a set of criteria and determines whether the specified long meets those criteria, without boxing
+   * it.
+   */
+  public static abstract class LongPredicate1
+  {
+    public abstract boolean evaluate(long t1);
+  }
+
+  /**
+   * Represents the method that defines a set of criteria and determines whether the specified double meets those criteria, without boxing
+   * it.
+   */
+  public static abstract class DoublePredicate1
+  {
+    public abstract boolean evaluate(double t1);
+  }
 }
@@ -0,0 +1,90 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.functional;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Collection of action templates taking primitive parameters, used to visit the elements of primitive collections without boxing them.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class PrimitiveActions
+{
+
+  /**
+   * Encapsulates a method that has a single int parameter and does not return a value.
+   */
+  public static abstract class IntAction
+  {
+    public abstract void apply(int value);
+  }
+
+  /**
+   * Encapsulates a method that has a single long parameter and does not return a value.
+   */
+  public static abstract class LongAction
+  {
+    public abstract void apply(long value);
+  }
+
+  /**
+   * Encapsulates a method that has a single double parameter and does not return a value.
+   */
+  public static abstract class DoubleAction
+  {
+    public abstract void apply(double value);
+  }
+
+  /**
+   * Encapsulates a method that has two int parameters, e.g. a key and its value, and does not return a value.
+   */
+  public static abstract class IntIntAction
+  {
+    public abstract void apply(int key, int value);
+  }
+
+  /**
+   * Encapsulates a method that has two long parameters, e.g. a key and its value, and does not return a value.
+   */
+  public static abstract class LongLongAction
+  {
+    public abstract void apply(long key, long value);
+  }
+
+  /**
+   * Encapsulates a method that has an int and an object parameter, e.g. a key and its value, and does not return a value.
+   * 
+   * @param <V> The type of the object parameter of the method that this delegate encapsulates.
+   */
+  public static abstract class IntObjectAction<V>
+  {
+    public abstract void apply(int key, V value);
+  }
+
+  /**
+   * Encapsulates a method that has a long and an object parameter, e.g. a key and its value, and does not return a value.
+   * 
+   * @param <V> The type of the object parameter of the method that this delegate encapsulates.
+   */
+  public static abstract class LongObjectAction<V>
+  {
+    public abstract void apply(long key, V value);
+  }
+}
@@ -15,12 +15,9 @@
  */
 package propel.core.functional;
 
-import java.lang.reflect.Array;
-import java.lang.reflect.GenericArrayType;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import propel.core.utils.TypeArgumentCache;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 final class TypeArguments
@@ -30,38 +27,7 @@ final class TypeArguments
    */
   public static Class<?> getClassFor(final Class<?> clazz, final int typeArgumentIndex)
   {
-    final Type type = getTypeFor(clazz, typeArgumentIndex);
-    final Class<?> result = getClassFor(type);
+    final Class<?> result = TypeArgumentCache.getClass(clazz, typeArgumentIndex);
     return result == null ? Object.class : result;
   }
-
-  private static Type getTypeFor(final Class<?> clazz, final int index)
-  {
-    final Type superClass = clazz.getGenericSuperclass();
-    if (!(superClass instanceof ParameterizedType))
-      return null;
-    final Type[] typeArguments = ((ParameterizedType) superClass).getActualTypeArguments();
-    return (index >= typeArguments.length) ? null : typeArguments[index];
-  }
-
-  private static Class<?> getClassFor(final Type type)
-  {
-    Class<?> clazz = null;
-    if (type instanceof Class)
-    {
-      clazz = (Class<?>) type;
-    } else if (type instanceof ParameterizedType)
-    {
-      clazz = getClassFor(((ParameterizedType) type).getRawType());
-    } else if (type instanceof GenericArrayType)
-    {
-      final Type componentType = ((GenericArrayType) type).getGenericComponentType();
-      final Class<?> componentClass = getClassFor(componentType);
-      if (componentClass != null)
-      {
-        clazz = Array.newInstance(componentClass, 0).getClass();
-      }
-    }
-    return clazz;
-  }
 }
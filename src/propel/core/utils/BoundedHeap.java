@@ -0,0 +1,185 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Retains the k entries with the smallest keys out of those offered to it, using a max-heap of at most k entries so that each offer is an
+ * O(log k) operation. Entries with equal keys are ordered by a sequence number, so that the earliest offered are retained, making the
+ * selection stable. Used by the topK() and bottomK() operators.
+ */
+@SuppressWarnings("unchecked")
+final class BoundedHeap<TKey, TValue>
+{
+  private static final int INITIAL_SIZE = 16;
+
+  private final int capacity;
+  private final Comparator<? super TKey> comparer;
+  private Object[] keys;
+  private Object[] values;
+  private long[] sequences;
+  private int size;
+
+  /**
+   * Initializes the heap to retain up to capacity entries, ordered by the given key comparer
+   */
+  BoundedHeap(final int capacity, final Comparator<? super TKey> comparer)
+  {
+    if (capacity < 0)
+      throw new IllegalArgumentException("k=" + capacity);
+
+    this.capacity = capacity;
+    this.comparer = comparer;
+
+    int initialSize = Math.min(capacity, INITIAL_SIZE);
+    keys = new Object[initialSize];
+    values = new Object[initialSize];
+    sequences = new long[initialSize];
+  }
+
+  /**
+   * Returns the number of retained entries
+   */
+  int size()
+  {
+    return size;
+  }
+
+  /**
+   * Offers an entry, which is retained if it is among the k smallest so far, evicting the largest retained entry if the heap is full
+   */
+  void offer(final TKey key, final TValue value, final long sequence)
+  {
+    if (size < capacity)
+    {
+      if (size == keys.length)
+        grow();
+
+      keys[size] = key;
+      values[size] = value;
+      sequences[size] = sequence;
+      siftUp(size++);
+    } else if (size > 0 && compare(key, sequence, 0) < 0)
+    {
+      keys[0] = key;
+      values[0] = value;
+      sequences[0] = sequence;
+      siftDown(0);
+    }
+  }
+
+  /**
+   * Offers all entries retained by another heap, keeping their sequence numbers
+   */
+  void offerAll(final BoundedHeap<TKey, TValue> other)
+  {
+    for (int i = 0; i < other.size; i++)
+      offer((TKey) other.keys[i], (TValue) other.values[i], other.sequences[i]);
+  }
+
+  /**
+   * Empties the heap, returning the retained values ordered by ascending key, and by sequence number for equal keys
+   */
+  Object[] drain()
+  {
+    Object[] result = new Object[size];
+    while (size > 0)
+    {
+      result[size - 1] = values[0];
+      swap(0, size - 1);
+      keys[size - 1] = null;
+      values[size - 1] = null;
+      size--;
+      siftDown(0);
+    }
+
+    return result;
+  }
+
+  private int compare(final TKey key, final long sequence, final int index)
+  {
+    int result = comparer.compare(key, (TKey) keys[index]);
+    if (result != 0)
+      return result;
+
+    return sequence < sequences[index] ? -1 : (sequence == sequences[index] ? 0 : 1);
+  }
+
+  private int compare(final int a, final int b)
+  {
+    return compare((TKey) keys[a], sequences[a], b);
+  }
+
+  private void siftUp(int index)
+  {
+    while (index > 0)
+    {
+      int parent = (index - 1) >>> 1;
+      if (compare(index, parent) <= 0)
+        return;
+
+      swap(index, parent);
+      index = parent;
+    }
+  }
+
+  private void siftDown(int index)
+  {
+    while (true)
+    {
+      int largest = index;
+      int left = 2 * index + 1;
+      int right = left + 1;
+      if (left < size && compare(left, largest) > 0)
+        largest = left;
+      if (right < size && compare(right, largest) > 0)
+        largest = right;
+      if (largest == index)
+        return;
+
+      swap(index, largest);
+      index = largest;
+    }
+  }
+
+  private void swap(final int a, final int b)
+  {
+    Object key = keys[a];
+    keys[a] = keys[b];
+    keys[b] = key;
+
+    Object value = values[a];
+    values[a] = values[b];
+    values[b] = value;
+
+    long sequence = sequences[a];
+    sequences[a] = sequences[b];
+    sequences[b] = sequence;
+  }
+
+  private void grow()
+  {
+    int newSize = (int) Math.min(capacity, Math.max(INITIAL_SIZE, keys.length * 2L));
+    keys = Arrays.copyOf(keys, newSize);
+    values = Arrays.copyOf(values, newSize);
+    sequences = Arrays.copyOf(sequences, newSize);
+  }
+}
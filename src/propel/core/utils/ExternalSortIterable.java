@@ -0,0 +1,393 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.SneakyThrows;
+import lombok.val;
+import propel.core.common.ISerializer;
+import propel.core.functional.Functions.Function1;
+
+/**
+ * The result of an external sort. The input was split into runs, each of which was sorted in memory and, apart from the last, spilled to a
+ * temporary file. Iterating merges the runs lazily, holding only one element per run in memory. The result may be iterated any number of
+ * times.
+ * 
+ * Closing deletes the temporary files and ends any iterations in progress. Files that are not deleted this way are deleted when the JVM
+ * exits, by a single shutdown hook that tracks only the files not yet deleted.
+ * 
+ * @param <T> The element type.
+ */
+@SuppressWarnings("unchecked")
+public final class ExternalSortIterable<T>
+    implements Iterable<T>, Closeable
+{
+  private static final int BUFFER_SIZE = 64 * 1024;
+  /**
+   * The temporary files that have not been deleted yet, deleted on JVM exit. Unlike File.deleteOnExit(), files are forgotten once deleted.
+   */
+  private static final Set<File> LIVE_FILES = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+  static
+  {
+    Runtime.getRuntime().addShutdownHook(new Thread("propel-sort-cleanup") {
+      @Override
+      public void run()
+      {
+        for (File file : LIVE_FILES)
+          file.delete();
+      }
+    });
+  }
+
+  private final Function1<? super T, ?> keySelector;
+  private final Comparator<Object> order;
+  private final ISerializer<T> serializer;
+  private final List<File> runFiles;
+  private final List<Integer> runSizes;
+  private final List<T> lastRun;
+  private final List<MergeIterator> iterators;
+  private boolean closed;
+
+  private ExternalSortIterable(final Function1<? super T, ?> keySelector, final Comparator<?> order, final ISerializer<T> serializer,
+                               final List<File> runFiles, final List<Integer> runSizes, final List<T> lastRun)
+  {
+    this.keySelector = keySelector;
+    this.order = (Comparator<Object>) order;
+    this.serializer = serializer;
+    this.runFiles = runFiles;
+    this.runSizes = runSizes;
+    this.lastRun = lastRun;
+    this.iterators = new ArrayList<MergeIterator>();
+  }
+
+  /**
+   * Sorts the given sequence by key in the given key order, holding up to runSize elements in memory at a time. The sort is stable.
+   * 
+   * @throws IllegalArgumentException When runSize is out of range.
+   */
+  static <TKey, T> ExternalSortIterable<T> sort(final Iterable<T> values, final Function1<? super T, TKey> keySelector,
+                                                final Comparator<? super TKey> order, final ISerializer<T> serializer, final int runSize)
+  {
+    if (runSize <= 0)
+      throw new IllegalArgumentException("runSize=" + runSize);
+
+    return sort(values, keySelector, order, serializer, runSize, null);
+  }
+
+  /**
+   * Sorts the given sequence by key in the given key order, holding elements in memory until their estimated sizes add up to the memory
+   * budget, in bytes. A run holds at least one element, however large. The sort is stable.
+   * 
+   * @throws IllegalArgumentException When memoryBudget is out of range, or the estimator returns a negative size.
+   */
+  static <TKey, T> ExternalSortIterable<T> sort(final Iterable<T> values, final Function1<? super T, TKey> keySelector,
+                                                final Comparator<? super TKey> order, final ISerializer<T> serializer,
+                                                final long memoryBudget, final Function1<? super T, Long> sizeEstimator)
+  {
+    if (memoryBudget <= 0)
+      throw new IllegalArgumentException("memoryBudget=" + memoryBudget);
+
+    val runFiles = new ArrayList<File>();
+    val runSizes = new ArrayList<Integer>();
+    List<T> run = new ArrayList<T>(Linq.DEFAULT_LIST_SIZE);
+    long runBytes = 0;
+
+    boolean completed = false;
+    try
+    {
+      for (T item : values)
+      {
+        run.add(item);
+
+        // without an estimator every element counts as one, i.e. the budget is a number of elements
+        long itemBytes = sizeEstimator == null ? 1 : sizeEstimator.apply(item);
+        if (itemBytes < 0)
+          throw new IllegalArgumentException("The estimated size of an element is negative: " + itemBytes);
+
+        runBytes += itemBytes;
+        if (runBytes >= memoryBudget)
+        {
+          Linq.sortByKey(run, keySelector, order);
+          runFiles.add(spill(run, serializer));
+          runSizes.add(run.size());
+          run.clear();
+          runBytes = 0;
+        }
+      }
+
+      Linq.sortByKey(run, keySelector, order);
+      completed = true;
+    }
+    finally
+    {
+      if (!completed)
+        for (File file : runFiles)
+          delete(file);
+    }
+
+    return new ExternalSortIterable<T>(keySelector, order, serializer, runFiles, runSizes, run);
+  }
+
+  /**
+   * Returns the number of runs spilled to temporary files
+   */
+  public int getSpilledRunCount()
+  {
+    return runFiles.size();
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   * @throws IllegalStateException The result has been closed.
+   */
+  @Override
+  public Iterator<T> iterator()
+  {
+    synchronized(iterators)
+    {
+      if (closed)
+        throw new IllegalStateException("The sorted sequence has been closed.");
+
+      val result = new MergeIterator();
+      iterators.add(result);
+      return result;
+    }
+  }
+
+  /**
+   * Closes all iterations in progress and deletes the temporary files
+   */
+  @Override
+  public void close()
+  {
+    synchronized(iterators)
+    {
+      if (closed)
+        return;
+      closed = true;
+
+      for (MergeIterator iterator : iterators)
+        iterator.close();
+      iterators.clear();
+
+      for (File file : runFiles)
+        delete(file);
+    }
+  }
+
+  /**
+   * Writes a sorted run to a new temporary file. The file is deleted if writing fails.
+   */
+  @SneakyThrows
+  private static <T> File spill(final List<T> run, final ISerializer<T> serializer)
+  {
+    val file = File.createTempFile("propel-sort-", ".run");
+    LIVE_FILES.add(file);
+
+    boolean written = false;
+    try
+    {
+      val output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+      try
+      {
+        for (T item : run)
+          serializer.serialize(item, output);
+      }
+      finally
+      {
+        output.close();
+      }
+
+      written = true;
+    }
+    finally
+    {
+      if (!written)
+        delete(file);
+    }
+
+    return file;
+  }
+
+  /**
+   * Deletes a temporary file, no longer tracking it for deletion on JVM exit
+   */
+  private static void delete(final File file)
+  {
+    file.delete();
+    LIVE_FILES.remove(file);
+  }
+
+  /**
+   * The next element of a run, and its key
+   */
+  private final class Head
+  {
+    final int run;
+    Object key;
+    T value;
+
+    Head(final int run)
+    {
+      this.run = run;
+    }
+  }
+
+  /**
+   * Merges all runs by repeatedly taking the head with the smallest key. Heads with equal keys are taken in run order, which is the order
+   * the runs were read in, keeping the merge stable.
+   */
+  private final class MergeIterator
+      implements Iterator<T>
+  {
+    private final PriorityQueue<Head> heads;
+    private final DataInputStream[] inputs;
+    private final int[] remaining;
+    private final Iterator<T> lastRunIterator;
+
+    @SneakyThrows
+    MergeIterator()
+    {
+      val runCount = runFiles.size() + 1;
+      inputs = new DataInputStream[runCount - 1];
+      remaining = new int[runCount - 1];
+      lastRunIterator = lastRun.iterator();
+      heads = new PriorityQueue<Head>(runCount, new Comparator<Head>() {
+        @Override
+        public int compare(Head a, Head b)
+        {
+          int result = order.compare(a.key, b.key);
+          return result != 0 ? result : (a.run < b.run ? -1 : (a.run == b.run ? 0 : 1));
+        }
+      });
+
+      try
+      {
+        for (int i = 0; i < inputs.length; i++)
+        {
+          inputs[i] = new DataInputStream(new BufferedInputStream(new FileInputStream(runFiles.get(i)), BUFFER_SIZE));
+          remaining[i] = runSizes.get(i);
+        }
+        for (int i = 0; i < runCount; i++)
+          advance(new Head(i));
+      }
+      catch(Throwable e)
+      {
+        close();
+        throw e;
+      }
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      return !heads.isEmpty();
+    }
+
+    @Override
+    public T next()
+    {
+      val head = heads.poll();
+      if (head == null)
+        throw new NoSuchElementException("The sorted sequence has no more elements.");
+
+      T result = head.value;
+      advance(head);
+
+      // completed iterations need not be closed
+      if (heads.isEmpty())
+        synchronized(iterators)
+        {
+          iterators.remove(this);
+        }
+
+      return result;
+    }
+
+    @Override
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Reads the next element of the head's run into it and queues it, or closes the run if it has no more elements
+     */
+    @SneakyThrows
+    private void advance(final Head head)
+    {
+      val run = head.run;
+      if (run < inputs.length)
+      {
+        if (remaining[run] <= 0)
+        {
+          closeInput(run);
+          return;
+        }
+
+        remaining[run]--;
+        head.value = serializer.deserialize(inputs[run]);
+      } else
+      {
+        if (!lastRunIterator.hasNext())
+          return;
+
+        head.value = lastRunIterator.next();
+      }
+
+      head.key = keySelector.apply(head.value);
+      heads.add(head);
+    }
+
+    @SneakyThrows
+    private void closeInput(final int run)
+    {
+      if (inputs[run] != null)
+      {
+        inputs[run].close();
+        inputs[run] = null;
+      }
+    }
+
+    void close()
+    {
+      heads.clear();
+      for (int i = 0; i < inputs.length; i++)
+        closeInput(i);
+    }
+  }
+}
@@ -58,7 +58,7 @@ public final class ImmutableUtils
   private static final String[] listMapSuppressed = {"add", "clear", "remove", "removeAt", "replace", "replaceAt"};
   private static final String[] mapMultimapSuppressed = {"put", "remove", "removeKey", "removeSubKey", "removeSubKeys", "clear"};
   private static final String[] sharedMapMultimapSuppressed = ArrayUtils.join(mapMultimapSuppressed, new String[] {"putIfAbsent"});
-  private static final String[] longHashMapSuppressed = {"put"};
+  private static final String[] longHashMapSuppressed = {"put", "remove"};
   private static final String[] setSuppressed = collectionSuppressed;
   private static final String[] reifiedSetSuppressed = {"add", "clear", "remove", "union", "intersect", "difference"};
   private static final String[] reifiedArraySuppressed = {"set", "getOriginalArray"};
@@ -0,0 +1,299 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.utils;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import lombok.Validate;
+import lombok.Validate.NotNull;
+import lombok.val;
+import propel.core.functional.Functions.IntFunction1;
+import propel.core.functional.Predicates.IntPredicate1;
+
+/**
+ * Linq-style operations over int[] arrays, which never box the values. Reductions such as sum, min, max and average allocate nothing, and
+ * operations returning arrays allocate only their result and a working buffer.
+ */
+public final class IntLinq
+{
+  /**
+   * Returns true if a condition is true for all items in the array. Otherwise returns false.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static boolean all(@NotNull final int[] values, @NotNull final IntPredicate1 predicate)
+  {
+    for (int i = 0; i < values.length; i++)
+      if (!predicate.evaluate(values[i]))
+        return false;
+
+    return true;
+  }
+
+  /**
+   * Returns true if a condition is true for any of the items in the array. Otherwise returns false.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static boolean any(@NotNull final int[] values, @NotNull final IntPredicate1 predicate)
+  {
+    for (int i = 0; i < values.length; i++)
+      if (predicate.evaluate(values[i]))
+        return true;
+
+    return false;
+  }
+
+  /**
+   * Returns the average of the given values. If no values are given, 0 is returned.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static double average(@NotNull final int[] values)
+  {
+    if (values.length <= 0)
+      return 0;
+
+    return (double) sum(values) / values.length;
+  }
+
+  /**
+   * Returns true if the value is contained in the array.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static boolean contains(@NotNull final int[] values, final int value)
+  {
+    for (int i = 0; i < values.length; i++)
+      if (values[i] == value)
+        return true;
+
+    return false;
+  }
+
+  /**
+   * Returns the number of occurrences of a value in the array.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static int count(@NotNull final int[] values, final int value)
+  {
+    int result = 0;
+    for (int i = 0; i < values.length; i++)
+      if (values[i] == value)
+        result++;
+
+    return result;
+  }
+
+  /**
+   * Returns the number of values that satisfy the given condition.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static int countWhere(@NotNull final int[] values, @NotNull final IntPredicate1 predicate)
+  {
+    int result = 0;
+    for (int i = 0; i < values.length; i++)
+      if (predicate.evaluate(values[i]))
+        result++;
+
+    return result;
+  }
+
+  /**
+   * Returns distinct (i.e. no duplicate) values from the array, in the order they are first encountered.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static int[] distinct(@NotNull final int[] values)
+  {
+    // sort a copy and collapse it to the unique values
+    val unique = Arrays.copyOf(values, values.length);
+    Arrays.sort(unique);
+
+    int uniqueCount = 0;
+    for (int i = 0; i < unique.length; i++)
+      if (uniqueCount == 0 || unique[i] != unique[uniqueCount - 1])
+        unique[uniqueCount++] = unique[i];
+
+    // emit each unique value the first time it is encountered
+    val emitted = new boolean[uniqueCount];
+    val result = new int[uniqueCount];
+    int index = 0;
+    for (int i = 0; i < values.length; i++)
+    {
+      int position = Arrays.binarySearch(unique, 0, uniqueCount, values[i]);
+      if (!emitted[position])
+      {
+        emitted[position] = true;
+        result[index++] = values[i];
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the first value in the array that matches a condition.
+   * 
+   * @throws NullPointerException When an argument is null.
+   * @throws NoSuchElementException There is no match to the given predicate.
+   */
+  @Validate
+  public static int first(@NotNull final int[] values, @NotNull final IntPredicate1 predicate)
+  {
+    for (int i = 0; i < values.length; i++)
+      if (predicate.evaluate(values[i]))
+        return values[i];
+
+    throw new NoSuchElementException("There is no match to the given predicate.");
+  }
+
+  /**
+   * Returns the maximum of the given values. If no values are given, 0 is returned.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static int max(@NotNull final int[] values)
+  {
+    if (values.length <= 0)
+      return 0;
+
+    int result = values[0];
+    for (int i = 1; i < values.length; i++)
+      if (result < values[i])
+        result = values[i];
+
+    return result;
+  }
+
+  /**
+   * Returns the minimum of the given values. If no values are given, 0 is returned.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static int min(@NotNull final int[] values)
+  {
+    if (values.length <= 0)
+      return 0;
+
+    int result = values[0];
+    for (int i = 1; i < values.length; i++)
+      if (result > values[i])
+        result = values[i];
+
+    return result;
+  }
+
+  /**
+   * Returns a copy of the array, sorted in ascending order. The given array is not modified.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static int[] orderBy(@NotNull final int[] values)
+  {
+    val result = Arrays.copyOf(values, values.length);
+    Arrays.sort(result);
+
+    return result;
+  }
+
+  /**
+   * Returns a copy of the array, sorted in descending order. The given array is not modified.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static int[] orderByDescending(@NotNull final int[] values)
+  {
+    val result = orderBy(values);
+
+    for (int left = 0, right = result.length - 1; left < right; left++, right--)
+    {
+      int value = result[left];
+      result[left] = result[right];
+      result[right] = value;
+    }
+
+    return result;
+  }
+
+  /**
+   * Projects each value of the array using the given selector.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static int[] select(@NotNull final int[] values, @NotNull final IntFunction1 selector)
+  {
+    val result = new int[values.length];
+    for (int i = 0; i < values.length; i++)
+      result[i] = selector.apply(values[i]);
+
+    return result;
+  }
+
+  /**
+   * Returns the sum of the given values. If no values are given, 0 is returned. The sum is accumulated in a long, so it does
+   * not overflow.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static long sum(@NotNull final int[] values)
+  {
+    long result = 0;
+    for (int i = 0; i < values.length; i++)
+      result += values[i];
+
+    return result;
+  }
+
+  /**
+   * Returns the values of the array which conform to the given predicate, in their original order.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static int[] where(@NotNull final int[] values, @NotNull final IntPredicate1 predicate)
+  {
+    val result = new int[values.length];
+    int count = 0;
+    for (int i = 0; i < values.length; i++)
+      if (predicate.evaluate(values[i]))
+        result[count++] = values[i];
+
+    return count == result.length ? result : Arrays.copyOf(result, count);
+  }
+
+  private IntLinq()
+  {
+  }
+}
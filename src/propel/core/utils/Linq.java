@@ -28,7 +28,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -37,6 +40,8 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import lombok.Validate;
 import lombok.Validate.NotNull;
+import propel.core.collections.Grouping;
+import propel.core.collections.KeyValuePair;
 import propel.core.collections.ReifiedIterable;
 import propel.core.collections.arrays.ReifiedArray;
 import propel.core.collections.lists.ReifiedArrayList;
@@ -44,6 +49,7 @@ import propel.core.collections.lists.ReifiedList;
 import propel.core.collections.maps.ReifiedMap;
 import propel.core.collections.maps.avl.AvlHashtable;
 import propel.core.common.CONSTANT;
+import propel.core.common.ISerializer;
 import propel.core.configuration.ConfigurableConsts;
 import propel.core.configuration.ConfigurableParameters;
 import propel.core.counters.ModuloCounter;
@@ -66,6 +72,10 @@ public final class Linq
    * The default list size to use for collecting results when the result size is unknown
    */
   public static final int DEFAULT_LIST_SIZE = ConfigurableParameters.getInt32(ConfigurableConsts.LINQ_DEFAULT_LIST_SIZE);
+  /**
+   * The default maximum number of elements held in memory by the external sort operators
+   */
+  public static final int EXTERNAL_SORT_RUN_SIZE = ConfigurableParameters.getInt32(ConfigurableConsts.LINQ_EXTERNAL_SORT_RUN_SIZE);
 
   @SuppressWarnings("rawtypes")
   private static Function1 argToResult = argToResult();
@@ -174,6 +184,9 @@ public final class Linq
   @Validate
   public static <T> boolean any(@NotNull final Iterable<T> values, @NotNull final Predicate1<? super T> predicate)
   {
+    if (values instanceof Pipeline<?>)
+      return ((Pipeline<T>) values).any(predicate);
+
     for (T v : values)
       if (predicate.apply(v))
         return true;
@@ -197,6 +210,70 @@ public final class Linq
     return false;
   }
 
+  /**
+   * Returns the k elements with the smallest keys, in ascending key order. The sequence is read once, retaining only k elements in a bounded
+   * heap, so this is O(n log k) rather than sorting the whole sequence. Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When an argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey extends Comparable<TKey>, TResult> ReifiedList<TResult>
+      bottomK(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k)
+  {
+    return bottomK(values, keySelector, k, null);
+  }
+
+  /**
+   * Returns the k elements with the smallest keys, in ascending key order. The sequence is read once, retaining only k elements in a bounded
+   * heap, so this is O(n log k) rather than sorting the whole sequence. Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When an argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey extends Comparable<TKey>, TResult> TResult[]
+      bottomK(@NotNull final TResult[] values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k)
+  {
+    return bottomK(values, keySelector, k, null);
+  }
+
+  /**
+   * Returns the k elements with the smallest keys, in ascending key order, using the given comparer or the natural key ordering if no
+   * comparer is specified. The sequence is read once, retaining only k elements in a bounded heap, so this is O(n log k) rather than
+   * sorting the whole sequence. Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When the values or keySelector argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey, TResult> ReifiedList<TResult>
+      bottomK(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k,
+              final Comparator<? super TKey> comparer)
+  {
+    val heap = selectK(values, keySelector, k, keyOrder(comparer, false));
+
+    return new ReifiedArrayList<TResult>(Linq.<TResult>drain(heap, keySelector.getParameterType1()));
+  }
+
+  /**
+   * Returns the k elements with the smallest keys, in ascending key order, using the given comparer or the natural key ordering if no
+   * comparer is specified. The sequence is read once, retaining only k elements in a bounded heap, so this is O(n log k) rather than
+   * sorting the whole sequence. Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When the values or keySelector argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey, TResult> TResult[]
+      bottomK(@NotNull final TResult[] values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k,
+              final Comparator<? super TKey> comparer)
+  {
+    val heap = selectK(Arrays.asList(values), keySelector, k, keyOrder(comparer, false));
+
+    return drain(heap, values.getClass().getComponentType());
+  }
+
   /**
    * Casts a sequence of values of a certain type to a sequence of values of another type. Uses InvalidCastBehaviour.Remove i.e. excluding
    * any elements that do not successfully cast, without throwing exceptions. This operates differently to OfType, in that it forces a cast
@@ -276,6 +353,65 @@ public final class Linq
     return toArray(list);
   }
 
+  /**
+   * Lazily splits the values into consecutive chunks of the given size, the last of which may be smaller. Only the current chunk is held in
+   * memory, so unbounded sequences can be processed in fixed-size batches. Each chunk is a new list.
+   * 
+   * @throws NullPointerException The values argument is null.
+   * @throws IllegalArgumentException The size is out of range.
+   */
+  @Validate
+  public static <T> Iterable<List<T>> chunk(@NotNull final Iterable<T> values, final int size)
+  {
+    return chunk(values, size, false);
+  }
+
+  /**
+   * Lazily splits the values into consecutive chunks of the given size, the last of which may be smaller. Only the current chunk is held in
+   * memory, so unbounded sequences can be processed in fixed-size batches. If reuseBuffer is true, the same read-only list instance is
+   * returned for every chunk, refilled in place, so a chunk is only valid until the next one is requested.
+   * 
+   * @throws NullPointerException The values argument is null.
+   * @throws IllegalArgumentException The size is out of range.
+   */
+  @Validate
+  public static <T> Iterable<List<T>> chunk(@NotNull final Iterable<T> values, final int size, final boolean reuseBuffer)
+  {
+    if (size <= 0)
+      throw new IllegalArgumentException("size=" + size);
+
+    return windowed(values, size, size, reuseBuffer, true);
+  }
+
+  /**
+   * Lazily splits the array into consecutive chunks of the given size, the last of which may be smaller. Each chunk is a new array.
+   * 
+   * @throws NullPointerException The values argument is null.
+   * @throws IllegalArgumentException The size is out of range.
+   */
+  @Validate
+  public static <T> Iterable<T[]> chunk(@NotNull final T[] values, final int size)
+  {
+    return chunk(values, size, false);
+  }
+
+  /**
+   * Lazily splits the array into consecutive chunks of the given size, the last of which may be smaller. If reuseBuffer is true, the same
+   * array instance is returned for every full chunk, refilled in place, so a chunk is only valid until the next one is requested; a smaller
+   * last chunk is always a new array.
+   * 
+   * @throws NullPointerException The values argument is null.
+   * @throws IllegalArgumentException The size is out of range.
+   */
+  @Validate
+  public static <T> Iterable<T[]> chunk(@NotNull final T[] values, final int size, final boolean reuseBuffer)
+  {
+    if (size <= 0)
+      throw new IllegalArgumentException("size=" + size);
+
+    return windowed(values, size, size, reuseBuffer, true);
+  }
+
   /**
    * Concatenates two or more sequences
    * 
@@ -379,24 +515,25 @@ public final class Linq
   }
 
   /**
-   * Returns true if any of the items are contained in the given values. Scans the values sequence linearly, up to items.Length number of
-   * times. You may scan for null.
+   * Returns true if any of the items are contained in the given values. Reads the values once into a hash lookup, which is then probed for
+   * every item. You may scan for null.
    * 
    * @throws NullPointerException When an argument is null.
    */
   @Validate
   public static <T> boolean containsAny(@NotNull final Iterable<T> values, @NotNull final Iterable<T> items)
   {
+    val lookup = toLookupSet(values, null);
     for (T item : items)
-      if (contains(values, item))
+      if (lookup.contains(item))
         return true;
 
     return false;
   }
 
   /**
-   * Returns true if any of the items are contained in the given values. Scans the values sequence linearly, up to items.Length number of
-   * times. You may scan for null.
+   * Returns true if any of the items are contained in the given values. Reads the values once into a sorted lookup using the specified
+   * comparer (or a hash lookup if no comparer is specified), which is then probed for every item. You may scan for null.
    * 
    * @throws NullPointerException When an argument is null.
    */
@@ -404,64 +541,68 @@ public final class Linq
   public static <T> boolean
       containsAny(@NotNull final Iterable<T> values, @NotNull final Iterable<T> items, Comparator<? super T> comparer)
   {
+    val lookup = toLookupSet(values, comparer);
     for (T item : items)
-      if (contains(values, item, comparer))
+      if (lookup.contains(item))
         return true;
 
     return false;
   }
 
   /**
-   * Returns true if any of the items are contained in the given values. Scans the values sequence linearly, up to items.Length number of
-   * times. You may scan for null.
+   * Returns true if any of the items are contained in the given values. Reads the values once into a hash lookup, which is then probed for
+   * every item. You may scan for null.
    * 
    * @throws NullPointerException When an argument is null.
    */
   @Validate
   public static <T> boolean containsAny(@NotNull final T[] values, @NotNull final T[] items)
   {
+    val lookup = toLookupSet(values, null);
     for (T item : items)
-      if (contains(values, item))
+      if (lookup.contains(item))
         return true;
 
     return false;
   }
 
   /**
-   * Returns true if any of the items are contained in the given values. Scans the values sequence linearly, up to items.Length number of
-   * times. You may scan for null.
+   * Returns true if any of the items are contained in the given values. Reads the values once into a sorted lookup using the specified
+   * comparer (or a hash lookup if no comparer is specified), which is then probed for every item. You may scan for null.
    * 
    * @throws NullPointerException When an argument is null.
    */
   @Validate
   public static <T> boolean containsAny(@NotNull final T[] values, @NotNull final T[] items, final Comparator<? super T> comparer)
   {
+    val lookup = toLookupSet(values, comparer);
     for (T item : items)
-      if (contains(values, item, comparer))
+      if (lookup.contains(item))
         return true;
 
     return false;
   }
 
   /**
-   * Returns true if all of the items are contained in the given values. Scans the values sequence linearly, up to items.Length number of
-   * times. You may scan for null.
+   * Returns true if all of the items are contained in the given values. Reads the values once into a hash lookup, which is then probed for
+   * every item. You may scan for null.
    * 
    * @throws NullPointerException When an argument is null.
    */
   @Validate
   public static <T> boolean containsAll(@NotNull final Iterable<T> values, @NotNull final Iterable<T> items)
   {
+    val lookup = toLookupSet(values, null);
     for (T item : items)
-      if (!contains(values, item))
+      if (!lookup.contains(item))
         return false;
 
     return true;
   }
 
   /**
-   * Returns true if all of the items are contained in the given values. Scans the values sequence linearly, up to items.Length number of
-   * times. You may scan for null.
+   * Returns true if all of the items are contained in the given values. Reads the values once into a sorted lookup using the specified
+   * comparer (or a hash lookup if no comparer is specified), which is then probed for every item. You may scan for null.
    * 
    * @throws NullPointerException When an argument is null.
    */
@@ -469,40 +610,43 @@ public final class Linq
   public static <T> boolean containsAll(@NotNull final Iterable<T> values, @NotNull final Iterable<T> items,
                                         final Comparator<? super T> comparer)
   {
+    val lookup = toLookupSet(values, comparer);
     for (T item : items)
-      if (!contains(values, item, comparer))
+      if (!lookup.contains(item))
         return false;
 
     return true;
   }
 
   /**
-   * Returns true if all of the items are contained in the given values. Scans the values sequence linearly, up to items.Length number of
-   * times. You may scan for null.
+   * Returns true if all of the items are contained in the given values. Reads the values once into a hash lookup, which is then probed for
+   * every item. You may scan for null.
    * 
    * @throws NullPointerException When an argument is null.
    */
   @Validate
   public static <T> boolean containsAll(@NotNull final T[] values, @NotNull final T[] items)
   {
+    val lookup = toLookupSet(values, null);
     for (T item : items)
-      if (!contains(values, item))
+      if (!lookup.contains(item))
         return false;
 
     return true;
   }
 
   /**
-   * Returns true if all of the items are contained in the given values. Scans the values sequence linearly, up to items.Length number of
-   * times. You may scan for null.
+   * Returns true if all of the items are contained in the given values. Reads the values once into a sorted lookup using the specified
+   * comparer (or a hash lookup if no comparer is specified), which is then probed for every item. You may scan for null.
    * 
    * @throws NullPointerException When an argument is null.
    */
   @Validate
   public static <T> boolean containsAll(@NotNull final T[] values, @NotNull final T[] items, Comparator<? super T> comparer)
   {
+    val lookup = toLookupSet(values, comparer);
     for (T item : items)
-      if (!contains(values, item, comparer))
+      if (!lookup.contains(item))
         return false;
 
     return true;
@@ -538,6 +682,8 @@ public final class Linq
       ReifiedMap<?, ?> map = (ReifiedMap<?, ?>) values;
       return map.size();
     }
+    if (values instanceof Pipeline<?>)
+      return ((Pipeline<T>) values).count();
 
     // resort to counting elements one by one
     int result = 0;
@@ -794,29 +940,20 @@ public final class Linq
   }
 
   /**
-   * Returns distinct (i.e. no duplicate) elements from a sequence. Uses the specified comparer to identify duplicates.
+   * Returns distinct (i.e. no duplicate) elements from a sequence. Uses the specified comparer to identify duplicates, or the elements'
+   * equals() and hashCode() if no comparer is specified.
    * 
    * @throws NullPointerException When the values argument is null.
    */
   @Validate
   public static <T> Iterable<T> distinct(@NotNull final Iterable<T> values, final Comparator<? super T> comparer)
   {
-    Set<T> set;
-    if (comparer != null)
-      set = new TreeSet<T>(comparer);
-    else
-      set = new TreeSet<T>();
-
-    for (T item : values)
-      if (!set.contains(item))
-      {
-        set.add(item);
-        yield(item);
-      }
+    return Pipeline.from(values).distinct(comparer);
   }
 
   /**
-   * Returns distinct (i.e. no duplicate) elements from a sequence. Uses the specified comparer to identify duplicates.
+   * Returns distinct (i.e. no duplicate) elements from a sequence. Uses the specified comparer to identify duplicates, or the elements'
+   * equals() and hashCode() if no comparer is specified.
    * 
    * @throws NullPointerException When the values argument is null.
    */
@@ -824,18 +961,11 @@ public final class Linq
   public static <T> T[] distinct(@NotNull final T[] values, final Comparator<? super T> comparer)
   {
     val list = new ReifiedArrayList<T>(DEFAULT_LIST_SIZE, values.getClass().getComponentType());
-    Set<T> set;
-    if (comparer != null)
-      set = new TreeSet<T>(comparer);
-    else
-      set = new TreeSet<T>();
+    Set<T> set = newLookupSet(comparer, values.length);
 
     for (T item : values)
-      if (!set.contains(item))
-      {
-        set.add(item);
+      if (set.add(item))
         list.add(item);
-      }
 
     return list.toArray();
   }
@@ -911,7 +1041,8 @@ public final class Linq
   }
 
   /**
-   * Returns all distinct values except the specified removed values.
+   * Returns all distinct values except the specified removed values. The removed values are read once into a lookup, upon the first
+   * iteration of the result.
    * 
    * @throws NullPointerException When the values or removedValues argument is null.
    */
@@ -919,21 +1050,11 @@ public final class Linq
   public static <T> Iterable<T> except(@NotNull final Iterable<T> values, @NotNull final Iterable<T> removedValues,
                                        final Comparator<? super T> comparer)
   {
-    Iterable<T> distinctValues;
-    Iterable<T> distinctRemovedValues;
-
-    if (comparer == null)
-    {
-      distinctValues = distinct(values);
-      distinctRemovedValues = distinct(removedValues);
-    } else
-    {
-      distinctValues = distinct(values, comparer);
-      distinctRemovedValues = distinct(removedValues, comparer);
-    }
+    // yielded values are added to the lookup, so that duplicates are also excluded
+    val lookup = toLookupSet(removedValues, comparer);
 
-    for (T item : distinctValues)
-      if (!contains(distinctRemovedValues, item))
+    for (T item : values)
+      if (lookup.add(item))
         yield(item);
   }
 
@@ -956,23 +1077,12 @@ public final class Linq
   @Validate
   public static <T> T[] except(@NotNull final T[] values, @NotNull final T[] removedValues, Comparator<? super T> comparer)
   {
-    T[] distinctValues;
-    T[] distinctRemovedValues;
-
-    if (comparer == null)
-    {
-      distinctValues = distinct(values);
-      distinctRemovedValues = distinct(removedValues);
-    } else
-    {
-      distinctValues = distinct(values, comparer);
-      distinctRemovedValues = distinct(removedValues, comparer);
-    }
-
+    val lookup = toLookupSet(removedValues, comparer);
     List<T> result = new ArrayList<T>(DEFAULT_LIST_SIZE);
 
-    for (T item : distinctValues)
-      if (!contains(distinctRemovedValues, item))
+    // taken values are added to the lookup, so that duplicates are also excluded
+    for (T item : values)
+      if (lookup.add(item))
         result.add(item);
 
     return toArray(result, values.getClass().getComponentType());
@@ -987,6 +1097,9 @@ public final class Linq
   @Validate
   public static <T> T first(@NotNull final Iterable<T> values)
   {
+    if (values instanceof Pipeline<?>)
+      return ((Pipeline<T>) values).first();
+
     for (T item : values)
       return item;
 
@@ -1052,6 +1165,9 @@ public final class Linq
   @Validate
   public static <T> T firstOrDefault(@NotNull final Iterable<T> values)
   {
+    if (values instanceof Pipeline<?>)
+      return ((Pipeline<T>) values).firstOrDefault();
+
     for (T item : values)
       return item;
 
@@ -1137,7 +1253,81 @@ public final class Linq
   }
 
   /**
-   * Groups elements by a specified key.
+   * Groups elements by a specified key and applies an accumulator function over the elements of each group, in a single pass. The
+   * specified seed value is used as the initial accumulator value of every group, so it should not be mutated by the function. Keys are
+   * compared using their equals() and hashCode() and are returned in the order they were first encountered.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <TKey, TResult, TAccumulate> Map<TKey, TAccumulate>
+      groupAggregate(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector,
+                     final TAccumulate seed, @NotNull final Function2<TAccumulate, ? super TResult, TAccumulate> function)
+  {
+    return groupAggregate(values, keySelector, seed, function, null);
+  }
+
+  /**
+   * Groups elements by a specified key and applies an accumulator function over the elements of each group, in a single pass. The
+   * specified seed value is used as the initial accumulator value of every group, so it should not be mutated by the function. Keys are
+   * compared using their equals() and hashCode() and are returned in the order they were first encountered.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <TKey, TResult, TAccumulate> Map<TKey, TAccumulate>
+      groupAggregate(@NotNull final TResult[] values, @NotNull final Function1<? super TResult, TKey> keySelector, final TAccumulate seed,
+                     @NotNull final Function2<TAccumulate, ? super TResult, TAccumulate> function)
+  {
+    return groupAggregate(Arrays.asList(values), keySelector, seed, function, null);
+  }
+
+  /**
+   * Groups elements by a specified key and comparer and applies an accumulator function over the elements of each group, in a single pass.
+   * The specified seed value is used as the initial accumulator value of every group, so it should not be mutated by the function. Keys are
+   * returned in comparer order. If no comparer is specified, this behaves like groupAggregate(values, keySelector, seed, function).
+   * 
+   * @throws NullPointerException When the values argument, the key selector or the function is null.
+   */
+  @Validate
+  public static <TKey, TResult, TAccumulate> Map<TKey, TAccumulate>
+      groupAggregate(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector,
+                     final TAccumulate seed, @NotNull final Function2<TAccumulate, ? super TResult, TAccumulate> function,
+                     final Comparator<? super TKey> comparer)
+  {
+    Map<TKey, TAccumulate> result = newLookupMap(comparer);
+
+    for (TResult item : values)
+    {
+      TKey key = keySelector.apply(item);
+      TAccumulate accumulate = result.get(key);
+      if (accumulate == null && !result.containsKey(key))
+        accumulate = seed;
+
+      result.put(key, function.apply(accumulate, item));
+    }
+
+    return result;
+  }
+
+  /**
+   * Groups elements by a specified key and comparer and applies an accumulator function over the elements of each group, in a single pass.
+   * The specified seed value is used as the initial accumulator value of every group, so it should not be mutated by the function. Keys are
+   * returned in comparer order. If no comparer is specified, this behaves like groupAggregate(values, keySelector, seed, function).
+   * 
+   * @throws NullPointerException When the values argument, the key selector or the function is null.
+   */
+  @Validate
+  public static <TKey, TResult, TAccumulate> Map<TKey, TAccumulate>
+      groupAggregate(@NotNull final TResult[] values, @NotNull final Function1<? super TResult, TKey> keySelector, final TAccumulate seed,
+                     @NotNull final Function2<TAccumulate, ? super TResult, TAccumulate> function, final Comparator<? super TKey> comparer)
+  {
+    return groupAggregate(Arrays.asList(values), keySelector, seed, function, comparer);
+  }
+
+  /**
+   * Groups elements by a specified key, returning the first element encountered for each key. Keys are compared using their equals() and
+   * hashCode(), and elements are returned in the order their keys were first encountered. Use toLookup() to obtain all grouped elements.
    * 
    * @throws NullPointerException When an argument is null.
    */
@@ -1149,7 +1339,8 @@ public final class Linq
   }
 
   /**
-   * Groups elements by a specified key.
+   * Groups elements by a specified key, returning the first element encountered for each key. Keys are compared using their equals() and
+   * hashCode(), and elements are returned in the order their keys were first encountered. Use toLookup() to obtain all grouped elements.
    * 
    * @throws NullPointerException When an argument is null.
    */
@@ -1160,7 +1351,8 @@ public final class Linq
   }
 
   /**
-   * Groups elements by a specified key and comparer.
+   * Groups elements by a specified key and comparer, returning the first element encountered for each key. Elements are returned in key
+   * order. If no comparer is specified, this behaves like groupBy(values, keySelector).
    * 
    * @throws NullPointerException When the values argument or the key selector is null.
    */
@@ -1169,11 +1361,7 @@ public final class Linq
                                                           @NotNull final Function1<? super TResult, TKey> keySelector,
                                                           final Comparator<? super TKey> comparer)
   {
-    TreeMap<TKey, TResult> lookup;
-    if (comparer == null)
-      lookup = new TreeMap<TKey, TResult>();
-    else
-      lookup = new TreeMap<TKey, TResult>(comparer);
+    Map<TKey, TResult> lookup = newLookupMap(comparer);
 
     for (TResult item : values)
     {
@@ -1188,7 +1376,8 @@ public final class Linq
   }
 
   /**
-   * Groups elements by a specified key and comparer.
+   * Groups elements by a specified key and comparer, returning the first element encountered for each key. Elements are returned in key
+   * order. If no comparer is specified, this behaves like groupBy(values, keySelector).
    * 
    * @throws NullPointerException When the values argument or the key selector is null.
    */
@@ -1196,11 +1385,7 @@ public final class Linq
   public static <TKey, TResult> TResult[] groupBy(@NotNull final TResult[] values, @NotNull final Function1<TResult, TKey> keySelector,
                                                   final Comparator<? super TKey> comparer)
   {
-    TreeMap<TKey, TResult> lookup;
-    if (comparer == null)
-      lookup = new TreeMap<TKey, TResult>();
-    else
-      lookup = new TreeMap<TKey, TResult>(comparer);
+    Map<TKey, TResult> lookup = newLookupMap(comparer);
 
     for (TResult item : values)
     {
@@ -1214,169 +1399,423 @@ public final class Linq
   }
 
   /**
-   * Returns the index where the specified element is first found. You may search for nulls. If the element is not found, this returns -1.
+   * Groups elements by a specified key and counts the elements of each group, in a single pass. Keys are compared using their equals() and
+   * hashCode() and are returned in the order they were first encountered.
    * 
-   * @throws NullPointerException When the values argument is null.
+   * @throws NullPointerException When an argument is null.
    */
   @Validate
-  public static <T> int indexOf(@NotNull final Iterable<T> values, T element)
+  public static <TKey, TResult> Map<TKey, Integer> groupCount(@NotNull final Iterable<TResult> values,
+                                                              @NotNull final Function1<? super TResult, TKey> keySelector)
   {
-    return element == null ? indexOfNull(values) : indexOfNotNull(values, element);
+    // counters are mutated in place, then swapped for their final values
+    Map<TKey, Object> result = newLookupMap(null);
+
+    for (TResult item : values)
+    {
+      TKey key = keySelector.apply(item);
+      int[] counter = (int[]) result.get(key);
+      if (counter == null)
+      {
+        counter = new int[1];
+        result.put(key, counter);
+      }
+
+      counter[0]++;
+    }
+
+    for (val entry : result.entrySet())
+      entry.setValue(((int[]) entry.getValue())[0]);
+
+    return (Map<TKey, Integer>) (Map<TKey, ?>) result;
   }
 
   /**
-   * Returns the index where the specified element is first found. You may search for nulls. If the element is not found, this returns -1.
+   * Groups elements by a specified key and counts the elements of each group, in a single pass. Keys are compared using their equals() and
+   * hashCode() and are returned in the order they were first encountered.
    * 
-   * @throws NullPointerException When the values or the comparer argument is null.
+   * @throws NullPointerException When an argument is null.
    */
   @Validate
-  public static <T> int indexOf(@NotNull final Iterable<T> values, T element, final Comparator<? super T> comparer)
+  public static <TKey, TResult> Map<TKey, Integer> groupCount(@NotNull final TResult[] values,
+                                                              @NotNull final Function1<? super TResult, TKey> keySelector)
   {
-    return element == null ? indexOfNull(values) : indexOfNotNull(values, element, comparer);
+    return groupCount(Arrays.asList(values), keySelector);
   }
 
   /**
-   * Returns the index where the specified element is first found. You may search for nulls. If the element is not found, this returns -1.
+   * Groups elements by a specified key and returns the maximum of a value selected from the elements of each group, in a single pass. Null
+   * values are ignored, so a group's maximum is null if all of its values are null. Keys are compared using their equals() and hashCode()
+   * and are returned in the order they were first encountered.
    * 
-   * @throws NullPointerException When the values argument is null.
+   * @throws NullPointerException When an argument is null.
    */
   @Validate
-  public static <T> int indexOf(@NotNull final T[] values, T element)
+  public static <TKey, TResult, TValue extends Comparable<TValue>> Map<TKey, TValue>
+      groupMax(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector,
+               @NotNull final Function1<? super TResult, TValue> valueSelector)
   {
-    return element == null ? indexOfNull(values) : indexOfNotNull(values, element);
+    Map<TKey, TValue> result = newLookupMap(null);
+
+    for (TResult item : values)
+    {
+      TKey key = keySelector.apply(item);
+      TValue value = valueSelector.apply(item);
+      TValue max = result.get(key);
+
+      if (max == null)
+      {
+        if (value != null || !result.containsKey(key))
+          result.put(key, value);
+      } else if (value != null && max.compareTo(value) < 0)
+        result.put(key, value);
+    }
+
+    return result;
   }
 
   /**
-   * Returns the index where the specified element is first found. You may search for nulls. If the element is not found, this returns -1.
+   * Groups elements by a specified key and returns the maximum of a value selected from the elements of each group, in a single pass. Null
+   * values are ignored, so a group's maximum is null if all of its values are null. Keys are compared using their equals() and hashCode()
+   * and are returned in the order they were first encountered.
    * 
-   * @throws NullPointerException When the values argument is null.
+   * @throws NullPointerException When an argument is null.
    */
   @Validate
-  public static <T> int indexOf(@NotNull final T[] values, T element, final Comparator<? super T> comparer)
+  public static <TKey, TResult, TValue extends Comparable<TValue>> Map<TKey, TValue>
+      groupMax(@NotNull final TResult[] values, @NotNull final Function1<? super TResult, TKey> keySelector,
+               @NotNull final Function1<? super TResult, TValue> valueSelector)
   {
-    return element == null ? indexOfNull(values) : indexOfNotNull(values, element, comparer);
+    return groupMax(Arrays.asList(values), keySelector, valueSelector);
   }
 
   /**
-   * Returns the intersection of the distinct elements of two sequences.
+   * Groups elements by a specified key and returns the minimum of a value selected from the elements of each group, in a single pass. Null
+   * values are ignored, so a group's minimum is null if all of its values are null. Keys are compared using their equals() and hashCode()
+   * and are returned in the order they were first encountered.
    * 
    * @throws NullPointerException When an argument is null.
    */
   @Validate
-  public static <T> Iterable<T> intersect(@NotNull final Iterable<T> first, @NotNull final Iterable<T> second)
+  public static <TKey, TResult, TValue extends Comparable<TValue>> Map<TKey, TValue>
+      groupMin(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector,
+               @NotNull final Function1<? super TResult, TValue> valueSelector)
   {
-    return intersect(first, second, null);
+    Map<TKey, TValue> result = newLookupMap(null);
+
+    for (TResult item : values)
+    {
+      TKey key = keySelector.apply(item);
+      TValue value = valueSelector.apply(item);
+      TValue min = result.get(key);
+
+      if (min == null)
+      {
+        if (value != null || !result.containsKey(key))
+          result.put(key, value);
+      } else if (value != null && min.compareTo(value) > 0)
+        result.put(key, value);
+    }
+
+    return result;
   }
 
   /**
-   * Returns the intersection of the distinct elements of two sequences.
+   * Groups elements by a specified key and returns the minimum of a value selected from the elements of each group, in a single pass. Null
+   * values are ignored, so a group's minimum is null if all of its values are null. Keys are compared using their equals() and hashCode()
+   * and are returned in the order they were first encountered.
    * 
-   * @throws NullPointerException When the first or second argument is null.
+   * @throws NullPointerException When an argument is null.
    */
   @Validate
-  public static <T> Iterable<T> intersect(@NotNull final Iterable<T> first, @NotNull final Iterable<T> second,
-                                          final Comparator<? super T> comparer)
+  public static <TKey, TResult, TValue extends Comparable<TValue>> Map<TKey, TValue>
+      groupMin(@NotNull final TResult[] values, @NotNull final Function1<? super TResult, TKey> keySelector,
+               @NotNull final Function1<? super TResult, TValue> valueSelector)
   {
-    Iterable<T> distinctFirst;
-    Iterable<T> distinctSecond;
+    return groupMin(Arrays.asList(values), keySelector, valueSelector);
+  }
 
-    if (comparer == null)
-    {
-      distinctFirst = distinct(first);
-      distinctSecond = distinct(second);
-    } else
+  /**
+   * Correlates each outer value with the inner values that have an equal key, passing the outer value and the (possibly empty) list of its
+   * matches to the result selector. One result is returned per outer value, in the order of the outer values. The inner values are indexed
+   * by key in a hash table when iteration starts, and the outer values are then streamed. Keys are compared using their equals() and
+   * hashCode(); null keys match nothing.
+   * 
+   * @throws NullPointerException If an argument is null.
+   */
+  @Validate
+  public static <TOuter, TInner, TKey, TResult> Iterable<TResult>
+      groupJoin(@NotNull final Iterable<TOuter> outerValues, @NotNull final Iterable<TInner> innerValues,
+                @NotNull final Function1<? super TOuter, TKey> outerKeySelector,
+                @NotNull final Function1<? super TInner, TKey> innerKeySelector,
+                @NotNull final Function2<? super TOuter, ? super List<TInner>, TResult> resultSelector)
+  {
+    val lookup = joinLookup(innerValues, innerKeySelector);
+
+    for (TOuter outer : outerValues)
     {
-      distinctFirst = distinct(first, comparer);
-      distinctSecond = distinct(second, comparer);
+      List<TInner> matches = joinMatches(lookup, outerKeySelector.apply(outer));
+      yield(resultSelector.apply(outer, matches == null ? Collections.<TInner>emptyList() : Collections.unmodifiableList(matches)));
     }
-
-    for (T item : distinctFirst)
-      if (contains(distinctSecond, item))
-        yield(item);
   }
 
   /**
-   * Returns the intersection of the distinct elements of two sequences.
+   * Correlates each outer value with the inner values that have an equal key, passing the outer value and the (possibly empty) list of its
+   * matches to the result selector. One result is returned per outer value, in the order of the outer values. The inner values are indexed
+   * by key in a hash table, and the outer values are then streamed. Keys are compared using their equals() and hashCode(); null keys match
+   * nothing.
    * 
-   * @throws NullPointerException When an argument is null.
+   * @throws NullPointerException If an argument is null.
    */
   @Validate
-  public static <T> T[] intersect(@NotNull final T[] first, @NotNull final T[] second)
+  public static <TOuter, TInner, TKey, TResult> TResult[]
+      groupJoin(@NotNull final TOuter[] outerValues, @NotNull final TInner[] innerValues,
+                @NotNull final Function1<? super TOuter, TKey> outerKeySelector,
+                @NotNull final Function1<? super TInner, TKey> innerKeySelector,
+                @NotNull final Function2<? super TOuter, ? super List<TInner>, TResult> resultSelector)
   {
-    return intersect(first, second, null);
+    return toArray(groupJoin(Arrays.asList(outerValues), Arrays.asList(innerValues), outerKeySelector, innerKeySelector, resultSelector),
+                   resultSelector.getReturnType());
   }
 
   /**
-   * Returns the intersection of the distinct elements of two sequences.
+   * Groups elements by a specified key and sums a value selected from the elements of each group, in a single pass. Null values are
+   * treated as zero. Keys are compared using their equals() and hashCode() and are returned in the order they were first encountered.
    * 
-   * @throws NullPointerException When the first or second argument is null.
+   * @throws NullPointerException When an argument is null.
    */
   @Validate
-  public static <T> T[] intersect(@NotNull final T[] first, @NotNull final T[] second, final Comparator<? super T> comparer)
+  public static <TKey, TResult> Map<TKey, Long> groupSum(@NotNull final Iterable<TResult> values,
+                                                         @NotNull final Function1<? super TResult, TKey> keySelector,
+                                                         @NotNull final Function1<? super TResult, Long> valueSelector)
   {
-    val result = new ArrayList<T>(DEFAULT_LIST_SIZE);
-
-    T[] distinctFirst;
-    T[] distinctSecond;
+    // sums are mutated in place, then swapped for their final values
+    Map<TKey, Object> result = newLookupMap(null);
 
-    if (comparer == null)
-    {
-      distinctFirst = distinct(first);
-      distinctSecond = distinct(second);
-    } else
+    for (TResult item : values)
     {
-      distinctFirst = distinct(first, comparer);
-      distinctSecond = distinct(second, comparer);
+      TKey key = keySelector.apply(item);
+      long[] sum = (long[]) result.get(key);
+      if (sum == null)
+      {
+        sum = new long[1];
+        result.put(key, sum);
+      }
+
+      Long value = valueSelector.apply(item);
+      if (value != null)
+        sum[0] += value;
     }
 
-    for (T item : distinctFirst)
-      if (contains(distinctSecond, item))
-        result.add(item);
+    for (val entry : result.entrySet())
+      entry.setValue(((long[]) entry.getValue())[0]);
 
-    return toArray(result, first.getClass().getComponentType());
+    return (Map<TKey, Long>) (Map<TKey, ?>) result;
   }
 
   /**
-   * Returns true if the sequence is empty.
+   * Groups elements by a specified key and sums a value selected from the elements of each group, in a single pass. Null values are
+   * treated as zero. Keys are compared using their equals() and hashCode() and are returned in the order they were first encountered.
    * 
-   * @throws NullPointerException Is the argument is null.
+   * @throws NullPointerException When an argument is null.
    */
   @Validate
-  public static <T> boolean isEmpty(@NotNull final Iterable<T> values)
+  public static <TKey, TResult> Map<TKey, Long> groupSum(@NotNull final TResult[] values,
+                                                         @NotNull final Function1<? super TResult, TKey> keySelector,
+                                                         @NotNull final Function1<? super TResult, Long> valueSelector)
   {
-    for (T v : values)
-      return false;
-
-    return true;
+    return groupSum(Arrays.asList(values), keySelector, valueSelector);
   }
 
   /**
-   * Returns true if the array is empty.
+   * Performs an inner equi-join over two sequences, returning a result for every pair of outer and inner values with equal keys. Unlike
+   * join(), neither side needs unique keys. The inner values are indexed by key in a hash table when iteration starts, and the outer values
+   * are then streamed, so results follow the order of the outer values, and then of the inner values matching each. Pass the smaller side
+   * as the inner values to keep the hash table small. Keys are compared using their equals() and hashCode(); null keys match nothing.
    * 
-   * @throws NullPointerException Is the argument is null.
+   * @throws NullPointerException If an argument is null.
    */
   @Validate
-  public static <T> boolean isEmpty(@NotNull final T[] values)
+  public static <TOuter, TInner, TKey, TResult> Iterable<TResult>
+      hashJoin(@NotNull final Iterable<TOuter> outerValues, @NotNull final Iterable<TInner> innerValues,
+               @NotNull final Function1<? super TOuter, TKey> outerKeySelector,
+               @NotNull final Function1<? super TInner, TKey> innerKeySelector,
+               @NotNull final Function2<? super TOuter, ? super TInner, TResult> resultSelector)
   {
-    return values.length == 0;
+    val lookup = joinLookup(innerValues, innerKeySelector);
+
+    for (TOuter outer : outerValues)
+    {
+      List<TInner> matches = joinMatches(lookup, outerKeySelector.apply(outer));
+      if (matches != null)
+        for (TInner inner : matches)
+          yield(resultSelector.apply(outer, inner));
+    }
   }
 
   /**
-   * Performs an inner join (more specifically an equi-join) over two sequences. The outer values are filtered for key uniqueness (first
-   * encountered key kept), whereas inner values may be non-unique.
+   * Performs an inner equi-join over two sequences, returning a result for every pair of outer and inner values with equal keys. Unlike
+   * join(), neither side needs unique keys. The inner values are indexed by key in a hash table and the outer values are then streamed, so
+   * results follow the order of the outer values, and then of the inner values matching each. Pass the smaller array as the inner values to
+   * keep the hash table small. Keys are compared using their equals() and hashCode(); null keys match nothing.
    * 
    * @throws NullPointerException If an argument is null.
    */
   @Validate
-  public static <TOuter, TInner, TKey extends Comparable<TKey>, TResult> Iterable<TResult>
-      join(@NotNull final Iterable<TOuter> outerValues, @NotNull final Iterable<TInner> innerValues,
-           @NotNull final Function1<TOuter, TKey> outerKeySelector, @NotNull final Function1<TInner, TKey> innerKeySelector,
-           @NotNull final Function2<TOuter, TInner, TResult> resultSelector)
+  public static <TOuter, TInner, TKey, TResult> TResult[]
+      hashJoin(@NotNull final TOuter[] outerValues, @NotNull final TInner[] innerValues,
+               @NotNull final Function1<? super TOuter, TKey> outerKeySelector,
+               @NotNull final Function1<? super TInner, TKey> innerKeySelector,
+               @NotNull final Function2<? super TOuter, ? super TInner, TResult> resultSelector)
   {
-    AvlHashtable<TKey, TOuter> lookup = new AvlHashtable<TKey, TOuter>(outerKeySelector.getReturnType(),
-        outerKeySelector.getParameterType1());
+    return toArray(hashJoin(Arrays.asList(outerValues), Arrays.asList(innerValues), outerKeySelector, innerKeySelector, resultSelector),
+                   resultSelector.getReturnType());
+  }
 
-    for (TOuter value : outerValues)
+  /**
+   * Returns the index where the specified element is first found. You may search for nulls. If the element is not found, this returns -1.
+   * 
+   * @throws NullPointerException When the values argument is null.
+   */
+  @Validate
+  public static <T> int indexOf(@NotNull final Iterable<T> values, T element)
+  {
+    return element == null ? indexOfNull(values) : indexOfNotNull(values, element);
+  }
+
+  /**
+   * Returns the index where the specified element is first found. You may search for nulls. If the element is not found, this returns -1.
+   * 
+   * @throws NullPointerException When the values or the comparer argument is null.
+   */
+  @Validate
+  public static <T> int indexOf(@NotNull final Iterable<T> values, T element, final Comparator<? super T> comparer)
+  {
+    return element == null ? indexOfNull(values) : indexOfNotNull(values, element, comparer);
+  }
+
+  /**
+   * Returns the index where the specified element is first found. You may search for nulls. If the element is not found, this returns -1.
+   * 
+   * @throws NullPointerException When the values argument is null.
+   */
+  @Validate
+  public static <T> int indexOf(@NotNull final T[] values, T element)
+  {
+    return element == null ? indexOfNull(values) : indexOfNotNull(values, element);
+  }
+
+  /**
+   * Returns the index where the specified element is first found. You may search for nulls. If the element is not found, this returns -1.
+   * 
+   * @throws NullPointerException When the values argument is null.
+   */
+  @Validate
+  public static <T> int indexOf(@NotNull final T[] values, T element, final Comparator<? super T> comparer)
+  {
+    return element == null ? indexOfNull(values) : indexOfNotNull(values, element, comparer);
+  }
+
+  /**
+   * Returns the intersection of the distinct elements of two sequences.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <T> Iterable<T> intersect(@NotNull final Iterable<T> first, @NotNull final Iterable<T> second)
+  {
+    return intersect(first, second, null);
+  }
+
+  /**
+   * Returns the intersection of the distinct elements of two sequences. The second sequence is read once into a lookup, upon the first
+   * iteration of the result.
+   * 
+   * @throws NullPointerException When the first or second argument is null.
+   */
+  @Validate
+  public static <T> Iterable<T> intersect(@NotNull final Iterable<T> first, @NotNull final Iterable<T> second,
+                                          final Comparator<? super T> comparer)
+  {
+    // yielded values are removed from the lookup, so that duplicates are excluded
+    val lookup = toLookupSet(second, comparer);
+
+    for (T item : first)
+      if (lookup.remove(item))
+        yield(item);
+  }
+
+  /**
+   * Returns the intersection of the distinct elements of two sequences.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <T> T[] intersect(@NotNull final T[] first, @NotNull final T[] second)
+  {
+    return intersect(first, second, null);
+  }
+
+  /**
+   * Returns the intersection of the distinct elements of two sequences.
+   * 
+   * @throws NullPointerException When the first or second argument is null.
+   */
+  @Validate
+  public static <T> T[] intersect(@NotNull final T[] first, @NotNull final T[] second, final Comparator<? super T> comparer)
+  {
+    val result = new ArrayList<T>(DEFAULT_LIST_SIZE);
+    val lookup = toLookupSet(second, comparer);
+
+    // taken values are removed from the lookup, so that duplicates are excluded
+    for (T item : first)
+      if (lookup.remove(item))
+        result.add(item);
+
+    return toArray(result, first.getClass().getComponentType());
+  }
+
+  /**
+   * Returns true if the sequence is empty.
+   * 
+   * @throws NullPointerException Is the argument is null.
+   */
+  @Validate
+  public static <T> boolean isEmpty(@NotNull final Iterable<T> values)
+  {
+    for (T v : values)
+      return false;
+
+    return true;
+  }
+
+  /**
+   * Returns true if the array is empty.
+   * 
+   * @throws NullPointerException Is the argument is null.
+   */
+  @Validate
+  public static <T> boolean isEmpty(@NotNull final T[] values)
+  {
+    return values.length == 0;
+  }
+
+  /**
+   * Performs an inner join (more specifically an equi-join) over two sequences. The outer values are filtered for key uniqueness (first
+   * encountered key kept), whereas inner values may be non-unique.
+   * 
+   * @throws NullPointerException If an argument is null.
+   */
+  @Validate
+  public static <TOuter, TInner, TKey extends Comparable<TKey>, TResult> Iterable<TResult>
+      join(@NotNull final Iterable<TOuter> outerValues, @NotNull final Iterable<TInner> innerValues,
+           @NotNull final Function1<TOuter, TKey> outerKeySelector, @NotNull final Function1<TInner, TKey> innerKeySelector,
+           @NotNull final Function2<TOuter, TInner, TResult> resultSelector)
+  {
+    AvlHashtable<TKey, TOuter> lookup = new AvlHashtable<TKey, TOuter>(outerKeySelector.getReturnType(),
+        outerKeySelector.getParameterType1());
+
+    for (TOuter value : outerValues)
     {
       TKey outerKey = outerKeySelector.apply(value);
       lookup.add(outerKey, value);
@@ -1596,6 +2035,53 @@ public final class Linq
     return result;
   }
 
+  /**
+   * Performs a left outer equi-join over two sequences, returning a result for every pair of outer and inner values with equal keys, as
+   * well as one for every outer value without matches, for which the result selector is passed a null inner value. Results follow the order
+   * of the outer values. The inner values are indexed by key in a hash table when iteration starts, and the outer values are then streamed.
+   * Keys are compared using their equals() and hashCode(); null keys match nothing.
+   * 
+   * @throws NullPointerException If an argument is null.
+   */
+  @Validate
+  public static <TOuter, TInner, TKey, TResult> Iterable<TResult>
+      leftJoin(@NotNull final Iterable<TOuter> outerValues, @NotNull final Iterable<TInner> innerValues,
+               @NotNull final Function1<? super TOuter, TKey> outerKeySelector,
+               @NotNull final Function1<? super TInner, TKey> innerKeySelector,
+               @NotNull final Function2<? super TOuter, ? super TInner, TResult> resultSelector)
+  {
+    val lookup = joinLookup(innerValues, innerKeySelector);
+
+    for (TOuter outer : outerValues)
+    {
+      List<TInner> matches = joinMatches(lookup, outerKeySelector.apply(outer));
+      if (matches == null)
+        yield(resultSelector.apply(outer, null));
+      else
+        for (TInner inner : matches)
+          yield(resultSelector.apply(outer, inner));
+    }
+  }
+
+  /**
+   * Performs a left outer equi-join over two sequences, returning a result for every pair of outer and inner values with equal keys, as
+   * well as one for every outer value without matches, for which the result selector is passed a null inner value. Results follow the order
+   * of the outer values. The inner values are indexed by key in a hash table, and the outer values are then streamed. Keys are compared
+   * using their equals() and hashCode(); null keys match nothing.
+   * 
+   * @throws NullPointerException If an argument is null.
+   */
+  @Validate
+  public static <TOuter, TInner, TKey, TResult> TResult[]
+      leftJoin(@NotNull final TOuter[] outerValues, @NotNull final TInner[] innerValues,
+               @NotNull final Function1<? super TOuter, TKey> outerKeySelector,
+               @NotNull final Function1<? super TInner, TKey> innerKeySelector,
+               @NotNull final Function2<? super TOuter, ? super TInner, TResult> resultSelector)
+  {
+    return toArray(leftJoin(Arrays.asList(outerValues), Arrays.asList(innerValues), outerKeySelector, innerKeySelector, resultSelector),
+                   resultSelector.getReturnType());
+  }
+
   /**
    * Returns the last index where the specified element is found. You may search for nulls. If the element is not found, this returns -1.
    * 
@@ -1699,6 +2185,133 @@ public final class Linq
     return max;
   }
 
+  /**
+   * Performs an inner equi-join over two sequences that are both ordered by ascending key, returning a result for every pair of outer and
+   * inner values with equal keys, in key order. Both sides are streamed in a single pass, buffering only the inner values of the current
+   * key, so no index is built. Keys are compared using their natural order; null keys match nothing.
+   * 
+   * @throws NullPointerException If an argument is null.
+   * @throws IllegalArgumentException If either side is found not to be ordered by key.
+   */
+  @Validate
+  public static <TOuter, TInner, TKey extends Comparable<? super TKey>, TResult> Iterable<TResult>
+      mergeJoin(@NotNull final Iterable<TOuter> outerValues, @NotNull final Iterable<TInner> innerValues,
+                @NotNull final Function1<? super TOuter, TKey> outerKeySelector,
+                @NotNull final Function1<? super TInner, TKey> innerKeySelector,
+                @NotNull final Function2<? super TOuter, ? super TInner, TResult> resultSelector)
+  {
+    return mergeJoin(outerValues, innerValues, outerKeySelector, innerKeySelector, null, resultSelector);
+  }
+
+  /**
+   * Performs an inner equi-join over two sequences that are both ordered by ascending key, returning a result for every pair of outer and
+   * inner values with equal keys, in key order. Both sides are streamed in a single pass, buffering only the inner values of the current
+   * key, so no index is built. Keys are compared using the given comparer, or their natural order if it is null; null keys match nothing.
+   * 
+   * @throws NullPointerException If an argument is null.
+   * @throws IllegalArgumentException If either side is found not to be ordered by key.
+   */
+  @Validate
+  public static <TOuter, TInner, TKey, TResult> Iterable<TResult>
+      mergeJoin(@NotNull final Iterable<TOuter> outerValues, @NotNull final Iterable<TInner> innerValues,
+                @NotNull final Function1<? super TOuter, TKey> outerKeySelector,
+                @NotNull final Function1<? super TInner, TKey> innerKeySelector, final Comparator<? super TKey> comparer,
+                @NotNull final Function2<? super TOuter, ? super TInner, TResult> resultSelector)
+  {
+    final Comparator<? super TKey> order = comparer != null ? comparer : Linq.<TKey>naturalOrder();
+    val inners = innerValues.iterator();
+    val run = new ArrayList<TInner>();
+    TKey runKey = null;
+    TKey nextKey = null;
+    TInner next = null;
+    boolean hasNext = false;
+    TKey previousKey = null;
+
+    for (TOuter outer : outerValues)
+    {
+      TKey key = outerKeySelector.apply(outer);
+      if (key == null)
+        continue;
+      if (previousKey != null && order.compare(previousKey, key) > 0)
+        throw new IllegalArgumentException("The outer values are not ordered by key.");
+      previousKey = key;
+
+      if (runKey == null || order.compare(runKey, key) != 0)
+      {
+        // advance the inner values up to the current key, buffering those with an equal key
+        run.clear();
+        runKey = key;
+        while (true)
+        {
+          if (!hasNext)
+          {
+            if (!inners.hasNext())
+              break;
+
+            TInner inner = inners.next();
+            TKey innerKey = innerKeySelector.apply(inner);
+            if (innerKey == null)
+              continue;
+            if (nextKey != null && order.compare(nextKey, innerKey) > 0)
+              throw new IllegalArgumentException("The inner values are not ordered by key.");
+
+            next = inner;
+            nextKey = innerKey;
+            hasNext = true;
+          }
+
+          int comparison = order.compare(nextKey, key);
+          if (comparison > 0)
+            break;
+          if (comparison == 0)
+            run.add(next);
+
+          hasNext = false;
+        }
+      }
+
+      for (TInner inner : run)
+        yield(resultSelector.apply(outer, inner));
+    }
+  }
+
+  /**
+   * Performs an inner equi-join over two arrays that are both ordered by ascending key, returning a result for every pair of outer and inner
+   * values with equal keys, in key order. Both sides are streamed in a single pass, buffering only the inner values of the current key, so
+   * no index is built. Keys are compared using their natural order; null keys match nothing.
+   * 
+   * @throws NullPointerException If an argument is null.
+   * @throws IllegalArgumentException If either side is found not to be ordered by key.
+   */
+  @Validate
+  public static <TOuter, TInner, TKey extends Comparable<? super TKey>, TResult> TResult[]
+      mergeJoin(@NotNull final TOuter[] outerValues, @NotNull final TInner[] innerValues,
+                @NotNull final Function1<? super TOuter, TKey> outerKeySelector,
+                @NotNull final Function1<? super TInner, TKey> innerKeySelector,
+                @NotNull final Function2<? super TOuter, ? super TInner, TResult> resultSelector)
+  {
+    return mergeJoin(outerValues, innerValues, outerKeySelector, innerKeySelector, null, resultSelector);
+  }
+
+  /**
+   * Performs an inner equi-join over two arrays that are both ordered by ascending key, returning a result for every pair of outer and inner
+   * values with equal keys, in key order. Both sides are streamed in a single pass, buffering only the inner values of the current key, so
+   * no index is built. Keys are compared using the given comparer, or their natural order if it is null; null keys match nothing.
+   * 
+   * @throws NullPointerException If an argument is null.
+   * @throws IllegalArgumentException If either side is found not to be ordered by key.
+   */
+  @Validate
+  public static <TOuter, TInner, TKey, TResult> TResult[]
+      mergeJoin(@NotNull final TOuter[] outerValues, @NotNull final TInner[] innerValues,
+                @NotNull final Function1<? super TOuter, TKey> outerKeySelector,
+                @NotNull final Function1<? super TInner, TKey> innerKeySelector, final Comparator<? super TKey> comparer,
+                @NotNull final Function2<? super TOuter, ? super TInner, TResult> resultSelector)
+  {
+    return toArray(mergeJoin(Arrays.asList(outerValues), Arrays.asList(innerValues), outerKeySelector, innerKeySelector, comparer,
+                             resultSelector), resultSelector.getReturnType());
+  }
+
   /**
    * Returns the minimum of the given values. If not values are given, null is returned.
    * 
@@ -1997,7 +2610,8 @@ public final class Linq
   }
 
   /**
-   * Orders a sequence by a specified key.
+   * Orders a sequence by a specified key, using the given comparer or the natural key ordering if no comparer is specified. The sort is
+   * stable i.e. elements with equal keys retain their relative order.
    * 
    * @throws NullPointerException When the values or keySelector argument is null.
    */
@@ -2006,34 +2620,18 @@ public final class Linq
       orderBy(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector,
               final Comparator<? super TKey> comparer)
   {
-    TreeMap<TKey, List<TResult>> dict;
-    if (comparer == null)
-      dict = new TreeMap<TKey, List<TResult>>();
-    else
-      dict = new TreeMap<TKey, List<TResult>>(comparer);
-
+    val result = new ReifiedArrayList<TResult>(DEFAULT_LIST_SIZE, keySelector.getParameterType1());
     for (TResult item : values)
-    {
-      TKey key = keySelector.apply(item);
-      if (dict.containsKey(key))
-        dict.get(key).add(item);
-      else
-      {
-        List<TResult> v = new ArrayList<TResult>();
-        v.add(item);
-        dict.put(key, v);
-      }
-    }
+      result.add(item);
 
-    val result = new ReifiedArrayList<TResult>(DEFAULT_LIST_SIZE, keySelector.getParameterType1());
-    for (List<TResult> list : dict.values())
-      result.addAll(list);
+    sortByKey(result, keySelector, comparer);
 
     return result;
   }
 
   /**
-   * Orders a sequence by a specified key.
+   * Orders a sequence by a specified key, using the given comparer or the natural key ordering if no comparer is specified. The sort is
+   * stable i.e. elements with equal keys retain their relative order.
    * 
    * @throws NullPointerException When the values or keySelector argument is null.
    */
@@ -2041,28 +2639,10 @@ public final class Linq
   public static <TKey, TResult> TResult[] orderBy(@NotNull final TResult[] values, @NotNull final Function1<TResult, TKey> keySelector,
                                                   final Comparator<? super TKey> comparer)
   {
-    TreeMap<TKey, List<TResult>> dict;
-    if (comparer == null)
-      dict = new TreeMap<TKey, List<TResult>>();
-    else
-      dict = new TreeMap<TKey, List<TResult>>(comparer);
-
-    for (TResult item : values)
-    {
-      TKey key = keySelector.apply(item);
-      if (dict.containsKey(key))
-        dict.get(key).add(item);
-      else
-      {
-        List<TResult> v = new ArrayList<TResult>();
-        v.add(item);
-        dict.put(key, v);
-      }
-    }
+    val result = new ReifiedArrayList<TResult>(values.length, values.getClass().getComponentType());
+    result.addAll(values);
 
-    val result = new ReifiedArrayList<TResult>(DEFAULT_LIST_SIZE, keySelector.getParameterType1());
-    for (List<TResult> list : dict.values())
-      result.addAll(list);
+    sortByKey(result, keySelector, comparer);
 
     return result.toArray();
   }
@@ -2079,6 +2659,60 @@ public final class Linq
     return orderBy(values, keySelector, null);
   }
 
+  /**
+   * Orders a sequence by a specified key without holding all of it in memory. Runs of up to EXTERNAL_SORT_RUN_SIZE elements are sorted in
+   * memory and spilled to temporary files using the given serializer, then merged lazily while the result is iterated. The sort is stable
+   * i.e. elements with equal keys retain their relative order. Close the result to delete its temporary files.
+   * 
+   * The run size bounds the number of elements held in memory, rather than their bytes. Use the overload accepting a memory budget and an
+   * element size estimator to bound the bytes instead.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <TKey extends Comparable<TKey>, TResult> ExternalSortIterable<TResult>
+      orderByExternal(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector,
+                      @NotNull final ISerializer<TResult> serializer)
+  {
+    return orderByExternal(values, keySelector, null, serializer, EXTERNAL_SORT_RUN_SIZE);
+  }
+
+  /**
+   * Orders a sequence by a specified key, using the given comparer or the natural key ordering if no comparer is specified, without
+   * holding all of it in memory. Runs of up to runSize elements are sorted in memory and spilled to temporary files using the given
+   * serializer, then merged lazily while the result is iterated. The sort is stable i.e. elements with equal keys retain their relative
+   * order. Close the result to delete its temporary files.
+   * 
+   * @throws NullPointerException When the values, keySelector or serializer argument is null.
+   * @throws IllegalArgumentException When runSize is out of range.
+   */
+  @Validate
+  public static <TKey, TResult> ExternalSortIterable<TResult>
+      orderByExternal(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector,
+                      final Comparator<? super TKey> comparer, @NotNull final ISerializer<TResult> serializer, final int runSize)
+  {
+    return ExternalSortIterable.sort(values, keySelector, keyOrder(comparer, false), serializer, runSize);
+  }
+
+  /**
+   * Orders a sequence by a specified key, using the given comparer or the natural key ordering if no comparer is specified, without
+   * holding all of it in memory. Elements are held in memory until their sizes, as estimated by the given estimator, add up to the memory
+   * budget in bytes. Each such run is sorted and spilled to a temporary file using the given serializer, then all runs are merged lazily
+   * while the result is iterated. The sort is stable i.e. elements with equal keys retain their relative order. Close the result to delete
+   * its temporary files.
+   * 
+   * @throws NullPointerException When the values, keySelector, serializer or sizeEstimator argument is null.
+   * @throws IllegalArgumentException When memoryBudget is out of range, or the estimator returns a negative size.
+   */
+  @Validate
+  public static <TKey, TResult> ExternalSortIterable<TResult>
+      orderByExternal(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector,
+                      final Comparator<? super TKey> comparer, @NotNull final ISerializer<TResult> serializer, final long memoryBudget,
+                      @NotNull final Function1<? super TResult, Long> sizeEstimator)
+  {
+    return ExternalSortIterable.sort(values, keySelector, keyOrder(comparer, false), serializer, memoryBudget, sizeEstimator);
+  }
+
   /**
    * Orders a sequence by a specified key and matching key results get sorted by a second key.
    * 
@@ -2224,18 +2858,111 @@ public final class Linq
   }
 
   /**
-   * Partitions the given values based on a predicate. Matching values are first, non-matching second.
+   * Orders a sequence by a specified key and matching key results get sorted by a second key, without holding all of it in memory. Runs of
+   * up to EXTERNAL_SORT_RUN_SIZE elements are sorted in memory and spilled to temporary files using the given serializer, then merged
+   * lazily while the result is iterated. The sort is stable. Close the result to delete its temporary files.
    * 
-   * @throws NullPointerException The values argument is null.
+   * The run size bounds the number of elements held in memory, rather than their bytes. Use the overload accepting a memory budget and an
+   * element size estimator to bound the bytes instead.
+   * 
+   * @throws NullPointerException When an argument is null.
    */
   @Validate
-  public static <T> Pair<Iterable<T>, Iterable<T>> partition(@NotNull final Iterable<T> values,
-                                                             @NotNull final Predicate1<? super T> predicate)
+  public static <TKey extends Comparable<TKey>, TKey2 extends Comparable<TKey2>, TResult> ExternalSortIterable<TResult>
+      orderByThenByExternal(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector,
+                            @NotNull final Function1<? super TResult, TKey2> keySelector2, @NotNull final ISerializer<TResult> serializer)
   {
-    val matching = new ArrayList<T>(DEFAULT_LIST_SIZE);
-    val nonMatching = new ArrayList<T>(DEFAULT_LIST_SIZE);
+    return orderByThenByExternal(values, keySelector, null, keySelector2, null, serializer, EXTERNAL_SORT_RUN_SIZE);
+  }
 
-    for (T item : values)
+  /**
+   * Orders a sequence by a specified key and matching key results get sorted by a second key, using the given comparers or the natural key
+   * orderings where no comparer is specified, without holding all of it in memory. Runs of up to runSize elements are sorted in memory and
+   * spilled to temporary files using the given serializer, then merged lazily while the result is iterated. The sort is stable. Close the
+   * result to delete its temporary files.
+   * 
+   * @throws NullPointerException When the values, keySelector, keySelector2 or serializer argument is null.
+   * @throws IllegalArgumentException When runSize is out of range.
+   */
+  @Validate
+  public static <TKey, TKey2, TResult> ExternalSortIterable<TResult>
+      orderByThenByExternal(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector,
+                            final Comparator<? super TKey> comparer, @NotNull final Function1<? super TResult, TKey2> keySelector2,
+                            final Comparator<? super TKey2> comparer2, @NotNull final ISerializer<TResult> serializer, final int runSize)
+  {
+    return ExternalSortIterable.sort(values, thenByKeySelector(keySelector, keySelector2), thenByOrder(comparer, comparer2), serializer,
+                                     runSize);
+  }
+
+  /**
+   * Orders a sequence by a specified key and matching key results get sorted by a second key, using the given comparers or the natural key
+   * orderings where no comparer is specified, without holding all of it in memory. Elements are held in memory until their sizes, as
+   * estimated by the given estimator, add up to the memory budget in bytes. Each such run is sorted and spilled to a temporary file using
+   * the given serializer, then all runs are merged lazily while the result is iterated. The sort is stable. Close the result to delete its
+   * temporary files.
+   * 
+   * @throws NullPointerException When the values, keySelector, keySelector2, serializer or sizeEstimator argument is null.
+   * @throws IllegalArgumentException When memoryBudget is out of range, or the estimator returns a negative size.
+   */
+  @Validate
+  public static <TKey, TKey2, TResult> ExternalSortIterable<TResult>
+      orderByThenByExternal(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector,
+                            final Comparator<? super TKey> comparer, @NotNull final Function1<? super TResult, TKey2> keySelector2,
+                            final Comparator<? super TKey2> comparer2, @NotNull final ISerializer<TResult> serializer,
+                            final long memoryBudget, @NotNull final Function1<? super TResult, Long> sizeEstimator)
+  {
+    return ExternalSortIterable.sort(values, thenByKeySelector(keySelector, keySelector2), thenByOrder(comparer, comparer2), serializer,
+                                     memoryBudget, sizeEstimator);
+  }
+
+  /**
+   * Returns a selector of both keys of an element, for sorting by a key and then by a second key
+   */
+  private static <TKey, TKey2, TResult> Function1<TResult, KeyValuePair<TKey, TKey2>>
+      thenByKeySelector(final Function1<? super TResult, TKey> keySelector, final Function1<? super TResult, TKey2> keySelector2)
+  {
+    return new Function1<TResult, KeyValuePair<TKey, TKey2>>() {
+      @Override
+      public KeyValuePair<TKey, TKey2> apply(TResult item)
+      {
+        return new KeyValuePair<TKey, TKey2>(keySelector.apply(item), keySelector2.apply(item));
+      }
+    };
+  }
+
+  /**
+   * Returns an order of the pairs of keys returned by thenByKeySelector(), using the given comparers or the natural key orderings where no
+   * comparer is specified
+   */
+  private static <TKey, TKey2> Comparator<KeyValuePair<TKey, TKey2>> thenByOrder(final Comparator<? super TKey> comparer,
+                                                                                  final Comparator<? super TKey2> comparer2)
+  {
+    final Comparator<? super TKey> order = keyOrder(comparer, false);
+    final Comparator<? super TKey2> order2 = keyOrder(comparer2, false);
+
+    return new Comparator<KeyValuePair<TKey, TKey2>>() {
+      @Override
+      public int compare(KeyValuePair<TKey, TKey2> a, KeyValuePair<TKey, TKey2> b)
+      {
+        int result = order.compare(a.getKey(), b.getKey());
+        return result != 0 ? result : order2.compare(a.getValue(), b.getValue());
+      }
+    };
+  }
+
+  /**
+   * Partitions the given values based on a predicate. Matching values are first, non-matching second.
+   * 
+   * @throws NullPointerException The values argument is null.
+   */
+  @Validate
+  public static <T> Pair<Iterable<T>, Iterable<T>> partition(@NotNull final Iterable<T> values,
+                                                             @NotNull final Predicate1<? super T> predicate)
+  {
+    val matching = new ArrayList<T>(DEFAULT_LIST_SIZE);
+    val nonMatching = new ArrayList<T>(DEFAULT_LIST_SIZE);
+
+    for (T item : values)
       if (predicate.evaluate(item))
         matching.add(item);
       else
@@ -2436,8 +3163,7 @@ public final class Linq
   public static <TSource, TResult> Iterable<TResult> select(@NotNull final Iterable<TSource> values,
                                                             @NotNull final Function1<? super TSource, TResult> selector)
   {
-    for (TSource item : values)
-      yield(selector.apply(item));
+    return Pipeline.from(values).select(selector);
   }
 
   /**
@@ -2465,15 +3191,7 @@ public final class Linq
   public static <TSource, TResult> Iterable<TResult> selectMany(@NotNull final Iterable<TSource> values,
                                                                 @NotNull final Function1<? super TSource, List<TResult>> selector)
   {
-    for (TSource item : values)
-    {
-      List<TResult> subItems = selector.apply(item);
-      if (subItems != null)
-      {
-        for (TResult subItem : subItems)
-          yield(subItem);
-      }
-    }
+    return Pipeline.from(values).selectMany(selector);
   }
 
   /**
@@ -2714,21 +3432,7 @@ public final class Linq
   @Validate
   public static <T> Iterable<T> skip(@NotNull final Iterable<T> values, final int count)
   {
-    if (count < 0)
-      throw new IllegalArgumentException("count=" + count);
-
-    // skip phase
-    int skipped = 0;
-    Iterator<T> iterator = values.iterator();
-    while (iterator.hasNext() && skipped < count)
-    {
-      iterator.next();
-      skipped++;
-    }
-
-    // return remaining phase
-    while (iterator.hasNext())
-      yield(iterator.next());
+    return Pipeline.from(values).skip(count);
   }
 
   /**
@@ -2808,6 +3512,60 @@ public final class Linq
     return toArray(result, values.getClass().getComponentType());
   }
 
+  /**
+   * Lazily returns every run of the given number of consecutive values, i.e. windows of that size advancing by one value at a time. A
+   * sequence shorter than the size has no windows. Only the current window is held in memory. Each window is a new list.
+   * 
+   * @throws NullPointerException The values argument is null.
+   * @throws IllegalArgumentException The size is out of range.
+   */
+  @Validate
+  public static <T> Iterable<List<T>> sliding(@NotNull final Iterable<T> values, final int size)
+  {
+    return window(values, size, 1, false);
+  }
+
+  /**
+   * Lazily returns every run of the given number of consecutive values, i.e. windows of that size advancing by one value at a time. A
+   * sequence shorter than the size has no windows. Only the current window is held in memory. If reuseBuffer is true, the same read-only
+   * list instance is returned for every window, advanced in place, so a window is only valid until the next one is requested.
+   * 
+   * @throws NullPointerException The values argument is null.
+   * @throws IllegalArgumentException The size is out of range.
+   */
+  @Validate
+  public static <T> Iterable<List<T>> sliding(@NotNull final Iterable<T> values, final int size, final boolean reuseBuffer)
+  {
+    return window(values, size, 1, reuseBuffer);
+  }
+
+  /**
+   * Lazily returns every run of the given number of consecutive array elements, i.e. windows of that size advancing by one element at a
+   * time. An array shorter than the size has no windows. Each window is a new array.
+   * 
+   * @throws NullPointerException The values argument is null.
+   * @throws IllegalArgumentException The size is out of range.
+   */
+  @Validate
+  public static <T> Iterable<T[]> sliding(@NotNull final T[] values, final int size)
+  {
+    return window(values, size, 1, false);
+  }
+
+  /**
+   * Lazily returns every run of the given number of consecutive array elements, i.e. windows of that size advancing by one element at a
+   * time. An array shorter than the size has no windows. If reuseBuffer is true, the same array instance is returned for every window,
+   * refilled in place, so a window is only valid until the next one is requested.
+   * 
+   * @throws NullPointerException The values argument is null.
+   * @throws IllegalArgumentException The size is out of range.
+   */
+  @Validate
+  public static <T> Iterable<T[]> sliding(@NotNull final T[] values, final int size, final boolean reuseBuffer)
+  {
+    return window(values, size, 1, reuseBuffer);
+  }
+
   /**
    * Sorts a list
    * 
@@ -3082,11 +3840,7 @@ public final class Linq
   @Validate
   public static <T> Iterable<T> take(@NotNull final Iterable<T> values, final int count)
   {
-    Iterator<T> iterator = values.iterator();
-
-    int index = 0;
-    while (index++ < count && iterator.hasNext())
-      yield(iterator.next());
+    return Pipeline.from(values).take(count);
   }
 
   /**
@@ -3258,6 +4012,79 @@ public final class Linq
     return result;
   }
 
+  /**
+   * Groups elements by a specified key, returning each key along with all of the elements that produced it. Keys are compared using their
+   * equals() and hashCode() and groups are returned in the order their keys were first encountered.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <TKey, TResult> List<Grouping<TKey, TResult>> toLookup(@NotNull final Iterable<TResult> values,
+                                                                       @NotNull final Function1<? super TResult, TKey> keySelector)
+  {
+    return toLookup(values, keySelector, null);
+  }
+
+  /**
+   * Groups elements by a specified key, returning each key along with all of the elements that produced it. Keys are compared using their
+   * equals() and hashCode() and groups are returned in the order their keys were first encountered.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <TKey, TResult> Grouping<TKey, TResult>[] toLookup(@NotNull final TResult[] values,
+                                                                   @NotNull final Function1<? super TResult, TKey> keySelector)
+  {
+    return toLookup(values, keySelector, null);
+  }
+
+  /**
+   * Groups elements by a specified key and comparer, returning each key along with all of the elements that produced it. Groups are
+   * returned in key order. If no comparer is specified, this behaves like toLookup(values, keySelector).
+   * 
+   * @throws NullPointerException When the values argument or the key selector is null.
+   */
+  @Validate
+  public static <TKey, TResult> List<Grouping<TKey, TResult>> toLookup(@NotNull final Iterable<TResult> values,
+                                                                       @NotNull final Function1<? super TResult, TKey> keySelector,
+                                                                       final Comparator<? super TKey> comparer)
+  {
+    Map<TKey, List<TResult>> lookup = newLookupMap(comparer);
+
+    for (TResult item : values)
+    {
+      TKey key = keySelector.apply(item);
+      List<TResult> group = lookup.get(key);
+      if (group == null)
+      {
+        group = new ArrayList<TResult>();
+        lookup.put(key, group);
+      }
+
+      group.add(item);
+    }
+
+    val result = new ArrayList<Grouping<TKey, TResult>>(lookup.size());
+    for (val entry : lookup.entrySet())
+      result.add(new Grouping<TKey, TResult>(entry.getKey(), entry.getValue()));
+
+    return result;
+  }
+
+  /**
+   * Groups elements by a specified key and comparer, returning each key along with all of the elements that produced it. Groups are
+   * returned in key order. If no comparer is specified, this behaves like toLookup(values, keySelector).
+   * 
+   * @throws NullPointerException When the values argument or the key selector is null.
+   */
+  @Validate
+  public static <TKey, TResult> Grouping<TKey, TResult>[] toLookup(@NotNull final TResult[] values,
+                                                                   @NotNull final Function1<? super TResult, TKey> keySelector,
+                                                                   final Comparator<? super TKey> comparer)
+  {
+    return toArray(toLookup(Arrays.asList(values), keySelector, comparer), Grouping.class);
+  }
+
   /**
    * Converts an enumeration to a list
    * 
@@ -3298,6 +4125,8 @@ public final class Linq
   {
     if (values instanceof List)
       return (List<T>) values;
+    if (values instanceof Pipeline<?>)
+      return ((Pipeline<T>) values).toList();
 
     val result = new ArrayList<T>(DEFAULT_LIST_SIZE);
     for (T item : values)
@@ -3367,6 +4196,70 @@ public final class Linq
     return Arrays.toString(iterable);
   }
 
+  /**
+   * Returns the k elements with the largest keys, in descending key order. The sequence is read once, retaining only k elements in a bounded
+   * heap, so this is O(n log k) rather than sorting the whole sequence. Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When an argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey extends Comparable<TKey>, TResult> ReifiedList<TResult>
+      topK(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k)
+  {
+    return topK(values, keySelector, k, null);
+  }
+
+  /**
+   * Returns the k elements with the largest keys, in descending key order. The sequence is read once, retaining only k elements in a bounded
+   * heap, so this is O(n log k) rather than sorting the whole sequence. Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When an argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey extends Comparable<TKey>, TResult> TResult[]
+      topK(@NotNull final TResult[] values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k)
+  {
+    return topK(values, keySelector, k, null);
+  }
+
+  /**
+   * Returns the k elements with the largest keys, in descending key order, using the given comparer or the natural key ordering if no
+   * comparer is specified. The sequence is read once, retaining only k elements in a bounded heap, so this is O(n log k) rather than
+   * sorting the whole sequence. Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When the values or keySelector argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey, TResult> ReifiedList<TResult>
+      topK(@NotNull final Iterable<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k,
+           final Comparator<? super TKey> comparer)
+  {
+    val heap = selectK(values, keySelector, k, keyOrder(comparer, true));
+
+    return new ReifiedArrayList<TResult>(Linq.<TResult>drain(heap, keySelector.getParameterType1()));
+  }
+
+  /**
+   * Returns the k elements with the largest keys, in descending key order, using the given comparer or the natural key ordering if no
+   * comparer is specified. The sequence is read once, retaining only k elements in a bounded heap, so this is O(n log k) rather than
+   * sorting the whole sequence. Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When the values or keySelector argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey, TResult> TResult[]
+      topK(@NotNull final TResult[] values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k,
+           final Comparator<? super TKey> comparer)
+  {
+    val heap = selectK(Arrays.asList(values), keySelector, k, keyOrder(comparer, true));
+
+    return drain(heap, values.getClass().getComponentType());
+  }
+
   /**
    * Produces the union of two sequences.
    * 
@@ -3379,7 +4272,8 @@ public final class Linq
   }
 
   /**
-   * Produces the union of two sequences.
+   * Produces the union of two sequences i.e. the distinct elements of the first sequence, followed by any distinct elements of the second
+   * sequence that were not encountered in the first.
    * 
    * @throws NullPointerException When the first or second argument is null.
    */
@@ -3387,20 +4281,15 @@ public final class Linq
   public static <T> Iterable<T> union(@NotNull final Iterable<T> first, @NotNull final Iterable<T> second,
                                       final Comparator<? super T> comparer)
   {
-    Iterable<T> firstDistinct;
-    Iterable<T> secondDistinct;
+    Set<T> set = newLookupSet(comparer, DEFAULT_LIST_SIZE);
 
-    if (comparer == null)
-    {
-      firstDistinct = distinct(first);
-      secondDistinct = distinct(second);
-      return concat(firstDistinct, secondDistinct);
-    } else
-    {
-      firstDistinct = distinct(first, comparer);
-      secondDistinct = distinct(second, comparer);
-      return concat(firstDistinct, secondDistinct);
-    }
+    for (T item : first)
+      if (set.add(item))
+        yield(item);
+
+    for (T item : second)
+      if (set.add(item))
+        yield(item);
   }
 
   /**
@@ -3415,29 +4304,26 @@ public final class Linq
   }
 
   /**
-   * Produces the union of two sequences.
+   * Produces the union of two sequences i.e. the distinct elements of the first sequence, followed by any distinct elements of the second
+   * sequence that were not encountered in the first.
    * 
    * @throws NullPointerException When the first or second argument is null.
    */
   @Validate
   public static <T> T[] union(@NotNull final T[] first, @NotNull final T[] second, final Comparator<? super T> comparer)
   {
-    T[] firstDistinct;
-    T[] secondDistinct;
+    val list = new ReifiedArrayList<T>(first.length + second.length, first.getClass().getComponentType());
+    Set<T> set = newLookupSet(comparer, first.length + second.length);
 
-    if (comparer == null)
-    {
-      firstDistinct = distinct(first);
-      secondDistinct = distinct(second);
-      T[] union = concat(firstDistinct, secondDistinct);
-      return distinct(union);
-    } else
-    {
-      firstDistinct = distinct(first, comparer);
-      secondDistinct = distinct(second, comparer);
-      T[] union = concat(firstDistinct, secondDistinct);
-      return distinct(union, comparer);
-    }
+    for (T item : first)
+      if (set.add(item))
+        list.add(item);
+
+    for (T item : second)
+      if (set.add(item))
+        list.add(item);
+
+    return list.toArray();
   }
 
   /**
@@ -3483,9 +4369,7 @@ public final class Linq
   @Validate
   public static <T> Iterable<T> where(@NotNull final Iterable<T> values, @NotNull final Predicate1<? super T> predicate)
   {
-    for (T element : values)
-      if (predicate.apply(element))
-        yield(element);
+    return Pipeline.from(values).where(predicate);
   }
 
   /**
@@ -3506,6 +4390,74 @@ public final class Linq
     return toArray(result, values.getClass().getComponentType());
   }
 
+  /**
+   * Lazily returns windows of the given size, the first starting at the first value and each subsequent one starting step values after the
+   * previous. Windows overlap if the step is smaller than the size, and values are skipped between them if it is larger. Only full windows
+   * are returned. Only the current window is held in memory. Each window is a new list.
+   * 
+   * @throws NullPointerException The values argument is null.
+   * @throws IllegalArgumentException The size or step is out of range.
+   */
+  @Validate
+  public static <T> Iterable<List<T>> window(@NotNull final Iterable<T> values, final int size, final int step)
+  {
+    return window(values, size, step, false);
+  }
+
+  /**
+   * Lazily returns windows of the given size, the first starting at the first value and each subsequent one starting step values after the
+   * previous. Windows overlap if the step is smaller than the size, and values are skipped between them if it is larger. Only full windows
+   * are returned. Only the current window is held in memory. If reuseBuffer is true, the same read-only list instance is returned for every
+   * window, advanced in place, so a window is only valid until the next one is requested.
+   * 
+   * @throws NullPointerException The values argument is null.
+   * @throws IllegalArgumentException The size or step is out of range.
+   */
+  @Validate
+  public static <T> Iterable<List<T>> window(@NotNull final Iterable<T> values, final int size, final int step, final boolean reuseBuffer)
+  {
+    if (size <= 0)
+      throw new IllegalArgumentException("size=" + size);
+    if (step <= 0)
+      throw new IllegalArgumentException("step=" + step);
+
+    return windowed(values, size, step, reuseBuffer, false);
+  }
+
+  /**
+   * Lazily returns windows of the given size over the array, the first starting at the first element and each subsequent one starting step
+   * elements after the previous. Windows overlap if the step is smaller than the size, and elements are skipped between them if it is
+   * larger. Only full windows are returned. Each window is a new array.
+   * 
+   * @throws NullPointerException The values argument is null.
+   * @throws IllegalArgumentException The size or step is out of range.
+   */
+  @Validate
+  public static <T> Iterable<T[]> window(@NotNull final T[] values, final int size, final int step)
+  {
+    return window(values, size, step, false);
+  }
+
+  /**
+   * Lazily returns windows of the given size over the array, the first starting at the first element and each subsequent one starting step
+   * elements after the previous. Windows overlap if the step is smaller than the size, and elements are skipped between them if it is
+   * larger. Only full windows are returned. If reuseBuffer is true, the same array instance is returned for every window, refilled in place,
+   * so a window is only valid until the next one is requested.
+   * 
+   * @throws NullPointerException The values argument is null.
+   * @throws IllegalArgumentException The size or step is out of range.
+   */
+  @Validate
+  public static <T> Iterable<T[]> window(@NotNull final T[] values, final int size, final int step, final boolean reuseBuffer)
+  {
+    if (size <= 0)
+      throw new IllegalArgumentException("size=" + size);
+    if (step <= 0)
+      throw new IllegalArgumentException("step=" + step);
+
+    return windowed(values, size, step, reuseBuffer, false);
+  }
+
   /**
    * Merges two sequences by using the specified predicate function.
    * 
@@ -3516,11 +4468,7 @@ public final class Linq
                                                                  @NotNull final Iterable<TSecond> second,
                                                                  @NotNull final Function2<TFirst, TSecond, TResult> function)
   {
-    Iterator<TFirst> iterator1 = first.iterator();
-    Iterator<TSecond> iterator2 = second.iterator();
-
-    while (iterator1.hasNext() && iterator2.hasNext())
-      yield(function.apply(iterator1.next(), iterator2.next()));
+    return Pipeline.from(first).zip(second, function);
   }
 
   /**
@@ -3750,6 +4698,248 @@ public final class Linq
     return false;
   }
 
+  /**
+   * Indexes values by key for the hash joins, omitting those with a null key. Values with equal keys are kept in encounter order.
+   */
+  private static <T, TKey> Map<TKey, List<T>> joinLookup(final Iterable<T> values, final Function1<? super T, TKey> keySelector)
+  {
+    Map<TKey, List<T>> result = new HashMap<TKey, List<T>>(values instanceof Collection ? Math.max(16,
+        (int) (((Collection<?>) values).size() / 0.75f) + 1) : DEFAULT_LIST_SIZE);
+
+    for (T value : values)
+    {
+      TKey key = keySelector.apply(value);
+      if (key == null)
+        continue;
+
+      List<T> matches = result.get(key);
+      if (matches == null)
+      {
+        matches = new ArrayList<T>(2);
+        result.put(key, matches);
+      }
+      matches.add(value);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the values indexed under a key by joinLookup(), or null if there are none
+   */
+  private static <T, TKey> List<T> joinMatches(final Map<TKey, List<T>> lookup, final TKey key)
+  {
+    return key == null ? null : lookup.get(key);
+  }
+
+  /**
+   * Creates an empty set used for looking up elements. If a comparer is specified then a sorted set is returned, which places nulls first
+   * without passing them to the comparer. Otherwise a hash set is returned, which relies on the elements' equals() and hashCode().
+   */
+  static <T> Set<T> newLookupSet(final Comparator<? super T> comparer, final int expectedSize)
+  {
+    if (comparer == null)
+      return new HashSet<T>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+
+    return new TreeSet<T>(Linq.<T>nullsFirst(comparer));
+  }
+
+  /**
+   * Creates an empty map used for grouping elements by key. If a comparer is specified then a sorted map is returned, which places the null
+   * key first without passing it to the comparer. Otherwise a hash map is returned, which iterates keys in the order they were first added.
+   */
+  private static <TKey, TValue> Map<TKey, TValue> newLookupMap(final Comparator<? super TKey> comparer)
+  {
+    if (comparer == null)
+      return new LinkedHashMap<TKey, TValue>(DEFAULT_LIST_SIZE);
+
+    return new TreeMap<TKey, TValue>(Linq.<TKey>nullsFirst(comparer));
+  }
+
+  /**
+   * Wraps a comparer so that nulls are ordered before all other values, without being passed to it
+   */
+  private static <T> Comparator<T> nullsFirst(final Comparator<? super T> comparer)
+  {
+    return new Comparator<T>() {
+      @Override
+      public int compare(T a, T b)
+      {
+        if (a == null)
+          return b == null ? 0 : -1;
+        if (b == null)
+          return 1;
+
+        return comparer.compare(a, b);
+      }
+    };
+  }
+
+  /**
+   * Returns a comparer that uses the natural ordering of the keys. Null keys are not allowed.
+   */
+  static <T> Comparator<T> naturalOrder()
+  {
+    return new Comparator<T>() {
+      @Override
+      public int compare(T a, T b)
+      {
+        return ((Comparable<T>) a).compareTo(b);
+      }
+    };
+  }
+
+  /**
+   * Returns the given key comparer, or the natural key ordering if no comparer is specified, optionally reversed
+   */
+  static <TKey> Comparator<? super TKey> keyOrder(final Comparator<? super TKey> comparer, final boolean descending)
+  {
+    Comparator<? super TKey> result = comparer == null ? Linq.<TKey>naturalOrder() : comparer;
+
+    return descending ? Collections.reverseOrder(result) : result;
+  }
+
+  /**
+   * Reads the given sequence once, retaining the k elements whose keys come first in the given key order
+   */
+  private static <TKey, TResult> BoundedHeap<TKey, TResult> selectK(final Iterable<TResult> values,
+                                                                    final Function1<? super TResult, TKey> keySelector, final int k,
+                                                                    final Comparator<? super TKey> order)
+  {
+    val heap = new BoundedHeap<TKey, TResult>(k, order);
+    if (k > 0)
+    {
+      long sequence = 0;
+      for (TResult item : values)
+        heap.offer(keySelector.apply(item), item, sequence++);
+    }
+
+    return heap;
+  }
+
+  /**
+   * Empties a heap of selected elements into an array of the given component type, in the heap's key order
+   */
+  static <TResult> TResult[] drain(final BoundedHeap<?, TResult> heap, final Class<?> componentType)
+  {
+    TResult[] result = ArrayUtils.create(componentType, heap.size());
+    val drained = heap.drain();
+    System.arraycopy(drained, 0, result, 0, drained.length);
+
+    return result;
+  }
+
+  /**
+   * Sorts values by the keys produced by a key selector, using the given key comparer or the natural key ordering if no comparer is
+   * specified. The sort is stable, so values with equal keys retain their relative order.
+   */
+  static <TKey, TResult> void sortByKey(final List<TResult> values, final Function1<? super TResult, TKey> keySelector,
+                                        final Comparator<? super TKey> comparer)
+  {
+    val size = values.size();
+    KeyValuePair<TKey, TResult>[] entries = new KeyValuePair[size];
+    for (int i = 0; i < size; i++)
+    {
+      TResult item = values.get(i);
+      entries[i] = new KeyValuePair<TKey, TResult>(keySelector.apply(item), item);
+    }
+
+    final Comparator<? super TKey> keyComparer = comparer == null ? Linq.<TKey>naturalOrder() : comparer;
+    Arrays.sort(entries, new Comparator<KeyValuePair<TKey, TResult>>() {
+      @Override
+      public int compare(KeyValuePair<TKey, TResult> a, KeyValuePair<TKey, TResult> b)
+      {
+        return keyComparer.compare(a.getKey(), b.getKey());
+      }
+    });
+
+    for (int i = 0; i < size; i++)
+      values.set(i, entries[i].getValue());
+  }
+
+  /**
+   * Reads the given sequence once into a lookup set
+   */
+  private static <T> Set<T> toLookupSet(final Iterable<T> values, final Comparator<? super T> comparer)
+  {
+    val size = values instanceof Collection<?> ? ((Collection<?>) values).size() : DEFAULT_LIST_SIZE;
+    Set<T> result = newLookupSet(comparer, size);
+    for (T item : values)
+      result.add(item);
+
+    return result;
+  }
+
+  /**
+   * Reads the given array once into a lookup set
+   */
+  private static <T> Set<T> toLookupSet(final T[] values, final Comparator<? super T> comparer)
+  {
+    Set<T> result = newLookupSet(comparer, values.length);
+    val count = values.length;
+    for (int i = 0; i < count; i++)
+      result.add(values[i]);
+
+    return result;
+  }
+
+  /**
+   * Yields the windows of the windowing operators over a sequence, holding the current window in a ring buffer. If partial is true, a
+   * trailing window with fewer values than the size is also returned.
+   */
+  private static <T> Iterable<List<T>> windowed(final Iterable<T> values, final int size, final int step, final boolean reuseBuffer,
+                                                final boolean partial)
+  {
+    val buffer = new WindowBuffer<T>(size);
+    int skip = 0;
+
+    for (T item : values)
+    {
+      if (skip > 0)
+      {
+        skip--;
+        continue;
+      }
+
+      buffer.append(item);
+      if (buffer.isFull())
+      {
+        yield(reuseBuffer ? buffer : new ArrayList<T>(buffer));
+
+        // values between this window and the next are skipped rather than buffered
+        skip = Math.max(0, step - size);
+        buffer.discard(step);
+      }
+    }
+
+    if (partial && buffer.size() > 0)
+      yield(reuseBuffer ? buffer : new ArrayList<T>(buffer));
+  }
+
+  /**
+   * Yields the windows of the windowing operators over an array, copying each from the array. If partial is true, a trailing window with
+   * fewer elements than the size is also returned, always as a new array.
+   */
+  private static <T> Iterable<T[]> windowed(final T[] values, final int size, final int step, final boolean reuseBuffer,
+                                            final boolean partial)
+  {
+    final T[] buffer = reuseBuffer ? Arrays.copyOf(values, Math.min(size, values.length)) : null;
+    int start = 0;
+
+    for (; start <= values.length - size; start += Math.min(step, values.length - start))
+    {
+      if (reuseBuffer)
+      {
+        System.arraycopy(values, start, buffer, 0, size);
+        yield(buffer);
+      } else
+        yield(Arrays.copyOfRange(values, start, start + size));
+    }
+
+    if (partial && start < values.length)
+      yield(Arrays.copyOfRange(values, start, values.length));
+  }
+
   /**
    * Returns the number of null entries in the sequence
    */
@@ -0,0 +1,974 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Validate;
+import lombok.Validate.NotNull;
+import lombok.val;
+import propel.core.collections.KeyValuePair;
+import propel.core.collections.lists.ReifiedArrayList;
+import propel.core.collections.lists.ReifiedList;
+import propel.core.configuration.ConfigurableConsts;
+import propel.core.configuration.ConfigurableParameters;
+import propel.core.functional.Functions.Function1;
+import propel.core.functional.Functions.Function2;
+import propel.core.functional.Predicates.Predicate1;
+
+/**
+ * Parallel counterparts of the Linq array and ReifiedList operations. Inputs are split into contiguous chunks which are processed by a
+ * shared fork/join pool. Results preserve the ordering promised by the sequential Linq API, e.g. where() and select() return elements in
+ * source order and first() returns the earliest match. Inputs shorter than PARALLEL_THRESHOLD are processed sequentially by Linq.
+ * 
+ * Functions passed to these methods are invoked concurrently and must be thread-safe.
+ */
+@SuppressWarnings("unchecked")
+public final class ParallelLinq
+{
+  /**
+   * Inputs shorter than this are processed sequentially, and work is not split into chunks smaller than this.
+   */
+  public static final int PARALLEL_THRESHOLD = ConfigurableParameters.getInt32(ConfigurableConsts.LINQ_PARALLEL_THRESHOLD);
+  /**
+   * The number of worker threads processing chunks
+   */
+  public static final int PARALLELISM = Math.max(1, ConfigurableParameters.getInt32(ConfigurableConsts.LINQ_PARALLELISM));
+  /**
+   * The number of chunks created per worker, so that unevenly expensive chunks balance out
+   */
+  private static final int CHUNKS_PER_WORKER = 4;
+  /**
+   * The pool executing all chunks
+   */
+  private static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM);
+
+  /**
+   * Applies an accumulator function over a sequence. Each chunk is accumulated starting from the seed, and the partial results are then
+   * combined in source order using the combiner. The seed must therefore be an identity value for the combiner, e.g. 0 for a sum.
+   * 
+   * @throws NullPointerException An argument is null.
+   */
+  @Validate
+  public static <TSource, TAccumulate> TAccumulate aggregate(@NotNull final TSource[] values, @NotNull final TAccumulate seed,
+                                                             @NotNull final Function2<TAccumulate, ? super TSource, TAccumulate> function,
+                                                             @NotNull final Function2<TAccumulate, TAccumulate, TAccumulate> combiner)
+  {
+    if (!isParallel(values.length))
+      return Linq.aggregate(values, seed, function);
+
+    val chunks = chunkCount(values.length);
+    final Object[] partials = new Object[chunks];
+    invoke(chunks, new ChunkBody() {
+      @Override
+      void run(int chunk)
+      {
+        int end = boundary(values.length, chunks, chunk + 1);
+        TAccumulate result = seed;
+        for (int i = boundary(values.length, chunks, chunk); i < end; i++)
+          result = function.apply(result, values[i]);
+
+        partials[chunk] = result;
+      }
+    });
+
+    TAccumulate result = (TAccumulate) partials[0];
+    for (int i = 1; i < chunks; i++)
+      result = combiner.apply(result, (TAccumulate) partials[i]);
+
+    return result;
+  }
+
+  /**
+   * Applies an accumulator function over a sequence. Each chunk is accumulated starting from the seed, and the partial results are then
+   * combined in source order using the combiner. The seed must therefore be an identity value for the combiner, e.g. 0 for a sum.
+   * 
+   * @throws NullPointerException An argument is null.
+   */
+  @Validate
+  public static <TSource, TAccumulate> TAccumulate aggregate(@NotNull final ReifiedList<TSource> values, @NotNull final TAccumulate seed,
+                                                             @NotNull final Function2<TAccumulate, ? super TSource, TAccumulate> function,
+                                                             @NotNull final Function2<TAccumulate, TAccumulate, TAccumulate> combiner)
+  {
+    return aggregate(values.toArray(), seed, function, combiner);
+  }
+
+  /**
+   * Applies an accumulator function over a sequence, as above, and uses the specified function to select the result value from the
+   * accumulator's type.
+   * 
+   * @throws NullPointerException An argument is null.
+   */
+  @Validate
+  public static <TSource, TAccumulate, TResult> TResult
+      aggregate(@NotNull final TSource[] values, @NotNull final TAccumulate seed,
+                @NotNull final Function2<TAccumulate, ? super TSource, TAccumulate> function,
+                @NotNull final Function2<TAccumulate, TAccumulate, TAccumulate> combiner,
+                @NotNull final Function1<TAccumulate, TResult> resultSelector)
+  {
+    return resultSelector.apply(aggregate(values, seed, function, combiner));
+  }
+
+  /**
+   * Applies an accumulator function over a sequence, as above, and uses the specified function to select the result value from the
+   * accumulator's type.
+   * 
+   * @throws NullPointerException An argument is null.
+   */
+  @Validate
+  public static <TSource, TAccumulate, TResult> TResult
+      aggregate(@NotNull final ReifiedList<TSource> values, @NotNull final TAccumulate seed,
+                @NotNull final Function2<TAccumulate, ? super TSource, TAccumulate> function,
+                @NotNull final Function2<TAccumulate, TAccumulate, TAccumulate> combiner,
+                @NotNull final Function1<TAccumulate, TResult> resultSelector)
+  {
+    return resultSelector.apply(aggregate(values.toArray(), seed, function, combiner));
+  }
+
+  /**
+   * Returns true if a condition is true for all items in a sequence. Otherwise returns false. All workers stop as soon as any of them finds
+   * a non-matching item.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <T> boolean all(@NotNull final T[] values, @NotNull final Predicate1<? super T> predicate)
+  {
+    if (!isParallel(values.length))
+      return Linq.all(values, predicate);
+
+    final AtomicBoolean failed = new AtomicBoolean(false);
+    val chunks = chunkCount(values.length);
+    invoke(chunks, new ChunkBody() {
+      @Override
+      void run(int chunk)
+      {
+        int end = boundary(values.length, chunks, chunk + 1);
+        for (int i = boundary(values.length, chunks, chunk); i < end && !failed.get(); i++)
+          if (!predicate.apply(values[i]))
+            failed.set(true);
+      }
+    });
+
+    return !failed.get();
+  }
+
+  /**
+   * Returns true if a condition is true for all items in a sequence. Otherwise returns false. All workers stop as soon as any of them finds
+   * a non-matching item.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <T> boolean all(@NotNull final ReifiedList<T> values, @NotNull final Predicate1<? super T> predicate)
+  {
+    return all(values.toArray(), predicate);
+  }
+
+  /**
+   * Returns true if a condition is true for any of the items in a sequence. Otherwise returns false. All workers stop as soon as any of
+   * them finds a matching item.
+   * 
+   * @throws NullPointerException An argument is null.
+   */
+  @Validate
+  public static <T> boolean any(@NotNull final T[] values, @NotNull final Predicate1<? super T> predicate)
+  {
+    if (!isParallel(values.length))
+      return Linq.any(values, predicate);
+
+    final AtomicBoolean found = new AtomicBoolean(false);
+    val chunks = chunkCount(values.length);
+    invoke(chunks, new ChunkBody() {
+      @Override
+      void run(int chunk)
+      {
+        int end = boundary(values.length, chunks, chunk + 1);
+        for (int i = boundary(values.length, chunks, chunk); i < end && !found.get(); i++)
+          if (predicate.apply(values[i]))
+            found.set(true);
+      }
+    });
+
+    return found.get();
+  }
+
+  /**
+   * Returns true if a condition is true for any of the items in a sequence. Otherwise returns false. All workers stop as soon as any of
+   * them finds a matching item.
+   * 
+   * @throws NullPointerException An argument is null.
+   */
+  @Validate
+  public static <T> boolean any(@NotNull final ReifiedList<T> values, @NotNull final Predicate1<? super T> predicate)
+  {
+    return any(values.toArray(), predicate);
+  }
+
+  /**
+   * Returns the k elements with the smallest keys, in ascending key order. Each chunk is scanned concurrently into its own bounded heap of k
+   * elements, and the heaps are then merged. Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When an argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey extends Comparable<TKey>, TResult> TResult[]
+      bottomK(@NotNull final TResult[] values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k)
+  {
+    return bottomK(values, keySelector, k, null);
+  }
+
+  /**
+   * Returns the k elements with the smallest keys, in ascending key order. Each chunk is scanned concurrently into its own bounded heap of k
+   * elements, and the heaps are then merged. Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When an argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey extends Comparable<TKey>, TResult> ReifiedList<TResult>
+      bottomK(@NotNull final ReifiedList<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k)
+  {
+    return bottomK(values, keySelector, k, null);
+  }
+
+  /**
+   * Returns the k elements with the smallest keys, in ascending key order, using the given comparer or the natural key ordering if no
+   * comparer is specified. Each chunk is scanned concurrently into its own bounded heap of k elements, and the heaps are then merged.
+   * Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When the values or keySelector argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey, TResult> TResult[]
+      bottomK(@NotNull final TResult[] values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k,
+              final Comparator<? super TKey> comparer)
+  {
+    return selectK(values, keySelector, k, Linq.keyOrder(comparer, false));
+  }
+
+  /**
+   * Returns the k elements with the smallest keys, in ascending key order, using the given comparer or the natural key ordering if no
+   * comparer is specified. Each chunk is scanned concurrently into its own bounded heap of k elements, and the heaps are then merged.
+   * Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When the values or keySelector argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey, TResult> ReifiedList<TResult>
+      bottomK(@NotNull final ReifiedList<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k,
+              final Comparator<? super TKey> comparer)
+  {
+    return new ReifiedArrayList<TResult>(selectK(values.toArray(), keySelector, k, Linq.keyOrder(comparer, false)));
+  }
+
+  /**
+   * Returns the number of occurrences of an object in a sequence. It is possible to search for null objects.
+   * 
+   * @throws NullPointerException When the values argument is null.
+   */
+  @Validate
+  public static <T> int count(@NotNull final T[] values, final T item)
+  {
+    return count(values, item, null);
+  }
+
+  /**
+   * Returns the number of occurrences of an object in a sequence. It is possible to search for null objects.
+   * 
+   * @throws NullPointerException When the values argument is null.
+   */
+  @Validate
+  public static <T> int count(@NotNull final ReifiedList<T> values, final T item)
+  {
+    return count(values.toArray(), item, null);
+  }
+
+  /**
+   * Returns the number of occurrences of an object in a sequence, using the specified comparer or the elements' equals() if no comparer is
+   * specified. It is possible to search for null objects.
+   * 
+   * @throws NullPointerException When the values argument is null.
+   */
+  @Validate
+  public static <T> int count(@NotNull final T[] values, final T item, final Comparator<? super T> comparer)
+  {
+    val chunks = isParallel(values.length) ? chunkCount(values.length) : 1;
+    final int[] partials = new int[chunks];
+    invoke(chunks, new ChunkBody() {
+      @Override
+      void run(int chunk)
+      {
+        int end = boundary(values.length, chunks, chunk + 1);
+        int result = 0;
+        for (int i = boundary(values.length, chunks, chunk); i < end; i++)
+          if (matches(values[i], item, comparer))
+            result++;
+
+        partials[chunk] = result;
+      }
+    });
+
+    return sum(partials);
+  }
+
+  /**
+   * Returns the number of occurrences of an object in a sequence, using the specified comparer or the elements' equals() if no comparer is
+   * specified. It is possible to search for null objects.
+   * 
+   * @throws NullPointerException When the values argument is null.
+   */
+  @Validate
+  public static <T> int count(@NotNull final ReifiedList<T> values, final T item, final Comparator<? super T> comparer)
+  {
+    return count(values.toArray(), item, comparer);
+  }
+
+  /**
+   * Returns the number of occurrences that satisfy the given condition.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <T> int countWhere(@NotNull final T[] values, @NotNull final Predicate1<? super T> predicate)
+  {
+    if (!isParallel(values.length))
+      return Linq.countWhere(values, predicate);
+
+    val chunks = chunkCount(values.length);
+    final int[] partials = new int[chunks];
+    invoke(chunks, new ChunkBody() {
+      @Override
+      void run(int chunk)
+      {
+        int end = boundary(values.length, chunks, chunk + 1);
+        int result = 0;
+        for (int i = boundary(values.length, chunks, chunk); i < end; i++)
+          if (predicate.apply(values[i]))
+            result++;
+
+        partials[chunk] = result;
+      }
+    });
+
+    return sum(partials);
+  }
+
+  /**
+   * Returns the number of occurrences that satisfy the given condition.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <T> int countWhere(@NotNull final ReifiedList<T> values, @NotNull final Predicate1<? super T> predicate)
+  {
+    return countWhere(values.toArray(), predicate);
+  }
+
+  /**
+   * Returns the first element in the provided sequence that matches a condition. Workers skip chunks that start after an earlier match has
+   * been found, and stop scanning once they pass it.
+   * 
+   * @throws NullPointerException When an argument is null.
+   * @throws NoSuchElementException There is no match to the given predicate.
+   */
+  @Validate
+  public static <T> T first(@NotNull final T[] values, @NotNull final Predicate1<? super T> predicate)
+  {
+    val index = indexOfFirst(values, predicate);
+    if (index < 0)
+      throw new NoSuchElementException("There is no match to the given predicate.");
+
+    return values[index];
+  }
+
+  /**
+   * Returns the first element in the provided sequence that matches a condition. Workers skip chunks that start after an earlier match has
+   * been found, and stop scanning once they pass it.
+   * 
+   * @throws NullPointerException When an argument is null.
+   * @throws NoSuchElementException There is no match to the given predicate.
+   */
+  @Validate
+  public static <T> T first(@NotNull final ReifiedList<T> values, @NotNull final Predicate1<? super T> predicate)
+  {
+    return first(values.toArray(), predicate);
+  }
+
+  /**
+   * Returns the first element in the provided sequence that matches a condition. It will return null if there is no match.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <T> T firstOrDefault(@NotNull final T[] values, @NotNull final Predicate1<? super T> predicate)
+  {
+    val index = indexOfFirst(values, predicate);
+    if (index < 0)
+      return null;
+
+    return values[index];
+  }
+
+  /**
+   * Returns the first element in the provided sequence that matches a condition. It will return null if there is no match.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <T> T firstOrDefault(@NotNull final ReifiedList<T> values, @NotNull final Predicate1<? super T> predicate)
+  {
+    return firstOrDefault(values.toArray(), predicate);
+  }
+
+  /**
+   * Returns the maximum of the given values. If no values are given, null is returned.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static <T extends Comparable<T>> T max(@NotNull final T[] items)
+  {
+    return extreme(items, 1);
+  }
+
+  /**
+   * Returns the maximum of the given values. If no values are given, null is returned.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static <T extends Comparable<T>> T max(@NotNull final ReifiedList<T> items)
+  {
+    return extreme(items.toArray(), 1);
+  }
+
+  /**
+   * Returns the minimum of the given values. If no values are given, null is returned.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static <T extends Comparable<T>> T min(@NotNull final T[] items)
+  {
+    return extreme(items, -1);
+  }
+
+  /**
+   * Returns the minimum of the given values. If no values are given, null is returned.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static <T extends Comparable<T>> T min(@NotNull final ReifiedList<T> items)
+  {
+    return extreme(items.toArray(), -1);
+  }
+
+  /**
+   * Orders a sequence by a specified key. Chunks are sorted concurrently and then merged in parallel rounds. The sort is stable i.e.
+   * elements with equal keys retain their relative order. The given array is not modified.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <TKey extends Comparable<TKey>, TResult> TResult[] orderBy(@NotNull final TResult[] values,
+                                                                           @NotNull final Function1<TResult, TKey> keySelector)
+  {
+    return orderBy(values, keySelector, null);
+  }
+
+  /**
+   * Orders a sequence by a specified key. Chunks are sorted concurrently and then merged in parallel rounds. The sort is stable i.e.
+   * elements with equal keys retain their relative order. The given list is not modified.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <TKey extends Comparable<TKey>, TResult> ReifiedList<TResult> orderBy(@NotNull final ReifiedList<TResult> values,
+                                                                                      @NotNull final Function1<TResult, TKey> keySelector)
+  {
+    return new ReifiedArrayList<TResult>(orderBy(values.toArray(), keySelector, null));
+  }
+
+  /**
+   * Orders a sequence by a specified key, using the given comparer or the natural key ordering if no comparer is specified. Chunks are
+   * sorted concurrently and then merged in parallel rounds. The sort is stable i.e. elements with equal keys retain their relative order.
+   * The given array is not modified.
+   * 
+   * @throws NullPointerException When the values or keySelector argument is null.
+   */
+  @Validate
+  public static <TKey, TResult> TResult[] orderBy(@NotNull final TResult[] values, @NotNull final Function1<TResult, TKey> keySelector,
+                                                  final Comparator<? super TKey> comparer)
+  {
+    if (!isParallel(values.length))
+      return Linq.orderBy(values, keySelector, comparer);
+
+    val size = values.length;
+    val chunks = chunkCount(size);
+    final Comparator<? super TKey> keyComparer = comparer == null ? Linq.<TKey>naturalOrder() : comparer;
+    final Comparator<KeyValuePair<TKey, TResult>> entryComparer = new Comparator<KeyValuePair<TKey, TResult>>() {
+      @Override
+      public int compare(KeyValuePair<TKey, TResult> a, KeyValuePair<TKey, TResult> b)
+      {
+        return keyComparer.compare(a.getKey(), b.getKey());
+      }
+    };
+
+    // select keys and sort each chunk
+    final KeyValuePair<TKey, TResult>[] entries = new KeyValuePair[size];
+    invoke(chunks, new ChunkBody() {
+      @Override
+      void run(int chunk)
+      {
+        int start = boundary(size, chunks, chunk);
+        int end = boundary(size, chunks, chunk + 1);
+        for (int i = start; i < end; i++)
+          entries[i] = new KeyValuePair<TKey, TResult>(keySelector.apply(values[i]), values[i]);
+
+        Arrays.sort(entries, start, end, entryComparer);
+      }
+    });
+
+    // merge adjacent sorted runs, doubling the run length (in chunks) every round
+    KeyValuePair<TKey, TResult>[] source = entries;
+    KeyValuePair<TKey, TResult>[] target = new KeyValuePair[size];
+    for (int width = 1; width < chunks; width *= 2)
+    {
+      final int runChunks = width;
+      final KeyValuePair<TKey, TResult>[] from = source;
+      final KeyValuePair<TKey, TResult>[] to = target;
+      invoke((chunks + 2 * runChunks - 1) / (2 * runChunks), new ChunkBody() {
+        @Override
+        void run(int merge)
+        {
+          int startChunk = merge * 2 * runChunks;
+          int start = boundary(size, chunks, startChunk);
+          int middle = boundary(size, chunks, Math.min(startChunk + runChunks, chunks));
+          int end = boundary(size, chunks, Math.min(startChunk + 2 * runChunks, chunks));
+          merge(from, to, start, middle, end, entryComparer);
+        }
+      });
+
+      target = source;
+      source = to;
+    }
+
+    TResult[] result = ArrayUtils.create(values.getClass().getComponentType(), size);
+    for (int i = 0; i < size; i++)
+      result[i] = source[i].getValue();
+
+    return result;
+  }
+
+  /**
+   * Orders a sequence by a specified key, using the given comparer or the natural key ordering if no comparer is specified. Chunks are
+   * sorted concurrently and then merged in parallel rounds. The sort is stable i.e. elements with equal keys retain their relative order.
+   * The given list is not modified.
+   * 
+   * @throws NullPointerException When the values or keySelector argument is null.
+   */
+  @Validate
+  public static <TKey, TResult> ReifiedList<TResult> orderBy(@NotNull final ReifiedList<TResult> values,
+                                                             @NotNull final Function1<TResult, TKey> keySelector,
+                                                             final Comparator<? super TKey> comparer)
+  {
+    return new ReifiedArrayList<TResult>(orderBy(values.toArray(), keySelector, comparer));
+  }
+
+  /**
+   * Acts as a Select LINQ function, projecting chunks concurrently. Results are in source order.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <TSource, TResult> TResult[] select(@NotNull final TSource[] values, @NotNull final Function1<TSource, TResult> selector)
+  {
+    if (!isParallel(values.length))
+      return Linq.select(values, selector);
+
+    final TResult[] result = ArrayUtils.create(selector.getReturnType(), values.length);
+    val chunks = chunkCount(values.length);
+    invoke(chunks, new ChunkBody() {
+      @Override
+      void run(int chunk)
+      {
+        int end = boundary(values.length, chunks, chunk + 1);
+        for (int i = boundary(values.length, chunks, chunk); i < end; i++)
+          result[i] = selector.apply(values[i]);
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * Acts as a Select LINQ function, projecting chunks concurrently. Results are in source order.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public static <TSource, TResult> ReifiedList<TResult> select(@NotNull final ReifiedList<TSource> values,
+                                                               @NotNull final Function1<TSource, TResult> selector)
+  {
+    return new ReifiedArrayList<TResult>(select(values.toArray(), selector));
+  }
+
+  /**
+   * Returns the k elements with the largest keys, in descending key order. Each chunk is scanned concurrently into its own bounded heap of k
+   * elements, and the heaps are then merged. Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When an argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey extends Comparable<TKey>, TResult> TResult[]
+      topK(@NotNull final TResult[] values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k)
+  {
+    return topK(values, keySelector, k, null);
+  }
+
+  /**
+   * Returns the k elements with the largest keys, in descending key order. Each chunk is scanned concurrently into its own bounded heap of k
+   * elements, and the heaps are then merged. Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When an argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey extends Comparable<TKey>, TResult> ReifiedList<TResult>
+      topK(@NotNull final ReifiedList<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k)
+  {
+    return topK(values, keySelector, k, null);
+  }
+
+  /**
+   * Returns the k elements with the largest keys, in descending key order, using the given comparer or the natural key ordering if no
+   * comparer is specified. Each chunk is scanned concurrently into its own bounded heap of k elements, and the heaps are then merged.
+   * Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When the values or keySelector argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey, TResult> TResult[]
+      topK(@NotNull final TResult[] values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k,
+           final Comparator<? super TKey> comparer)
+  {
+    return selectK(values, keySelector, k, Linq.keyOrder(comparer, true));
+  }
+
+  /**
+   * Returns the k elements with the largest keys, in descending key order, using the given comparer or the natural key ordering if no
+   * comparer is specified. Each chunk is scanned concurrently into its own bounded heap of k elements, and the heaps are then merged.
+   * Elements with equal keys retain their relative order.
+   * 
+   * @throws NullPointerException When the values or keySelector argument is null.
+   * @throws IllegalArgumentException When k is out of range.
+   */
+  @Validate
+  public static <TKey, TResult> ReifiedList<TResult>
+      topK(@NotNull final ReifiedList<TResult> values, @NotNull final Function1<? super TResult, TKey> keySelector, final int k,
+           final Comparator<? super TKey> comparer)
+  {
+    return new ReifiedArrayList<TResult>(selectK(values.toArray(), keySelector, k, Linq.keyOrder(comparer, true)));
+  }
+
+  /**
+   * Returns a subset of the provided sequence, which conforms to the given predicate. Chunks are filtered concurrently and results are in
+   * source order.
+   * 
+   * @throws NullPointerException When an argument is null
+   */
+  @Validate
+  public static <T> T[] where(@NotNull final T[] values, @NotNull final Predicate1<? super T> predicate)
+  {
+    if (!isParallel(values.length))
+      return Linq.where(values, predicate);
+
+    val chunks = chunkCount(values.length);
+    final List<T>[] partials = new List[chunks];
+    invoke(chunks, new ChunkBody() {
+      @Override
+      void run(int chunk)
+      {
+        int start = boundary(values.length, chunks, chunk);
+        int end = boundary(values.length, chunks, chunk + 1);
+        List<T> result = new ArrayList<T>(end - start);
+        for (int i = start; i < end; i++)
+          if (predicate.apply(values[i]))
+            result.add(values[i]);
+
+        partials[chunk] = result;
+      }
+    });
+
+    int size = 0;
+    for (List<T> partial : partials)
+      size += partial.size();
+
+    val result = new ArrayList<T>(size);
+    for (List<T> partial : partials)
+      result.addAll(partial);
+
+    return Linq.toArray(result, values.getClass().getComponentType());
+  }
+
+  /**
+   * Returns a subset of the provided sequence, which conforms to the given predicate. Chunks are filtered concurrently and results are in
+   * source order.
+   * 
+   * @throws NullPointerException When an argument is null
+   */
+  @Validate
+  public static <T> ReifiedList<T> where(@NotNull final ReifiedList<T> values, @NotNull final Predicate1<? super T> predicate)
+  {
+    return new ReifiedArrayList<T>(where(values.toArray(), predicate));
+  }
+
+  /**
+   * Returns true if the given number of elements is large enough to be processed in parallel
+   */
+  private static boolean isParallel(final int size)
+  {
+    return PARALLELISM > 1 && size >= PARALLEL_THRESHOLD;
+  }
+
+  /**
+   * Returns the number of chunks to split the given number of elements into
+   */
+  private static int chunkCount(final int size)
+  {
+    val workers = PARALLELISM * CHUNKS_PER_WORKER;
+    val chunkSize = Math.max(Math.max(1, PARALLEL_THRESHOLD), (size + workers - 1) / workers);
+
+    return Math.max(1, (size + chunkSize - 1) / chunkSize);
+  }
+
+  /**
+   * Returns the index of the first element of the given chunk. Passing the number of chunks returns the size.
+   */
+  private static int boundary(final int size, final int chunks, final int chunk)
+  {
+    return (int) ((long) size * chunk / chunks);
+  }
+
+  /**
+   * Runs the given body for every chunk index in [0, chunks), in the pool. Returns once all have completed, rethrowing any exception
+   * thrown by the body.
+   */
+  private static void invoke(final int chunks, final ChunkBody body)
+  {
+    if (chunks == 1)
+      body.run(0);
+    else
+      POOL.invoke(new ChunkTask(body, 0, chunks));
+  }
+
+  /**
+   * Returns the index of the first element matching the predicate, or -1 if there is none
+   */
+  private static <T> int indexOfFirst(final T[] values, final Predicate1<? super T> predicate)
+  {
+    val chunks = isParallel(values.length) ? chunkCount(values.length) : 1;
+    final AtomicInteger firstIndex = new AtomicInteger(Integer.MAX_VALUE);
+    invoke(chunks, new ChunkBody() {
+      @Override
+      void run(int chunk)
+      {
+        int end = boundary(values.length, chunks, chunk + 1);
+        for (int i = boundary(values.length, chunks, chunk); i < end && i < firstIndex.get(); i++)
+          if (predicate.apply(values[i]))
+          {
+            int current;
+            while (i < (current = firstIndex.get()))
+              if (firstIndex.compareAndSet(current, i))
+                break;
+
+            return;
+          }
+      }
+    });
+
+    val result = firstIndex.get();
+    return result == Integer.MAX_VALUE ? -1 : result;
+  }
+
+  /**
+   * Returns the maximum (direction = 1) or minimum (direction = -1) of the given values, or null if there are none
+   */
+  private static <T extends Comparable<T>> T extreme(final T[] items, final int direction)
+  {
+    if (!isParallel(items.length))
+      return direction > 0 ? Linq.max(items) : Linq.min(items);
+
+    val chunks = chunkCount(items.length);
+    final Object[] partials = new Object[chunks];
+    invoke(chunks, new ChunkBody() {
+      @Override
+      void run(int chunk)
+      {
+        int end = boundary(items.length, chunks, chunk + 1);
+        int start = boundary(items.length, chunks, chunk);
+        T result = items[start];
+        for (int i = start + 1; i < end; i++)
+          if (result.compareTo(items[i]) * direction < 0)
+            result = items[i];
+
+        partials[chunk] = result;
+      }
+    });
+
+    T result = (T) partials[0];
+    for (int i = 1; i < chunks; i++)
+      if (result.compareTo((T) partials[i]) * direction < 0)
+        result = (T) partials[i];
+
+    return result;
+  }
+
+  /**
+   * Returns the k elements whose keys come first in the given key order, in that order. Each chunk retains its k first elements in a
+   * bounded heap, and the heaps are then merged.
+   */
+  private static <TKey, TResult> TResult[] selectK(final TResult[] values, final Function1<? super TResult, TKey> keySelector, final int k,
+                                                   final Comparator<? super TKey> order)
+  {
+    if (k < 0)
+      throw new IllegalArgumentException("k=" + k);
+
+    val chunks = isParallel(values.length) && k > 0 ? chunkCount(values.length) : 1;
+    final BoundedHeap<TKey, TResult>[] heaps = new BoundedHeap[chunks];
+    invoke(chunks, new ChunkBody() {
+      @Override
+      void run(int chunk)
+      {
+        BoundedHeap<TKey, TResult> heap = new BoundedHeap<TKey, TResult>(k, order);
+        if (k > 0)
+        {
+          int end = boundary(values.length, chunks, chunk + 1);
+          for (int i = boundary(values.length, chunks, chunk); i < end; i++)
+            heap.offer(keySelector.apply(values[i]), values[i], i);
+        }
+
+        heaps[chunk] = heap;
+      }
+    });
+
+    for (int i = 1; i < chunks; i++)
+      heaps[0].offerAll(heaps[i]);
+
+    return Linq.drain(heaps[0], values.getClass().getComponentType());
+  }
+
+  /**
+   * Merges the sorted ranges [start, middle) and [middle, end) of the source into the same range of the target. Elements of the first range
+   * are taken first when equal, to keep the merge stable.
+   */
+  private static <T> void merge(final T[] source, final T[] target, final int start, final int middle, final int end,
+                                final Comparator<? super T> comparer)
+  {
+    int left = start;
+    int right = middle;
+    for (int i = start; i < end; i++)
+      if (right >= end || (left < middle && comparer.compare(source[left], source[right]) <= 0))
+        target[i] = source[left++];
+      else
+        target[i] = source[right++];
+  }
+
+  /**
+   * Returns true if the value matches the item, using the comparer if specified, or equals() otherwise
+   */
+  private static <T> boolean matches(final T value, final T item, final Comparator<? super T> comparer)
+  {
+    if (item == null)
+      return value == null;
+    if (value == null)
+      return false;
+
+    return comparer == null ? value.equals(item) : comparer.compare(value, item) == 0;
+  }
+
+  /**
+   * Sums the given partial counts
+   */
+  private static int sum(final int[] partials)
+  {
+    int result = 0;
+    for (int partial : partials)
+      result += partial;
+
+    return result;
+  }
+
+  /**
+   * Work performed on a single chunk
+   */
+  private abstract static class ChunkBody
+  {
+    abstract void run(int chunk);
+  }
+
+  /**
+   * Recursively splits a range of chunk indices in halves, until single chunks remain, which are then run
+   */
+  private static final class ChunkTask
+      extends RecursiveAction
+  {
+    private static final long serialVersionUID = -5427301265915377734L;
+    private final ChunkBody body;
+    private final int fromChunk;
+    private final int toChunk;
+
+    ChunkTask(final ChunkBody body, final int fromChunk, final int toChunk)
+    {
+      this.body = body;
+      this.fromChunk = fromChunk;
+      this.toChunk = toChunk;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (toChunk - fromChunk == 1)
+        body.run(fromChunk);
+      else
+      {
+        int middle = (fromChunk + toChunk) >>> 1;
+        invokeAll(new ChunkTask(body, fromChunk, middle), new ChunkTask(body, middle, toChunk));
+      }
+    }
+  }
+
+  private ParallelLinq()
+  {
+  }
+}
@@ -0,0 +1,576 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import lombok.Validate;
+import lombok.Validate.NotNull;
+import lombok.val;
+import propel.core.functional.Functions.Function1;
+import propel.core.functional.Functions.Function2;
+import propel.core.functional.Predicates.Predicate1;
+
+/**
+ * A lazily evaluated query over a sequence or an array. Stages added to a pipeline are fused: every element is pushed through all stages
+ * within a single loop over the source, rather than being pulled through one iterator per stage. Nothing is evaluated until a terminal
+ * operation (such as toList(), count(), first() or any()) is invoked or the pipeline is iterated. A pipeline may be evaluated any number of
+ * times, each evaluation re-reading its source.
+ * 
+ * Instantiate using e.g.: Pipeline.from(values).where(predicate).select(selector).toList(); The Linq Iterable operators where(), select(),
+ * selectMany(), skip(), take(), distinct() and zip() also return pipelines, so that chained calls are fused.
+ */
+@SuppressWarnings("unchecked")
+public abstract class Pipeline<T>
+    implements Iterable<T>
+{
+  /**
+   * The source of the pipeline, either an Iterable or an Object[]
+   */
+  private final Object source;
+
+  /**
+   * Initializes with the source shared by all stages of this pipeline
+   */
+  Pipeline(Object source)
+  {
+    this.source = source;
+  }
+
+  /**
+   * Returns a pipeline over the given sequence. If the sequence is already a pipeline, it is returned as-is.
+   * 
+   * @throws NullPointerException When the argument is null.
+   */
+  @Validate
+  public static <T> Pipeline<T> from(@NotNull final Iterable<T> values)
+  {
+    if (values instanceof Pipeline<?>)
+      return (Pipeline<T>) values;
+
+    return new Source<T>(values);
+  }
+
+  /**
+   * Returns a pipeline over the given array. The array is not copied.
+   * 
+   * @throws NullPointerException When the argument is null.
+   */
+  @Validate
+  public static <T> Pipeline<T> from(@NotNull final T[] values)
+  {
+    return new Source<T>(values);
+  }
+
+  /**
+   * Returns a pipeline that filters elements using the given predicate.
+   * 
+   * @throws NullPointerException When the argument is null.
+   */
+  @Validate
+  public Pipeline<T> where(@NotNull final Predicate1<? super T> predicate)
+  {
+    return new Stage<T, T>(this) {
+      @Override
+      Sink<T> wrap(final Sink<? super T> downstream)
+      {
+        return new Sink<T>() {
+          @Override
+          public boolean accept(T item)
+          {
+            return !predicate.apply(item) || downstream.accept(item);
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Returns a pipeline that projects elements using the given selector.
+   * 
+   * @throws NullPointerException When the argument is null.
+   */
+  @Validate
+  public <TResult> Pipeline<TResult> select(@NotNull final Function1<? super T, TResult> selector)
+  {
+    return new Stage<T, TResult>(this) {
+      @Override
+      Sink<T> wrap(final Sink<? super TResult> downstream)
+      {
+        return new Sink<T>() {
+          @Override
+          public boolean accept(T item)
+          {
+            return downstream.accept(selector.apply(item));
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Returns a pipeline that projects elements to sequences and flattens them. Null sequences are skipped.
+   * 
+   * @throws NullPointerException When the argument is null.
+   */
+  @Validate
+  public <TResult> Pipeline<TResult> selectMany(@NotNull final Function1<? super T, ? extends Iterable<TResult>> selector)
+  {
+    return new Stage<T, TResult>(this) {
+      @Override
+      Sink<T> wrap(final Sink<? super TResult> downstream)
+      {
+        return new Sink<T>() {
+          @Override
+          public boolean accept(T item)
+          {
+            val subItems = selector.apply(item);
+            if (subItems != null)
+              for (TResult subItem : subItems)
+                if (!downstream.accept(subItem))
+                  return false;
+
+            return true;
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Returns a pipeline that skips up to the specified number of elements.
+   * 
+   * @throws IllegalArgumentException When count is out of range.
+   */
+  public Pipeline<T> skip(final int count)
+  {
+    if (count < 0)
+      throw new IllegalArgumentException("count=" + count);
+
+    return new Stage<T, T>(this) {
+      @Override
+      Sink<T> wrap(final Sink<? super T> downstream)
+      {
+        return new Sink<T>() {
+          private int skipped;
+
+          @Override
+          public boolean accept(T item)
+          {
+            if (skipped < count)
+            {
+              skipped++;
+              return true;
+            }
+
+            return downstream.accept(item);
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Returns a pipeline that stops after the specified number of elements. No further source elements are read once the count is reached,
+   * and none at all if the count is not positive.
+   */
+  public Pipeline<T> take(final int count)
+  {
+    // a sink can only stop after being pushed an element, so an empty source is used instead of this one
+    if (count <= 0)
+      return new Source<T>(new Object[0]);
+
+    return new Stage<T, T>(this) {
+      @Override
+      Sink<T> wrap(final Sink<? super T> downstream)
+      {
+        return new Sink<T>() {
+          private int remaining = count;
+
+          @Override
+          public boolean accept(T item)
+          {
+            if (remaining <= 0)
+              return false;
+
+            remaining--;
+            return downstream.accept(item) && remaining > 0;
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Returns a pipeline that excludes duplicate elements, using their equals() and hashCode().
+   */
+  public Pipeline<T> distinct()
+  {
+    return distinct(null);
+  }
+
+  /**
+   * Returns a pipeline that excludes duplicate elements, using the specified comparer or the elements' equals() and hashCode() if no
+   * comparer is specified.
+   */
+  public Pipeline<T> distinct(final Comparator<? super T> comparer)
+  {
+    return new Stage<T, T>(this) {
+      @Override
+      Sink<T> wrap(final Sink<? super T> downstream)
+      {
+        final Set<T> seen = Linq.newLookupSet(comparer, Linq.DEFAULT_LIST_SIZE);
+        return new Sink<T>() {
+          @Override
+          public boolean accept(T item)
+          {
+            return !seen.add(item) || downstream.accept(item);
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Returns a pipeline that merges elements with those of another sequence, using the specified function. Stops when either runs out.
+   * 
+   * @throws NullPointerException When an argument is null.
+   */
+  @Validate
+  public <TSecond, TResult> Pipeline<TResult> zip(@NotNull final Iterable<TSecond> second,
+                                                  @NotNull final Function2<? super T, ? super TSecond, TResult> function)
+  {
+    return new Stage<T, TResult>(this) {
+      @Override
+      Sink<T> wrap(final Sink<? super TResult> downstream)
+      {
+        final Iterator<TSecond> iterator = second.iterator();
+        return new Sink<T>() {
+          @Override
+          public boolean accept(T item)
+          {
+            if (!iterator.hasNext())
+              return false;
+
+            return downstream.accept(function.apply(item, iterator.next()));
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Evaluates the pipeline, returning all resulting elements in a list.
+   */
+  public List<T> toList()
+  {
+    final List<T> result = new ArrayList<T>(Linq.DEFAULT_LIST_SIZE);
+    run(new Sink<T>() {
+      @Override
+      public boolean accept(T item)
+      {
+        result.add(item);
+        return true;
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * Evaluates the pipeline, returning the number of resulting elements.
+   */
+  public int count()
+  {
+    final int[] count = new int[1];
+    run(new Sink<T>() {
+      @Override
+      public boolean accept(T item)
+      {
+        count[0]++;
+        return true;
+      }
+    });
+
+    return count[0];
+  }
+
+  /**
+   * Returns the first resulting element. Evaluation stops as soon as it is found.
+   * 
+   * @throws NoSuchElementException There is no first element.
+   */
+  public T first()
+  {
+    val sink = new FirstSink<T>(null);
+    run(sink);
+
+    if (!sink.found)
+      throw new NoSuchElementException("The iterable is empty.");
+
+    return sink.value;
+  }
+
+  /**
+   * Returns the first resulting element, or null if there is none. Evaluation stops as soon as it is found.
+   */
+  public T firstOrDefault()
+  {
+    val sink = new FirstSink<T>(null);
+    run(sink);
+
+    return sink.value;
+  }
+
+  /**
+   * Returns true if the pipeline produces any elements. Evaluation stops as soon as one is found.
+   */
+  public boolean any()
+  {
+    val sink = new FirstSink<T>(null);
+    run(sink);
+
+    return sink.found;
+  }
+
+  /**
+   * Returns true if any resulting element satisfies the given predicate. Evaluation stops as soon as one is found.
+   * 
+   * @throws NullPointerException When the argument is null.
+   */
+  @Validate
+  public boolean any(@NotNull final Predicate1<? super T> predicate)
+  {
+    val sink = new FirstSink<T>(predicate);
+    run(sink);
+
+    return sink.found;
+  }
+
+  /**
+   * Returns an iterator that evaluates the pipeline lazily, reading one source element at a time.
+   */
+  @Override
+  public Iterator<T> iterator()
+  {
+    return new PipelineIterator();
+  }
+
+  /**
+   * Returns a sink accepting source elements, which pushes them through all stages up to and including this one, into the given sink.
+   */
+  abstract Sink<Object> head(Sink<? super T> sink);
+
+  /**
+   * Pushes all source elements through the pipeline into the given sink, until the source ends or a sink stops accepting elements.
+   */
+  private void run(final Sink<? super T> sink)
+  {
+    val head = head(sink);
+
+    if (source instanceof Object[])
+    {
+      val array = (Object[]) source;
+      val length = array.length;
+      for (int i = 0; i < length; i++)
+        if (!head.accept(array[i]))
+          return;
+    } else
+      for (Object item : (Iterable<?>) source)
+        if (!head.accept(item))
+          return;
+  }
+
+  /**
+   * Receives elements pushed through a pipeline
+   */
+  interface Sink<T>
+  {
+    /**
+     * Accepts an element. Returns false if no further elements should be pushed.
+     */
+    boolean accept(T item);
+  }
+
+  /**
+   * The first stage of a pipeline, which passes source elements through as-is
+   */
+  private static final class Source<T>
+      extends Pipeline<T>
+  {
+    Source(Object source)
+    {
+      super(source);
+    }
+
+    @Override
+    Sink<Object> head(Sink<? super T> sink)
+    {
+      return (Sink<Object>) sink;
+    }
+  }
+
+  /**
+   * A stage of a pipeline, transforming the elements of the upstream stage
+   */
+  private abstract static class Stage<TIn, TOut>
+      extends Pipeline<TOut>
+  {
+    private final Pipeline<TIn> upstream;
+
+    Stage(Pipeline<TIn> upstream)
+    {
+      super(upstream.source);
+      this.upstream = upstream;
+    }
+
+    /**
+     * Returns a sink accepting upstream elements, which pushes transformed elements into the given downstream sink. This is called once per
+     * evaluation, so any per-evaluation state should be created here.
+     */
+    abstract Sink<TIn> wrap(Sink<? super TOut> downstream);
+
+    @Override
+    Sink<Object> head(Sink<? super TOut> sink)
+    {
+      return upstream.head(wrap(sink));
+    }
+  }
+
+  /**
+   * Captures the first element that satisfies an optional predicate
+   */
+  private static final class FirstSink<T>
+      implements Sink<T>
+  {
+    private final Predicate1<? super T> predicate;
+    boolean found;
+    T value;
+
+    FirstSink(Predicate1<? super T> predicate)
+    {
+      this.predicate = predicate;
+    }
+
+    @Override
+    public boolean accept(T item)
+    {
+      if (predicate != null && !predicate.apply(item))
+        return true;
+
+      found = true;
+      value = item;
+      return false;
+    }
+  }
+
+  /**
+   * Evaluates a pipeline lazily, by pushing one source element at a time and buffering the elements that come out of the last stage
+   */
+  private final class PipelineIterator
+      implements Iterator<T>, Sink<T>
+  {
+    private final Sink<Object> head;
+    private final Object[] array;
+    private final Iterator<?> iterator;
+    private final List<T> buffer;
+    private int index;
+    private int position;
+    private boolean finished;
+
+    PipelineIterator()
+    {
+      head = head(this);
+      buffer = new ArrayList<T>();
+
+      if (source instanceof Object[])
+      {
+        array = (Object[]) source;
+        iterator = null;
+      } else
+      {
+        array = null;
+        iterator = ((Iterable<?>) source).iterator();
+      }
+    }
+
+    @Override
+    public boolean accept(T item)
+    {
+      buffer.add(item);
+      return true;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      while (position >= buffer.size())
+      {
+        buffer.clear();
+        position = 0;
+
+        if (finished)
+          return false;
+
+        Object next;
+        if (array != null)
+        {
+          if (index >= array.length)
+          {
+            finished = true;
+            return false;
+          }
+          next = array[index++];
+        } else
+        {
+          if (!iterator.hasNext())
+          {
+            finished = true;
+            return false;
+          }
+          next = iterator.next();
+        }
+
+        if (!head.accept(next))
+          finished = true;
+      }
+
+      return true;
+    }
+
+    @Override
+    public T next()
+    {
+      if (!hasNext())
+        throw new NoSuchElementException("The pipeline has no more elements.");
+
+      return buffer.get(position++);
+    }
+
+    @Override
+    public void remove()
+    {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
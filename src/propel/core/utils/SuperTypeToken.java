@@ -18,9 +18,6 @@
 // /////////////////////////////////////////////////////////
 package propel.core.utils;
 
-import java.lang.reflect.Array;
-import java.lang.reflect.GenericArrayType;
-import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import lombok.Validate;
 import lombok.Validate.NotNull;
@@ -82,22 +79,10 @@ public final class SuperTypeToken
   @Validate
   public static Type getType(@NotNull final Class<?> clazz, final int pos)
   {
-    val superClass = clazz.getGenericSuperclass();
+    val entry = TypeArgumentCache.lookup(clazz);
+    checkPosition(clazz, entry, pos);
 
-    // test is superclass found
-    if (superClass instanceof Class)
-      throw new SuperTypeTokenException(String.format("Could not find generic parameter " + pos + " because this '" + clazz.getName()
-          + "' instance should belong to an anonymous class or should be extending a generic class."));
-
-    // get type arguments
-    val types = ((ParameterizedType) superClass).getActualTypeArguments();
-
-    // test if enough generic parameters were passed
-    if (pos >= types.length)
-      throw new SuperTypeTokenException(String.format("Could not find generic parameter #" + pos + " because only " + types.length
-          + " parameters were passed."));
-
-    return types[pos];
+    return entry.types[pos];
   }
 
   /**
@@ -120,10 +105,13 @@ public final class SuperTypeToken
    * @throws SuperTypeTokenException The class is not a concrete class, not a generic class or not instantiated using anonymous class
    *           semantics.
    */
-  public static Class<?> getClazz(final Class<?> clazz, final int pos)
+  @Validate
+  public static Class<?> getClazz(@NotNull final Class<?> clazz, final int pos)
   {
-    val type = getType(clazz, pos);
-    val result = getClass(type);
+    val entry = TypeArgumentCache.lookup(clazz);
+    checkPosition(clazz, entry, pos);
+
+    val result = entry.classes[pos];
 
     if (result == null)
       throw new SuperTypeTokenException(
@@ -135,35 +123,21 @@ public final class SuperTypeToken
   }
 
   /**
-   * Get the underlying class for a type, or null if the type is a variable type.
-   * 
-   * @param type the type
+   * Ensures that the class extends a generic class and that a type argument exists at the given position.
    * 
-   * @return the underlying class
+   * @throws SuperTypeTokenException The superclass is not generic or there is no type argument at the given position.
    */
-  private static Class<?> getClass(Type type)
+  private static void checkPosition(final Class<?> clazz, final TypeArgumentCache.Entry entry, final int pos)
   {
-    if (type instanceof Class)
-    {
-      return (Class<?>) type;
-    } else if (type instanceof ParameterizedType)
-    {
-      return getClass(((ParameterizedType) type).getRawType());
-    } else if (type instanceof GenericArrayType)
-    {
-      Type componentType = ((GenericArrayType) type).getGenericComponentType();
-      Class<?> componentClass = getClass(componentType);
-      if (componentClass != null)
-      {
-        return Array.newInstance(componentClass, 0).getClass();
-      } else
-      {
-        return null;
-      }
-    } else
-    {
-      return null;
-    }
+    // test is superclass found
+    if (entry.types == null)
+      throw new SuperTypeTokenException(String.format("Could not find generic parameter " + pos + " because this '" + clazz.getName()
+          + "' instance should belong to an anonymous class or should be extending a generic class."));
+
+    // test if enough generic parameters were passed
+    if (pos >= entry.types.length)
+      throw new SuperTypeTokenException(String.format("Could not find generic parameter #" + pos + " because only " + entry.types.length
+          + " parameters were passed."));
   }
 
   /*
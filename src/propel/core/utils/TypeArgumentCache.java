@@ -0,0 +1,174 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.utils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Validate;
+import lombok.Validate.NotNull;
+import lombok.val;
+import propel.core.counters.StripedCounter;
+
+/**
+ * A per-class cache of the type arguments a class passes to its generic superclass, e.g. for new Function1&lt;String, Integer&gt;() { ... }
+ * these are String and Integer. Resolving these involves reflection, so they are resolved once per class and then shared, both by
+ * SuperTypeToken and by the functional classes' getReturnType() and getParameterTypeN() methods.
+ * 
+ * Cache entries are attached to the classes themselves, so they do not prevent classes from being unloaded.
+ */
+public final class TypeArgumentCache
+{
+  private static final StripedCounter LOOKUPS = new StripedCounter();
+  private static final AtomicLong MISSES = new AtomicLong();
+
+  private static final ClassValue<Entry> CACHE = new ClassValue<Entry>() {
+    @Override
+    protected Entry computeValue(Class<?> clazz)
+    {
+      MISSES.incrementAndGet();
+      return new Entry(clazz);
+    }
+  };
+
+  /**
+   * Private constructor prevents instantiation.
+   */
+  private TypeArgumentCache()
+  {
+  }
+
+  /**
+   * Returns the Type of a class's formal type argument at a given position, or null if the class does not extend a generic class or there
+   * is no argument at the given position.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static Type getType(@NotNull final Class<?> clazz, final int pos)
+  {
+    val types = lookup(clazz).types;
+    if (types == null || pos < 0 || pos >= types.length)
+      return null;
+
+    return types[pos];
+  }
+
+  /**
+   * Returns the Class of a class's formal type argument at a given position, or null if the class does not extend a generic class, there is
+   * no argument at the given position, or the argument is a type variable.
+   * 
+   * @throws NullPointerException An argument is null
+   */
+  @Validate
+  public static Class<?> getClass(@NotNull final Class<?> clazz, final int pos)
+  {
+    val classes = lookup(clazz).classes;
+    if (classes == null || pos < 0 || pos >= classes.length)
+      return null;
+
+    return classes[pos];
+  }
+
+  /**
+   * Returns the number of lookups that were served from the cache. This is approximate while lookups are in progress.
+   */
+  public static long getHits()
+  {
+    return LOOKUPS.sum() - MISSES.get();
+  }
+
+  /**
+   * Returns the number of lookups that required resolving a class's type arguments
+   */
+  public static long getMisses()
+  {
+    return MISSES.get();
+  }
+
+  /**
+   * Returns the cache entry of a class, resolving it if necessary
+   */
+  static Entry lookup(final Class<?> clazz)
+  {
+    LOOKUPS.increment();
+    return CACHE.get(clazz);
+  }
+
+  /**
+   * Get the underlying class for a type, or null if the type is a variable type.
+   */
+  private static Class<?> getClass(final Type type)
+  {
+    if (type instanceof Class)
+    {
+      return (Class<?>) type;
+    } else if (type instanceof ParameterizedType)
+    {
+      return getClass(((ParameterizedType) type).getRawType());
+    } else if (type instanceof GenericArrayType)
+    {
+      Type componentType = ((GenericArrayType) type).getGenericComponentType();
+      Class<?> componentClass = getClass(componentType);
+      if (componentClass != null)
+      {
+        return Array.newInstance(componentClass, 0).getClass();
+      } else
+      {
+        return null;
+      }
+    } else
+    {
+      return null;
+    }
+  }
+
+  /**
+   * The resolved type arguments of a class. The arrays are shared and must not be modified.
+   */
+  static final class Entry
+  {
+    /**
+     * The type arguments passed to the generic superclass, or null if the superclass is not generic
+     */
+    final Type[] types;
+    /**
+     * The classes of the type arguments, with null for those that cannot be resolved, or null if the superclass is not generic
+     */
+    final Class<?>[] classes;
+
+    Entry(final Class<?> clazz)
+    {
+      val superClass = clazz.getGenericSuperclass();
+      if (!(superClass instanceof ParameterizedType))
+      {
+        types = null;
+        classes = null;
+      } else
+      {
+        types = ((ParameterizedType) superClass).getActualTypeArguments();
+        classes = new Class<?>[types.length];
+        for (int i = 0; i < types.length; i++)
+          classes[i] = TypeArgumentCache.getClass(types[i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.utils;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A fixed-capacity ring buffer exposed as a read-only list, holding the current window of the windowing operators. Elements are appended
+ * at the end and discarded from the start in O(1) per element, so that a window can be advanced without shifting its contents.
+ */
+@SuppressWarnings("unchecked")
+final class WindowBuffer<T>
+    extends AbstractList<T>
+    implements RandomAccess
+{
+  private final Object[] items;
+  private int head;
+  private int size;
+
+  /**
+   * Initializes an empty buffer that can hold up to the given number of elements
+   */
+  WindowBuffer(final int capacity)
+  {
+    items = new Object[capacity];
+  }
+
+  @Override
+  public T get(final int index)
+  {
+    if (index < 0 || index >= size)
+      throw new IndexOutOfBoundsException("index=" + index + " size=" + size);
+
+    return (T) items[(head + index) % items.length];
+  }
+
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Returns true if the buffer holds as many elements as its capacity
+   */
+  boolean isFull()
+  {
+    return size == items.length;
+  }
+
+  /**
+   * Appends an element at the end of the buffer, which must not be full
+   */
+  void append(final T item)
+  {
+    items[(head + size) % items.length] = item;
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Discards up to the given number of elements from the start of the buffer
+   */
+  void discard(final int count)
+  {
+    int discarded = Math.min(count, size);
+    for (int i = 0; i < discarded; i++)
+    {
+      items[head] = null;
+      head = (head + 1) % items.length;
+    }
+
+    size -= discarded;
+    modCount++;
+  }
+}
@@ -0,0 +1,275 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.maps.primitive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import propel.core.functional.Functions.LongToObjectFunction;
+
+/**
+ * Checks the removed-key (tombstone) and rehash paths of SharedLongHashMap, single-threaded and while other threads read and write.
+ */
+public class SharedLongHashMapTest
+{
+  private static final int THREADS = 4;
+
+  @Test
+  public void removedSlotsAreReclaimedWithoutGrowing()
+  {
+    SharedLongHashMap<Long> map = new SharedLongHashMap<Long>(64, 1, Long.class);
+    int capacity = map.capacity();
+
+    // each round leaves 64 tombstones, which the next rehash drops instead of doubling the table
+    for (long round = 0; round < 1000; round++)
+    {
+      for (long key = 1; key <= 64; key++)
+        assertNull(map.put(round * 64 + key, key));
+      for (long key = 1; key <= 64; key++)
+        assertEquals(Long.valueOf(key), map.remove(round * 64 + key));
+    }
+
+    assertEquals(capacity, map.capacity());
+    assertEquals(0, map.size());
+    assertTrue(map.isEmpty());
+  }
+
+  @Test
+  public void removedKeyCanBePutAgain()
+  {
+    SharedLongHashMap<String> map = new SharedLongHashMap<String>(16, 1, String.class);
+    map.put(5, "a");
+    assertEquals("a", map.remove(5));
+    assertNull(map.get(5));
+    assertNull(map.remove(5));
+    assertNull(map.replace(5, "b"));
+
+    assertNull(map.putIfAbsent(5, "c"));
+    assertEquals("c", map.get(5));
+    assertEquals(1, map.size());
+    assertEquals(1, map.keySet().length);
+  }
+
+  /**
+   * Writers churn their own keys, putting and removing them so that tables fill with tombstones and rehash, while readers check that keys
+   * that are never removed are always found with their value
+   */
+  @Test(timeout = 120000)
+  public void readersSeeStableKeysWhileWritersChurn()
+      throws InterruptedException
+  {
+    final SharedLongHashMap<Long> map = new SharedLongHashMap<Long>(16, THREADS, Long.class);
+    final int stable = 10000;
+    for (long key = 1; key <= stable; key++)
+      map.put(key, -key);
+
+    final AtomicBoolean stop = new AtomicBoolean();
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final CountDownLatch writers = new CountDownLatch(THREADS);
+    final CountDownLatch readers = new CountDownLatch(THREADS);
+
+    for (int t = 0; t < THREADS; t++)
+    {
+      final long first = stable + 1 + t * 100000L;
+      start(writers, failure, new Runnable() {
+        @Override
+        public void run()
+        {
+          for (int round = 0; round < 20; round++)
+          {
+            for (long key = first; key < first + 5000; key++)
+              assertNull(map.put(key, key));
+            for (long key = first; key < first + 5000; key += 2)
+              assertEquals(Long.valueOf(key), map.remove(key));
+            for (long key = first + 1; key < first + 5000; key += 2)
+              assertEquals(Long.valueOf(key), map.remove(key));
+          }
+
+          // leaves every third key in place
+          for (long key = first; key < first + 5000; key += 3)
+            map.put(key, key);
+        }
+      });
+
+      start(readers, failure, new Runnable() {
+        @Override
+        public void run()
+        {
+          while (!stop.get())
+            for (long key = 1; key <= stable; key += 7)
+              assertEquals(Long.valueOf(-key), map.get(key));
+        }
+      });
+    }
+
+    writers.await();
+    stop.set(true);
+    readers.await();
+    if (failure.get() != null)
+      throw new AssertionError(failure.get());
+
+    int expected = stable;
+    for (int t = 0; t < THREADS; t++)
+    {
+      long first = stable + 1 + t * 100000L;
+      for (long key = first; key < first + 5000; key++)
+        if ((key - first) % 3 == 0)
+        {
+          assertEquals(Long.valueOf(key), map.get(key));
+          expected++;
+        } else
+          assertFalse(map.containsKey(key));
+    }
+
+    assertEquals(expected, map.size());
+    assertEquals(expected, map.keySet().length);
+  }
+
+  /**
+   * Writers grow the map from a tiny capacity, so that every segment rehashes many times, while readers check that every key a writer has
+   * announced is found
+   */
+  @Test(timeout = 120000)
+  public void readersSeePutKeysWhileSegmentsGrow()
+      throws InterruptedException
+  {
+    final SharedLongHashMap<Long> map = new SharedLongHashMap<Long>(1, THREADS, Long.class);
+    final int perWriter = 50000;
+    final AtomicLong[] progress = new AtomicLong[THREADS];
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final CountDownLatch done = new CountDownLatch(2 * THREADS);
+
+    for (int t = 0; t < THREADS; t++)
+    {
+      final int writer = t;
+      progress[t] = new AtomicLong();
+      start(done, failure, new Runnable() {
+        @Override
+        public void run()
+        {
+          for (long i = 1; i <= perWriter; i++)
+          {
+            map.put(key(writer, i), i);
+            progress[writer].set(i);
+          }
+        }
+      });
+
+      start(done, failure, new Runnable() {
+        @Override
+        public void run()
+        {
+          int other = (writer + 1) % THREADS;
+          long checked = 0;
+          while (checked < perWriter)
+          {
+            long announced = progress[other].get();
+            for (long i = checked + 1; i <= announced; i++)
+              assertEquals(Long.valueOf(i), map.get(key(other, i)));
+
+            checked = announced;
+          }
+        }
+      });
+    }
+
+    done.await();
+    if (failure.get() != null)
+      throw new AssertionError(failure.get());
+
+    assertEquals(THREADS * perWriter, map.size());
+  }
+
+  @Test(timeout = 60000)
+  public void computeIfAbsentCallsTheFunctionOncePerKey()
+      throws InterruptedException
+  {
+    final SharedLongHashMap<Long> map = new SharedLongHashMap<Long>(16, THREADS, Long.class);
+    final int keys = 20000;
+    final AtomicIntegerArray calls = new AtomicIntegerArray(keys);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final CountDownLatch done = new CountDownLatch(THREADS);
+    final LongToObjectFunction<Long> function = new LongToObjectFunction<Long>() {
+      @Override
+      public Long apply(long key)
+      {
+        calls.incrementAndGet((int) key);
+        return key * 2;
+      }
+    };
+
+    for (int t = 0; t < THREADS; t++)
+      start(done, failure, new Runnable() {
+        @Override
+        public void run()
+        {
+          for (long key = 0; key < keys; key++)
+            assertEquals(Long.valueOf(key * 2), map.computeIfAbsent(key, function));
+        }
+      });
+
+    done.await();
+    if (failure.get() != null)
+      throw new AssertionError(failure.get());
+
+    for (int key = 0; key < keys; key++)
+      assertEquals("key " + key, 1, calls.get(key));
+
+    assertEquals(keys, map.size());
+  }
+
+  /**
+   * Returns the i-th key of a writer, spreading the writers' keys apart
+   */
+  private static long key(int writer, long i)
+  {
+    return ((long) writer << 40) + i;
+  }
+
+  private static void start(final CountDownLatch done, final AtomicReference<Throwable> failure, final Runnable body)
+  {
+    Thread thread = new Thread() {
+      @Override
+      public void run()
+      {
+        try
+        {
+          body.run();
+        }
+        catch(Throwable e)
+        {
+          failure.compareAndSet(null, e);
+        }
+        finally
+        {
+          done.countDown();
+        }
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+  }
+}
@@ -0,0 +1,204 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.queues;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import propel.core.TryResult;
+
+/**
+ * Checks that, with several producers on a queue small enough to fill up, the single consumer takes every item exactly once and each
+ * producer's items in the order they were put.
+ */
+public class MpscQueueTest
+{
+  private static final int PRODUCERS = 4;
+  private static final int ITEMS_PER_PRODUCER = 50000;
+  private static final int CAPACITY = 64;
+  private static final int BATCH = 10;
+  /**
+   * The strategies that give up the CPU while waiting, so that the tests also run quickly on a single CPU
+   */
+  private static final WaitStrategy[] WAIT_STRATEGIES = {WaitStrategy.Yield, WaitStrategy.Park, WaitStrategy.SpinThenPark};
+
+  @Test(timeout = 60000)
+  public void putAndGetConserveItemsInProducerOrder()
+      throws InterruptedException
+  {
+    for (WaitStrategy waitStrategy : WAIT_STRATEGIES)
+      assertConservedInOrder(new MpscQueue<Integer>(CAPACITY, waitStrategy, Integer.class), false);
+  }
+
+  @Test(timeout = 60000)
+  public void putRangeAndGetRangeConserveItemsInProducerOrder()
+      throws InterruptedException
+  {
+    for (WaitStrategy waitStrategy : WAIT_STRATEGIES)
+      assertConservedInOrder(new MpscQueue<Integer>(CAPACITY, waitStrategy, Integer.class), true);
+  }
+
+  @Test(timeout = 60000)
+  public void offerAndTryGetConserveItemsInProducerOrder()
+      throws InterruptedException
+  {
+    final MpscQueue<Integer> queue = new MpscQueue<Integer>(CAPACITY, Integer.class);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final CountDownLatch done = new CountDownLatch(PRODUCERS);
+
+    for (int p = 0; p < PRODUCERS; p++)
+    {
+      final int first = p * ITEMS_PER_PRODUCER;
+      start(done, failure, new Runnable() {
+        @Override
+        public void run()
+        {
+          for (int i = first; i < first + ITEMS_PER_PRODUCER; i++)
+            while (!queue.offer(i))
+              Thread.yield();
+        }
+      });
+    }
+
+    int[] next = initialNext();
+    for (int taken = 0; taken < PRODUCERS * ITEMS_PER_PRODUCER;)
+    {
+      TryResult<Integer> result = queue.tryGet();
+      if (result.isSuccess())
+      {
+        take(next, result.getResult());
+        taken++;
+      }
+      else
+        Thread.yield();
+    }
+
+    assertAllTaken(queue, next, failure, done);
+  }
+
+  private static void assertConservedInOrder(final MpscQueue<Integer> queue, final boolean batched)
+      throws InterruptedException
+  {
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final CountDownLatch done = new CountDownLatch(PRODUCERS);
+
+    for (int p = 0; p < PRODUCERS; p++)
+    {
+      final int first = p * ITEMS_PER_PRODUCER;
+      start(done, failure, new Runnable() {
+        @Override
+        public void run()
+        {
+          if (batched)
+            for (int i = first; i < first + ITEMS_PER_PRODUCER; i += BATCH)
+            {
+              List<Integer> items = new ArrayList<Integer>(BATCH);
+              for (int j = i; j < i + BATCH; j++)
+                items.add(j);
+
+              queue.putRange(items);
+            }
+          else
+            for (int i = first; i < first + ITEMS_PER_PRODUCER; i++)
+              queue.put(i);
+        }
+      });
+    }
+
+    int[] next = initialNext();
+    for (int taken = 0; taken < PRODUCERS * ITEMS_PER_PRODUCER;)
+      if (batched)
+        for (Integer item : queue.getRange(BATCH))
+        {
+          take(next, item);
+          taken++;
+        }
+      else
+      {
+        take(next, queue.get());
+        taken++;
+      }
+
+    assertAllTaken(queue, next, failure, done);
+  }
+
+  /**
+   * Returns the item expected next from each producer
+   */
+  private static int[] initialNext()
+  {
+    int[] result = new int[PRODUCERS];
+    for (int p = 0; p < PRODUCERS; p++)
+      result[p] = p * ITEMS_PER_PRODUCER;
+
+    return result;
+  }
+
+  /**
+   * Checks the item is the one expected next from its producer, which also means it was not taken before
+   */
+  private static void take(int[] next, int item)
+  {
+    int producer = item / ITEMS_PER_PRODUCER;
+    assertEquals("producer " + producer, next[producer], item);
+    next[producer]++;
+  }
+
+  private static void start(final CountDownLatch done, final AtomicReference<Throwable> failure, final Runnable body)
+  {
+    Thread thread = new Thread() {
+      @Override
+      public void run()
+      {
+        try
+        {
+          body.run();
+        }
+        catch(Throwable e)
+        {
+          failure.compareAndSet(null, e);
+        }
+        finally
+        {
+          done.countDown();
+        }
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private static void assertAllTaken(MpscQueue<Integer> queue, int[] next, AtomicReference<Throwable> failure, CountDownLatch done)
+      throws InterruptedException
+  {
+    done.await();
+    if (failure.get() != null)
+      throw new AssertionError(failure.get());
+
+    for (int p = 0; p < PRODUCERS; p++)
+      assertEquals("producer " + p, (p + 1) * ITEMS_PER_PRODUCER, next[p]);
+
+    assertFalse(queue.tryGet().isSuccess());
+    assertEquals(0, queue.size());
+  }
+}
@@ -0,0 +1,191 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.queues;
+
+import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import propel.core.TryResult;
+
+/**
+ * Checks that, with several producers and consumers on a queue small enough to fill up, every item put is taken exactly once.
+ */
+public class SharedBoundedQueueTest
+{
+  private static final int PRODUCERS = 4;
+  private static final int CONSUMERS = 4;
+  private static final int ITEMS_PER_PRODUCER = 50000;
+  private static final int CAPACITY = 64;
+  private static final int BATCH = 10;
+
+  @Test(timeout = 60000)
+  public void blockingPutAndGetConserveItems()
+      throws InterruptedException
+  {
+    for (BackPressure backPressure : new BackPressure[] {BackPressure.Block, BackPressure.SpinThenPark})
+      assertConserved(new SharedBoundedQueue<Integer>(CAPACITY, backPressure, Integer.class), false);
+  }
+
+  @Test(timeout = 60000)
+  public void batchPutRangeAndGetRangeConserveItems()
+      throws InterruptedException
+  {
+    for (BackPressure backPressure : new BackPressure[] {BackPressure.Block, BackPressure.SpinThenPark})
+      assertConserved(new SharedBoundedQueue<Integer>(CAPACITY, backPressure, Integer.class), true);
+  }
+
+  @Test(timeout = 60000)
+  public void offerAndTryGetConserveItems()
+      throws InterruptedException
+  {
+    final SharedBoundedQueue<Integer> queue = new SharedBoundedQueue<Integer>(CAPACITY, BackPressure.FailFast, Integer.class);
+    final AtomicIntegerArray taken = new AtomicIntegerArray(PRODUCERS * ITEMS_PER_PRODUCER);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final CountDownLatch done = new CountDownLatch(PRODUCERS + CONSUMERS);
+
+    for (int p = 0; p < PRODUCERS; p++)
+    {
+      final int first = p * ITEMS_PER_PRODUCER;
+      start(done, failure, new Runnable() {
+        @Override
+        public void run()
+        {
+          for (int i = first; i < first + ITEMS_PER_PRODUCER; i++)
+            while (!queue.offer(i))
+              Thread.yield();
+        }
+      });
+    }
+
+    for (int c = 0; c < CONSUMERS; c++)
+      start(done, failure, new Runnable() {
+        @Override
+        public void run()
+        {
+          for (int i = 0; i < PRODUCERS * ITEMS_PER_PRODUCER / CONSUMERS;)
+          {
+            TryResult<Integer> result = queue.tryGet();
+            if (result.isSuccess())
+            {
+              taken.incrementAndGet(result.getResult());
+              i++;
+            }
+            else
+              Thread.yield();
+          }
+        }
+      });
+
+    assertTakenOnce(queue, taken, failure, done);
+  }
+
+  /**
+   * Runs the producers and consumers to completion and checks each item was taken once
+   */
+  private static void assertConserved(final SharedBoundedQueue<Integer> queue, final boolean batched)
+      throws InterruptedException
+  {
+    final AtomicIntegerArray taken = new AtomicIntegerArray(PRODUCERS * ITEMS_PER_PRODUCER);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final CountDownLatch done = new CountDownLatch(PRODUCERS + CONSUMERS);
+
+    for (int p = 0; p < PRODUCERS; p++)
+    {
+      final int first = p * ITEMS_PER_PRODUCER;
+      start(done, failure, new Runnable() {
+        @Override
+        public void run()
+        {
+          if (batched)
+            for (int i = first; i < first + ITEMS_PER_PRODUCER; i += BATCH)
+            {
+              List<Integer> items = new ArrayList<Integer>(BATCH);
+              for (int j = i; j < i + BATCH; j++)
+                items.add(j);
+
+              queue.putRange(items);
+            }
+          else
+            for (int i = first; i < first + ITEMS_PER_PRODUCER; i++)
+              queue.put(i);
+        }
+      });
+    }
+
+    for (int c = 0; c < CONSUMERS; c++)
+      start(done, failure, new Runnable() {
+        @Override
+        public void run()
+        {
+          int count = PRODUCERS * ITEMS_PER_PRODUCER / CONSUMERS;
+          if (batched)
+            for (int i = 0; i < count; i += BATCH)
+              for (Integer item : queue.getRange(BATCH))
+                taken.incrementAndGet(item);
+          else
+            for (int i = 0; i < count; i++)
+              taken.incrementAndGet(queue.get());
+        }
+      });
+
+    assertTakenOnce(queue, taken, failure, done);
+  }
+
+  private static void start(final CountDownLatch done, final AtomicReference<Throwable> failure, final Runnable body)
+  {
+    Thread thread = new Thread() {
+      @Override
+      public void run()
+      {
+        try
+        {
+          body.run();
+        }
+        catch(Throwable e)
+        {
+          failure.compareAndSet(null, e);
+        }
+        finally
+        {
+          done.countDown();
+        }
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private static void assertTakenOnce(SharedBoundedQueue<Integer> queue, AtomicIntegerArray taken, AtomicReference<Throwable> failure,
+                                      CountDownLatch done)
+      throws InterruptedException
+  {
+    done.await();
+    if (failure.get() != null)
+      throw new AssertionError(failure.get());
+
+    for (int i = 0; i < taken.length(); i++)
+      assertEquals("item " + i, 1, taken.get(i));
+
+    assertEquals(0, queue.size());
+  }
+}
@@ -0,0 +1,124 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.queues;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import org.junit.Test;
+
+/**
+ * Checks that subclasses can still use the backing list, and that weakly consistent iterations see every element that stays queued.
+ */
+public class SharedQueueTest
+{
+  @Test
+  public void subclassesShareTheBackingList()
+  {
+    QueueJumper queue = new QueueJumper();
+    for (int i = 0; i < 5; i++)
+      queue.put(i);
+
+    queue.putFirst(-1);
+    assertEquals(Integer.valueOf(-1), queue.peek());
+    assertEquals(6, queue.size());
+
+    ListIterator<Integer> iterator = queue.backingList().listIterator(3);
+    assertEquals(Integer.valueOf(2), iterator.next());
+    iterator.remove();
+    iterator.add(20);
+    assertTrue(queue.backingList().remove(Integer.valueOf(4)));
+
+    assertEquals(Arrays.asList(-1, 0, 1, 20, 3), new ArrayList<Integer>(queue.toList()));
+    assertEquals(Arrays.asList(3, 20, 1, 0, -1), toList(queue.backingList().descendingIterator()));
+    assertEquals(Integer.valueOf(-1), queue.get());
+    assertEquals(Arrays.asList(0, 1, 20, 3), new ArrayList<Integer>(queue.backingList()));
+  }
+
+  @Test
+  public void weaklyConsistentIterationSeesElementsQueuedDuringIt()
+  {
+    SharedQueue<Integer> queue = new SharedQueue<Integer>(Integer.class);
+    for (int i = 0; i < 1000; i++)
+      queue.put(i);
+
+    Iterator<Integer> iterator = queue.weaklyConsistentIterator();
+    List<Integer> seen = new ArrayList<Integer>();
+    for (int i = 0; i < 600; i++)
+    {
+      seen.add(iterator.next());
+      if (i % 10 == 0)
+      {
+        queue.get();
+        queue.put(1000 + i);
+      }
+    }
+
+    seen.addAll(toList(iterator));
+
+    assertEquals(1060, seen.size());
+    for (int i = 1; i < seen.size(); i++)
+      assertTrue(seen.get(i) > seen.get(i - 1));
+  }
+
+  private static List<Integer> toList(Iterator<Integer> iterator)
+  {
+    List<Integer> result = new ArrayList<Integer>();
+    while (iterator.hasNext())
+      result.add(iterator.next());
+
+    return result;
+  }
+
+  /**
+   * A subclass that puts elements at the head of the queue through the backing list
+   */
+  private static final class QueueJumper
+      extends SharedQueue<Integer>
+  {
+    QueueJumper()
+    {
+      super(Integer.class);
+    }
+
+    void putFirst(Integer item)
+    {
+      lock();
+      try
+      {
+        queue.addFirst(item);
+        notEmpty.signalAll();
+      }
+      finally
+      {
+        unlock();
+      }
+    }
+
+    LinkedList<Integer> backingList()
+    {
+      return queue;
+    }
+  }
+}
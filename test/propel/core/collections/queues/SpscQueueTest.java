@@ -0,0 +1,115 @@
+// /////////////////////////////////////////////////////////
+// This file is part of Propel.
+//
+// Propel is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Lesser General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// Propel is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public License
+// along with Propel. If not, see <http://www.gnu.org/licenses/>.
+// /////////////////////////////////////////////////////////
+// Authored by: Nikolaos Tountas -> salam.kaser-at-gmail.com
+// /////////////////////////////////////////////////////////
+package propel.core.collections.queues;
+
+import static org.junit.Assert.assertEquals;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+/**
+ * Checks that a single producer's items reach the single consumer exactly once and in order, through a queue small enough to fill up.
+ */
+public class SpscQueueTest
+{
+  private static final int ITEMS = 200000;
+  private static final int CAPACITY = 64;
+  private static final int BATCH = 10;
+  /**
+   * The strategies that give up the CPU while waiting, so that the tests also run quickly on a single CPU
+   */
+  private static final WaitStrategy[] WAIT_STRATEGIES = {WaitStrategy.Yield, WaitStrategy.Park, WaitStrategy.SpinThenPark};
+
+  @Test(timeout = 60000)
+  public void putAndGetPreserveOrder()
+      throws InterruptedException
+  {
+    for (WaitStrategy waitStrategy : WAIT_STRATEGIES)
+      assertInOrder(new SpscQueue<Integer>(CAPACITY, waitStrategy, Integer.class), false);
+  }
+
+  @Test(timeout = 60000)
+  public void putRangeAndGetRangePreserveOrder()
+      throws InterruptedException
+  {
+    for (WaitStrategy waitStrategy : WAIT_STRATEGIES)
+      assertInOrder(new SpscQueue<Integer>(CAPACITY, waitStrategy, Integer.class), true);
+  }
+
+  @Test
+  public void nullItemsAreQueued()
+  {
+    SpscQueue<Integer> queue = new SpscQueue<Integer>(CAPACITY, Integer.class);
+    queue.put(null);
+    queue.put(1);
+
+    assertEquals(2, queue.size());
+    assertEquals(null, queue.get());
+    assertEquals(Integer.valueOf(1), queue.get());
+    assertEquals(0, queue.size());
+  }
+
+  private static void assertInOrder(final SpscQueue<Integer> queue, final boolean batched)
+      throws InterruptedException
+  {
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread producer = new Thread() {
+      @Override
+      public void run()
+      {
+        try
+        {
+          if (batched)
+            for (int i = 0; i < ITEMS; i += BATCH)
+            {
+              List<Integer> items = new ArrayList<Integer>(BATCH);
+              for (int j = i; j < i + BATCH; j++)
+                items.add(j);
+
+              queue.putRange(items);
+            }
+          else
+            for (int i = 0; i < ITEMS; i++)
+              queue.put(i);
+        }
+        catch(Throwable e)
+        {
+          failure.compareAndSet(null, e);
+        }
+      }
+    };
+    producer.setDaemon(true);
+    producer.start();
+
+    int expected = 0;
+    while (expected < ITEMS)
+      if (batched)
+        for (Integer item : queue.getRange(BATCH))
+          assertEquals(expected++, item.intValue());
+      else
+        assertEquals(expected++, queue.get().intValue());
+
+    producer.join();
+    if (failure.get() != null)
+      throw new AssertionError(failure.get());
+
+    assertEquals(0, queue.size());
+  }
+}